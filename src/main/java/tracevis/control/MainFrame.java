@@ -480,22 +480,34 @@ public class MainFrame extends JFrame implements ProgramListener {
 		public void actionPerformed(ActionEvent event) {
 			int returnVal = traceChooser.showOpenDialog(MainFrame.this);
 			if (returnVal == JFileChooser.APPROVE_OPTION) {
-				try {
-					File file = traceChooser.getSelectedFile();
-					boolean hideInnerClasses = hideInnerClassesCheck.isSelected();
-					CallAssignment assignment;
-					if (definingClassButton.isSelected()) {
-						assignment = CallAssignment.DEFINING_CLASS;
-					} else {
-						assignment = CallAssignment.OBJECT_CLASS;
-					}
-
-					program.loadTrace(file.getAbsolutePath(), hideInnerClasses, assignment);
-				} catch (Exception e) {
-					String message = "Could not load trace: " + e.getMessage();
-					JOptionPane.showMessageDialog(MainFrame.this, message,
-						                          "Error", JOptionPane.ERROR_MESSAGE);
+				File file = traceChooser.getSelectedFile();
+				boolean hideInnerClasses = hideInnerClassesCheck.isSelected();
+				CallAssignment assignment;
+				if (definingClassButton.isSelected()) {
+					assignment = CallAssignment.DEFINING_CLASS;
+				} else {
+					assignment = CallAssignment.OBJECT_CLASS;
 				}
+
+				// The trace is loaded in the background; only one trace can
+				// be loaded at a time.
+				setEnabled(false);
+				final String status = programStatus.getText();
+				programStatus.setText("Loading Trace");
+				TraceLoader traceLoader = new TraceLoader(MainFrame.this, program, file,
+				                                          hideInnerClasses, assignment, true) {
+					@Override
+					public void finished() {
+						// The previous trace remains if the load failed or was
+						// canceled before a snapshot was shown.
+						if (programStatus.getText().equals("Loading Trace")) {
+							programStatus.setText(status);
+						}
+						super.finished();
+						LoadAction.this.setEnabled(true);
+					}
+				};
+				traceLoader.start();
 			}
 		}
 	}
@@ -13,7 +13,8 @@ import java.io.File;
 import javax.swing.filechooser.FileFilter;
 
 /**
- * A FileFilter which only accepts files with the extension ".trace".
+ * A FileFilter which only accepts files with the extension ".trace", ".tvb" or
+ * ".tvc".
  */
 class TraceFilter extends FileFilter {
 	@Override
@@ -22,7 +23,8 @@ class TraceFilter extends FileFilter {
 			return true;
 		} else {
 			String extension = getExtension(file);
-			if (extension != null && extension.equals("trace")) {
+			if (extension != null && (extension.equals("trace") || extension.equals("tvb") ||
+			                          extension.equals("tvc"))) {
 				return true;
 			} else {
 				return false;
@@ -32,7 +34,7 @@ class TraceFilter extends FileFilter {
 
 	@Override
 	public String getDescription() {
-		return "Trace file (*.trace)";
+		return "Trace file (*.trace, *.tvb, *.tvc)";
 	}
 
 	private String getExtension(File file) {
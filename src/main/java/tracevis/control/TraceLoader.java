@@ -0,0 +1,205 @@
+package tracevis.control;
+
+import java.awt.Component;
+import java.io.File;
+import java.util.concurrent.CancellationException;
+
+import javax.swing.JOptionPane;
+import javax.swing.ProgressMonitor;
+import javax.swing.SwingUtilities;
+
+import tracevis.model.LoadMonitor;
+import tracevis.model.Program;
+import tracevis.model.SnapshotListener;
+import tracevis.model.types.CallAssignment;
+import tracevis.model.types.LoadPhase;
+import tracevis.utilities.SwingWorker;
+
+/**
+ * Loads a trace on a worker thread, while a progress monitor shows the phase
+ * of the load, how far it has got and how fast it goes. The load can be
+ * canceled from the progress monitor, in which case the partially loaded
+ * trace is dropped. The loaded trace only replaces the trace of the program
+ * once the load has finished, on the event dispatching thread, so that the
+ * views never see a trace that is being loaded.
+ * <p>
+ * A streaming load shows snapshots of the start of the trace while the rest
+ * is being loaded (see {@link Program#streamTrace}). Each snapshot replaces
+ * the trace of the program as soon as it has been loaded; if the load is
+ * canceled, the last snapshot remains.
+ */
+public class TraceLoader extends SwingWorker implements LoadMonitor, SnapshotListener {
+	/** The minimum number of milliseconds between updates of the monitor. */
+	private static final long UPDATE_INTERVAL = 100;
+
+	/** The number of events in the first snapshot of a streaming load. */
+	private static final long FIRST_SNAPSHOT_SIZE = 1 << 20;
+
+	private final Component parent;
+	private final Program program;
+	private final File file;
+	private final boolean hideInnerClasses;
+	private final CallAssignment callAssignment;
+	private final boolean streaming;
+
+	private final ProgressMonitor progressMonitor;
+	private volatile boolean canceled;
+
+	// The progress of the current phase, which is only used on the worker
+	// thread.
+	private LoadPhase phase;
+	private long total;
+	private long done;
+	private long phaseStartTime;
+	private long lastUpdateTime;
+
+	private String message;
+
+	/**
+	 * Creates a new instance of TraceLoader. The load is started by
+	 * {@link #start()}.
+	 * @param parent the component the progress monitor and error messages
+	 *               are shown over.
+	 * @param program the program to load the trace into.
+	 * @param file the trace file.
+	 * @param hideInnerClasses whether inner classes are merged into their
+	 *                         enclosing classes.
+	 * @param callAssignment the class calls are assigned to.
+	 * @param streaming whether snapshots are shown while the trace is being
+	 *                  loaded.
+	 */
+	public TraceLoader(Component parent, Program program, File file,
+	                   boolean hideInnerClasses, CallAssignment callAssignment,
+	                   boolean streaming)
+	{
+		this.parent = parent;
+		this.program = program;
+		this.file = file;
+		this.hideInnerClasses = hideInnerClasses;
+		this.callAssignment = callAssignment;
+		this.streaming = streaming;
+
+		progressMonitor = new ProgressMonitor(parent, "Loading " + file.getName(), "",
+		                                      0, 100 * LoadPhase.values().length);
+		progressMonitor.setMillisToDecideToPopup(100);
+		progressMonitor.setMillisToPopup(500);
+		canceled = false;
+	}
+
+	@Override
+	public Object construct() {
+		try {
+			if (streaming) {
+				return Program.streamTrace(file.getAbsolutePath(), hideInnerClasses,
+				                           callAssignment, FIRST_SNAPSHOT_SIZE, this, this);
+			} else {
+				return Program.readTrace(file.getAbsolutePath(), hideInnerClasses,
+				                         callAssignment, Long.MIN_VALUE, Long.MAX_VALUE, this);
+			}
+		} catch (CancellationException exc) {
+			return null;
+		} catch (OutOfMemoryError err) {
+			message = "Not enough memory.";
+			return null;
+		} catch (Exception exc) {
+			message = exc.getMessage();
+			return null;
+		}
+	}
+
+	/**
+	 * Closes the progress monitor, and shows the loaded trace or the reason
+	 * it could not be loaded. Called on the event dispatching thread.
+	 */
+	@Override
+	public void finished() {
+		progressMonitor.close();
+
+		Program loaded = (Program) getValue();
+		if (loaded != null) {
+			program.adoptTrace(loaded);
+		} else if (message != null) {
+			JOptionPane.showMessageDialog(parent, "Could not load trace: " + message,
+			                              "Error", JOptionPane.ERROR_MESSAGE);
+		}
+	}
+
+	@Override
+	public void snapshotLoaded(final Program snapshot) {
+		SwingUtilities.invokeLater(new Runnable() {
+			@Override
+			public void run() {
+				program.adoptTrace(snapshot);
+			}
+		});
+	}
+
+	@Override
+	public boolean isCanceled() {
+		return canceled;
+	}
+
+	@Override
+	public void phaseStarted(LoadPhase phase, long total) {
+		this.phase = phase;
+		this.total = total;
+		done = 0;
+		phaseStartTime = System.currentTimeMillis();
+		update(phaseStartTime);
+	}
+
+	@Override
+	public void worked(long amount) {
+		done += amount;
+		long now = System.currentTimeMillis();
+		if (now - lastUpdateTime >= UPDATE_INTERVAL) {
+			update(now);
+		}
+	}
+
+	/**
+	 * Shows the progress of the current phase in the progress monitor, and
+	 * checks whether the load has been canceled there.
+	 */
+	private void update(long now) {
+		lastUpdateTime = now;
+
+		StringBuilder note = new StringBuilder();
+		note.append(phase.getDescription()).append(": ").append(format(done, phase));
+		if (total >= 0) {
+			note.append(" of ").append(format(total, phase));
+		}
+		long elapsed = now - phaseStartTime;
+		if (elapsed > 0) {
+			note.append(", ").append(format(done * 1000 / elapsed, phase)).append("/s");
+		}
+
+		int percentage = 0;
+		if (total > 0) {
+			percentage = (int) Math.min(99, 100 * done / total);
+		}
+
+		final String noteText = note.toString();
+		// The monitor closes itself when it reaches its maximum, so the
+		// progress stays below it until the load has finished.
+		final int progress = 100 * phase.ordinal() + percentage;
+		SwingUtilities.invokeLater(new Runnable() {
+			@Override
+			public void run() {
+				if (progressMonitor.isCanceled()) {
+					canceled = true;
+				}
+				progressMonitor.setNote(noteText);
+				progressMonitor.setProgress(progress);
+			}
+		});
+	}
+
+	private static String format(long amount, LoadPhase phase) {
+		if (phase.getUnit().equals("bytes")) {
+			return String.format("%.1f MB", amount / (1024.0 * 1024.0));
+		} else {
+			return String.format("%,d %s", amount, phase.getUnit());
+		}
+	}
+}
@@ -0,0 +1,241 @@
+package tracevis.model;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.charset.Charset;
+import java.util.HashMap;
+import java.util.Map;
+
+import static tracevis.model.BinaryTraceFormat.*;
+
+/**
+ * Encodes the events it receives as the records of event sections in the
+ * binary trace format. Subclasses decide where sections and the symbols they
+ * use are written to.
+ * <p>
+ * Since the event handlers cannot throw checked exceptions, the first failure
+ * to write a section is remembered, and all events after it are dropped.
+ * @see BinaryTraceFormat
+ */
+abstract class BinaryEventEncoder implements ProgramEventInterface, Closeable {
+	private static final Charset UTF8 = Charset.forName("UTF-8");
+
+	private final int sectionSize;
+
+	private final Map<String, Integer> classNames;
+	private final Map<String, Integer> methodNames;
+
+	private byte[] symbols;
+	private int symbolsLength;
+
+	private final byte[] events;
+	private int eventsLength;
+	private int eventCount;
+	private long firstTimeStamp;
+	private long lastTimeStamp;
+
+	private IOException failure;
+
+	/**
+	 * Creates a new instance of BinaryEventEncoder.
+	 * @param sectionSize the number of bytes of records after which a section
+	 *                    is written.
+	 */
+	protected BinaryEventEncoder(int sectionSize) {
+		this.sectionSize = sectionSize;
+
+		classNames = new HashMap<String, Integer>();
+		methodNames = new HashMap<String, Integer>();
+
+		symbols = new byte[1024];
+		symbolsLength = 0;
+
+		events = new byte[sectionSize + MAX_RECORD_SIZE];
+		eventsLength = 0;
+		eventCount = 0;
+	}
+
+	/**
+	 * Writes an event section, preceded by the definitions of the symbols
+	 * which are used for the first time in it.
+	 * @param symbols the payload of the symbol section.
+	 * @param symbolsLength the length of the symbol section, which is zero if
+	 *                      no new symbols are used.
+	 * @param events the payload of the event section.
+	 * @param eventsLength the length of the event section.
+	 * @param eventCount the number of events in the event section.
+	 * @param firstTimeStamp the time stamp of the first event.
+	 * @param lastTimeStamp the time stamp of the last event.
+	 * @throws IOException if the sections could not be written.
+	 */
+	protected abstract void writeSections(byte[] symbols, int symbolsLength,
+	                                      byte[] events, int eventsLength, int eventCount,
+	                                      long firstTimeStamp, long lastTimeStamp)
+		throws IOException;
+
+	/**
+	 * Writes the events which have not been written yet.
+	 * @throws IOException if writing failed, now or for an earlier section.
+	 */
+	protected void flush() throws IOException {
+		writePending();
+		if (failure != null) {
+			throw failure;
+		}
+	}
+
+	@Override
+	public void handleVMDeath(long timeStamp) {
+		startRecord(VM_DEATH, timeStamp);
+		endRecord();
+	}
+
+	@Override
+	public void handleVMInit(long timeStamp) {
+		startRecord(VM_INIT, timeStamp);
+		endRecord();
+	}
+
+	@Override
+	public void handleVMStart(long timeStamp) {
+		startRecord(VM_START, timeStamp);
+		endRecord();
+	}
+
+	@Override
+	public void handleObjectFree(long timeStamp, String className, long objectID) {
+		int classID = symbol(classNames, CLASS_NAME, className);
+		startRecord(OBJECT_FREE, timeStamp);
+		write(classID);
+		write(objectID);
+		endRecord();
+	}
+
+	@Override
+	public void handleObjectAllocation(long timeStamp, String className, long objectID) {
+		int classID = symbol(classNames, CLASS_NAME, className);
+		startRecord(OBJECT_ALLOCATION, timeStamp);
+		write(classID);
+		write(objectID);
+		endRecord();
+	}
+
+	@Override
+	public void handleClassLoad(long timeStamp, String className) {
+		int classID = symbol(classNames, CLASS_NAME, className);
+		startRecord(CLASS_LOAD, timeStamp);
+		write(classID);
+		endRecord();
+	}
+
+	@Override
+	public void handleThreadStop(long timeStamp, long threadID) {
+		startRecord(THREAD_STOP, timeStamp);
+		write(threadID);
+		endRecord();
+	}
+
+	@Override
+	public void handleThreadStart(long timeStamp, long threadID) {
+		startRecord(THREAD_START, timeStamp);
+		write(threadID);
+		endRecord();
+	}
+
+	@Override
+	public void handleFramePop(long timeStamp, long threadID, String className, String methodName) {
+		writeMethodEvent(FRAME_POP, timeStamp, threadID, className, methodName);
+		endRecord();
+	}
+
+	@Override
+	public void handleMethodExit(long timeStamp, long threadID, String className, String methodName) {
+		writeMethodEvent(METHOD_EXIT, timeStamp, threadID, className, methodName);
+		endRecord();
+	}
+
+	@Override
+	public void handleMethodEntry(long timeStamp, long threadID, String className,
+	                              String methodName, long objectID) {
+		writeMethodEvent(METHOD_ENTRY, timeStamp, threadID, className, methodName);
+		write(objectID);
+		endRecord();
+	}
+
+	private void writeMethodEvent(byte type, long timeStamp, long threadID,
+	                              String className, String methodName) {
+		int classID = symbol(classNames, CLASS_NAME, className);
+		int methodID = symbol(methodNames, METHOD_NAME, methodName);
+		startRecord(type, timeStamp);
+		write(threadID);
+		write(classID);
+		write(methodID);
+	}
+
+	/**
+	 * Returns the number of the specified name in the specified table,
+	 * defining it if it has not been used before.
+	 */
+	private int symbol(Map<String, Integer> table, byte tableType, String name) {
+		Integer id = table.get(name);
+		if (id == null) {
+			id = table.size();
+			table.put(name, id);
+
+			byte[] bytes = name.getBytes(UTF8);
+			ensureSymbolCapacity(1 + 5 + bytes.length);
+			symbols[symbolsLength++] = tableType;
+			symbolsLength = writeVarLong(symbols, symbolsLength, bytes.length);
+			System.arraycopy(bytes, 0, symbols, symbolsLength, bytes.length);
+			symbolsLength += bytes.length;
+		}
+		return id;
+	}
+
+	private void ensureSymbolCapacity(int length) {
+		if (symbolsLength + length > symbols.length) {
+			byte[] grown = new byte[Math.max(2 * symbols.length, symbolsLength + length)];
+			System.arraycopy(symbols, 0, grown, 0, symbolsLength);
+			symbols = grown;
+		}
+	}
+
+	private void startRecord(byte type, long timeStamp) {
+		if (eventCount == 0) {
+			firstTimeStamp = timeStamp;
+			lastTimeStamp = 0;
+		}
+		events[eventsLength++] = type;
+		eventsLength = writeVarLong(events, eventsLength, zigzag(timeStamp - lastTimeStamp));
+		lastTimeStamp = timeStamp;
+		eventCount++;
+	}
+
+	private void write(long value) {
+		eventsLength = writeVarLong(events, eventsLength, value);
+	}
+
+	private void endRecord() {
+		if (eventsLength >= sectionSize) {
+			writePending();
+		}
+	}
+
+	/**
+	 * Writes the pending symbols and events, and starts a new event section.
+	 */
+	private void writePending() {
+		try {
+			if (failure == null && (symbolsLength > 0 || eventCount > 0)) {
+				writeSections(symbols, symbolsLength, events, eventsLength, eventCount,
+				              firstTimeStamp, lastTimeStamp);
+			}
+		} catch (IOException e) {
+			failure = e;
+		} finally {
+			symbolsLength = 0;
+			eventsLength = 0;
+			eventCount = 0;
+		}
+	}
+}
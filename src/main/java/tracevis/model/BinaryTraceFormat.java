@@ -0,0 +1,169 @@
+package tracevis.model;
+
+/**
+ * Constants and encoding helpers for the binary trace format. A binary trace
+ * starts with the four bytes <code>TVB1</code>, followed by a sequence of
+ * sections. Every section consists of a kind byte, a four byte big endian
+ * length and that many bytes of payload:
+ * <ul>
+ * <li>A symbol section defines class and method names. Each entry is a table
+ * byte, followed by the varint length and the UTF-8 bytes of the name. Names
+ * are numbered per table in the order in which they are defined.</li>
+ * <li>An event section holds event records. Each record is an event type byte
+ * and the zigzag varint difference between its time stamp and that of the
+ * previous record in the section, followed by the fields of the event as
+ * varints. Names are written as their symbol numbers.</li>
+ * <li>An end section, with no payload, marks the end of the trace.</li>
+ * </ul>
+ * Symbols are always defined in a section before the first event section that
+ * refers to them. Every event section can be decoded on its own once the
+ * symbols are known, since its time stamps are relative to zero.
+ * <p>
+ * A block trace starts with the four bytes <code>TVC1</code>, followed by
+ * blocks which each hold the deflated payload of one event section. Some
+ * blocks are preceded by a checkpoint: a deflated binary trace, with symbols
+ * of its own, whose events rebuild the state of the program at the start of
+ * the block (see {@link TraceState}). After the blocks follow the deflated
+ * payload of a symbol section with all symbols of the trace, an index with an
+ * entry of {@link #INDEX_ENTRY_SIZE} bytes per block, and a footer of
+ * {@link #FOOTER_SIZE} bytes. An index entry holds the position, the
+ * compressed and uncompressed length, the first and last time stamp and the
+ * number of events of its block, followed by the position, compressed and
+ * uncompressed length of its checkpoint, which are zero if the block has
+ * none. The footer holds the position, compressed and uncompressed length of
+ * the symbols, the position of the index, the number of blocks and the four
+ * bytes <code>TVCI</code>. All numbers in the index and footer are big
+ * endian.
+ */
+final class BinaryTraceFormat {
+	/** The bytes a binary trace starts with. */
+	static final byte[] MAGIC = {'T', 'V', 'B', '1'};
+
+	/** The bytes a block trace starts with. */
+	static final byte[] BLOCK_MAGIC = {'T', 'V', 'C', '1'};
+
+	/** The bytes a block trace ends with. */
+	static final byte[] INDEX_MAGIC = {'T', 'V', 'C', 'I'};
+
+	/** The number of bytes of an entry in the index of a block trace. */
+	static final int INDEX_ENTRY_SIZE = 8 + 4 + 4 + 8 + 8 + 4 + 8 + 4 + 4;
+
+	/** The number of bytes of the footer of a block trace. */
+	static final int FOOTER_SIZE = 8 + 4 + 4 + 8 + 4 + 4;
+
+	/** The number of bytes in front of the payload of a section. */
+	static final int SECTION_HEADER_SIZE = 5;
+
+	// Section kinds.
+	static final byte SYMBOLS = 'S';
+	static final byte EVENTS = 'E';
+	static final byte END = 'Z';
+
+	// Symbol tables.
+	static final byte CLASS_NAME = 0;
+	static final byte METHOD_NAME = 1;
+
+	// Event types.
+	static final byte METHOD_ENTRY = 1;
+	static final byte METHOD_EXIT = 2;
+	static final byte FRAME_POP = 3;
+	static final byte CLASS_LOAD = 4;
+	static final byte THREAD_START = 5;
+	static final byte THREAD_STOP = 6;
+	static final byte OBJECT_ALLOCATION = 7;
+	static final byte OBJECT_FREE = 8;
+	static final byte VM_START = 9;
+	static final byte VM_INIT = 10;
+	static final byte VM_DEATH = 11;
+
+	/** The maximum number of bytes of an encoded event record. */
+	static final int MAX_RECORD_SIZE = 1 + 10 + 10 + 5 + 5 + 10;
+
+	private BinaryTraceFormat() {
+	}
+
+	/**
+	 * Returns whether the specified bytes start with the magic of a binary
+	 * trace.
+	 * @param bytes the specified bytes.
+	 * @param length the number of valid bytes.
+	 */
+	static boolean isBinaryTrace(byte[] bytes, int length) {
+		return startsWith(bytes, length, MAGIC);
+	}
+
+	/**
+	 * Returns whether the specified bytes start with the magic of a block
+	 * trace.
+	 * @param bytes the specified bytes.
+	 * @param length the number of valid bytes.
+	 */
+	static boolean isBlockTrace(byte[] bytes, int length) {
+		return startsWith(bytes, length, BLOCK_MAGIC);
+	}
+
+	private static boolean startsWith(byte[] bytes, int length, byte[] magic) {
+		if (length < magic.length) {
+			return false;
+		}
+		for (int i = 0; i < magic.length; i++) {
+			if (bytes[i] != magic[i]) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * Writes the specified value as an unsigned varint.
+	 * @param buffer the array to write to.
+	 * @param position the index to write the first byte at.
+	 * @param value the specified value.
+	 * @return the index following the last byte written.
+	 */
+	static int writeVarLong(byte[] buffer, int position, long value) {
+		while ((value & ~0x7fL) != 0) {
+			buffer[position++] = (byte) ((value & 0x7f) | 0x80);
+			value >>>= 7;
+		}
+		buffer[position++] = (byte) value;
+		return position;
+	}
+
+	/**
+	 * Writes the specified value as a four byte big endian integer.
+	 * @return the index following the last byte written.
+	 */
+	static int writeInt(byte[] buffer, int position, int value) {
+		buffer[position] = (byte) (value >>> 24);
+		buffer[position + 1] = (byte) (value >>> 16);
+		buffer[position + 2] = (byte) (value >>> 8);
+		buffer[position + 3] = (byte) value;
+		return position + 4;
+	}
+
+	/**
+	 * Returns the four byte big endian integer at the specified position.
+	 */
+	static int readInt(byte[] buffer, int position) {
+		return ((buffer[position] & 0xff) << 24) |
+		       ((buffer[position + 1] & 0xff) << 16) |
+		       ((buffer[position + 2] & 0xff) << 8) |
+		       (buffer[position + 3] & 0xff);
+	}
+
+	/**
+	 * Returns the zigzag encoding of the specified value, which maps values of
+	 * small magnitude to small unsigned values.
+	 */
+	static long zigzag(long value) {
+		return (value << 1) ^ (value >> 63);
+	}
+
+	/**
+	 * Returns the value of the specified zigzag encoding.
+	 */
+	static long unzigzag(long value) {
+		return (value >>> 1) ^ -(value & 1);
+	}
+}
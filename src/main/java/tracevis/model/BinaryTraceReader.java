@@ -0,0 +1,300 @@
+package tracevis.model;
+
+import java.io.IOException;
+import java.nio.charset.Charset;
+import java.util.Arrays;
+
+import static tracevis.model.BinaryTraceFormat.*;
+
+/**
+ * Parser for a trace file in the binary trace format. Calls back into Program
+ * for the handling of events. Whole sections are decoded at a time; names are
+ * looked up by their symbol numbers, so that every name is decoded only once.
+ * @see BinaryTraceFormat
+ */
+class BinaryTraceReader extends TraceReader {
+	private static final Charset UTF8 = Charset.forName("UTF-8");
+
+	private String[] classNames;
+	private int classCount;
+	private String[] methodNames;
+	private int methodCount;
+
+	private final boolean sectionsOnly;
+	private boolean started;
+	private boolean ended;
+
+	// The bytes currently being decoded, and the end of the section they
+	// are in, past which nothing is read.
+	private byte[] bytes;
+	private int position;
+	private int end;
+
+	/**
+	 * Creates a new instance of BinaryTraceReader.
+	 * @param program the Program instance to call back to for event handling.
+	 */
+	public BinaryTraceReader(ProgramEventInterface program) {
+		super(program);
+
+		classNames = new String[256];
+		methodNames = new String[256];
+		sectionsOnly = false;
+	}
+
+	/**
+	 * Creates a new instance of BinaryTraceReader for a run of sections of a
+	 * trace whose symbols have all been read by the specified reader. Symbol
+	 * sections are skipped, and the sections are neither preceded by the
+	 * magic nor followed by the end of the trace.
+	 * @param program the Program instance to call back to for event handling.
+	 * @param symbols the reader which has read the symbols of the trace.
+	 */
+	public BinaryTraceReader(ProgramEventInterface program, BinaryTraceReader symbols) {
+		super(program);
+
+		classNames = symbols.classNames;
+		classCount = symbols.classCount;
+		methodNames = symbols.methodNames;
+		methodCount = symbols.methodCount;
+		sectionsOnly = true;
+		started = true;
+	}
+
+	/**
+	 * Returns whether the end of the trace has been read.
+	 */
+	public boolean isEnded() {
+		return ended;
+	}
+
+	/**
+	 * Reads all complete sections between offset (inclusive) and limit
+	 * (exclusive) in the specified array.
+	 * @param buffer the specified array.
+	 * @param offset the index of the first byte to read.
+	 * @param limit the index following the last byte to read.
+	 * @return the index of the start of the first incomplete section.
+	 * @throws IOException if a section could not be decoded.
+	 */
+	@Override
+	int readEvents(byte[] buffer, int offset, int limit) throws IOException {
+		int start = offset;
+		if (!started) {
+			if (limit - start < MAGIC.length) {
+				return start;
+			}
+			byte[] magic = Arrays.copyOfRange(buffer, start, start + MAGIC.length);
+			if (!isBinaryTrace(magic, magic.length)) {
+				throw new IOException("The file is not a binary trace.");
+			}
+			start += MAGIC.length;
+			started = true;
+		}
+
+		while (limit - start >= SECTION_HEADER_SIZE && !ended) {
+			byte kind = buffer[start];
+			int length = readInt(buffer, start + 1);
+			if (length < 0) {
+				throw malformed();
+			} else if (limit - start - SECTION_HEADER_SIZE < length) {
+				break;
+			}
+
+			int payload = start + SECTION_HEADER_SIZE;
+			readSection(kind, buffer, payload, payload + length);
+			start = payload + length;
+		}
+
+		return start;
+	}
+
+	@Override
+	void readTrailer(byte[] buffer, int offset, int limit) throws IOException {
+		if (sectionsOnly ? limit > offset : !ended) {
+			throw new IOException("The binary trace is truncated.");
+		}
+	}
+
+	/**
+	 * Reads the section of the specified kind whose payload lies between start
+	 * (inclusive) and end (exclusive) in the specified array. Every field is
+	 * checked against the end of the section as it is read, so that a record
+	 * which runs past it is rejected before it is handled.
+	 */
+	void readSection(byte kind, byte[] buffer, int start, int end) throws IOException {
+		bytes = buffer;
+		position = start;
+		this.end = end;
+
+		switch (kind) {
+			case SYMBOLS:
+				if (sectionsOnly) {
+					position = end;
+				}
+				while (position < end) {
+					readSymbol();
+				}
+				break;
+			case EVENTS: {
+				long timeStamp = 0;
+				while (position < end) {
+					timeStamp = readEvent(timeStamp);
+				}
+				break;
+			}
+			case END:
+				ended = true;
+				break;
+			default:
+				// Unknown sections are skipped.
+				position = end;
+		}
+
+		if (position != end) {
+			throw malformed();
+		}
+	}
+
+	/**
+	 * Reads the symbol at the current position.
+	 */
+	private void readSymbol() throws IOException {
+		byte table = readByte();
+		int length = (int) readVarLong();
+		if (length < 0 || length > end - position) {
+			throw malformed();
+		}
+		String name = new String(bytes, position, length, UTF8);
+		position += length;
+
+		if (table == CLASS_NAME) {
+			if (classCount == classNames.length) {
+				classNames = Arrays.copyOf(classNames, 2 * classCount);
+			}
+			classNames[classCount++] = name;
+		} else if (table == METHOD_NAME) {
+			if (methodCount == methodNames.length) {
+				methodNames = Arrays.copyOf(methodNames, 2 * methodCount);
+			}
+			methodNames[methodCount++] = name;
+		} else {
+			throw malformed();
+		}
+	}
+
+	/**
+	 * Reads the event record at the current position.
+	 * @param lastTimeStamp the time stamp of the previous record.
+	 * @return the time stamp of the record.
+	 */
+	private long readEvent(long lastTimeStamp) throws IOException {
+		byte type = readByte();
+		long timeStamp = lastTimeStamp + unzigzag(readVarLong());
+
+		switch (type) {
+			case METHOD_ENTRY: {
+				long threadID = readVarLong();
+				String className = readClassName();
+				String methodName = readMethodName();
+				long objectID = readVarLong();
+				program.handleMethodEntry(timeStamp, threadID, className, methodName, objectID);
+				break;
+			}
+			case METHOD_EXIT: {
+				long threadID = readVarLong();
+				String className = readClassName();
+				String methodName = readMethodName();
+				program.handleMethodExit(timeStamp, threadID, className, methodName);
+				break;
+			}
+			case FRAME_POP: {
+				long threadID = readVarLong();
+				String className = readClassName();
+				String methodName = readMethodName();
+				program.handleFramePop(timeStamp, threadID, className, methodName);
+				break;
+			}
+			case CLASS_LOAD:
+				program.handleClassLoad(timeStamp, readClassName());
+				break;
+			case THREAD_START:
+				program.handleThreadStart(timeStamp, readVarLong());
+				break;
+			case THREAD_STOP:
+				program.handleThreadStop(timeStamp, readVarLong());
+				break;
+			case OBJECT_ALLOCATION: {
+				String className = readClassName();
+				long objectID = readVarLong();
+				program.handleObjectAllocation(timeStamp, className, objectID);
+				break;
+			}
+			case OBJECT_FREE: {
+				String className = readClassName();
+				long objectID = readVarLong();
+				program.handleObjectFree(timeStamp, className, objectID);
+				break;
+			}
+			case VM_START:
+				program.handleVMStart(timeStamp);
+				break;
+			case VM_INIT:
+				program.handleVMInit(timeStamp);
+				break;
+			case VM_DEATH:
+				program.handleVMDeath(timeStamp);
+				break;
+			default:
+				throw malformed();
+		}
+
+		return timeStamp;
+	}
+
+	private String readClassName() throws IOException {
+		long id = readVarLong();
+		if (id < 0 || id >= classCount) {
+			throw malformed();
+		}
+		return classNames[(int) id];
+	}
+
+	private String readMethodName() throws IOException {
+		long id = readVarLong();
+		if (id < 0 || id >= methodCount) {
+			throw malformed();
+		}
+		return methodNames[(int) id];
+	}
+
+	private byte readByte() throws IOException {
+		if (position == end) {
+			throw malformed();
+		}
+		return bytes[position++];
+	}
+
+	private long readVarLong() throws IOException {
+		byte b = readByte();
+		if (b >= 0) {
+			return b;
+		}
+
+		long value = b & 0x7f;
+		int shift = 7;
+		do {
+			if (shift > 63) {
+				throw malformed();
+			}
+			b = readByte();
+			value |= (long) (b & 0x7f) << shift;
+			shift += 7;
+		} while (b < 0);
+		return value;
+	}
+
+	private IOException malformed() {
+		return new IOException("Malformed section in the binary trace.");
+	}
+}
@@ -0,0 +1,76 @@
+package tracevis.model;
+
+import java.io.IOException;
+import java.io.OutputStream;
+
+import static tracevis.model.BinaryTraceFormat.*;
+
+/**
+ * Writes the events it receives to an output stream in the binary trace
+ * format. Events are collected into sections of about
+ * {@link #SECTION_SIZE} bytes; the names first used by the events of a
+ * section are written in a symbol section just before it.
+ * <p>
+ * Since the event handlers cannot throw checked exceptions, the first failure
+ * to write is remembered and thrown by {@link #close()}, and all events after
+ * it are dropped.
+ * @see BinaryTraceFormat
+ */
+public class BinaryTraceWriter extends BinaryEventEncoder {
+	/** The number of bytes of events after which a section is written. */
+	static final int SECTION_SIZE = 1 << 16;
+
+	private final OutputStream outputStream;
+
+	/**
+	 * Creates a new instance of BinaryTraceWriter, which immediately writes
+	 * the start of a binary trace to the specified output stream.
+	 * @param outputStream the specified output stream.
+	 * @throws IOException if the start of the trace could not be written.
+	 */
+	public BinaryTraceWriter(OutputStream outputStream) throws IOException {
+		super(SECTION_SIZE);
+		this.outputStream = outputStream;
+
+		outputStream.write(MAGIC);
+	}
+
+	/**
+	 * Writes the remaining events and the end of the trace, and closes the
+	 * output stream.
+	 * @throws IOException if the trace could not be written.
+	 */
+	@Override
+	public void close() throws IOException {
+		try {
+			flush();
+			writeSection(END, null, 0);
+		} finally {
+			outputStream.close();
+		}
+	}
+
+	@Override
+	protected void writeSections(byte[] symbols, int symbolsLength,
+	                             byte[] events, int eventsLength, int eventCount,
+	                             long firstTimeStamp, long lastTimeStamp)
+		throws IOException
+	{
+		if (symbolsLength > 0) {
+			writeSection(SYMBOLS, symbols, symbolsLength);
+		}
+		if (eventsLength > 0) {
+			writeSection(EVENTS, events, eventsLength);
+		}
+	}
+
+	private void writeSection(byte kind, byte[] payload, int length) throws IOException {
+		byte[] header = new byte[SECTION_HEADER_SIZE];
+		header[0] = kind;
+		writeInt(header, 1, length);
+		outputStream.write(header);
+		if (length > 0) {
+			outputStream.write(payload, 0, length);
+		}
+	}
+}
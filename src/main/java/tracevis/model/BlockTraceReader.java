@@ -0,0 +1,241 @@
+package tracevis.model;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.zip.DataFormatException;
+import java.util.zip.Inflater;
+
+import static tracevis.model.BinaryTraceFormat.*;
+
+/**
+ * Reader for a block trace. The index and the symbols of the trace are read
+ * when the reader is created; blocks are read on demand, by their position in
+ * the index. Blocks may be read concurrently from several threads.
+ * @see BlockTraceWriter
+ */
+class BlockTraceReader {
+	private final FileChannel channel;
+	private final BinaryTraceReader symbols;
+
+	private final long[] positions;
+	private final int[] compressedLengths;
+	private final int[] lengths;
+	private final long[] firstTimeStamps;
+	private final long[] lastTimeStamps;
+	private final int[] eventCounts;
+	private final long[] checkpointPositions;
+	private final int[] checkpointCompressedLengths;
+	private final int[] checkpointLengths;
+
+	/**
+	 * Creates a new instance of BlockTraceReader, and reads the index and the
+	 * symbols of the trace in the specified channel.
+	 * @param channel the specified channel, which is closed by
+	 *                {@link #close()}.
+	 * @throws IOException if the index or the symbols could not be read.
+	 */
+	public BlockTraceReader(FileChannel channel) throws IOException {
+		this.channel = channel;
+
+		long size = channel.size();
+		if (size < BLOCK_MAGIC.length + FOOTER_SIZE) {
+			throw new IOException("The block trace is truncated.");
+		}
+		ByteBuffer footer = read(size - FOOTER_SIZE, FOOTER_SIZE);
+		long symbolsPosition = footer.getLong();
+		int symbolsCompressedLength = footer.getInt();
+		int symbolsLength = footer.getInt();
+		long indexPosition = footer.getLong();
+		int blockCount = footer.getInt();
+		for (int i = 0; i < INDEX_MAGIC.length; i++) {
+			if (footer.get() != INDEX_MAGIC[i]) {
+				throw new IOException("The block trace is truncated.");
+			}
+		}
+		if (blockCount < 0 || indexPosition + (long) blockCount * INDEX_ENTRY_SIZE != size - FOOTER_SIZE) {
+			throw malformed();
+		}
+
+		positions = new long[blockCount];
+		compressedLengths = new int[blockCount];
+		lengths = new int[blockCount];
+		firstTimeStamps = new long[blockCount];
+		lastTimeStamps = new long[blockCount];
+		eventCounts = new int[blockCount];
+		checkpointPositions = new long[blockCount];
+		checkpointCompressedLengths = new int[blockCount];
+		checkpointLengths = new int[blockCount];
+
+		ByteBuffer index = read(indexPosition, blockCount * INDEX_ENTRY_SIZE);
+		for (int i = 0; i < blockCount; i++) {
+			positions[i] = index.getLong();
+			compressedLengths[i] = index.getInt();
+			lengths[i] = index.getInt();
+			firstTimeStamps[i] = index.getLong();
+			lastTimeStamps[i] = index.getLong();
+			eventCounts[i] = index.getInt();
+			checkpointPositions[i] = index.getLong();
+			checkpointCompressedLengths[i] = index.getInt();
+			checkpointLengths[i] = index.getInt();
+		}
+
+		symbols = new BinaryTraceReader(null);
+		byte[] symbolBytes = inflate(symbolsPosition, symbolsCompressedLength, symbolsLength);
+		symbols.readSection(SYMBOLS, symbolBytes, 0, symbolBytes.length);
+	}
+
+	/**
+	 * Closes the channel of the trace.
+	 * @throws IOException if the channel could not be closed.
+	 */
+	public void close() throws IOException {
+		channel.close();
+	}
+
+	/**
+	 * Returns the number of blocks in the trace.
+	 */
+	public int getBlockCount() {
+		return positions.length;
+	}
+
+	/**
+	 * Returns the number of bytes the specified block takes up in the trace.
+	 * @param block the index of the specified block.
+	 */
+	public int getCompressedLength(int block) {
+		return compressedLengths[block];
+	}
+
+	/**
+	 * Returns the time stamp of the first event in the specified block.
+	 * @param block the index of the specified block.
+	 */
+	public long getFirstTimeStamp(int block) {
+		return firstTimeStamps[block];
+	}
+
+	/**
+	 * Returns the time stamp of the last event in the specified block.
+	 * @param block the index of the specified block.
+	 */
+	public long getLastTimeStamp(int block) {
+		return lastTimeStamps[block];
+	}
+
+	/**
+	 * Returns the number of events in the specified block.
+	 * @param block the index of the specified block.
+	 */
+	public int getEventCount(int block) {
+		return eventCounts[block];
+	}
+
+	/**
+	 * Returns the index of the first block which contains events at or after
+	 * the specified time, or the number of blocks if there is no such block.
+	 * @param timeStamp the specified time.
+	 */
+	public int findBlock(long timeStamp) {
+		int low = 0;
+		int high = positions.length;
+		while (low < high) {
+			int middle = (low + high) >>> 1;
+			if (lastTimeStamps[middle] < timeStamp) {
+				low = middle + 1;
+			} else {
+				high = middle;
+			}
+		}
+		return low;
+	}
+
+	/**
+	 * Returns the index of the last block at or before the specified block
+	 * from which the trace can be read without the blocks before it: a block
+	 * with a checkpoint, or the first block.
+	 * @param block the index of the specified block.
+	 */
+	public int findCheckpoint(int block) {
+		while (block > 0 && checkpointLengths[block] == 0) {
+			block--;
+		}
+		return block;
+	}
+
+	/**
+	 * Reads the checkpoint of the specified block, and passes its events to
+	 * the specified event handler. The events rebuild the state of the
+	 * program at the start of the block; their time stamp is that of the last
+	 * event before the block. Nothing is read if the block has no checkpoint.
+	 * @param block the index of the specified block.
+	 * @param program the specified event handler.
+	 * @throws IOException if the checkpoint could not be read.
+	 */
+	public void readCheckpoint(int block, ProgramEventInterface program) throws IOException {
+		if (checkpointLengths[block] == 0) {
+			return;
+		}
+		byte[] checkpoint = inflate(checkpointPositions[block], checkpointCompressedLengths[block],
+		                            checkpointLengths[block]);
+		new BinaryTraceReader(program).readTrace(new ByteArrayInputStream(checkpoint));
+	}
+
+	/**
+	 * Reads the events in the specified block, and passes them to the
+	 * specified event handler.
+	 * @param block the index of the specified block.
+	 * @param program the specified event handler.
+	 * @throws IOException if the block could not be read.
+	 */
+	public void readBlock(int block, ProgramEventInterface program) throws IOException {
+		byte[] events = inflate(positions[block], compressedLengths[block], lengths[block]);
+		new BinaryTraceReader(program, symbols).readSection(EVENTS, events, 0, events.length);
+	}
+
+	private byte[] inflate(long position, int compressedLength, int length) throws IOException {
+		if (compressedLength < 0 || length < 0) {
+			throw malformed();
+		}
+		ByteBuffer compressed = read(position, compressedLength);
+
+		byte[] bytes = new byte[length];
+		Inflater inflater = new Inflater();
+		try {
+			inflater.setInput(compressed.array(), 0, compressedLength);
+			int inflated = 0;
+			while (inflated < length && !inflater.finished()) {
+				int read = inflater.inflate(bytes, inflated, length - inflated);
+				if (read == 0 && inflater.needsInput()) {
+					break;
+				}
+				inflated += read;
+			}
+			if (inflated != length) {
+				throw malformed();
+			}
+		} catch (DataFormatException e) {
+			throw malformed();
+		} finally {
+			inflater.end();
+		}
+		return bytes;
+	}
+
+	private ByteBuffer read(long position, int length) throws IOException {
+		ByteBuffer buffer = ByteBuffer.allocate(length);
+		while (buffer.hasRemaining()) {
+			if (channel.read(buffer, position + buffer.position()) == -1) {
+				throw new IOException("The block trace is truncated.");
+			}
+		}
+		buffer.flip();
+		return buffer;
+	}
+
+	private static IOException malformed() {
+		return new IOException("Malformed block in the block trace.");
+	}
+}
@@ -0,0 +1,263 @@
+package tracevis.model;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.zip.Deflater;
+
+import static tracevis.model.BinaryTraceFormat.*;
+
+/**
+ * Writes the events it receives to an output stream as a block trace. Events
+ * are encoded as in the binary trace format, and every
+ * {@link #BLOCK_SIZE} bytes of them are deflated into a block of their own.
+ * Since blocks are independent and indexed by time, a reader can decompress
+ * them in parallel, or only those which overlap a range of time. Every
+ * {@link #CHECKPOINT_INTERVAL} blocks, the state of the program is written as
+ * a checkpoint, so that a range of time can be read without decompressing
+ * the blocks before it.
+ * <p>
+ * Since the event handlers cannot throw checked exceptions, the first failure
+ * to write is remembered and thrown by {@link #close()}, and all events after
+ * it are dropped.
+ * @see BinaryTraceFormat
+ */
+public class BlockTraceWriter extends BinaryEventEncoder {
+	/** The number of uncompressed bytes of events in a block. */
+	static final int BLOCK_SIZE = 1 << 20;
+
+	/** The number of blocks after which a checkpoint is written. */
+	static final int CHECKPOINT_INTERVAL = 16;
+
+	private final DataOutputStream outputStream;
+	private long position;
+	private final Deflater deflater;
+	private byte[] compressed;
+
+	private final ByteArrayOutputStream symbols;
+	private final ByteArrayOutputStream index;
+	private final DataOutputStream indexStream;
+	private int blockCount;
+
+	private final TraceState state;
+	private final int checkpointInterval;
+	private long checkpointPosition;
+	private int checkpointCompressedLength;
+	private int checkpointLength;
+	private boolean closing;
+
+	/**
+	 * Creates a new instance of BlockTraceWriter, which immediately writes the
+	 * start of a block trace to the specified output stream.
+	 * @param outputStream the specified output stream.
+	 * @throws IOException if the start of the trace could not be written.
+	 */
+	public BlockTraceWriter(OutputStream outputStream) throws IOException {
+		this(outputStream, BLOCK_SIZE);
+	}
+
+	/**
+	 * Creates a new instance of BlockTraceWriter with the specified block
+	 * size.
+	 * @param outputStream the specified output stream.
+	 * @param blockSize the number of uncompressed bytes of events in a block.
+	 * @throws IOException if the start of the trace could not be written.
+	 */
+	BlockTraceWriter(OutputStream outputStream, int blockSize) throws IOException {
+		this(outputStream, blockSize, CHECKPOINT_INTERVAL);
+	}
+
+	/**
+	 * Creates a new instance of BlockTraceWriter with the specified block
+	 * size and checkpoint interval.
+	 * @param outputStream the specified output stream.
+	 * @param blockSize the number of uncompressed bytes of events in a block.
+	 * @param checkpointInterval the number of blocks after which a checkpoint
+	 *                           is written.
+	 * @throws IOException if the start of the trace could not be written.
+	 */
+	BlockTraceWriter(OutputStream outputStream, int blockSize, int checkpointInterval)
+		throws IOException
+	{
+		super(blockSize);
+		this.outputStream = new DataOutputStream(outputStream);
+
+		deflater = new Deflater();
+		compressed = new byte[Math.max(blockSize / 2, 1024)];
+
+		symbols = new ByteArrayOutputStream();
+		index = new ByteArrayOutputStream();
+		indexStream = new DataOutputStream(index);
+		blockCount = 0;
+
+		state = new TraceState();
+		this.checkpointInterval = checkpointInterval;
+		closing = false;
+
+		this.outputStream.write(BLOCK_MAGIC);
+		position = BLOCK_MAGIC.length;
+	}
+
+	/**
+	 * Writes the remaining events, the symbols and the index of the trace, and
+	 * closes the output stream.
+	 * @throws IOException if the trace could not be written.
+	 */
+	@Override
+	public void close() throws IOException {
+		try {
+			closing = true;
+			flush();
+
+			long symbolsPosition = position;
+			byte[] symbolBytes = symbols.toByteArray();
+			int symbolsLength = deflate(symbolBytes, symbolBytes.length);
+			outputStream.write(compressed, 0, symbolsLength);
+
+			long indexPosition = symbolsPosition + symbolsLength;
+			index.writeTo(outputStream);
+
+			outputStream.writeLong(symbolsPosition);
+			outputStream.writeInt(symbolsLength);
+			outputStream.writeInt(symbolBytes.length);
+			outputStream.writeLong(indexPosition);
+			outputStream.writeInt(blockCount);
+			outputStream.write(INDEX_MAGIC);
+		} finally {
+			deflater.end();
+			outputStream.close();
+		}
+	}
+
+	@Override
+	protected void writeSections(byte[] symbolBytes, int symbolsLength,
+	                             byte[] events, int eventsLength, int eventCount,
+	                             long firstTimeStamp, long lastTimeStamp)
+		throws IOException
+	{
+		// All symbols are written together at the end, so that any block can
+		// be decoded on its own.
+		symbols.write(symbolBytes, 0, symbolsLength);
+		if (eventCount == 0) {
+			return;
+		}
+
+		int length = deflate(events, eventsLength);
+		outputStream.write(compressed, 0, length);
+
+		indexStream.writeLong(position);
+		indexStream.writeInt(length);
+		indexStream.writeInt(eventsLength);
+		indexStream.writeLong(firstTimeStamp);
+		indexStream.writeLong(lastTimeStamp);
+		indexStream.writeInt(eventCount);
+		indexStream.writeLong(checkpointPosition);
+		indexStream.writeInt(checkpointCompressedLength);
+		indexStream.writeInt(checkpointLength);
+		blockCount++;
+		position += length;
+
+		checkpointPosition = 0;
+		checkpointCompressedLength = 0;
+		checkpointLength = 0;
+		if (!closing && blockCount % checkpointInterval == 0) {
+			writeCheckpoint(lastTimeStamp);
+		}
+	}
+
+	/**
+	 * Writes the current state of the program as the checkpoint of the next
+	 * block. The state includes all events in the blocks written so far.
+	 */
+	private void writeCheckpoint(long timeStamp) throws IOException {
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		BinaryTraceWriter writer = new BinaryTraceWriter(bytes);
+		state.replay(writer, timeStamp);
+		writer.close();
+
+		byte[] checkpoint = bytes.toByteArray();
+		int length = deflate(checkpoint, checkpoint.length);
+		outputStream.write(compressed, 0, length);
+
+		checkpointPosition = position;
+		checkpointCompressedLength = length;
+		checkpointLength = checkpoint.length;
+		position += length;
+	}
+
+	// The state is updated before an event is encoded, since encoding it may
+	// complete a block.
+
+	@Override
+	public void handleObjectFree(long timeStamp, String className, long objectID) {
+		state.handleObjectFree(timeStamp, className, objectID);
+		super.handleObjectFree(timeStamp, className, objectID);
+	}
+
+	@Override
+	public void handleObjectAllocation(long timeStamp, String className, long objectID) {
+		state.handleObjectAllocation(timeStamp, className, objectID);
+		super.handleObjectAllocation(timeStamp, className, objectID);
+	}
+
+	@Override
+	public void handleClassLoad(long timeStamp, String className) {
+		state.handleClassLoad(timeStamp, className);
+		super.handleClassLoad(timeStamp, className);
+	}
+
+	@Override
+	public void handleThreadStop(long timeStamp, long threadID) {
+		state.handleThreadStop(timeStamp, threadID);
+		super.handleThreadStop(timeStamp, threadID);
+	}
+
+	@Override
+	public void handleThreadStart(long timeStamp, long threadID) {
+		state.handleThreadStart(timeStamp, threadID);
+		super.handleThreadStart(timeStamp, threadID);
+	}
+
+	@Override
+	public void handleFramePop(long timeStamp, long threadID, String className, String methodName) {
+		state.handleFramePop(timeStamp, threadID, className, methodName);
+		super.handleFramePop(timeStamp, threadID, className, methodName);
+	}
+
+	@Override
+	public void handleMethodExit(long timeStamp, long threadID, String className, String methodName) {
+		state.handleMethodExit(timeStamp, threadID, className, methodName);
+		super.handleMethodExit(timeStamp, threadID, className, methodName);
+	}
+
+	@Override
+	public void handleMethodEntry(long timeStamp, long threadID, String className,
+	                              String methodName, long objectID) {
+		state.handleMethodEntry(timeStamp, threadID, className, methodName, objectID);
+		super.handleMethodEntry(timeStamp, threadID, className, methodName, objectID);
+	}
+
+	/**
+	 * Deflates the first length bytes of the specified array into the array
+	 * of compressed bytes.
+	 * @return the number of compressed bytes.
+	 */
+	private int deflate(byte[] bytes, int length) {
+		deflater.reset();
+		deflater.setInput(bytes, 0, length);
+		deflater.finish();
+
+		int compressedLength = 0;
+		while (!deflater.finished()) {
+			if (compressedLength == compressed.length) {
+				byte[] grown = new byte[2 * compressed.length];
+				System.arraycopy(compressed, 0, grown, 0, compressedLength);
+				compressed = grown;
+			}
+			compressedLength += deflater.deflate(compressed, compressedLength,
+			                                     compressed.length - compressedLength);
+		}
+		return compressedLength;
+	}
+}
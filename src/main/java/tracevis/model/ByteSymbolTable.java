@@ -0,0 +1,154 @@
+package tracevis.model;
+
+import java.nio.charset.Charset;
+import java.util.Arrays;
+
+/**
+ * A symbol table keyed by raw bytes. The trace parsers use it to map the bytes
+ * of a class or method name directly to a shared String, so that names which
+ * have been seen before are resolved without creating any objects.
+ */
+class ByteSymbolTable {
+	private static final Charset UTF8 = Charset.forName("UTF-8");
+
+	private final boolean dotted;
+
+	private int[] slots;
+	private int[] hashes;
+	private byte[][] keys;
+	private String[] symbols;
+	private int size;
+
+	/**
+	 * Creates a new instance of ByteSymbolTable.
+	 * @param dotted whether slashes in names should be replaced by dots, as is
+	 *               needed for class names in the JVM's internal form.
+	 */
+	public ByteSymbolTable(boolean dotted) {
+		this.dotted = dotted;
+
+		slots = new int[1024];
+		hashes = new int[512];
+		keys = new byte[512][];
+		symbols = new String[512];
+		size = 0;
+	}
+
+	/**
+	 * Returns the hash of the specified bytes, as it is expected by
+	 * {@link #get(byte[], int, int, int)}.
+	 */
+	public static int hash(byte[] bytes, int start, int end) {
+		int hash = 0;
+		for (int i = start; i < end; i++) {
+			hash = 31 * hash + bytes[i];
+		}
+		return hash;
+	}
+
+	/**
+	 * Returns the symbol for the bytes between start (inclusive) and end
+	 * (exclusive) in the specified array. The symbol is created if these bytes
+	 * have not been seen before.
+	 * @param bytes the specified array.
+	 * @param start the index of the first byte of the name.
+	 * @param end the index following the last byte of the name.
+	 * @param hash the hash of the name, as computed by {@link #hash}.
+	 */
+	public String get(byte[] bytes, int start, int end, int hash) {
+		// Creating the symbol may grow the array, so look it up afterwards.
+		int index = index(bytes, start, end, hash);
+		return symbols[index];
+	}
+
+	/**
+	 * Returns the index of the symbol for the specified bytes. Indices are
+	 * assigned densely, in the order in which symbols are created.
+	 * @see #get(byte[], int, int, int)
+	 */
+	public int index(byte[] bytes, int start, int end, int hash) {
+		int mask = slots.length - 1;
+		int slot = mix(hash) & mask;
+		while (true) {
+			int entry = slots[slot] - 1;
+			if (entry < 0) {
+				break;
+			} else if (hashes[entry] == hash && equals(keys[entry], bytes, start, end)) {
+				return entry;
+			}
+			slot = (slot + 1) & mask;
+		}
+
+		byte[] key = Arrays.copyOfRange(bytes, start, end);
+		return add(key, hash, slot);
+	}
+
+	/**
+	 * Returns the symbol with the specified index.
+	 * @param index the specified index.
+	 */
+	public String getSymbol(int index) {
+		return symbols[index];
+	}
+
+	/**
+	 * Returns the number of symbols in the table.
+	 */
+	public int size() {
+		return size;
+	}
+
+	private int add(byte[] key, int hash, int slot) {
+		if (size == keys.length) {
+			int capacity = 2 * keys.length;
+			hashes = Arrays.copyOf(hashes, capacity);
+			keys = Arrays.copyOf(keys, capacity);
+			symbols = Arrays.copyOf(symbols, capacity);
+		}
+
+		String symbol = new String(key, UTF8);
+		if (dotted) {
+			symbol = symbol.replace('/', '.');
+		}
+
+		int entry = size++;
+		hashes[entry] = hash;
+		keys[entry] = key;
+		symbols[entry] = symbol;
+		slots[slot] = entry + 1;
+
+		if (2 * size > slots.length) {
+			rehash(2 * slots.length);
+		}
+
+		return entry;
+	}
+
+	private void rehash(int capacity) {
+		slots = new int[capacity];
+		int mask = capacity - 1;
+		for (int entry = 0; entry < size; entry++) {
+			int slot = mix(hashes[entry]) & mask;
+			while (slots[slot] != 0) {
+				slot = (slot + 1) & mask;
+			}
+			slots[slot] = entry + 1;
+		}
+	}
+
+	private static int mix(int hash) {
+		return hash ^ (hash >>> 16);
+	}
+
+	private static boolean equals(byte[] key, byte[] bytes, int start, int end) {
+		if (key.length != end - start) {
+			return false;
+		}
+		for (int i = 0; i < key.length; i++) {
+			if (key[i] != bytes[start + i]) {
+				return false;
+			}
+		}
+		return true;
+	}
+}
@@ -0,0 +1,27 @@
+package tracevis.model;
+
+import edu.uci.ics.jung.graph.Vertex;
+import edu.uci.ics.jung.graph.impl.DirectedSparseEdge;
+
+/**
+ * An edge of the call graph. JUNG hashes the ID of an element into only 1024
+ * distinct values, so that the sets of edges of a graph with tens of
+ * thousands of edges degenerate into long bins, each lookup of which
+ * compares many edges. Edges which are equal have the same ID, so the ID
+ * itself is a hash code which is consistent with equals.
+ */
+class CallEdge extends DirectedSparseEdge {
+	/**
+	 * Creates a new instance of CallEdge.
+	 * @param from the vertex of the calling class.
+	 * @param to the vertex of the called class.
+	 */
+	public CallEdge(Vertex from, Vertex to) {
+		super(from, to);
+	}
+
+	@Override
+	public int hashCode() {
+		return id;
+	}
+}
@@ -8,45 +8,72 @@
 
 package tracevis.model;
 
-import java.util.HashMap;
+import java.util.BitSet;
 import java.util.HashSet;
-import java.util.List;
-import java.util.Map;
+import java.util.Iterator;
 import java.util.Set;
 
 import tracevis.model.types.CallAssignment;
-import tracevis.model.types.CallStack;
 import tracevis.model.types.ClassData;
-import tracevis.model.types.ClassLoadEvent;
-import tracevis.model.types.Event;
+import tracevis.model.types.EventCursor;
+import tracevis.model.types.EventStore;
 import tracevis.model.types.Frame;
-import tracevis.model.types.FramePopEvent;
-import tracevis.model.types.MethodEntryEvent;
-import tracevis.model.types.MethodExitEvent;
-import tracevis.model.types.ObjectAllocationEvent;
-import tracevis.model.types.ObjectFreeEvent;
+import tracevis.model.types.FrameTable;
+import tracevis.model.types.SymbolTable;
+import tracevis.utilities.LongSet;
 import tracevis.utilities.Pair;
 
 /**
- * An event filter which filters out classes and methods.
+ * An event filter which filters out classes and methods. A method event is
+ * filtered out when a frame of a filtered class or method is on the call
+ * stack of its thread. Whether a frame is filtered is decided once per frame
+ * at the start of a pass, and only the number of filtered frames on the
+ * stack of each thread is kept, so that each event is filtered in constant
+ * time.
+ * <p>
+ * Names are looked up in the symbol table of the trace, but never added to
+ * it. A filtered class or method whose name is not in the table is kept by
+ * name, and is looked up again at the start of each pass.
  * @author Pieter Deelen
  */
 public class ClassMethodFilter extends EventVisitor implements EventFilter {
 	private final CallAssignment callAssignment;
+	private final SymbolTable symbols;
 
-	private final Set<String> filteredClasses;
-	private final Set<Pair<String, String>> filteredMethods;
-	private Map<Long, CallStack> callStacks;
+	// The IDs of the filtered classes, and the class and method IDs of the
+	// filtered methods, combined into a single key by methodKey.
+	private final BitSet filteredClasses;
+	private final LongSet filteredMethods;
+
+	// The filtered classes and methods whose names are not in the symbol
+	// table.
+	private final Set<String> pendingClasses;
+	private final Set<Pair<String, String>> pendingMethods;
+
+	// The IDs of the filtered frames, and the number of them on the call
+	// stack of each thread, by thread number, during a pass over the events.
+	private BitSet filteredFrames;
+	private int[] filteredDepths;
+	private EventStore events;
 
 	/**
 	 * Creates a new instance of ClassMethodFilter.
 	 * @param callAssignment how to assign calls to classes.
+	 * @param symbols the symbol table with the names of the classes and
+	 *                methods in the trace.
 	 */
-	public ClassMethodFilter(CallAssignment callAssignment) {
+	public ClassMethodFilter(CallAssignment callAssignment, SymbolTable symbols) {
 		this.callAssignment = callAssignment;
+		this.symbols = symbols;
 
-		filteredClasses = new HashSet<String>();
-		filteredMethods = new HashSet<Pair<String, String>>();
+		filteredClasses = new BitSet();
+		filteredMethods = new LongSet();
+		pendingClasses = new HashSet<String>();
+		pendingMethods = new HashSet<Pair<String, String>>();
+	}
+
+	private static long methodKey(int classID, int methodID) {
+		return ((long) classID << 32) | methodID;
 	}
 
 	/**
@@ -55,7 +82,12 @@ public class ClassMethodFilter extends EventVisitor implements EventFilter {
 	 * @param className the name of the specified class.
 	 */
 	public void addClassFilter(String className) {
-		filteredClasses.add(className);
+		int classID = symbols.findClassID(className);
+		if (classID != SymbolTable.NO_SYMBOL) {
+			filteredClasses.set(classID);
+		} else {
+			pendingClasses.add(className);
+		}
 	}
 
 	/**
@@ -64,7 +96,11 @@ public class ClassMethodFilter extends EventVisitor implements EventFilter {
 	 * @param className the name of the specified class.
 	 */
 	public void removeClassFilter(String className) {
-		filteredClasses.remove(className);
+		pendingClasses.remove(className);
+		int classID = symbols.findClassID(className);
+		if (classID != SymbolTable.NO_SYMBOL) {
+			filteredClasses.clear(classID);
+		}
 	}
 
 	/**
@@ -72,7 +108,11 @@ public class ClassMethodFilter extends EventVisitor implements EventFilter {
 	 * @param className the name of the specified class.
 	 */
 	public boolean isFilteredClass(String className) {
-		return filteredClasses.contains(className);
+		if (pendingClasses.contains(className)) {
+			return true;
+		}
+		int classID = symbols.findClassID(className);
+		return classID != SymbolTable.NO_SYMBOL && filteredClasses.get(classID);
 	}
 
 	/**
@@ -82,7 +122,13 @@ public class ClassMethodFilter extends EventVisitor implements EventFilter {
 	 * @param methodName the name of the specified method.
 	 */
 	public void addMethodFilter(String className, String methodName) {
-		filteredMethods.add(new Pair<String, String>(className, methodName));
+		int classID = symbols.findClassID(className);
+		int methodID = symbols.findMethodID(methodName);
+		if (classID != SymbolTable.NO_SYMBOL && methodID != SymbolTable.NO_SYMBOL) {
+			filteredMethods.add(methodKey(classID, methodID));
+		} else {
+			pendingMethods.add(new Pair<String, String>(className, methodName));
+		}
 	}
 
 	/**
@@ -92,7 +138,12 @@ public class ClassMethodFilter extends EventVisitor implements EventFilter {
 	 * @param methodName the name of the specified method.
 	 */
 	public void removeClassFilter(String className, String methodName) {
-		filteredMethods.remove(new Pair<String, String>(className, methodName));
+		pendingMethods.remove(new Pair<String, String>(className, methodName));
+		int classID = symbols.findClassID(className);
+		int methodID = symbols.findMethodID(methodName);
+		if (classID != SymbolTable.NO_SYMBOL && methodID != SymbolTable.NO_SYMBOL) {
+			filteredMethods.remove(methodKey(classID, methodID));
+		}
 	}
 
 	/**
@@ -101,21 +152,64 @@ public class ClassMethodFilter extends EventVisitor implements EventFilter {
 	 * @param methodName the name of the specified method.
 	 */
 	public boolean isFilteredMethod(String className, String methodName) {
-		return filteredMethods.contains(new Pair<String, String>(className, methodName));
+		if (pendingMethods.contains(new Pair<String, String>(className, methodName))) {
+			return true;
+		}
+		int classID = symbols.findClassID(className);
+		int methodID = symbols.findMethodID(methodName);
+		return classID != SymbolTable.NO_SYMBOL && methodID != SymbolTable.NO_SYMBOL &&
+		       filteredMethods.contains(methodKey(classID, methodID));
+	}
+
+	/**
+	 * Moves the pending classes and methods whose names have been added to
+	 * the symbol table since to the filtered classes and methods.
+	 */
+	private void resolvePending() {
+		Iterator<String> classNames = pendingClasses.iterator();
+		while (classNames.hasNext()) {
+			int classID = symbols.findClassID(classNames.next());
+			if (classID != SymbolTable.NO_SYMBOL) {
+				filteredClasses.set(classID);
+				classNames.remove();
+			}
+		}
+
+		Iterator<Pair<String, String>> methods = pendingMethods.iterator();
+		while (methods.hasNext()) {
+			Pair<String, String> method = methods.next();
+			int classID = symbols.findClassID(method.getFirst());
+			int methodID = symbols.findMethodID(method.getSecond());
+			if (classID != SymbolTable.NO_SYMBOL && methodID != SymbolTable.NO_SYMBOL) {
+				filteredMethods.add(methodKey(classID, methodID));
+				methods.remove();
+			}
+		}
 	}
 
 	@Override
-	public void filter(List<Event> events) {
-		callStacks = new HashMap<Long, CallStack>();
+	public void filter(EventStore events) {
+		resolvePending();
+
+		FrameTable frames = events.getFrames();
+		filteredFrames = new BitSet(frames.size());
+		for (int frameID = 0; frameID < frames.size(); frameID++) {
+			if (isFilteredFrame(frames.get(frameID))) {
+				filteredFrames.set(frameID);
+			}
+		}
+		filteredDepths = new int[events.getThreadCount()];
+		this.events = events;
 
-		for (Event event : events) {
+		EventCursor event = events.cursor();
+		while (event.next()) {
 			visit(event);
 		}
 	}
 
 	@Override
-	public void visit(ClassLoadEvent event) {
-		if (filteredClasses.contains(event.getClassName())) {
+	public void visitClassLoad(EventCursor event) {
+		if (filteredClasses.get(event.getClassID())) {
 			event.setFiltered(true);
 		} else {
 			event.setFiltered(false);
@@ -123,29 +217,31 @@ public class ClassMethodFilter extends EventVisitor implements EventFilter {
 	}
 
 	@Override
-	public void visit(FramePopEvent event) {
-		CallStack callStack = getCallStack(event.getThreadID());
-		event.setFiltered(stackContainsFilteredFrame(callStack));
-		callStack.pop();
+	public void visitFramePop(EventCursor event) {
+		visitMethodExit(event);
 	}
 
 	@Override
-	public void visit(MethodEntryEvent event) {
-		CallStack callStack = getCallStack(event.getThreadID());
-		callStack.push(event.getFrame());
-		event.setFiltered(stackContainsFilteredFrame(callStack));
+	public void visitMethodEntry(EventCursor event) {
+		int thread = events.getThreadNumber(event.getIndex());
+		if (filteredFrames.get(event.getFrameID())) {
+			filteredDepths[thread]++;
+		}
+		event.setFiltered(filteredDepths[thread] > 0);
 	}
 
 	@Override
-	public void visit(MethodExitEvent event) {
-		CallStack callStack = getCallStack(event.getThreadID());
-		event.setFiltered(stackContainsFilteredFrame(callStack));
-		callStack.pop();
+	public void visitMethodExit(EventCursor event) {
+		int thread = events.getThreadNumber(event.getIndex());
+		event.setFiltered(filteredDepths[thread] > 0);
+		if (filteredFrames.get(event.getFrameID())) {
+			filteredDepths[thread]--;
+		}
 	}
 
 	@Override
-	public void visit(ObjectAllocationEvent event) {
-		if (filteredClasses.contains(event.getClassName())) {
+	public void visitObjectAllocation(EventCursor event) {
+		if (filteredClasses.get(event.getClassID())) {
 			event.setFiltered(true);
 		} else {
 			event.setFiltered(false);
@@ -153,47 +249,34 @@ public class ClassMethodFilter extends EventVisitor implements EventFilter {
 	}
 
 	@Override
-	public void visit(ObjectFreeEvent event) {
-		if (filteredClasses.contains(event.getClassName())) {
+	public void visitObjectFree(EventCursor event) {
+		if (filteredClasses.get(event.getClassID())) {
 			event.setFiltered(true);
 		} else {
 			event.setFiltered(false);
 		}
 	}
 
-	private boolean stackContainsFilteredFrame(CallStack callStack) {
-		for (Frame frame : callStack) {
-			ClassData classData = null;
-			switch (callAssignment) {
-				case DEFINING_CLASS:
-					classData = frame.getDefiningClass();
-					break;
-				case OBJECT_CLASS:
-					classData = frame.getActualClass();
-					break;
-			}
-
-			if (filteredClasses.contains(classData.getName())) {
-				return true;
-			}
-
-			Pair<String, String> classMethodPair =
-				new Pair<String, String>(classData.getName(), frame.getMethod());
-
-			if (filteredMethods.contains(classMethodPair)) {
-				return true;
-			}
+	/**
+	 * Returns whether the specified frame is a call of a filtered class or
+	 * method.
+	 */
+	private boolean isFilteredFrame(Frame frame) {
+		ClassData classData = null;
+		switch (callAssignment) {
+			case DEFINING_CLASS:
+				classData = frame.getDefiningClass();
+				break;
+			case OBJECT_CLASS:
+				classData = frame.getActualClass();
+				break;
 		}
 
-		return false;
-	}
-
-	private CallStack getCallStack(long threadID) {
-		CallStack callStack = callStacks.get(threadID);
-		if (callStack == null) {
-			callStack = new CallStack();
-			callStacks.put(threadID, callStack);
+		if (filteredClasses.get(classData.getID())) {
+			return true;
 		}
-		return callStack;
+
+		return !filteredMethods.isEmpty() &&
+		       filteredMethods.contains(methodKey(classData.getID(), frame.getMethod()));
 	}
 }
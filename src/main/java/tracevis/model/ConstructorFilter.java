@@ -8,12 +8,9 @@
 
 package tracevis.model;
 
-import java.util.List;
-
-import tracevis.model.types.Event;
-import tracevis.model.types.FramePopEvent;
-import tracevis.model.types.MethodEntryEvent;
-import tracevis.model.types.MethodExitEvent;
+import tracevis.model.types.EventCursor;
+import tracevis.model.types.EventStore;
+import tracevis.model.types.SymbolTable;
 
 
 /**
@@ -21,17 +18,29 @@ import tracevis.model.types.MethodExitEvent;
  * @author Pieter Deelen
  */
 public class ConstructorFilter extends EventVisitor implements EventFilter {
+	private final int constructorID;
+
+	/**
+	 * Creates a new instance of ConstructorFilter.
+	 * @param symbols the symbol table with the names of the methods in the
+	 *                trace.
+	 */
+	public ConstructorFilter(SymbolTable symbols) {
+		constructorID = symbols.findMethodID("<init>");
+	}
+
 	@Override
-	public void filter(List<Event> events) {
-		for (Event event : events) {
+	public void filter(EventStore events) {
+		EventCursor event = events.cursor();
+		while (event.next()) {
 			event.setFiltered(false);
 			visit(event);
 		}
 	}
 
 	@Override
-	public void visit(FramePopEvent event) {
-		if (event.getMethodName().equals("<init>")) {
+	public void visitFramePop(EventCursor event) {
+		if (event.getMethodID() == constructorID) {
 			event.setFiltered(false);
 		} else {
 			event.setFiltered(true);
@@ -39,8 +48,8 @@ public class ConstructorFilter extends EventVisitor implements EventFilter {
 	}
 
 	@Override
-	public void visit(MethodEntryEvent event) {
-		if (event.getMethodName().equals("<init>")) {
+	public void visitMethodEntry(EventCursor event) {
+		if (event.getMethodID() == constructorID) {
 			event.setFiltered(false);
 		} else {
 			event.setFiltered(true);
@@ -48,8 +57,8 @@ public class ConstructorFilter extends EventVisitor implements EventFilter {
 	}
 
 	@Override
-	public void visit(MethodExitEvent event) {
-		if (event.getMethodName().equals("<init>")) {
+	public void visitMethodExit(EventCursor event) {
+		if (event.getMethodID() == constructorID) {
 			event.setFiltered(false);
 		} else {
 			event.setFiltered(true);
@@ -0,0 +1,167 @@
+package tracevis.model;
+
+import java.util.Arrays;
+
+import static tracevis.model.BinaryTraceFormat.*;
+
+/**
+ * An event handler which stores the events it receives in primitive arrays,
+ * so that they can be passed on to another event handler later. The parallel
+ * trace reader parses chunks of a trace into event buffers, and replays them
+ * in order.
+ */
+class EventBuffer implements ProgramEventInterface {
+	private byte[] types;
+	private long[] timeStamps;
+	private long[] threadIDs;
+	private long[] objectIDs;
+	private String[] classNames;
+	private String[] methodNames;
+	private int size;
+
+	/**
+	 * Creates a new instance of EventBuffer.
+	 * @param capacity the number of events to reserve room for.
+	 */
+	public EventBuffer(int capacity) {
+		capacity = Math.max(capacity, 16);
+		types = new byte[capacity];
+		timeStamps = new long[capacity];
+		threadIDs = new long[capacity];
+		objectIDs = new long[capacity];
+		classNames = new String[capacity];
+		methodNames = new String[capacity];
+		size = 0;
+	}
+
+	/**
+	 * Returns the number of events in the buffer.
+	 */
+	public int size() {
+		return size;
+	}
+
+	/**
+	 * Passes all events in the buffer, in the order in which they were
+	 * received, to the specified event handler.
+	 * @param program the specified event handler.
+	 */
+	public void replay(ProgramEventInterface program) {
+		for (int i = 0; i < size; i++) {
+			long timeStamp = timeStamps[i];
+			switch (types[i]) {
+				case METHOD_ENTRY:
+					program.handleMethodEntry(timeStamp, threadIDs[i], classNames[i], methodNames[i],
+					                          objectIDs[i]);
+					break;
+				case METHOD_EXIT:
+					program.handleMethodExit(timeStamp, threadIDs[i], classNames[i], methodNames[i]);
+					break;
+				case FRAME_POP:
+					program.handleFramePop(timeStamp, threadIDs[i], classNames[i], methodNames[i]);
+					break;
+				case CLASS_LOAD:
+					program.handleClassLoad(timeStamp, classNames[i]);
+					break;
+				case THREAD_START:
+					program.handleThreadStart(timeStamp, threadIDs[i]);
+					break;
+				case THREAD_STOP:
+					program.handleThreadStop(timeStamp, threadIDs[i]);
+					break;
+				case OBJECT_ALLOCATION:
+					program.handleObjectAllocation(timeStamp, classNames[i], objectIDs[i]);
+					break;
+				case OBJECT_FREE:
+					program.handleObjectFree(timeStamp, classNames[i], objectIDs[i]);
+					break;
+				case VM_START:
+					program.handleVMStart(timeStamp);
+					break;
+				case VM_INIT:
+					program.handleVMInit(timeStamp);
+					break;
+				case VM_DEATH:
+					program.handleVMDeath(timeStamp);
+					break;
+			}
+		}
+	}
+
+	@Override
+	public void handleVMDeath(long timeStamp) {
+		add(VM_DEATH, timeStamp, 0, null, null, 0);
+	}
+
+	@Override
+	public void handleVMInit(long timeStamp) {
+		add(VM_INIT, timeStamp, 0, null, null, 0);
+	}
+
+	@Override
+	public void handleVMStart(long timeStamp) {
+		add(VM_START, timeStamp, 0, null, null, 0);
+	}
+
+	@Override
+	public void handleObjectFree(long timeStamp, String className, long objectID) {
+		add(OBJECT_FREE, timeStamp, 0, className, null, objectID);
+	}
+
+	@Override
+	public void handleObjectAllocation(long timeStamp, String className, long objectID) {
+		add(OBJECT_ALLOCATION, timeStamp, 0, className, null, objectID);
+	}
+
+	@Override
+	public void handleClassLoad(long timeStamp, String className) {
+		add(CLASS_LOAD, timeStamp, 0, className, null, 0);
+	}
+
+	@Override
+	public void handleThreadStop(long timeStamp, long threadID) {
+		add(THREAD_STOP, timeStamp, threadID, null, null, 0);
+	}
+
+	@Override
+	public void handleThreadStart(long timeStamp, long threadID) {
+		add(THREAD_START, timeStamp, threadID, null, null, 0);
+	}
+
+	@Override
+	public void handleFramePop(long timeStamp, long threadID, String className, String methodName) {
+		add(FRAME_POP, timeStamp, threadID, className, methodName, 0);
+	}
+
+	@Override
+	public void handleMethodExit(long timeStamp, long threadID, String className, String methodName) {
+		add(METHOD_EXIT, timeStamp, threadID, className, methodName, 0);
+	}
+
+	@Override
+	public void handleMethodEntry(long timeStamp, long threadID, String className,
+	                              String methodName, long objectID) {
+		add(METHOD_ENTRY, timeStamp, threadID, className, methodName, objectID);
+	}
+
+	private void add(byte type, long timeStamp, long threadID, String className,
+	                 String methodName, long objectID) {
+		if (size == types.length) {
+			int capacity = 2 * size;
+			types = Arrays.copyOf(types, capacity);
+			timeStamps = Arrays.copyOf(timeStamps, capacity);
+			threadIDs = Arrays.copyOf(threadIDs, capacity);
+			objectIDs = Arrays.copyOf(objectIDs, capacity);
+			classNames = Arrays.copyOf(classNames, capacity);
+			methodNames = Arrays.copyOf(methodNames, capacity);
+		}
+
+		types[size] = type;
+		timeStamps[size] = timeStamp;
+		threadIDs[size] = threadID;
+		objectIDs[size] = objectID;
+		classNames[size] = className;
+		methodNames[size] = methodName;
+		size++;
+	}
+}
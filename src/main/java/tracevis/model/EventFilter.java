@@ -8,9 +8,7 @@
 
 package tracevis.model;
 
-import java.util.List;
-
-import tracevis.model.types.Event;
+import tracevis.model.types.EventStore;
 
 
 /**
@@ -19,8 +17,8 @@ import tracevis.model.types.Event;
  */
 public interface EventFilter {
 	/**
-	 * Filters the specified list of events.
-	 * @param events the specified list of events.
+	 * Filters the specified events.
+	 * @param events the specified events.
 	 */
-	public void filter(List<Event> events);
+	public void filter(EventStore events);
 }
@@ -0,0 +1,137 @@
+package tracevis.model;
+
+/**
+ * Passes only the first events of a trace to an event handler, so that the
+ * start of a trace can be loaded as if it were a trace of its own. At the
+ * first event beyond the limit, a VM death at the time of the last event
+ * passed on is passed on in its place, and reading is stopped by throwing
+ * {@link StopReading}.
+ */
+class EventLimitFilter implements ProgramEventInterface {
+	private final ProgramEventInterface program;
+	private final long limit;
+
+	private long count;
+	private long lastTimeStamp;
+	private boolean ended;
+	private boolean truncated;
+
+	/**
+	 * Creates a new instance of EventLimitFilter.
+	 * @param program the event handler to pass the first events to.
+	 * @param limit the number of events to pass on.
+	 */
+	public EventLimitFilter(ProgramEventInterface program, long limit) {
+		this.program = program;
+		this.limit = limit;
+
+		count = 0;
+		ended = false;
+		truncated = false;
+	}
+
+	/**
+	 * Returns whether events were dropped because the limit was reached.
+	 */
+	public boolean isTruncated() {
+		return truncated;
+	}
+
+	/**
+	 * Returns whether the specified event should be passed on.
+	 * @throws StopReading if the limit has been reached.
+	 */
+	private boolean accept(long timeStamp) {
+		if (ended) {
+			return false;
+		}
+		if (count == limit) {
+			truncated = true;
+			ended = true;
+			program.handleVMDeath(lastTimeStamp);
+			throw StopReading.INSTANCE;
+		}
+		count++;
+		lastTimeStamp = timeStamp;
+		return true;
+	}
+
+	@Override
+	public void handleVMDeath(long timeStamp) {
+		if (accept(timeStamp)) {
+			ended = true;
+			program.handleVMDeath(timeStamp);
+		}
+	}
+
+	@Override
+	public void handleVMInit(long timeStamp) {
+		if (accept(timeStamp)) {
+			program.handleVMInit(timeStamp);
+		}
+	}
+
+	@Override
+	public void handleVMStart(long timeStamp) {
+		if (accept(timeStamp)) {
+			program.handleVMStart(timeStamp);
+		}
+	}
+
+	@Override
+	public void handleObjectFree(long timeStamp, String className, long objectID) {
+		if (accept(timeStamp)) {
+			program.handleObjectFree(timeStamp, className, objectID);
+		}
+	}
+
+	@Override
+	public void handleObjectAllocation(long timeStamp, String className, long objectID) {
+		if (accept(timeStamp)) {
+			program.handleObjectAllocation(timeStamp, className, objectID);
+		}
+	}
+
+	@Override
+	public void handleClassLoad(long timeStamp, String className) {
+		if (accept(timeStamp)) {
+			program.handleClassLoad(timeStamp, className);
+		}
+	}
+
+	@Override
+	public void handleThreadStop(long timeStamp, long threadID) {
+		if (accept(timeStamp)) {
+			program.handleThreadStop(timeStamp, threadID);
+		}
+	}
+
+	@Override
+	public void handleThreadStart(long timeStamp, long threadID) {
+		if (accept(timeStamp)) {
+			program.handleThreadStart(timeStamp, threadID);
+		}
+	}
+
+	@Override
+	public void handleFramePop(long timeStamp, long threadID, String className, String methodName) {
+		if (accept(timeStamp)) {
+			program.handleFramePop(timeStamp, threadID, className, methodName);
+		}
+	}
+
+	@Override
+	public void handleMethodExit(long timeStamp, long threadID, String className, String methodName) {
+		if (accept(timeStamp)) {
+			program.handleMethodExit(timeStamp, threadID, className, methodName);
+		}
+	}
+
+	@Override
+	public void handleMethodEntry(long timeStamp, long threadID, String className,
+	                              String methodName, long objectID) {
+		if (accept(timeStamp)) {
+			program.handleMethodEntry(timeStamp, threadID, className, methodName, objectID);
+		}
+	}
+}
@@ -8,59 +8,64 @@
 
 package tracevis.model;
 
-import tracevis.model.types.ClassLoadEvent;
-import tracevis.model.types.Event;
-import tracevis.model.types.FramePopEvent;
-import tracevis.model.types.MethodEntryEvent;
-import tracevis.model.types.MethodExitEvent;
-import tracevis.model.types.ObjectAllocationEvent;
-import tracevis.model.types.ObjectFreeEvent;
-import tracevis.model.types.ThreadStartEvent;
-import tracevis.model.types.ThreadStopEvent;
-import tracevis.model.types.VMDeathEvent;
-import tracevis.model.types.VMInitEvent;
-import tracevis.model.types.VMStartEvent;
+import tracevis.model.types.EventCursor;
 
 /**
- *
+ * Visits events through a cursor. {@link #visit} calls the method for the
+ * type of the event the cursor is positioned at; these methods do nothing,
+ * and are overridden for the types a visitor handles. The cursor is only
+ * valid during the call, because it is moved on to the next event
+ * afterwards.
  * @author Pieter Deelen
  */
 public class EventVisitor {
-	public void visit(ClassLoadEvent event) {}
-	public void visit(FramePopEvent event) {}
-	public void visit(MethodEntryEvent event) {}
-	public void visit(MethodExitEvent event) {}
-	public void visit(ObjectAllocationEvent event) {}
-	public void visit(ObjectFreeEvent event) {}
-	public void visit(ThreadStartEvent event) {}
-	public void visit(ThreadStopEvent event) {}
-	public void visit(VMDeathEvent event) {}
-	public void visit(VMInitEvent event) {}
-	public void visit(VMStartEvent event) {}
+	public void visitClassLoad(EventCursor event) {}
+	public void visitFramePop(EventCursor event) {}
+	public void visitMethodEntry(EventCursor event) {}
+	public void visitMethodExit(EventCursor event) {}
+	public void visitObjectAllocation(EventCursor event) {}
+	public void visitObjectFree(EventCursor event) {}
+	public void visitThreadStart(EventCursor event) {}
+	public void visitThreadStop(EventCursor event) {}
+	public void visitVMDeath(EventCursor event) {}
+	public void visitVMInit(EventCursor event) {}
+	public void visitVMStart(EventCursor event) {}
 
-	public void visit(Event event) {
-		if (event instanceof ClassLoadEvent) {
-			visit((ClassLoadEvent)event);
-		} else if (event instanceof FramePopEvent) {
-			visit((FramePopEvent)event);
-		} else if (event instanceof MethodEntryEvent) {
-			visit((MethodEntryEvent)event);
-		} else if (event instanceof MethodExitEvent) {
-			visit((MethodExitEvent)event);
-		} else if (event instanceof ObjectAllocationEvent) {
-			visit((ObjectAllocationEvent)event);
-		} else if (event instanceof ObjectFreeEvent) {
-			visit((ObjectFreeEvent)event);
-		} else if (event instanceof ThreadStartEvent) {
-			visit((ThreadStartEvent)event);
-		} else if (event instanceof ThreadStopEvent) {
-			visit((ThreadStopEvent)event);
-		} else if (event instanceof VMDeathEvent) {
-			visit((VMDeathEvent)event);
-		} else if (event instanceof VMInitEvent) {
-			visit((VMInitEvent)event);
-		} else if (event instanceof VMStartEvent) {
-			visit((VMStartEvent)event);
+	public void visit(EventCursor event) {
+		switch (event.getType()) {
+			case CLASS_LOAD:
+				visitClassLoad(event);
+				break;
+			case FRAME_POP:
+				visitFramePop(event);
+				break;
+			case METHOD_ENTRY:
+				visitMethodEntry(event);
+				break;
+			case METHOD_EXIT:
+				visitMethodExit(event);
+				break;
+			case OBJECT_ALLOCATION:
+				visitObjectAllocation(event);
+				break;
+			case OBJECT_FREE:
+				visitObjectFree(event);
+				break;
+			case THREAD_START:
+				visitThreadStart(event);
+				break;
+			case THREAD_STOP:
+				visitThreadStop(event);
+				break;
+			case VM_DEATH:
+				visitVMDeath(event);
+				break;
+			case VM_INIT:
+				visitVMInit(event);
+				break;
+			case VM_START:
+				visitVMStart(event);
+				break;
 		}
 	}
 }
@@ -8,27 +8,36 @@
 
 package tracevis.model;
 
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
 
 import tracevis.model.types.CallAssignment;
 import tracevis.model.types.CallData;
+import tracevis.model.types.CallIndex;
 import tracevis.model.types.CallStack;
 import tracevis.model.types.ClassData;
-import tracevis.model.types.ClassLoadEvent;
-import tracevis.model.types.Event;
+import tracevis.model.types.EventCursor;
+import tracevis.model.types.EventIndexList;
+import tracevis.model.types.EventStore;
+import tracevis.model.types.EventType;
 import tracevis.model.types.Frame;
-import tracevis.model.types.FramePopEvent;
-import tracevis.model.types.MethodEntryEvent;
-import tracevis.model.types.MethodExitEvent;
-import tracevis.model.types.ObjectAllocationEvent;
+import tracevis.model.types.FrameTable;
+import tracevis.model.types.LoadPhase;
+import tracevis.model.types.SymbolTable;
+import tracevis.utilities.LongIntMap;
+import tracevis.utilities.LongObjectMap;
+import tracevis.utilities.LongSet;
 import edu.uci.ics.jung.graph.Edge;
 import edu.uci.ics.jung.graph.Graph;
 import edu.uci.ics.jung.graph.Vertex;
-import edu.uci.ics.jung.graph.impl.DirectedSparseEdge;
 import edu.uci.ics.jung.graph.impl.DirectedSparseVertex;
 import edu.uci.ics.jung.utils.GraphUtils;
 import edu.uci.ics.jung.utils.UserData;
@@ -41,35 +50,81 @@ public class GraphBuilder extends EventVisitor {
 	private final Graph callGraph;
 	private final boolean hideInnerClasses;
 	private final CallAssignment callAssignment;
+	private final SymbolTable symbols;
 
 	private final Map<String, Vertex> vertexMap;
-	private final Map<Long, ClassData> objectMap;
-	private final Map<Long, CallStack> callStacks;
+	private ClassData[] classes;
+	private ClassData[] vertices;
+	private int vertexCount;
+	private final CallIndex calls;
+	// The ID of the class of each allocated object, by object ID.
+	private final LongIntMap objectMap;
+	private final LongObjectMap<CallStack> callStacks;
 
-	private final Map<Event, ClassData> callerMap;
-	private final Map<Event, ClassData> calleeMap;
+	private FrameTable frames;
+
+	private LoadProgress progress;
+	private int parallelism;
 
 	/**
 	 * Creates a new instance of GraphBuilder.
 	 */
 	public GraphBuilder(Graph callGraph, boolean hideInnerClasses,
-	                    CallAssignment callAssignment)
+	                    CallAssignment callAssignment, SymbolTable symbols)
 	{
 		this.callGraph = callGraph;
 		this.hideInnerClasses = hideInnerClasses;
 		this.callAssignment = callAssignment;
+		this.symbols = symbols;
 
 		this.vertexMap = new HashMap<String, Vertex>();
-		this.objectMap = new HashMap<Long, ClassData>();
-		this.callStacks = new HashMap<Long, CallStack>();
+		this.classes = new ClassData[symbols.getClassCount()];
+		this.vertices = new ClassData[16];
+		this.vertexCount = 0;
+		this.calls = new CallIndex();
+		this.objectMap = new LongIntMap(-1);
+		this.callStacks = new LongObjectMap<CallStack>();
+
+		this.progress = LoadProgress.NONE;
+		this.parallelism = Runtime.getRuntime().availableProcessors();
+	}
+
+	/**
+	 * Sets the progress to report the number of events visited to.
+	 * @param progress the specified progress.
+	 */
+	void setProgress(LoadProgress progress) {
+		this.progress = progress;
+	}
 
-		this.callerMap = new HashMap<Event, ClassData>();
-		this.calleeMap = new HashMap<Event, ClassData>();
+	/**
+	 * Sets the number of threads on which the call stacks of the threads of
+	 * the trace are reconstructed. With a parallelism of 1, the graph is
+	 * built in a single pass over the events.
+	 * @param parallelism the number of threads.
+	 */
+	void setParallelism(int parallelism) {
+		this.parallelism = parallelism;
 	}
 
-	public void buildGraph(List<Event> events, long beginTime, long endTime) {
-		for (Event event: events) {
-			visit(event);
+	public void buildGraph(EventStore events, long beginTime, long endTime) {
+		frames = events.getFrames();
+		frames.clear();
+
+		progress.startPhase(LoadPhase.BUILDING_GRAPH, events.size());
+		if (parallelism <= 1 || events.getThreadCount() <= 1) {
+			int visited = 0;
+			EventCursor event = events.cursor();
+			while (event.next()) {
+				visit(event);
+				if (++visited == LoadProgress.EVENT_INTERVAL) {
+					progress.worked(visited);
+					visited = 0;
+				}
+			}
+			progress.worked(visited);
+		} else {
+			buildCalls(events);
 		}
 
 		Set<Vertex> unconnectedVertices = new HashSet<Vertex>();
@@ -83,9 +138,150 @@ public class GraphBuilder extends EventVisitor {
 		GraphUtils.removeVertices(callGraph, unconnectedVertices);
 	}
 
+	/**
+	 * Builds the graph on several threads. The classes and objects are
+	 * visited in a single pass, in the order of the trace, which also
+	 * creates the frame of every call and splits the method events by
+	 * thread. The call stacks of the threads are then reconstructed in
+	 * parallel, since they are independent, and finally the edges found by
+	 * the threads are added to the graph in the order of their first calls,
+	 * as a single pass adds them.
+	 */
+	private void buildCalls(EventStore events) {
+		ThreadCalls[] threads = new ThreadCalls[events.getThreadCount()];
+		for (int i = 0; i < threads.length; i++) {
+			threads[i] = new ThreadCalls(events);
+		}
+
+		int visited = 0;
+		int methodEvents = 0;
+		EventCursor event = events.cursor();
+		while (event.next()) {
+			switch (event.getType()) {
+				case CLASS_LOAD:
+					visitClassLoad(event);
+					break;
+				case OBJECT_ALLOCATION:
+					visitObjectAllocation(event);
+					break;
+				case METHOD_ENTRY:
+					createFrame(event, getObjectClass(event.getObjectID()));
+					// Fall through.
+				case METHOD_EXIT:
+				case FRAME_POP:
+					threads[events.getThreadNumber(event.getIndex())].add(event.getIndex());
+					methodEvents++;
+					break;
+				default:
+					break;
+			}
+			if (++visited == LoadProgress.EVENT_INTERVAL) {
+				progress.worked(visited - methodEvents);
+				visited = 0;
+				methodEvents = 0;
+			}
+		}
+		progress.worked(visited - methodEvents);
+
+		ForkJoinPool pool = new ForkJoinPool(parallelism);
+		try {
+			List<ForkJoinTask<ThreadCalls>> tasks = new ArrayList<ForkJoinTask<ThreadCalls>>();
+			for (ThreadCalls thread : threads) {
+				tasks.add(pool.submit(thread));
+			}
+			int edgeCount = 0;
+			for (ForkJoinTask<ThreadCalls> task : tasks) {
+				ThreadCalls thread = task.join();
+				edgeCount += thread.edgeCount;
+				progress.worked(thread.threadEvents.size());
+				thread.threadEvents.clear();
+			}
+
+			// Each edge is keyed by the event of its first call in the high
+			// half and its position in the low half, so that sorting the keys
+			// puts the edges in the order of the trace.
+			int[] edges = new int[edgeCount];
+			long[] order = new long[edgeCount / 3];
+			int position = 0;
+			for (ThreadCalls thread : threads) {
+				System.arraycopy(thread.edges, 0, edges, position, thread.edgeCount);
+				for (int i = 0; i < thread.edgeCount; i += 3) {
+					order[(position + i) / 3] = ((long) thread.edges[i] << 32) | (position + i);
+				}
+				position += thread.edgeCount;
+			}
+			Arrays.sort(order);
+			for (long key : order) {
+				int i = (int) key;
+				addEdge(vertices[edges[i + 1]], vertices[edges[i + 2]]);
+			}
+		} finally {
+			pool.shutdownNow();
+		}
+	}
+
+	/**
+	 * The method events of a single thread, of which the call stack is
+	 * reconstructed on a thread of its own. The edges it finds are added to
+	 * the graph afterwards, since the graph cannot be changed by several
+	 * threads at once.
+	 */
+	private class ThreadCalls implements Callable<ThreadCalls> {
+		private final EventStore events;
+
+		private final EventIndexList threadEvents;
+
+		// The event of the first call of each edge found, and the vertex
+		// indices of its caller and callee, in triples.
+		private int[] edges;
+		private int edgeCount;
+
+		public ThreadCalls(EventStore events) {
+			this.events = events;
+			this.threadEvents = new EventIndexList(events);
+			this.edges = new int[24];
+			this.edgeCount = 0;
+		}
+
+		public void add(int event) {
+			threadEvents.add(event);
+		}
+
+		@Override
+		public ThreadCalls call() {
+			CallStack callStack = new CallStack();
+			LongSet found = new LongSet();
+
+			EventCursor event = events.cursor();
+			for (int i = 0; i < threadEvents.size(); i++) {
+				event.moveTo(threadEvents.get(i));
+				if (event.getType() == EventType.METHOD_ENTRY) {
+					enterMethod(event, callStack);
+
+					int caller = event.getCaller();
+					if (caller != -1) {
+						int callee = event.getCallee();
+						if (found.add(((long) caller << 32) | callee)) {
+							if (edgeCount == edges.length) {
+								edges = Arrays.copyOf(edges, 2 * edgeCount);
+							}
+							edges[edgeCount++] = event.getIndex();
+							edges[edgeCount++] = caller;
+							edges[edgeCount++] = callee;
+						}
+					}
+				} else {
+					exitMethod(event, callStack);
+				}
+			}
+			return this;
+		}
+	}
+
 	@Override
-	public void visit(ClassLoadEvent event) {
-		String className = event.getClassName();
+	public void visitClassLoad(EventCursor event) {
+		int classID = event.getClassID();
+		String className = symbols.getClassName(classID);
 
 		if (ProgramUtilities.isInnerClass(className) && hideInnerClasses) {
 			String enclosingClassName = ProgramUtilities.getEnclosingClassName(className);
@@ -93,180 +289,179 @@ public class GraphBuilder extends EventVisitor {
 			if (classVertex == null) {
 				// Apparently inner classes can be loaded before their enclosing
 				// class.
-				classVertex = callGraph.addVertex(new DirectedSparseVertex());
-				ClassData classData = new ClassData(classVertex, enclosingClassName);
-
-				classVertex.addUserDatum("tracevis.model.Program", classData, UserData.SHARED);
+				int enclosingClassID = symbols.getClassID(enclosingClassName);
+				ClassData classData = addVertex(enclosingClassID, enclosingClassName);
+				classVertex = classData.getVertex();
 				vertexMap.put(enclosingClassName, classVertex);
+				putClassData(enclosingClassID, classData);
 			}
 
 			vertexMap.put(className, classVertex);
+			putClassData(classID, (ClassData)classVertex.getUserDatum("tracevis.model.Program"));
 		} else {
 			Vertex classVertex = vertexMap.get(className);
 			if (classVertex == null) {
-				classVertex = callGraph.addVertex(new DirectedSparseVertex());
-				ClassData classData = new ClassData(classVertex, className);
-
-				classVertex.addUserDatum("tracevis.model.Program", classData, UserData.SHARED);
+				classVertex = addVertex(classID, className).getVertex();
 			}
 
 			vertexMap.put(className, classVertex);
+			putClassData(classID, (ClassData)classVertex.getUserDatum("tracevis.model.Program"));
 		}
 	}
 
-	@Override
-	public void visit(FramePopEvent event) {
-		ClassData calleeData = null;
-		ClassData callerData = null;
-		long threadID = event.getThreadID();
+	/**
+	 * Adds a vertex for the specified class to the graph, and returns its
+	 * class data.
+	 */
+	private ClassData addVertex(int classID, String className) {
+		Vertex classVertex = callGraph.addVertex(new DirectedSparseVertex());
+		ClassData classData = new ClassData(classVertex, vertexCount, classID, className, calls);
+		classVertex.addUserDatum("tracevis.model.Program", classData, UserData.SHARED);
 
-		CallStack callStack = getCallStack(threadID);
-		Frame frame = callStack.top();
-		switch (callAssignment) {
-			case DEFINING_CLASS:
-				calleeData = frame.getDefiningClass();
-				break;
-			case OBJECT_CLASS:
-				calleeData = frame.getActualClass();
-				break;
+		if (vertexCount == vertices.length) {
+			vertices = Arrays.copyOf(vertices, 2 * vertexCount);
 		}
-		event.setFrame(frame);
+		vertices[vertexCount++] = classData;
+		return classData;
+	}
 
-		callStack.pop();
+	/**
+	 * Associates the class with the specified ID with the specified class
+	 * data.
+	 */
+	private void putClassData(int classID, ClassData classData) {
+		if (classID >= classes.length) {
+			classes = Arrays.copyOf(classes, Math.max(classID + 1, 2 * classes.length));
+		}
+		classes[classID] = classData;
+	}
 
-		if (callStack.depth() > 0) {
-			Frame callerFrame = callStack.top();
-			switch (callAssignment) {
-				case DEFINING_CLASS:
-					callerData = callerFrame.getDefiningClass();
-					break;
-				case OBJECT_CLASS:
-					callerData = callerFrame.getActualClass();
-					break;
-			}
+	@Override
+	public void visitFramePop(EventCursor event) {
+		exitMethod(event, getCallStack(event.getThreadID()));
+	}
 
+	@Override
+	public void visitMethodEntry(EventCursor event) {
+		createFrame(event, getObjectClass(event.getObjectID()));
+		enterMethod(event, getCallStack(event.getThreadID()));
 
-			callerMap.put(event, callerData);
+		int caller = event.getCaller();
+		if (caller != -1) {
+			addEdge(vertices[caller], vertices[event.getCallee()]);
 		}
-		calleeMap.put(event, calleeData);
 	}
 
 	@Override
-	public void visit(MethodEntryEvent event) {
-		ClassData callerData  = null;
-		ClassData calleeData = null;
-
-		String className = event.getClassName();
-		String methodName = event.getMethodName();
-		long threadID = event.getThreadID();
-		long objectID = event.getObjectID();
-
-		CallStack callStack = getCallStack(threadID);
+	public void visitMethodExit(EventCursor event) {
+		exitMethod(event, getCallStack(event.getThreadID()));
+	}
 
+	/**
+	 * Sets the frame of the call made by the specified method entry.
+	 * @param event the specified method entry.
+	 * @param actualCalleeData the class of the called object, or null if the
+	 *                         method is static.
+	 */
+	private void createFrame(EventCursor event, ClassData actualCalleeData) {
 		// Determine defining class for call.
-		Vertex definingCalleeVertex = vertexMap.get(className);
-		ClassData definingCalleeData = (ClassData)definingCalleeVertex.getUserDatum("tracevis.model.Program");
+		ClassData definingCalleeData = classes[event.getClassID()];
 
 		// Determine actual (object) class for call.
-		ClassData actualCalleeData = objectMap.get(objectID);
-		Vertex actualCalleeVertex;
-		if (actualCalleeData != null) {
-			actualCalleeVertex = actualCalleeData.getVertex();
-		} else {
+		if (actualCalleeData == null) {
 			// Assume this method is static.
-			actualCalleeVertex = definingCalleeVertex;
 			actualCalleeData = definingCalleeData;
 		}
 
-		// Determine callee.
-		Vertex calleeVertex = null;
-		switch (callAssignment) {
-			case DEFINING_CLASS:
-				calleeData = definingCalleeData;
-				calleeVertex = definingCalleeVertex;
-				break;
-			case OBJECT_CLASS:
-				calleeData = actualCalleeData;
-				calleeVertex = actualCalleeVertex;
-				break;
-		}
-
-
-		calleeMap.put(event, calleeData);
+		event.setFrameID(frames.intern(definingCalleeData, actualCalleeData,
+		                               event.getMethodID()));
+	}
 
+	/**
+	 * Pushes the frame of the call made by the specified method entry onto
+	 * the specified call stack, and records the caller and the callee of the
+	 * call.
+	 * @param event the specified method entry, of which the frame has been
+	 *              created.
+	 * @param callStack the call stack of the thread of the event.
+	 */
+	private void enterMethod(EventCursor event, CallStack callStack) {
+		int frameID = event.getFrameID();
+		event.setCallee(getAssignedClass(frameID).getIndex());
 		if (callStack.depth() > 0) {
-			// Determine caller.
-			Frame callerFrame = callStack.top();
-			switch (callAssignment) {
-				case DEFINING_CLASS:
-					callerData = callerFrame.getDefiningClass();
-					break;
-				case OBJECT_CLASS:
-					callerData = callerFrame.getActualClass();
-					break;
-			}
+			event.setCaller(getAssignedClass(callStack.top()).getIndex());
+		}
 
-			// Check if there's an edge between caller and callee.
-			Vertex callerVertex = callerData.getVertex();
-			Edge edge = callerVertex.findEdge(calleeVertex);
-			if (edge == null) {
-				edge = callGraph.addEdge(new DirectedSparseEdge(callerVertex, calleeVertex));
-				CallData callData = new CallData(edge);
-				edge.addUserDatum("tracevis.model.Program", callData, UserData.SHARED);
-			}
+		callStack.push(frameID);
+	}
 
-			callerMap.put(event, callerData);
-		}
+	/**
+	 * Pops the frame left by the specified method exit or frame pop off the
+	 * specified call stack, and records the caller and the callee of the
+	 * call.
+	 * @param event the specified method exit or frame pop.
+	 * @param callStack the call stack of the thread of the event.
+	 */
+	private void exitMethod(EventCursor event, CallStack callStack) {
+		int frameID = callStack.top();
+		event.setCallee(getAssignedClass(frameID).getIndex());
+		event.setFrameID(frameID);
 
-		Frame frame = new Frame(definingCalleeData, actualCalleeData, objectID, methodName);
-		callStack.push(frame);
+		callStack.pop();
 
-		event.setFrame(frame);
+		if (callStack.depth() > 0) {
+			event.setCaller(getAssignedClass(callStack.top()).getIndex());
+		}
 	}
 
-	@Override
-	public void visit(MethodExitEvent event) {
-		ClassData calleeData = null;
-		ClassData callerData = null;
-		long threadID = event.getThreadID();
-
-		CallStack callStack = getCallStack(threadID);
-		Frame frame = callStack.top();
+	/**
+	 * Returns the class the call of the frame with the specified ID is
+	 * assigned to.
+	 */
+	private ClassData getAssignedClass(int frameID) {
+		Frame frame = frames.get(frameID);
 		switch (callAssignment) {
 			case DEFINING_CLASS:
-				calleeData = frame.getDefiningClass();
-				break;
+				return frame.getDefiningClass();
 			case OBJECT_CLASS:
-				calleeData = frame.getActualClass();
-				break;
+				return frame.getActualClass();
+			default:
+				return null;
 		}
-		event.setFrame(frame);
-
-		callStack.pop();
-
-		if (callStack.depth() > 0) {
-			Frame callerFrame = callStack.top();
-			switch (callAssignment) {
-				case DEFINING_CLASS:
-					callerData = callerFrame.getDefiningClass();
-					break;
-				case OBJECT_CLASS:
-					callerData = callerFrame.getActualClass();
-					break;
-			}
+	}
 
-			callerMap.put(event, callerData);
+	/**
+	 * Adds an edge from the specified caller to the specified callee to the
+	 * graph, unless there is one already.
+	 */
+	private void addEdge(ClassData callerData, ClassData calleeData) {
+		if (calls.get(callerData, calleeData) == null) {
+			Edge edge = callGraph.addEdge(new CallEdge(callerData.getVertex(),
+			                                           calleeData.getVertex()));
+			CallData callData = new CallData(edge, symbols);
+			edge.addUserDatum("tracevis.model.Program", callData, UserData.SHARED);
+			calls.put(callerData, calleeData, callData);
 		}
-
-		calleeMap.put(event, calleeData);
 	}
 
 	@Override
-	public void visit(ObjectAllocationEvent event) {
-		Vertex classVertex = vertexMap.get(event.getClassName());
-		ClassData classData = (ClassData)classVertex.getUserDatum("tracevis.model.Program");
+	public void visitObjectAllocation(EventCursor event) {
+		int classID = event.getClassID();
 		long objectID = event.getObjectID();
-		objectMap.put(objectID, classData);
+		if (classes[classID] != null) {
+			objectMap.put(objectID, classID);
+		} else {
+			objectMap.remove(objectID);
+		}
+	}
+
+	/**
+	 * Returns the class data of the class of the specified object, or null
+	 * if the allocation of the object is not in the trace.
+	 */
+	private ClassData getObjectClass(long objectID) {
+		int classID = objectMap.get(objectID);
+		return classID != -1 ? classes[classID] : null;
 	}
 
 	private CallStack getCallStack(long threadID) {
@@ -282,15 +477,30 @@ public class GraphBuilder extends EventVisitor {
 		return vertexMap;
 	}
 
-	public Map<Long, ClassData> getObjectMap() {
-		return objectMap;
+	/**
+	 * Returns the class data of each class, indexed by the ID of its name.
+	 * The class data of an inner class is the class data of its enclosing
+	 * class if inner classes are hidden.
+	 */
+	public ClassData[] getClasses() {
+		return classes;
 	}
 
-	public Map<Event, ClassData> getCallerMap() {
-		return callerMap;
+	/**
+	 * Returns the index of the calls between the classes, which holds every
+	 * edge of the graph.
+	 */
+	public CallIndex getCallIndex() {
+		return calls;
 	}
 
-	public Map<Event, ClassData> getCalleeMap() {
-		return calleeMap;
+	/**
+	 * Returns the class data of each vertex which was created, indexed by
+	 * {@link ClassData#getIndex()}. This includes the vertices which were
+	 * removed from the graph because they have no calls.
+	 */
+	public ClassData[] getVertices() {
+		return Arrays.copyOf(vertices, vertexCount);
 	}
+
 }
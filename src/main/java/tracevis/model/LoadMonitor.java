@@ -0,0 +1,32 @@
+package tracevis.model;
+
+import tracevis.model.types.LoadPhase;
+
+/**
+ * Call-back interface for following the progress of loading a trace. The
+ * methods are called on the thread which loads the trace.
+ */
+public interface LoadMonitor {
+
+	/**
+	 * Signals that the specified phase has started.
+	 * @param phase the specified phase.
+	 * @param total the amount of work in the phase, in the unit of the phase,
+	 *              or -1 if it is not known.
+	 */
+	void phaseStarted(LoadPhase phase, long total);
+
+	/**
+	 * Signals that the specified amount of work in the current phase has
+	 * been done, in addition to the work signalled before.
+	 * @param amount the specified amount.
+	 */
+	void worked(long amount);
+
+	/**
+	 * Returns whether the load should be abandoned. The load checks this
+	 * after every piece of work it signals.
+	 */
+	boolean isCanceled();
+
+}
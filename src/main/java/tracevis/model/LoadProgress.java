@@ -0,0 +1,105 @@
+package tracevis.model;
+
+import java.util.concurrent.CancellationException;
+
+import tracevis.model.types.LoadPhase;
+
+/**
+ * Reports the progress of a load to a monitor, if there is one, and abandons
+ * the load when the monitor cancels it.
+ */
+final class LoadProgress {
+	/** Progress which is not reported to anyone. */
+	static final LoadProgress NONE = new LoadProgress(null);
+
+	/** The number of events between two reports of a pass over the events. */
+	static final int EVENT_INTERVAL = 1 << 16;
+
+	private final LoadMonitor monitor;
+
+	// The phase which was started last, the amount of work in it and the
+	// amount done, which are only kept if there is a monitor.
+	private LoadPhase phase;
+	private long total;
+	private long done;
+
+	/**
+	 * Creates a new instance of LoadProgress.
+	 * @param monitor the monitor to report to, or null.
+	 */
+	public LoadProgress(LoadMonitor monitor) {
+		this.monitor = monitor;
+	}
+
+	/**
+	 * Reports that the specified phase has started.
+	 * @param phase the specified phase.
+	 * @param total the amount of work in the phase, or -1 if it is not known.
+	 * @throws CancellationException if the load has been canceled.
+	 */
+	public void startPhase(LoadPhase phase, long total) {
+		if (monitor != null) {
+			this.phase = phase;
+			this.total = total;
+			done = 0;
+			monitor.phaseStarted(phase, total);
+			checkCanceled();
+		}
+	}
+
+	/**
+	 * Returns the phase which was started last, or null if there is none or
+	 * there is no monitor.
+	 */
+	public LoadPhase getPhase() {
+		return phase;
+	}
+
+	/**
+	 * Returns the amount of work in the phase which was started last.
+	 */
+	public long getTotal() {
+		return total;
+	}
+
+	/**
+	 * Returns the amount of work done in the phase which was started last.
+	 */
+	public long getDone() {
+		return done;
+	}
+
+	/**
+	 * Reports that the specified phase has started again, after another
+	 * phase interrupted it, and has done the specified amount of work.
+	 * @param phase the specified phase, or null if no phase was interrupted.
+	 * @param total the amount of work in the phase, or -1 if it is not known.
+	 * @param done the amount of work done.
+	 * @throws CancellationException if the load has been canceled.
+	 */
+	public void resumePhase(LoadPhase phase, long total, long done) {
+		if (phase != null) {
+			startPhase(phase, total);
+			worked(done);
+		}
+	}
+
+	/**
+	 * Reports that the specified amount of work has been done.
+	 * @param amount the specified amount.
+	 * @throws CancellationException if the load has been canceled.
+	 */
+	public void worked(long amount) {
+		if (monitor != null) {
+			done += amount;
+			monitor.worked(amount);
+			checkCanceled();
+		}
+	}
+
+	private void checkCanceled() {
+		if (monitor.isCanceled()) {
+			throw new CancellationException("The load was canceled.");
+		}
+	}
+}
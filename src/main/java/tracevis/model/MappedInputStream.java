@@ -0,0 +1,94 @@
+package tracevis.model;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+
+/**
+ * An input stream over a range of a file, which is mapped into memory a
+ * window at a time. Reads are bulk copies out of the mapping, without system
+ * calls or intermediate buffers.
+ */
+class MappedInputStream extends InputStream {
+	private static final long WINDOW_SIZE = 1L << 30;
+
+	private final FileChannel channel;
+	private long position;
+	private final long end;
+
+	private MappedByteBuffer window;
+
+	/**
+	 * Creates a new instance of MappedInputStream over the whole of the
+	 * specified channel.
+	 * @param channel the specified channel.
+	 * @throws IOException if the size of the channel could not be determined.
+	 */
+	public MappedInputStream(FileChannel channel) throws IOException {
+		this(channel, 0, channel.size());
+	}
+
+	/**
+	 * Creates a new instance of MappedInputStream over the bytes between
+	 * start (inclusive) and end (exclusive) of the specified channel.
+	 * @param channel the specified channel.
+	 * @param start the position of the first byte to read.
+	 * @param end the position following the last byte to read.
+	 */
+	public MappedInputStream(FileChannel channel, long start, long end) {
+		this.channel = channel;
+		this.position = start;
+		this.end = end;
+	}
+
+	/**
+	 * Reads a byte straight from the mapping, so that the stream does not
+	 * need to be buffered to read small values quickly.
+	 */
+	@Override
+	public int read() throws IOException {
+		if (!nextWindow()) {
+			return -1;
+		}
+		return window.get() & 0xff;
+	}
+
+	@Override
+	public int read(byte[] b, int off, int len) throws IOException {
+		if (len == 0) {
+			return 0;
+		}
+		if (!nextWindow()) {
+			return -1;
+		}
+
+		int read = Math.min(len, window.remaining());
+		window.get(b, off, read);
+		return read;
+	}
+
+	/**
+	 * Maps the next window if the current one has been read, and returns
+	 * whether there is anything left to read.
+	 */
+	private boolean nextWindow() throws IOException {
+		if (window == null || !window.hasRemaining()) {
+			if (position >= end) {
+				return false;
+			}
+			long size = Math.min(WINDOW_SIZE, end - position);
+			window = channel.map(FileChannel.MapMode.READ_ONLY, position, size);
+			position += size;
+		}
+		return true;
+	}
+
+	/**
+	 * Closes the stream, but not the underlying channel.
+	 */
+	@Override
+	public void close() {
+		window = null;
+	}
+}
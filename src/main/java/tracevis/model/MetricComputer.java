@@ -8,18 +8,28 @@
 
 package tracevis.model;
 
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
 
 import tracevis.model.types.CallData;
+import tracevis.model.types.CallSegment;
 import tracevis.model.types.ClassData;
-import tracevis.model.types.Event;
-import tracevis.model.types.FramePopEvent;
-import tracevis.model.types.MethodEntryEvent;
-import tracevis.model.types.MethodExitEvent;
-import tracevis.model.types.ObjectAllocationEvent;
-import tracevis.model.types.ObjectFreeEvent;
+import tracevis.model.types.ClassSegment;
+import tracevis.model.types.EventCursor;
+import tracevis.model.types.EventStore;
+import tracevis.model.types.EventType;
+import tracevis.model.types.LoadPhase;
+import tracevis.model.types.Range;
+import tracevis.model.types.SymbolTable;
+import tracevis.utilities.LongIntMap;
+import tracevis.utilities.LongObjectMap;
 import edu.uci.ics.jung.graph.Edge;
 import edu.uci.ics.jung.graph.Graph;
 import edu.uci.ics.jung.graph.Vertex;
@@ -31,33 +41,206 @@ import edu.uci.ics.jung.utils.GraphUtils;
  */
 public class MetricComputer extends EventVisitor {
 	private final ProgramInterface program;
+	private LoadProgress progress;
+	private int parallelism;
+
+	// The IDs of the qualified names under which the calls of methods of
+	// hidden inner classes are counted, by class and method ID.
+	private final LongIntMap innerMethods;
+
+	/**
+	 * The events of which the filtered state flipped which are registered
+	 * with a class or a call, in ascending order.
+	 */
+	private static class FlippedEvents {
+		int[] events = new int[4];
+		int eventCount;
+
+		void addEvent(int event) {
+			// The event of a call of a class to itself is added once.
+			if (eventCount > 0 && events[eventCount - 1] == event) {
+				return;
+			}
+			if (eventCount == events.length) {
+				events = Arrays.copyOf(events, 2 * eventCount);
+			}
+			events[eventCount++] = event;
+		}
+
+		/**
+		 * Returns the events which are registered once the flipped events
+		 * are: each of the events which were registered once, without the
+		 * flipped events that were registered and with those that were not.
+		 * @param registered the events which were registered, in ascending
+		 *                   order.
+		 */
+		int[] flip(int[] registered) {
+			int[] result = new int[registered.length + eventCount];
+			int size = 0;
+			int i = 0;
+			int j = 0;
+			while (i < registered.length || j < eventCount) {
+				if (j == eventCount || (i < registered.length && registered[i] < events[j])) {
+					if (size == 0 || result[size - 1] != registered[i]) {
+						result[size++] = registered[i];
+					}
+					i++;
+				} else if (i == registered.length || events[j] < registered[i]) {
+					result[size++] = events[j++];
+				} else {
+					int event = events[j++];
+					while (i < registered.length && registered[i] == event) {
+						i++;
+					}
+				}
+			}
+			return Arrays.copyOf(result, size);
+		}
+	}
+
+	/**
+	 * The deltas of a metric at the times of the flipped events, in order of
+	 * time.
+	 */
+	private static class Deltas {
+		long[] times = new long[4];
+		int[] deltas = new int[4];
+		int count;
+
+		void add(long time, int delta) {
+			if (count == times.length) {
+				times = Arrays.copyOf(times, 2 * count);
+				deltas = Arrays.copyOf(deltas, 2 * count);
+			}
+			times[count] = time;
+			deltas[count] = delta;
+			count++;
+		}
+	}
+
+	/**
+	 * The changes to the metrics of a class by the flipped events.
+	 */
+	private static class ClassChanges extends FlippedEvents {
+		final ClassData classData;
+		final Deltas callsSent = new Deltas();
+		final Deltas callsReceived = new Deltas();
+		final Deltas instanceCount = new Deltas();
+
+		ClassChanges(ClassData classData) {
+			this.classData = classData;
+		}
+	}
+
+	/**
+	 * The changes to the call counts of a call by the flipped events, with
+	 * the ID of the called method of each delta.
+	 */
+	private static class CallChanges extends FlippedEvents {
+		final CallData callData;
+		final Deltas callCount = new Deltas();
+		int[] methods = new int[4];
+
+		CallChanges(CallData callData) {
+			this.callData = callData;
+		}
+
+		void change(int method, long time, int delta) {
+			if (callCount.count == methods.length) {
+				methods = Arrays.copyOf(methods, 2 * callCount.count);
+			}
+			methods[callCount.count] = method;
+			callCount.add(time, delta);
+		}
+
+		/**
+		 * Copies the times and deltas of the specified method to the
+		 * specified arrays, and returns how many there are.
+		 */
+		int select(int method, long[] methodTimes, int[] methodDeltas) {
+			int count = 0;
+			for (int i = 0; i < callCount.count; i++) {
+				if (methods[i] == method) {
+					methodTimes[count] = callCount.times[i];
+					methodDeltas[count] = callCount.deltas[i];
+					count++;
+				}
+			}
+			return count;
+		}
+	}
+
+	// The changes collected by updateMetrics: those of each class, indexed
+	// by the index of its vertex, and those of each call, by the indices of
+	// its caller and callee, each in the order of their first change.
+	private ClassChanges[] classChanges;
+	private final List<ClassChanges> changedClasses;
+	private final LongObjectMap<CallChanges> callChanges;
+	private final List<CallChanges> changedCalls;
 
 	/**
 	 * Creates a new instance of MetricUpdater.
 	 */
 	public MetricComputer(ProgramInterface program) {
 		this.program = program;
+		this.progress = LoadProgress.NONE;
+		this.parallelism = Runtime.getRuntime().availableProcessors();
+		this.innerMethods = new LongIntMap(-1);
+		this.classChanges = new ClassChanges[16];
+		this.changedClasses = new ArrayList<ClassChanges>();
+		this.callChanges = new LongObjectMap<CallChanges>();
+		this.changedCalls = new ArrayList<CallChanges>();
+	}
+
+	/**
+	 * Sets the progress to report the number of events visited to.
+	 * @param progress the specified progress.
+	 */
+	void setProgress(LoadProgress progress) {
+		this.progress = progress;
+	}
+
+	/**
+	 * Sets the number of threads on which the metrics are computed from all
+	 * events. With a parallelism of 1, the metrics are computed in a single
+	 * pass over the events.
+	 * @param parallelism the number of threads.
+	 */
+	void setParallelism(int parallelism) {
+		this.parallelism = parallelism;
 	}
 
-	public void computeMetrics(List<Event> events, boolean firstTime,
+	public void computeMetrics(EventStore events, boolean firstTime,
 	                           long startTime, long endTime)
 	{
 		Graph callGraph = program.getCallGraph();
 
 		for (Vertex vertex : (Set<Vertex>)callGraph.getVertices()) {
 			ClassData classData = (ClassData)vertex.getUserDatum("tracevis.model.Program");
-			classData.startComputation(firstTime);
+			classData.startComputation(events, firstTime);
 		}
 
 		for (Edge edge : (Set<Edge>)callGraph.getEdges()) {
 			CallData callData = (CallData)edge.getUserDatum("tracevis.model.Program");
-			callData.startComputation(firstTime);
+			callData.startComputation(events, firstTime);
 		}
 
-		for (Event event : events) {
-			if (!event.isFiltered()) {
-				visit(event);
+		progress.startPhase(LoadPhase.COMPUTING_METRICS, events.size());
+		if (parallelism <= 1 || events.size() < parallelism) {
+			int visited = 0;
+			EventCursor event = events.cursor();
+			while (event.next()) {
+				if (!event.isFiltered()) {
+					visit(event);
+				}
+				if (++visited == LoadProgress.EVENT_INTERVAL) {
+					progress.worked(visited);
+					visited = 0;
+				}
 			}
+			progress.worked(visited);
+		} else {
+			computeParts(events);
 		}
 
 		Set<Vertex> unconnectedVertices = new HashSet<Vertex>();
@@ -78,88 +261,476 @@ public class MetricComputer extends EventVisitor {
 		}
 	}
 
+	/**
+	 * Computes the metrics on several threads. The events are split into
+	 * parts of consecutive events, of which the metrics are computed in
+	 * parallel, each as if no events came before it. The segments of each
+	 * class and call are then appended to it in the order of the parts,
+	 * which carries the counts over from one part to the next, so that the
+	 * metrics are the same as those computed in a single pass.
+	 */
+	private void computeParts(EventStore events) {
+		ForkJoinPool pool = new ForkJoinPool(parallelism);
+		try {
+			List<ForkJoinTask<Part>> tasks = new ArrayList<ForkJoinTask<Part>>();
+			for (int i = 0; i < parallelism; i++) {
+				int begin = (int)((long) events.size() * i / parallelism);
+				int end = (int)((long) events.size() * (i + 1) / parallelism);
+				tasks.add(pool.submit(new Part(events, begin, end)));
+			}
+			for (ForkJoinTask<Part> task : tasks) {
+				Part part = task.join();
+				for (ClassSegment segment : part.classSegments) {
+					if (segment != null) {
+						segment.getClassData().append(segment);
+					}
+				}
+				int[] innerMethodIDs = new int[part.innerMethodCount];
+				for (int i = 0; i < part.innerMethodCount; i++) {
+					long key = part.innerMethodKeys[i];
+					innerMethodIDs[i] = getInnerMethodID((int)(key >>> 32), (int) key);
+				}
+				for (CallSegment segment : part.callSegments) {
+					segment.resolveMethods(innerMethodIDs);
+					segment.getCallData().append(segment);
+				}
+				progress.worked(part.end - part.begin);
+			}
+		} finally {
+			pool.shutdownNow();
+		}
+	}
+
+	/**
+	 * Updates the metrics after the filtered state of the specified events
+	 * has flipped, instead of computing them from all events. Only the
+	 * classes and calls these events belong to are changed: the deltas of
+	 * the flipped events are added to their metrics at the times of the
+	 * events, which are in order of time, and the activity of the classes
+	 * is computed again from the events registered with them. When most of
+	 * the events flipped, the metrics are computed from all events instead,
+	 * which also resets the state of the classes.
+	 * @param events the events of the trace.
+	 * @param flipped the indices of the events of which the filtered state
+	 *                flipped.
+	 * @param startTime the start time of the trace.
+	 * @param endTime the end time of the trace.
+	 * @return whether the metrics were computed from all events.
+	 */
+	public boolean updateMetrics(EventStore events, BitSet flipped, long startTime, long endTime) {
+		if (flipped.cardinality() > events.size() / 2) {
+			computeMetrics(events, false, startTime, endTime);
+			return true;
+		}
+
+		Arrays.fill(classChanges, null);
+		changedClasses.clear();
+		callChanges.clear();
+		changedCalls.clear();
+		EventCursor event = events.cursor();
+		for (int index = flipped.nextSetBit(0); index >= 0; index = flipped.nextSetBit(index + 1)) {
+			event.moveTo(index);
+			int delta = event.isFiltered() ? -1 : 1;
+			switch (event.getType()) {
+				case METHOD_ENTRY:
+				case METHOD_EXIT:
+				case FRAME_POP:
+					ClassData callerData = program.getCaller(index);
+					ClassData calleeData = program.getCallee(index);
+					ClassChanges callee = getChanges(calleeData);
+					callee.addEvent(index);
+					if (callerData != null) {
+						ClassChanges caller = getChanges(callerData);
+						caller.addEvent(index);
+						CallChanges call = getChanges(callerData, calleeData);
+						call.addEvent(index);
+
+						if (event.getType() == EventType.METHOD_ENTRY) {
+							caller.callsSent.add(event.getTime(), delta);
+							callee.callsReceived.add(event.getTime(), delta);
+							call.change(getMethodID(event), event.getTime(), delta);
+						}
+					}
+					break;
+				case OBJECT_ALLOCATION:
+				case OBJECT_FREE:
+					if (event.getType() == EventType.OBJECT_FREE) {
+						delta = -delta;
+					}
+					ClassData classData = program.getClassData(event.getClassID());
+					getChanges(classData).instanceCount.add(event.getTime(), delta);
+					break;
+				default:
+					break;
+			}
+		}
+
+		Range trace = new Range(Long.MIN_VALUE, Long.MAX_VALUE);
+		for (ClassChanges changes : changedClasses) {
+			ClassData classData = changes.classData;
+			if (changes.callsSent.count > 0) {
+				classData.changeCallsSent(changes.callsSent.times, changes.callsSent.deltas,
+				                          changes.callsSent.count);
+			}
+			if (changes.callsReceived.count > 0) {
+				classData.changeCallsReceived(changes.callsReceived.times,
+				                              changes.callsReceived.deltas,
+				                              changes.callsReceived.count);
+			}
+			if (changes.instanceCount.count > 0) {
+				classData.changeInstanceCount(changes.instanceCount.times,
+				                              changes.instanceCount.deltas,
+				                              changes.instanceCount.count);
+			}
+			if (changes.eventCount > 0) {
+				// The activity before the first flipped event stays the
+				// same, up to the last time the class was inactive.
+				long inactiveTime =
+					classData.getInactiveTimeBefore(events.getTime(changes.events[0]));
+				Range changed = inactiveTime > Long.MIN_VALUE ?
+				                new Range(inactiveTime + 1, Long.MAX_VALUE) : trace;
+				recomputeActivity(events, classData, inactiveTime,
+				                  changes.flip(classData.getEvents(changed)), endTime);
+			}
+		}
+
+		for (CallChanges changes : changedCalls) {
+			CallData callData = changes.callData;
+			int[] methods = Arrays.copyOf(changes.methods, changes.callCount.count);
+			Arrays.sort(methods);
+			long[] times = new long[methods.length];
+			int[] deltas = new int[methods.length];
+			for (int i = 0; i < methods.length; i++) {
+				if (i == 0 || methods[i] != methods[i - 1]) {
+					int count = changes.select(methods[i], times, deltas);
+					callData.changeCallCount(methods[i], times, deltas, count);
+				}
+			}
+			callData.setEvents(changes.flip(callData.getEvents(trace)));
+		}
+		return false;
+	}
+
+	private ClassChanges getChanges(ClassData classData) {
+		int index = classData.getIndex();
+		if (index >= classChanges.length) {
+			classChanges = Arrays.copyOf(classChanges,
+			                             Math.max(index + 1, 2 * classChanges.length));
+		}
+		ClassChanges changes = classChanges[index];
+		if (changes == null) {
+			changes = new ClassChanges(classData);
+			classChanges[index] = changes;
+			changedClasses.add(changes);
+		}
+		return changes;
+	}
+
+	private CallChanges getChanges(ClassData callerData, ClassData calleeData) {
+		long key = ((long) callerData.getIndex() << 32) | calleeData.getIndex();
+		CallChanges changes = callChanges.get(key);
+		if (changes == null) {
+			changes = new CallChanges(callerData.getCallData(calleeData));
+			callChanges.put(key, changes);
+			changedCalls.add(changes);
+		}
+		return changes;
+	}
+
+	/**
+	 * Computes the activity of the specified class after the specified time
+	 * again from the specified events, and registers these events with it,
+	 * in the same way as when all events are visited.
+	 */
+	private void recomputeActivity(EventStore events, ClassData classData, long inactiveTime,
+	                               int[] registered, long endTime)
+	{
+		classData.restartActivity(inactiveTime);
+		for (int index : registered) {
+			long time = events.getTime(index);
+			ClassData callerData = program.getCaller(index);
+			ClassData calleeData = program.getCallee(index);
+			if (events.getType(index) == EventType.METHOD_ENTRY) {
+				if (calleeData == classData) {
+					classData.increaseActivityCount(time);
+					classData.registerEvent(index);
+				}
+				if (callerData == classData) {
+					classData.decreaseActivityCount(time);
+					classData.registerEvent(index);
+				}
+			} else {
+				if (callerData == classData) {
+					classData.increaseActivityCount(time);
+					classData.registerEvent(index);
+				}
+				if (calleeData == classData) {
+					classData.decreaseActivityCount(time);
+					classData.registerEvent(index);
+				}
+			}
+		}
+		classData.finishActivity(endTime);
+	}
+
 	@Override
-	public void visit(FramePopEvent event) {
-		ClassData callerData = program.getCaller(event);
-		ClassData calleeData = program.getCallee(event);
+	public void visitFramePop(EventCursor event) {
+		ClassData callerData = program.getCaller(event.getIndex());
+		ClassData calleeData = program.getCallee(event.getIndex());
 
 		if (callerData != null) {
 			callerData.increaseActivityCount(event.getTime());
-			callerData.registerEvent(event);
+			callerData.registerEvent(event.getIndex());
 
-			Vertex callerVertex = callerData.getVertex();
-			Vertex calleeVertex = calleeData.getVertex();
-			Edge edge = callerVertex.findEdge(calleeVertex);
-			CallData callData = (CallData)edge.getUserDatum("tracevis.model.Program");
-			callData.registerEvent(event);
+			CallData callData = callerData.getCallData(calleeData);
+			callData.registerEvent(event.getIndex());
 		}
 
 		calleeData.decreaseActivityCount(event.getTime());
-		calleeData.registerEvent(event);
+		calleeData.registerEvent(event.getIndex());
 	}
 
 	@Override
-	public void visit(MethodEntryEvent event) {
-		ClassData callerData = program.getCaller(event);
-		ClassData calleeData = program.getCallee(event);
+	public void visitMethodEntry(EventCursor event) {
+		ClassData callerData = program.getCaller(event.getIndex());
+		ClassData calleeData = program.getCallee(event.getIndex());
 
 		calleeData.increaseActivityCount(event.getTime());
-		calleeData.registerEvent(event);
+		calleeData.registerEvent(event.getIndex());
 
 		if (callerData != null) {
 			CallData callData = callerData.getCallData(calleeData);
-			String className = event.getClassName();
-			String methodName = event.getMethodName();
-			if (ProgramUtilities.isInnerClass(className) && program.getHideInnerClasses()) {
-				String innerClassName = ProgramUtilities.getInnerClassName(className);
-				innerClassName = innerClassName.replace('$', '.');
-				callData.registerCall(innerClassName + "." + methodName, event.getTime());
-			} else {
-				callData.registerCall(methodName, event.getTime());
-			}
-			callData.registerEvent(event);
+			callData.registerCall(getMethodID(event), event.getTime());
+			callData.registerEvent(event.getIndex());
 
 			callerData.increaseCallsSent(event.getTime());
 			callerData.decreaseActivityCount(event.getTime());
-			callerData.registerEvent(event);
+			callerData.registerEvent(event.getIndex());
 
 			calleeData.increaseCallsReceived(event.getTime());
 		}
 	}
 
+	/**
+	 * Returns the ID of the name under which the calls of the method entered
+	 * by the specified event are counted.
+	 */
+	private int getMethodID(EventCursor event) {
+		// The class data of a hidden inner class is that of its enclosing
+		// class.
+		int classID = event.getClassID();
+		int methodID = event.getMethodID();
+		if (program.getClassData(classID).getID() != classID) {
+			methodID = getInnerMethodID(classID, methodID);
+		}
+		return methodID;
+	}
+
+	/**
+	 * Returns the ID of the name under which the calls of the specified
+	 * method of an inner class are counted: the method name qualified by the
+	 * name of the inner class, without the name of the enclosing class.
+	 * The name is added to the symbol table the first time. When the metrics
+	 * are computed on several threads, this is done as the parts are merged,
+	 * in the order in which the methods are first called, so that the names
+	 * are numbered as in a single pass.
+	 */
+	private int getInnerMethodID(int classID, int methodID) {
+		long key = ((long) classID << 32) | methodID;
+		int innerMethodID = innerMethods.get(key);
+		if (innerMethodID == -1) {
+			SymbolTable symbols = program.getSymbolTable();
+			String className = symbols.getClassName(classID);
+			String innerClassName = ProgramUtilities.getInnerClassName(className);
+			innerClassName = innerClassName.replace('$', '.');
+			innerMethodID = symbols.getMethodID(innerClassName + "." +
+			                                    symbols.getMethodName(methodID));
+			innerMethods.put(key, innerMethodID);
+		}
+		return innerMethodID;
+	}
+
 	@Override
-	public void visit(MethodExitEvent event) {
-		ClassData callerData = program.getCaller(event);
-		ClassData calleeData = program.getCallee(event);
+	public void visitMethodExit(EventCursor event) {
+		ClassData callerData = program.getCaller(event.getIndex());
+		ClassData calleeData = program.getCallee(event.getIndex());
 
 		if (callerData != null) {
 			callerData.increaseActivityCount(event.getTime());
-			callerData.registerEvent(event);
+			callerData.registerEvent(event.getIndex());
 
-			Vertex callerVertex = callerData.getVertex();
-			Vertex calleeVertex = calleeData.getVertex();
-			Edge edge = callerVertex.findEdge(calleeVertex);
-			CallData callData = (CallData)edge.getUserDatum("tracevis.model.Program");
-			callData.registerEvent(event);
+			CallData callData = callerData.getCallData(calleeData);
+			callData.registerEvent(event.getIndex());
 		}
 
 		calleeData.decreaseActivityCount(event.getTime());
-		calleeData.registerEvent(event);
+		calleeData.registerEvent(event.getIndex());
 	}
 
 	@Override
-	public void visit(ObjectAllocationEvent event) {
-		String className = event.getClassName();
-		ClassData classData = program.getClassData(className);
+	public void visitObjectAllocation(EventCursor event) {
+		ClassData classData = program.getClassData(event.getClassID());
 
 		classData.increaseInstanceCount(event.getTime());
 	}
 
 	@Override
-	public void visit(ObjectFreeEvent event) {
-		String className = event.getClassName();
-		ClassData classData = program.getClassData(className);
+	public void visitObjectFree(EventCursor event) {
+		ClassData classData = program.getClassData(event.getClassID());
 
 		classData.decreaseInstanceCount(event.getTime());
 	}
+
+	/**
+	 * The metrics computed from a part of the events, on a thread of its
+	 * own. The events are visited in the same way as by the single pass, but
+	 * the metrics are counted in segments of the classes and calls, since
+	 * those are not changed by several threads at once.
+	 */
+	private class Part extends EventVisitor implements Callable<Part> {
+		private final EventStore events;
+		private final int begin;
+		private final int end;
+
+		// The segment of each class, indexed by the index of its vertex.
+		private ClassSegment[] classSegments;
+		private final List<CallSegment> callSegments;
+		private final LongObjectMap<CallSegment> callIndex;
+
+		// The methods of hidden inner classes called in the part, in the
+		// order of their first calls. Until they are numbered in the merge,
+		// their calls are counted under the IDs -1, -2, ... in that order.
+		private final LongIntMap innerMethods;
+		private long[] innerMethodKeys;
+		private int innerMethodCount;
+
+		public Part(EventStore events, int begin, int end) {
+			this.events = events;
+			this.begin = begin;
+			this.end = end;
+			this.classSegments = new ClassSegment[16];
+			this.callSegments = new ArrayList<CallSegment>();
+			this.callIndex = new LongObjectMap<CallSegment>();
+			this.innerMethods = new LongIntMap(0);
+			this.innerMethodKeys = new long[4];
+			this.innerMethodCount = 0;
+		}
+
+		@Override
+		public Part call() {
+			EventCursor event = events.cursor();
+			for (int i = begin; i < end; i++) {
+				event.moveTo(i);
+				if (!event.isFiltered()) {
+					visit(event);
+				}
+			}
+			return this;
+		}
+
+		private ClassSegment getSegment(ClassData classData) {
+			int index = classData.getIndex();
+			if (index >= classSegments.length) {
+				classSegments = Arrays.copyOf(classSegments,
+				                              Math.max(index + 1, 2 * classSegments.length));
+			}
+			ClassSegment segment = classSegments[index];
+			if (segment == null) {
+				segment = new ClassSegment(classData, events);
+				classSegments[index] = segment;
+			}
+			return segment;
+		}
+
+		private CallSegment getSegment(ClassData callerData, ClassData calleeData) {
+			long key = ((long) callerData.getIndex() << 32) | calleeData.getIndex();
+			CallSegment segment = callIndex.get(key);
+			if (segment == null) {
+				segment = new CallSegment(callerData.getCallData(calleeData), events);
+				callIndex.put(key, segment);
+				callSegments.add(segment);
+			}
+			return segment;
+		}
+
+		/**
+		 * Returns the ID under which the calls of the method entered by the
+		 * specified event are counted, which is provisional for a method of
+		 * a hidden inner class.
+		 */
+		private int getMethodID(EventCursor event) {
+			int classID = event.getClassID();
+			int methodID = event.getMethodID();
+			if (program.getClassData(classID).getID() != classID) {
+				long key = ((long) classID << 32) | methodID;
+				methodID = innerMethods.get(key);
+				if (methodID == 0) {
+					if (innerMethodCount == innerMethodKeys.length) {
+						innerMethodKeys = Arrays.copyOf(innerMethodKeys, 2 * innerMethodCount);
+					}
+					innerMethodKeys[innerMethodCount++] = key;
+					methodID = -innerMethodCount;
+					innerMethods.put(key, methodID);
+				}
+			}
+			return methodID;
+		}
+
+		@Override
+		public void visitFramePop(EventCursor event) {
+			visitMethodExit(event);
+		}
+
+		@Override
+		public void visitMethodEntry(EventCursor event) {
+			ClassData callerData = program.getCaller(event.getIndex());
+			ClassData calleeData = program.getCallee(event.getIndex());
+			ClassSegment callee = getSegment(calleeData);
+
+			callee.increaseActivityCount(event.getTime(), event.getIndex());
+
+			if (callerData != null) {
+				CallSegment call = getSegment(callerData, calleeData);
+				call.registerCall(getMethodID(event), event.getTime());
+				call.registerEvent(event.getIndex());
+
+				ClassSegment caller = getSegment(callerData);
+				caller.increaseCallsSent(event.getTime());
+				caller.decreaseActivityCount(event.getTime(), event.getIndex());
+
+				callee.increaseCallsReceived(event.getTime());
+			}
+		}
+
+		@Override
+		public void visitMethodExit(EventCursor event) {
+			ClassData callerData = program.getCaller(event.getIndex());
+			ClassData calleeData = program.getCallee(event.getIndex());
+
+			if (callerData != null) {
+				ClassSegment caller = getSegment(callerData);
+				caller.increaseActivityCount(event.getTime(), event.getIndex());
+
+				CallSegment call = getSegment(callerData, calleeData);
+				call.registerEvent(event.getIndex());
+			}
+
+			ClassSegment callee = getSegment(calleeData);
+			callee.decreaseActivityCount(event.getTime(), event.getIndex());
+		}
+
+		@Override
+		public void visitObjectAllocation(EventCursor event) {
+			ClassData classData = program.getClassData(event.getClassID());
+
+			getSegment(classData).increaseInstanceCount(event.getTime());
+		}
+
+		@Override
+		public void visitObjectFree(EventCursor event) {
+			ClassData classData = program.getClassData(event.getClassID());
+
+			getSegment(classData).decreaseInstanceCount(event.getTime());
+		}
+	}
 }
@@ -0,0 +1,402 @@
+package tracevis.model;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+
+import static tracevis.model.BinaryTraceFormat.*;
+
+/**
+ * Parser for a trace file which parses chunks of the trace in parallel on a
+ * fork/join pool. Text traces are split at line boundaries, binary traces at
+ * section boundaries and block traces into their blocks. Every chunk is parsed into its own event buffer; the
+ * buffers are passed on to the program in the order of the trace, while later
+ * chunks are still being parsed.
+ */
+class ParallelTraceReader {
+	/** The default approximate number of bytes in a chunk. */
+	static final int CHUNK_SIZE = 1 << 22;
+
+	private final ProgramEventInterface program;
+	private final ForkJoinPool pool;
+	private final int chunkSize;
+	private final int maxPending;
+
+	// The chunks which have been submitted, but not yet passed on.
+	private final Deque<ForkJoinTask<Chunk>> pending;
+	private long lineCount;
+	private LoadProgress progress;
+
+	/**
+	 * The events parsed from a chunk.
+	 */
+	private static class Chunk {
+		EventBuffer events;
+		long byteCount;
+		long lineCount;
+		long malformedLine = -1;
+	}
+
+	/**
+	 * Creates a new instance of ParallelTraceReader.
+	 * @param program the Program instance to pass events on to.
+	 * @param pool the pool to parse chunks on.
+	 */
+	public ParallelTraceReader(ProgramEventInterface program, ForkJoinPool pool) {
+		this(program, pool, CHUNK_SIZE);
+	}
+
+	/**
+	 * Creates a new instance of ParallelTraceReader.
+	 * @param program the Program instance to pass events on to.
+	 * @param pool the pool to parse chunks on.
+	 * @param chunkSize the approximate number of bytes in a chunk.
+	 */
+	public ParallelTraceReader(ProgramEventInterface program, ForkJoinPool pool, int chunkSize) {
+		this.program = program;
+		this.pool = pool;
+		this.chunkSize = chunkSize;
+		this.maxPending = 2 * pool.getParallelism() + 2;
+		this.pending = new ArrayDeque<ForkJoinTask<Chunk>>();
+		this.progress = LoadProgress.NONE;
+	}
+
+	/**
+	 * Sets the progress to report the number of bytes read to. The bytes of
+	 * a chunk are reported once its events have been passed on.
+	 * @param progress the specified progress.
+	 */
+	void setProgress(LoadProgress progress) {
+		this.progress = progress;
+	}
+
+	/**
+	 * Reads a text trace from the specified input stream. The stream is read,
+	 * and decompressed if need be, on the calling thread.
+	 * @param inputStream the specified input stream.
+	 * @throws IOException if the trace could not be read.
+	 */
+	public void readText(InputStream inputStream) throws IOException {
+		try {
+			byte[] chunk = new byte[chunkSize];
+			int length = 0;
+
+			int read;
+			while ((read = inputStream.read(chunk, length, chunk.length - length)) != -1) {
+				length += read;
+				if (length < chunk.length) {
+					continue;
+				}
+
+				int end = length;
+				while (end > 0 && chunk[end - 1] != '\n') {
+					end--;
+				}
+				if (end == 0) {
+					// A single line does not fit in the chunk.
+					chunk = Arrays.copyOf(chunk, 2 * chunk.length);
+					continue;
+				}
+
+				byte[] next = new byte[Math.max(chunkSize, 2 * (length - end))];
+				System.arraycopy(chunk, end, next, 0, length - end);
+				submitText(chunk, end);
+				chunk = next;
+				length -= end;
+			}
+			submitText(chunk, length);
+
+			finish();
+		} finally {
+			cancel();
+			inputStream.close();
+		}
+	}
+
+	/**
+	 * Reads an uncompressed text trace from the specified channel. Every chunk
+	 * is mapped and parsed by a task of its own.
+	 * @param channel the specified channel.
+	 * @throws IOException if the trace could not be read.
+	 */
+	public void readText(final FileChannel channel) throws IOException {
+		try {
+			long size = channel.size();
+			long start = 0;
+			while (start < size) {
+				long end = nextLine(channel, Math.min(start + chunkSize, size));
+				final long chunkStart = start;
+				final int length = (int) (end - start);
+				submit(new Callable<Chunk>() {
+					@Override
+					public Chunk call() throws IOException {
+						byte[] chunk = new byte[length];
+						readFully(new MappedInputStream(channel, chunkStart, chunkStart + length), chunk);
+						return parseText(chunk, length);
+					}
+				});
+				start = end;
+			}
+
+			finish();
+		} finally {
+			cancel();
+			channel.close();
+		}
+	}
+
+	/**
+	 * Reads a binary trace from the specified channel. The symbols of the
+	 * trace are read first, after which runs of sections are mapped and
+	 * parsed by tasks of their own.
+	 * @param channel the specified channel.
+	 * @throws IOException if the trace could not be read.
+	 */
+	public void readBinary(final FileChannel channel) throws IOException {
+		try {
+			byte[] magic = new byte[MAGIC.length];
+			readFully(channel, 0, magic);
+			if (!isBinaryTrace(magic, magic.length)) {
+				throw new IOException("The file is not a binary trace.");
+			}
+
+			// Collect the symbols, and the positions of the runs of sections.
+			final BinaryTraceReader symbols = new BinaryTraceReader(null);
+			long size = channel.size();
+			long position = MAGIC.length;
+			long runStart = position;
+			byte[] header = new byte[SECTION_HEADER_SIZE];
+			List<long[]> runs = new ArrayList<long[]>();
+			while (!symbols.isEnded()) {
+				if (size - position < SECTION_HEADER_SIZE) {
+					throw new IOException("The binary trace is truncated.");
+				}
+				readFully(channel, position, header);
+				byte kind = header[0];
+				int length = readInt(header, 1);
+				long next = position + SECTION_HEADER_SIZE + length;
+				if (length < 0 || next > size) {
+					throw new IOException("The binary trace is truncated.");
+				}
+
+				if (kind == SYMBOLS || kind == END) {
+					byte[] payload = new byte[length];
+					readFully(channel, position + SECTION_HEADER_SIZE, payload);
+					symbols.readSection(kind, payload, 0, length);
+				}
+				if (kind == END) {
+					if (position > runStart) {
+						runs.add(new long[] {runStart, position});
+					}
+				} else if (next - runStart >= chunkSize) {
+					runs.add(new long[] {runStart, next});
+					runStart = next;
+				}
+				position = next;
+			}
+
+			for (long[] run : runs) {
+				final long start = run[0];
+				final long end = run[1];
+				submit(new Callable<Chunk>() {
+					@Override
+					public Chunk call() throws IOException {
+						Chunk chunk = new Chunk();
+						chunk.events = new EventBuffer((int) ((end - start) / 6));
+						chunk.byteCount = end - start;
+						new BinaryTraceReader(chunk.events, symbols).readTrace(
+							new MappedInputStream(channel, start, end));
+						return chunk;
+					}
+				});
+			}
+
+			finish();
+		} finally {
+			cancel();
+			channel.close();
+		}
+	}
+
+	/**
+	 * Reads the blocks between first (inclusive) and last (exclusive) of the
+	 * specified block trace. Every block is decompressed and parsed by a task
+	 * of its own.
+	 * @param trace the specified block trace.
+	 * @param first the index of the first block to read.
+	 * @param last the index following the last block to read.
+	 * @throws IOException if the blocks could not be read.
+	 */
+	public void readBlocks(final BlockTraceReader trace, int first, int last) throws IOException {
+		try {
+			for (int block = first; block < last; block++) {
+				final int index = block;
+				submit(new Callable<Chunk>() {
+					@Override
+					public Chunk call() throws IOException {
+						Chunk chunk = new Chunk();
+						chunk.events = new EventBuffer(trace.getEventCount(index));
+						chunk.byteCount = trace.getCompressedLength(index);
+						trace.readBlock(index, chunk.events);
+						return chunk;
+					}
+				});
+			}
+
+			finish();
+		} finally {
+			cancel();
+		}
+	}
+
+	/**
+	 * Submits a task which parses the first length bytes of the specified
+	 * text chunk.
+	 */
+	private void submitText(final byte[] chunk, final int length) throws IOException {
+		submit(new Callable<Chunk>() {
+			@Override
+			public Chunk call() {
+				return parseText(chunk, length);
+			}
+		});
+	}
+
+	/**
+	 * Parses the first length bytes of the specified text chunk, which
+	 * consist of whole lines only, except at the end of the trace.
+	 */
+	private static Chunk parseText(byte[] bytes, int length) {
+		Chunk chunk = new Chunk();
+		chunk.events = new EventBuffer(length / 32);
+		TextTraceReader reader = new TextTraceReader(chunk.events);
+		try {
+			int end = reader.readEvents(bytes, 0, length);
+			reader.readTrailer(bytes, end, length);
+		} catch (IOException e) {
+			// The line number within the trace is only known once all
+			// preceding chunks have been parsed.
+			chunk.malformedLine = reader.getLineCount();
+		}
+		chunk.lineCount = reader.getLineCount();
+		chunk.byteCount = length;
+		return chunk;
+	}
+
+	/**
+	 * Submits the specified task, and passes on the events of the oldest
+	 * chunks as long as too many chunks are pending.
+	 */
+	private void submit(Callable<Chunk> task) throws IOException {
+		pending.add(pool.submit(task));
+		while (pending.size() > maxPending) {
+			passOn();
+		}
+	}
+
+	/**
+	 * Passes on the events of all pending chunks.
+	 */
+	private void finish() throws IOException {
+		while (!pending.isEmpty()) {
+			passOn();
+		}
+	}
+
+	/**
+	 * Waits for the oldest pending chunk to be parsed, and passes its events
+	 * on to the program.
+	 */
+	private void passOn() throws IOException {
+		Chunk chunk;
+		try {
+			chunk = pending.peek().get();
+		} catch (InterruptedException e) {
+			throw new IOException("Interrupted while reading the trace.");
+		} catch (ExecutionException e) {
+			Throwable cause = e.getCause();
+			if (cause instanceof IOException) {
+				throw (IOException) cause;
+			} else if (cause instanceof RuntimeException) {
+				throw (RuntimeException) cause;
+			} else if (cause instanceof Error) {
+				throw (Error) cause;
+			} else {
+				throw new IOException(cause);
+			}
+		}
+		pending.poll();
+
+		if (chunk.malformedLine >= 0) {
+			throw TextTraceReader.malformed(lineCount + chunk.malformedLine);
+		}
+		chunk.events.replay(program);
+		lineCount += chunk.lineCount;
+		progress.worked(chunk.byteCount);
+	}
+
+	/**
+	 * Cancels the pending chunks, after reading has failed.
+	 */
+	private void cancel() {
+		for (ForkJoinTask<Chunk> task : pending) {
+			task.cancel(false);
+		}
+		pending.clear();
+	}
+
+	/**
+	 * Returns the position following the first newline at or after position
+	 * - 1 in the specified channel, or the size of the channel if there is no
+	 * such newline.
+	 */
+	private static long nextLine(FileChannel channel, long position) throws IOException {
+		long size = channel.size();
+		ByteBuffer buffer = ByteBuffer.allocate(1 << 12);
+		position = Math.max(position - 1, 0);
+		while (position < size) {
+			buffer.clear();
+			int read = channel.read(buffer, position);
+			for (int i = 0; i < read; i++) {
+				if (buffer.get(i) == '\n') {
+					return position + i + 1;
+				}
+			}
+			position += read;
+		}
+		return size;
+	}
+
+	private static void readFully(InputStream inputStream, byte[] bytes) throws IOException {
+		int length = 0;
+		while (length < bytes.length) {
+			int read = inputStream.read(bytes, length, bytes.length - length);
+			if (read == -1) {
+				throw new IOException("Unexpected end of the trace.");
+			}
+			length += read;
+		}
+		inputStream.close();
+	}
+
+	private static void readFully(FileChannel channel, long position, byte[] bytes)
+		throws IOException
+	{
+		ByteBuffer buffer = ByteBuffer.wrap(bytes);
+		while (buffer.hasRemaining()) {
+			if (channel.read(buffer, position + buffer.position()) == -1) {
+				throw new IOException("The binary trace is truncated.");
+			}
+		}
+	}
+}
@@ -8,8 +8,9 @@
 
 package tracevis.model;
 
-import java.io.InputStream;
-import java.util.ArrayList;
+import java.io.File;
+import java.io.IOException;
+import java.util.BitSet;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Iterator;
@@ -17,26 +18,19 @@ import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
-import java.util.zip.ZipEntry;
-import java.util.zip.ZipFile;
 
 import tracevis.model.types.CallAssignment;
 import tracevis.model.types.CallData;
 import tracevis.model.types.CallStack;
 import tracevis.model.types.ClassData;
-import tracevis.model.types.ClassLoadEvent;
-import tracevis.model.types.Event;
-import tracevis.model.types.FramePopEvent;
-import tracevis.model.types.MethodEntryEvent;
-import tracevis.model.types.MethodExitEvent;
-import tracevis.model.types.ObjectAllocationEvent;
-import tracevis.model.types.ObjectFreeEvent;
+import tracevis.model.types.EventCursor;
+import tracevis.model.types.EventStore;
+import tracevis.model.types.EventType;
+import tracevis.model.types.MetricWindow;
 import tracevis.model.types.ProgramListener;
-import tracevis.model.types.ThreadStartEvent;
-import tracevis.model.types.ThreadStopEvent;
-import tracevis.model.types.VMDeathEvent;
-import tracevis.model.types.VMInitEvent;
-import tracevis.utilities.StreamUtilities;
+import tracevis.model.types.SymbolTable;
+import tracevis.utilities.LongObjectMap;
+import tracevis.utilities.LongSet;
 import edu.uci.ics.jung.graph.Edge;
 import edu.uci.ics.jung.graph.Graph;
 import edu.uci.ics.jung.graph.Vertex;
@@ -49,6 +43,28 @@ import edu.uci.ics.jung.graph.impl.DirectedSparseGraph;
  * @author Pieter Deelen
  */
 public class Program implements ProgramInterface, ProgramEventInterface {
+	/** The factor by which each snapshot of a progressive load grows. */
+	public static final int SNAPSHOT_GROWTH = 4;
+
+	/**
+	 * The system property naming the directory to keep the events of loaded
+	 * traces in. When it is set, the events are kept in memory mapped files
+	 * in that directory instead of on the heap, so that the heap only holds
+	 * the graph and the metrics, which take about 50 bytes per event.
+	 */
+	public static final String EVENT_DIRECTORY_PROPERTY = "tracevis.eventDirectory";
+
+	/**
+	 * The system property which enables the cache of loaded traces when it
+	 * is <code>true</code>, for instance with
+	 * <code>-Dtracevis.snapshotCache=true</code>. A whole trace which is
+	 * loaded again with the same options is then read from a file next to it,
+	 * instead of being parsed, built and measured again. The cache is off by
+	 * default, since it writes a <code>.tvs</code> file holding all events of
+	 * the trace next to each trace which is opened.
+	 */
+	public static final String SNAPSHOT_CACHE_PROPERTY = "tracevis.snapshotCache";
+
 	private final List<ProgramListener> listeners;
 
 	private final Graph callGraph;
@@ -58,18 +74,23 @@ public class Program implements ProgramInterface, ProgramEventInterface {
 	private long currentTime;
 	private long metricStartTime;
 
-	private ArrayList<Event> events;
+	private EventStore events;
+	private EventCursor cursor;
 	private int eventIndex;
 
-	private ConstantPool constants;
+	private SymbolTable symbols;
 
-	private Map<Long, CallStack> callStacks;
-	private Set<Long> activeThreads;
+	private LongObjectMap<CallStack> callStacks;
+	private LongSet activeThreads;
 
 	private Map<String, Vertex> vertexMap;
+	private ClassData[] classes;
+	private ClassData[] vertices;
 
-	private Map<Event, ClassData> callerMap;
-	private Map<Event, ClassData> calleeMap;
+	// The window over which the classes and calls of the call graph count
+	// their metrics. Changing the time only moves the window; the metrics
+	// are computed when they are asked for.
+	private MetricWindow metricWindow;
 
 	private final ForwardStateUpdater forwardStateUpdater;
 	private final ReverseStateUpdater reverseStateUpdater;
@@ -86,6 +107,11 @@ public class Program implements ProgramInterface, ProgramEventInterface {
 		listeners = new LinkedList<ProgramListener>();
 
 		callGraph = new DirectedSparseGraph();
+		// The calls between two classes have a single edge, which CallIndex
+		// already ensures. Checking it again for every edge added to a large
+		// graph takes most of the time of restoring it from a cache.
+		callGraph.getEdgeConstraints().remove(Graph.NOT_PARALLEL_EDGE);
+		metricWindow = new MetricWindow();
 
 		forwardStateUpdater = new ForwardStateUpdater(this);
 		reverseStateUpdater = new ReverseStateUpdater(this);
@@ -94,12 +120,176 @@ public class Program implements ProgramInterface, ProgramEventInterface {
 	public void loadTrace(String fileName, boolean hideInnnerClasses,
 	                      CallAssignment callAssignment) throws Exception
 	{
-		// Clear the call graph. Just creating a new graph is not possible,
-		// because other classes keep a reference to the call graph.
-		callGraph.removeAllVertices();
-		callGraph.removeUserDatum("tracevis.model.Program");
+		loadTrace(fileName, hideInnnerClasses, callAssignment, Long.MIN_VALUE, Long.MAX_VALUE);
+	}
 
-		events = new ArrayList<Event>();
+	/**
+	 * Loads the part of a trace between the specified times. The loaded
+	 * program starts at fromTime with the classes, threads, objects and
+	 * open calls that existed at that time, and ends at toTime. Only the
+	 * events in the window are kept, so that the memory used and the time
+	 * spent building the graph and computing metrics depend on the size of
+	 * the window instead of on the size of the trace.
+	 * @param fileName the name of the trace file.
+	 * @param hideInnnerClasses whether inner classes are merged into their
+	 *                          enclosing classes.
+	 * @param callAssignment the class calls are assigned to.
+	 * @param fromTime the start of the window.
+	 * @param toTime the end of the window, inclusive.
+	 * @throws Exception if the trace could not be loaded.
+	 */
+	public void loadTrace(String fileName, boolean hideInnnerClasses,
+	                      CallAssignment callAssignment, long fromTime, long toTime)
+		throws Exception
+	{
+		adoptTrace(readTrace(fileName, hideInnnerClasses, callAssignment,
+		                     fromTime, toTime, null));
+	}
+
+	/**
+	 * Loads the part of a trace between the specified times into a new
+	 * program, which is not shown to any listeners. This does the work of
+	 * {@link #loadTrace(String, boolean, CallAssignment, long, long)}, and
+	 * can be done on a background thread, after which the result is shown by
+	 * {@link #adoptTrace(Program)}.
+	 * @param fileName the name of the trace file.
+	 * @param hideInnnerClasses whether inner classes are merged into their
+	 *                          enclosing classes.
+	 * @param callAssignment the class calls are assigned to.
+	 * @param fromTime the start of the window.
+	 * @param toTime the end of the window, inclusive.
+	 * @param monitor the monitor to report the progress of each phase to,
+	 *                which may cancel the load, or null.
+	 * @return the program with the loaded trace.
+	 * @throws java.util.concurrent.CancellationException if the monitor
+	 *         canceled the load.
+	 * @throws Exception if the trace could not be loaded.
+	 */
+	public static Program readTrace(String fileName, boolean hideInnnerClasses,
+	                                CallAssignment callAssignment, long fromTime,
+	                                long toTime, LoadMonitor monitor)
+		throws Exception
+	{
+		File file = new File(fileName);
+		boolean cached = isCacheEnabled() && fromTime == Long.MIN_VALUE && toTime == Long.MAX_VALUE;
+		long fingerprint = 0;
+		if (cached) {
+			fingerprint = SnapshotCache.fingerprint(file);
+			Program program = SnapshotCache.read(file, fingerprint, hideInnnerClasses, callAssignment);
+			if (program != null) {
+				return program;
+			}
+		}
+
+		Program program = new Program();
+		LoadProgress progress = new LoadProgress(monitor);
+		try {
+			TraceFile traceFile = program.startLoad(fileName, callAssignment, progress);
+			traceFile.read(program, fromTime, toTime);
+			program.finishLoad(hideInnnerClasses, progress);
+		} catch (Exception exc) {
+			program.closeEvents();
+			throw exc;
+		}
+
+		if (cached) {
+			SnapshotCache.write(program, file, fingerprint, hideInnnerClasses, callAssignment);
+		}
+		return program;
+	}
+
+	/**
+	 * Loads a trace progressively into new programs, which are not shown to
+	 * any listeners. First the specified number of events from the start of
+	 * the trace is loaded as a snapshot, then {@link #SNAPSHOT_GROWTH} times
+	 * as many, and so on until the whole trace has been loaded. The trace is
+	 * read once; each snapshot is taken while it is being read, from a copy
+	 * of the events read so far (see {@link #takeSnapshot}), so the first one
+	 * is available long before the trace has been read, and the snapshots
+	 * only add the time of building their call graphs and metrics.
+	 * @param fileName the name of the trace file.
+	 * @param hideInnnerClasses whether inner classes are merged into their
+	 *                          enclosing classes.
+	 * @param callAssignment the class calls are assigned to.
+	 * @param firstEventCount the number of events in the first snapshot.
+	 * @param listener the listener to pass every snapshot to, except for the
+	 *                 last one, which holds the whole trace.
+	 * @param monitor the monitor to report the progress of each phase to,
+	 *                which may cancel the load, or null.
+	 * @return the program with the whole trace.
+	 * @throws java.util.concurrent.CancellationException if the monitor
+	 *         canceled the load.
+	 * @throws Exception if the trace could not be loaded.
+	 */
+	public static Program streamTrace(String fileName, boolean hideInnnerClasses,
+	                                  CallAssignment callAssignment, long firstEventCount,
+	                                  SnapshotListener listener, LoadMonitor monitor)
+		throws Exception
+	{
+		File file = new File(fileName);
+		boolean cached = isCacheEnabled();
+		long fingerprint = 0;
+		if (cached) {
+			fingerprint = SnapshotCache.fingerprint(file);
+			Program program = SnapshotCache.read(file, fingerprint, hideInnnerClasses, callAssignment);
+			if (program != null) {
+				return program;
+			}
+		}
+
+		Program program = new Program();
+		LoadProgress progress = new LoadProgress(monitor);
+		try {
+			TraceFile traceFile = program.startLoad(fileName, callAssignment, progress);
+			traceFile.read(new SnapshotFilter(program, hideInnnerClasses, firstEventCount,
+			                                  listener, progress));
+			program.finishLoad(hideInnnerClasses, progress);
+		} catch (Exception exc) {
+			program.closeEvents();
+			throw exc;
+		}
+
+		if (cached) {
+			SnapshotCache.write(program, file, fingerprint, hideInnnerClasses, callAssignment);
+		}
+		return program;
+	}
+
+	/**
+	 * Returns a new program with the events of the trace read so far, as a
+	 * trace of its own which ends at the last of them. The events are copied,
+	 * so that the trace can be read on while the snapshot is in use; the
+	 * snapshot builds its own call graph and computes its own metrics.
+	 * @param hideInnnerClasses whether inner classes are merged into their
+	 *                          enclosing classes.
+	 * @param progress the progress to report building the snapshot to.
+	 */
+	Program takeSnapshot(boolean hideInnnerClasses, LoadProgress progress) {
+		Program snapshot = new Program();
+		try {
+			snapshot.startLoad(callAssignment);
+			snapshot.symbols = new SymbolTable(symbols);
+			events.copyTo(snapshot.events, events.size());
+			snapshot.startTime = startTime;
+			snapshot.handleVMDeath(events.getTime(events.size() - 1));
+			snapshot.finishLoad(hideInnnerClasses, progress);
+		} catch (IOException exc) {
+			snapshot.closeEvents();
+			throw new RuntimeException("Could not store the events of a snapshot: " +
+			                           exc.getMessage(), exc);
+		} catch (RuntimeException exc) {
+			snapshot.closeEvents();
+			throw exc;
+		}
+		return snapshot;
+	}
+
+	/**
+	 * Clears the trace, so that events can be added to it.
+	 */
+	private void startLoad(CallAssignment callAssignment) throws IOException {
+		events = createEventStore();
+		cursor = events.cursor();
 		eventIndex = 0;
 
 		startTime = 0;
@@ -107,63 +297,222 @@ public class Program implements ProgramInterface, ProgramEventInterface {
 		currentTime = 0;
 		metricStartTime = 0;
 
-		constants = new ConstantPool();
+		symbols = new SymbolTable();
 
 		this.callAssignment = callAssignment;
+	}
+
+	/**
+	 * Clears the trace, and returns the trace file to read the events of the
+	 * new trace from.
+	 */
+	private TraceFile startLoad(String fileName, CallAssignment callAssignment,
+	                            LoadProgress progress)
+		throws IOException
+	{
+		startLoad(callAssignment);
+
+		// The trace is read in a single pass, in whichever format it is
+		// stored; the event list grows as events are read.
+		TraceFile traceFile = new TraceFile(new File(fileName));
+		traceFile.setProgress(progress);
+		return traceFile;
+	}
+
+	/**
+	 * Returns a new, empty event store, which keeps the events in the
+	 * directory named by {@link #EVENT_DIRECTORY_PROPERTY} if it is set.
+	 * @throws IOException if the files of the events could not be created.
+	 */
+	static EventStore createEventStore() throws IOException {
+		File eventDirectory = getEventDirectory();
+		if (eventDirectory != null) {
+			return new EventStore(eventDirectory);
+		} else {
+			return new EventStore();
+		}
+	}
+
+	/**
+	 * Returns the directory named by {@link #EVENT_DIRECTORY_PROPERTY}, or
+	 * null if it is not set.
+	 */
+	static File getEventDirectory() {
+		String eventDirectory = System.getProperty(EVENT_DIRECTORY_PROPERTY);
+		return eventDirectory != null ? new File(eventDirectory) : null;
+	}
 
-		ZipFile zipFile = new ZipFile(fileName);
-		ZipEntry zipEntry = zipFile.getEntry("trace");
-		InputStream trace = zipFile.getInputStream(zipEntry);
+	/**
+	 * Returns whether loaded traces are cached, as set by
+	 * {@link #SNAPSHOT_CACHE_PROPERTY}.
+	 */
+	private static boolean isCacheEnabled() {
+		return Boolean.getBoolean(SNAPSHOT_CACHE_PROPERTY);
+	}
 
-		// Determine the number of events in the trace.
-		int eventCount = StreamUtilities.lineCount(trace);
-		events.ensureCapacity(eventCount);
-		System.out.println(eventCount);
+	/**
+	 * Releases the files or memory holding the events, if any.
+	 */
+	private void closeEvents() {
+		if (events != null) {
+			events.close();
+		}
+	}
 
-		trace = zipFile.getInputStream(zipEntry);
-		TraceReader reader = new TraceReader(this);
-		reader.readTrace(trace);
-		zipFile.close();
+	/**
+	 * Builds the call graph and computes the metrics of the events that have
+	 * been read.
+	 */
+	private void finishLoad(boolean hideInnnerClasses, LoadProgress progress) {
+		events.trimToSize();
 
-		GraphBuilder graphBuilder = new GraphBuilder(callGraph, hideInnnerClasses, callAssignment);
+		GraphBuilder graphBuilder = new GraphBuilder(callGraph, hideInnnerClasses, callAssignment,
+		                                             symbols);
+		graphBuilder.setProgress(progress);
 		graphBuilder.buildGraph(events, startTime, endTime);
 		vertexMap = graphBuilder.getVertexMap();
-		callerMap = graphBuilder.getCallerMap();
-		calleeMap = graphBuilder.getCalleeMap();
+		classes = graphBuilder.getClasses();
+		vertices = graphBuilder.getVertices();
 
 		System.out.println(callGraph.getVertices().size());
 
-		callStacks = new HashMap<Long, CallStack>();
-		activeThreads = new HashSet<Long>();
+		callStacks = new LongObjectMap<CallStack>();
+		activeThreads = new LongSet();
 
 		MetricComputer metricComputer = new MetricComputer(this);
+		metricComputer.setProgress(progress);
 		metricComputer.computeMetrics(events, true, startTime, endTime);
 
-		classMethodFilter = new ClassMethodFilter(callAssignment);
+		classMethodFilter = new ClassMethodFilter(callAssignment, symbols);
 
 		currentTime = startTime;
 		metricStartTime = startTime;
+		attachMetricWindow();
+	}
+
+	/**
+	 * Sets up the trace of this program from a load which was read from the
+	 * snapshot cache, instead of from the trace file. The call graph should
+	 * already hold the classes and calls of the trace.
+	 */
+	void restoreLoad(SymbolTable symbols, EventStore events, ClassData[] classes,
+	                 ClassData[] vertices, CallAssignment callAssignment,
+	                 long startTime, long endTime)
+	{
+		this.symbols = symbols;
+		this.events = events;
+		cursor = events.cursor();
+		eventIndex = 0;
+
+		this.startTime = startTime;
+		this.endTime = endTime;
+		currentTime = startTime;
+		metricStartTime = startTime;
+
+		this.callAssignment = callAssignment;
+
+		this.classes = classes;
+		this.vertices = vertices;
+		vertexMap = new HashMap<String, Vertex>();
+		for (int classID = 0; classID < classes.length; classID++) {
+			if (classes[classID] != null) {
+				vertexMap.put(symbols.getClassName(classID), classes[classID].getVertex());
+			}
+		}
+
+		callStacks = new LongObjectMap<CallStack>();
+		activeThreads = new LongSet();
+		attachMetricWindow();
+
+		classMethodFilter = new ClassMethodFilter(callAssignment, symbols);
+	}
+
+	/**
+	 * Replaces the trace of this program by the trace loaded into the
+	 * specified program, and notifies the listeners. The specified program
+	 * should not be used afterwards. When the program is shown, this must be
+	 * called on the event dispatching thread.
+	 * @param loaded the program with the loaded trace.
+	 */
+	public void adoptTrace(Program loaded) {
+		// Move the loaded graph into the call graph. Just using the new graph
+		// is not possible, because other classes keep a reference to the call
+		// graph.
+		callGraph.removeAllVertices();
+		callGraph.removeUserDatum("tracevis.model.Program");
+
+		Set<Vertex> loadedVertices = new HashSet<Vertex>(loaded.callGraph.getVertices());
+		Set<Edge> edges = new HashSet<Edge>(loaded.callGraph.getEdges());
+		loaded.callGraph.removeAllVertices();
+		for (Vertex vertex : loadedVertices) {
+			callGraph.addVertex(vertex);
+		}
+		for (Edge edge : edges) {
+			callGraph.addEdge(edge);
+		}
+
+		if (events != loaded.events) {
+			closeEvents();
+		}
+		events = loaded.events;
+		cursor = loaded.cursor;
+		eventIndex = loaded.eventIndex;
+
+		startTime = loaded.startTime;
+		endTime = loaded.endTime;
+		currentTime = loaded.currentTime;
+		metricStartTime = loaded.metricStartTime;
+
+		symbols = loaded.symbols;
+		callAssignment = loaded.callAssignment;
+		hideInnerClasses = loaded.hideInnerClasses;
+
+		vertexMap = loaded.vertexMap;
+		classes = loaded.classes;
+		vertices = loaded.vertices;
+		metricWindow = loaded.metricWindow;
+
+		callStacks = loaded.callStacks;
+		activeThreads = loaded.activeThreads;
+		classMethodFilter = loaded.classMethodFilter;
 
 		fireTraceLoaded();
 	}
 
 	private void applyFilter(EventFilter eventFilter) {
+		// Only the metrics of the classes and calls of the events which are
+		// filtered out or in by this filter are computed again.
+		events.collectFlippedEvents();
 		eventFilter.filter(events);
+		BitSet flipped = events.takeFlippedEvents();
 
 		MetricComputer metricComputer = new MetricComputer(this);
-		metricComputer.computeMetrics(events, false, startTime, endTime);
+		if (metricComputer.updateMetrics(events, flipped, startTime, endTime)) {
+			restoreState();
+		} else {
+			restoreState(flipped);
+		}
 
-		// Reset state.
-		activeThreads = new HashSet<Long>();
+		updateMetrics();
+		fireTraceFiltered();
+	}
 
-		for (Long threadID : callStacks.keySet()) {
-			callStacks.put(threadID, new CallStack());
+	/**
+	 * Restores the state at the current time by replaying all events up to
+	 * that time.
+	 */
+	private void restoreState() {
+		// Reset state.
+		activeThreads.clear();
+		callStacks.clear();
+		for (ClassData classData : vertices) {
+			classData.resetState();
 		}
 
 		// Replay all events upto current time to restore state.
 		eventIndex = 0;
 		while (eventIndex < events.size() - 1) {
-			Event event = events.get(eventIndex + 1);
+			EventCursor event = eventAt(eventIndex + 1);
 			if (event.getTime() <= currentTime) {
 				if (!event.isFiltered()) {
 					forwardStateUpdater.visit(event);
@@ -173,9 +522,39 @@ public class Program implements ProgramInterface, ProgramEventInterface {
 				break;
 			}
 		}
+	}
 
-		updateMetrics();
-		fireTraceFiltered();
+	/**
+	 * Restores the state at the current time after the filtered state of the
+	 * specified events has flipped. The state before the first flipped event
+	 * stays the same, so only the events from that one up to the current
+	 * time are undone, as they were filtered, and replayed, unless that
+	 * takes longer than replaying all events up to the current time.
+	 * @param flipped the indices of the events of which the filtered state
+	 *                flipped.
+	 */
+	private void restoreState(BitSet flipped) {
+		int first = Math.max(1, flipped.nextSetBit(0));
+		if (flipped.isEmpty() || first > eventIndex) {
+			return;
+		}
+		if (2 * (eventIndex - first + 1) > eventIndex) {
+			restoreState();
+			return;
+		}
+
+		for (int index = eventIndex; index >= first; index--) {
+			EventCursor event = eventAt(index);
+			if (event.isFiltered() == flipped.get(index)) {
+				reverseStateUpdater.visit(event);
+			}
+		}
+		for (int index = first; index <= eventIndex; index++) {
+			EventCursor event = eventAt(index);
+			if (!event.isFiltered()) {
+				forwardStateUpdater.visit(event);
+			}
+		}
 	}
 
 
@@ -193,11 +572,11 @@ public class Program implements ProgramInterface, ProgramEventInterface {
 	}
 
 	public void initFilter() {
-		applyFilter(new ConstructorFilter());
+		applyFilter(new ConstructorFilter(symbols));
 	}
 
 	public void noInitFilter() {
-		classMethodFilter = new ClassMethodFilter(callAssignment);
+		classMethodFilter = new ClassMethodFilter(callAssignment, symbols);
 		Iterator<?> vertexIt = callGraph.getVertices().iterator();
 		while (vertexIt.hasNext()) {
 			ClassData classData = (ClassData)((Vertex)vertexIt.next()).getUserDatum("tracevis.model.Program");
@@ -211,7 +590,7 @@ public class Program implements ProgramInterface, ProgramEventInterface {
 	}
 
 	public void unfilter() {
-		classMethodFilter = new ClassMethodFilter(callAssignment);
+		classMethodFilter = new ClassMethodFilter(callAssignment, symbols);
 		applyFilter(classMethodFilter);
 	}
 
@@ -233,6 +612,31 @@ public class Program implements ProgramInterface, ProgramEventInterface {
 		return (ClassData)classVertex.getUserDatum("tracevis.model.Program");
 	}
 
+	@Override
+	public ClassData getClassData(int classID) {
+		return classes[classID];
+	}
+
+	/**
+	 * Returns the class data of each class, indexed by the ID of its name.
+	 */
+	ClassData[] getClasses() {
+		return classes;
+	}
+
+	/**
+	 * Returns the class data of each vertex, indexed by
+	 * {@link ClassData#getIndex()}.
+	 */
+	ClassData[] getVertices() {
+		return vertices;
+	}
+
+	@Override
+	public SymbolTable getSymbolTable() {
+		return symbols;
+	}
+
 	/*
 	 * Methods related to program event listeners.
 	 */
@@ -282,24 +686,39 @@ public class Program implements ProgramInterface, ProgramEventInterface {
 	}
 
 	/**
-	 * Updates the metrics for all vertices and edges.
+	 * Lets the classes and calls of the call graph count their metrics over
+	 * the metric window of this program. Should be called whenever a trace
+	 * has been loaded; the classes and calls keep the window when their
+	 * metrics are computed again.
 	 */
-	private void updateMetrics() {
+	private void attachMetricWindow() {
 		for (Vertex vertex : (Set<Vertex>)callGraph.getVertices()) {
 			ClassData classData = (ClassData)vertex.getUserDatum("tracevis.model.Program");
-			classData.updateMetrics(metricStartTime, currentTime);
+			classData.setMetricWindow(metricWindow);
 		}
 
 		for (Edge edge : (Set<Edge>)callGraph.getEdges()) {
 			CallData callData = (CallData)edge.getUserDatum("tracevis.model.Program");
-			callData.updateMetrics(metricStartTime, currentTime);
+			callData.setMetricWindow(metricWindow);
 		}
+		updateMetrics();
+	}
+
+	/**
+	 * Updates the metrics for all vertices and edges to only include the
+	 * events between the metric start time and the current time. Only the
+	 * window is moved; the metric of a class or a call is computed when it
+	 * is asked for, so the cost of a time change is in the classes and calls
+	 * that are shown.
+	 */
+	private void updateMetrics() {
+		metricWindow.moveTo(metricStartTime, currentTime);
 	}
 
 	public void setCurrentTime(long newCurrentTime) {
 		if (currentTime < newCurrentTime) {
 			while (eventIndex < events.size() - 1) {
-				Event event = events.get(eventIndex + 1);
+				EventCursor event = eventAt(eventIndex + 1);
 				if (event.getTime() <= newCurrentTime) {
 					if (!event.isFiltered()) {
 						forwardStateUpdater.visit(event);
@@ -311,7 +730,7 @@ public class Program implements ProgramInterface, ProgramEventInterface {
 			}
 		} else {
 			while (eventIndex > 0) {
-				Event event = events.get(eventIndex);
+				EventCursor event = eventAt(eventIndex);
 				if (event.getTime() >= newCurrentTime) {
 					if (!event.isFiltered()) {
 						reverseStateUpdater.visit(event);
@@ -332,7 +751,7 @@ public class Program implements ProgramInterface, ProgramEventInterface {
 		// Search for the next unfiltered event.
 		while (eventIndex < events.size() - 1) {
 			eventIndex++;
-			Event event = events.get(eventIndex);
+			EventCursor event = eventAt(eventIndex);
 			if (!event.isFiltered()) {
 				break;
 			}
@@ -340,7 +759,7 @@ public class Program implements ProgramInterface, ProgramEventInterface {
 
 		// Execute the next unfiltered event.
 		if (eventIndex < events.size()) {
-			Event event = events.get(eventIndex);
+			EventCursor event = eventAt(eventIndex);
 
 			forwardStateUpdater.visit(event);
 
@@ -348,17 +767,17 @@ public class Program implements ProgramInterface, ProgramEventInterface {
 			updateMetrics();
 			fireTimeChanged();
 
-			if (event instanceof MethodEntryEvent) {
-				ClassData caller = getCaller(event);
-				ClassData callee = getCallee(event);
+			if (event.getType() == EventType.METHOD_ENTRY) {
+				ClassData caller = getCaller(event.getIndex());
+				ClassData callee = getCallee(event.getIndex());
 				fireMethodEntered(caller, callee);
-			} else if (event instanceof MethodExitEvent) {
-				ClassData caller = getCaller(event);
-				ClassData callee = getCallee(event);
+			} else if (event.getType() == EventType.METHOD_EXIT) {
+				ClassData caller = getCaller(event.getIndex());
+				ClassData callee = getCallee(event.getIndex());
 				fireMethodExited(caller, callee);
-			} else if (event instanceof FramePopEvent) {
-				ClassData caller = getCaller(event);
-				ClassData callee = getCallee(event);
+			} else if (event.getType() == EventType.FRAME_POP) {
+				ClassData caller = getCaller(event.getIndex());
+				ClassData callee = getCallee(event.getIndex());
 				fireMethodExited(caller, callee);
 			}
 		}
@@ -367,7 +786,7 @@ public class Program implements ProgramInterface, ProgramEventInterface {
 	public void jumpToPreviousEvent() {
 		// Search for the last unfiltered event.
 		while (eventIndex > 0) {
-			Event event = events.get(eventIndex);
+			EventCursor event = eventAt(eventIndex);
 			if (!event.isFiltered()) {
 				break;
 			}
@@ -377,7 +796,7 @@ public class Program implements ProgramInterface, ProgramEventInterface {
 		// If the current time does not coincide with the time of the last event
 		// jump to the last event. Otherwise, jump undo the last event, and jump
 		// to the before last unfiltered event.
-		Event event = events.get(eventIndex);
+		EventCursor event = eventAt(eventIndex);
 		if (event.getTime() < currentTime) {
 			currentTime = event.getTime();
 			fireTimeChanged();
@@ -386,28 +805,28 @@ public class Program implements ProgramInterface, ProgramEventInterface {
 			eventIndex--;
 
 			while (eventIndex > 0) {
-				event = events.get(eventIndex);
+				event = eventAt(eventIndex);
 				if (!event.isFiltered()) {
 					break;
 				}
 				eventIndex--;
 			}
 
-			currentTime = (event).getTime();
+			currentTime = event.getTime();
 			updateMetrics();
 			fireTimeChanged();
 
-			if (event instanceof MethodEntryEvent) {
-				ClassData caller = getCaller(event);
-				ClassData callee = getCallee(event);
+			if (event.getType() == EventType.METHOD_ENTRY) {
+				ClassData caller = getCaller(event.getIndex());
+				ClassData callee = getCallee(event.getIndex());
 				fireMethodExited(caller, callee);
-			} else if (event instanceof MethodExitEvent) {
-				ClassData caller = getCaller(event);
-				ClassData callee = getCallee(event);
+			} else if (event.getType() == EventType.METHOD_EXIT) {
+				ClassData caller = getCaller(event.getIndex());
+				ClassData callee = getCallee(event.getIndex());
 				fireMethodEntered(caller, callee);
-			} else if (event instanceof FramePopEvent) {
-				ClassData caller = getCaller(event);
-				ClassData callee = getCallee(event);
+			} else if (event.getType() == EventType.FRAME_POP) {
+				ClassData caller = getCaller(event.getIndex());
+				ClassData callee = getCallee(event.getIndex());
 				fireMethodEntered(caller, callee);
 			}
 		}
@@ -451,7 +870,7 @@ public class Program implements ProgramInterface, ProgramEventInterface {
 	 * @see tracevis.model.ProgramInterface#getActiveThreads()
 	 */
 	@Override
-	public Set<Long> getActiveThreads() {
+	public LongSet getActiveThreads() {
 		return activeThreads;
 	}
 
@@ -465,19 +884,36 @@ public class Program implements ProgramInterface, ProgramEventInterface {
 	}
 
 	/* (non-Javadoc)
-	 * @see tracevis.model.ProgramInterface#getCaller(tracevis.model.types.Event)
+	 * @see tracevis.model.ProgramInterface#getCaller(int)
 	 */
 	@Override
-	public ClassData getCaller(Event event) {
-		return callerMap.get(event);
+	public ClassData getCaller(int event) {
+		int vertex = events.getCaller(event);
+		return vertex != -1 ? vertices[vertex] : null;
 	}
 
 	/* (non-Javadoc)
-	 * @see tracevis.model.ProgramInterface#getCallee(tracevis.model.types.Event)
+	 * @see tracevis.model.ProgramInterface#getCallee(int)
 	 */
 	@Override
-	public ClassData getCallee(Event event) {
-		return calleeMap.get(event);
+	public ClassData getCallee(int event) {
+		int vertex = events.getCallee(event);
+		return vertex != -1 ? vertices[vertex] : null;
+	}
+
+	/**
+	 * Returns the events of the trace.
+	 */
+	public EventStore getEvents() {
+		return events;
+	}
+
+	/**
+	 * Returns the cursor of the program, positioned at the specified event.
+	 */
+	private EventCursor eventAt(int index) {
+		cursor.moveTo(index);
+		return cursor;
 	}
 
 	/*
@@ -488,83 +924,58 @@ public class Program implements ProgramInterface, ProgramEventInterface {
 	public void handleMethodEntry(long timeStamp, long threadID, String className,
 	                       String methodName, long objectID)
 	{
-		String classNameConstant = constants.getConstant(className);
-		String methodNameConstant = constants.getConstant(methodName);
-
-		Event event = new MethodEntryEvent(timeStamp,
-		                                   threadID, classNameConstant,
-		                                   methodNameConstant, objectID);
-		events.add(event);
-
+		events.addMethodEvent(EventType.METHOD_ENTRY, timeStamp, threadID,
+		                      symbols.getClassID(className),
+		                      symbols.getMethodID(methodName), objectID);
 	}
 
 	@Override
 	public void handleMethodExit(long timeStamp, long threadID, String className,
 	                      String methodName)
 	{
-		String classNameConstant = constants.getConstant(className);
-		String methodNameConstant = constants.getConstant(methodName);
-
-		Event event = new MethodExitEvent(timeStamp,
-		                                  threadID, classNameConstant,
-		                                  methodNameConstant);
-		events.add(event);
+		events.addMethodEvent(EventType.METHOD_EXIT, timeStamp, threadID,
+		                      symbols.getClassID(className),
+		                      symbols.getMethodID(methodName), 0);
 	}
 
 	@Override
 	public void handleFramePop(long timeStamp, long threadID, String className, String methodName) {
-			String classNameConstant = constants.getConstant(className);
-			String methodNameConstant = constants.getConstant(methodName);
-
-			Event event = new FramePopEvent(timeStamp, threadID,
-			                                classNameConstant,
-			                                methodNameConstant);
-			events.add(event);
+		events.addMethodEvent(EventType.FRAME_POP, timeStamp, threadID,
+		                      symbols.getClassID(className),
+		                      symbols.getMethodID(methodName), 0);
 	}
 
 	@Override
 	public void handleThreadStart(long timeStamp, long threadID) {
-		Event event = new ThreadStartEvent(timeStamp, threadID);
-		events.add(event);
+		events.addThreadEvent(EventType.THREAD_START, timeStamp, threadID);
 	}
 
 	@Override
 	public void handleThreadStop(long timeStamp, long threadID) {
-		Event event = new ThreadStopEvent(timeStamp, threadID);
-		events.add(event);
+		events.addThreadEvent(EventType.THREAD_STOP, timeStamp, threadID);
 	}
 
 	@Override
 	public void handleClassLoad(long timeStamp, String className) {
-		String classNameConstant = constants.getConstant(className);
-
-		Event event = new ClassLoadEvent(timeStamp,
-		                                 classNameConstant);
-		events.add(event);
+		events.addClassEvent(EventType.CLASS_LOAD, timeStamp,
+		                     symbols.getClassID(className), 0);
 	}
 
 	@Override
 	public void handleObjectAllocation(long timeStamp, String className, long objectID) {
-		String classNameConstant = constants.getConstant(className);
-
-		Event event = new ObjectAllocationEvent(timeStamp,
-		                                        classNameConstant, objectID);
-		events.add(event);
+		events.addClassEvent(EventType.OBJECT_ALLOCATION, timeStamp,
+		                     symbols.getClassID(className), objectID);
 	}
 
 	@Override
 	public void handleObjectFree(long timeStamp, String className, long objectID) {
-		String classNameConstant = constants.getConstant(className);
-
-		Event event = new ObjectFreeEvent(timeStamp,
-		                                  classNameConstant, objectID);
-		events.add(event);
+		events.addClassEvent(EventType.OBJECT_FREE, timeStamp,
+		                     symbols.getClassID(className), objectID);
 	}
 
 	@Override
 	public void handleVMStart(long timeStamp) {
-//			Event event = new VMStartEvent(sharedData, timeStamp);
-//			events.add(event);
+//			events.add(EventType.VM_START, timeStamp);
 	}
 
 	@Override
@@ -573,8 +984,7 @@ public class Program implements ProgramInterface, ProgramEventInterface {
 		currentTime = timeStamp;
 		endTime = timeStamp;
 
-		Event event = new VMInitEvent(timeStamp);
-		events.add(event);
+		events.add(EventType.VM_INIT, timeStamp);
 	}
 
 	@Override
@@ -582,7 +992,6 @@ public class Program implements ProgramInterface, ProgramEventInterface {
 		currentTime = timeStamp;
 		endTime = timeStamp;
 
-		Event event = new VMDeathEvent(timeStamp);
-		events.add(event);
+		events.add(EventType.VM_DEATH, timeStamp);
 	}
 }
\ No newline at end of file
@@ -1,10 +1,9 @@
 package tracevis.model;
 
-import java.util.Set;
-
 import tracevis.model.types.CallStack;
 import tracevis.model.types.ClassData;
-import tracevis.model.types.Event;
+import tracevis.model.types.SymbolTable;
+import tracevis.utilities.LongSet;
 import edu.uci.ics.jung.graph.Graph;
 
 public interface ProgramInterface {
@@ -16,14 +15,18 @@ public interface ProgramInterface {
 	 */
 	CallStack getCallStack(long threadID);
 
-	Set<Long> getActiveThreads();
+	LongSet getActiveThreads();
 
-	ClassData getCaller(Event event);
+	ClassData getCaller(int event);
 
-	ClassData getCallee(Event event);
+	ClassData getCallee(int event);
 
 	ClassData getClassData(String className);
 
+	ClassData getClassData(int classID);
+
+	SymbolTable getSymbolTable();
+
 	boolean getHideInnerClasses();
 
 }
\ No newline at end of file
@@ -10,14 +10,7 @@ package tracevis.model;
 
 import tracevis.model.types.CallStack;
 import tracevis.model.types.ClassData;
-import tracevis.model.types.ClassLoadEvent;
-import tracevis.model.types.FramePopEvent;
-import tracevis.model.types.MethodEntryEvent;
-import tracevis.model.types.MethodExitEvent;
-import tracevis.model.types.ObjectAllocationEvent;
-import tracevis.model.types.ObjectFreeEvent;
-import tracevis.model.types.ThreadStartEvent;
-import tracevis.model.types.ThreadStopEvent;
+import tracevis.model.types.EventCursor;
 
 
 class ReverseStateUpdater extends EventVisitor {
@@ -28,52 +21,52 @@ class ReverseStateUpdater extends EventVisitor {
 	private final ProgramInterface program;
 
 	@Override
-	public void visit(ClassLoadEvent event) {
-		ClassData classData = program.getClassData(event.getClassName());
+	public void visitClassLoad(EventCursor event) {
+		ClassData classData = program.getClassData(event.getClassID());
 
 		classData.decreaseLoadCount();
 	}
 
 	@Override
-	public void visit(FramePopEvent event) {
+	public void visitFramePop(EventCursor event) {
 		long threadID = event.getThreadID();
 		CallStack callStack = program.getCallStack(threadID);
-		callStack.push(event.getFrame());
+		callStack.push(event.getFrameID());
 	}
 
 	@Override
-	public void visit(MethodEntryEvent event) {
+	public void visitMethodEntry(EventCursor event) {
 		long threadID = event.getThreadID();
 		CallStack callStack = program.getCallStack(threadID);
 		callStack.pop();
 	}
 
 	@Override
-	public void visit(MethodExitEvent event) {
+	public void visitMethodExit(EventCursor event) {
 		long threadID = event.getThreadID();
 		CallStack callStack = program.getCallStack(threadID);
-		callStack.push(event.getFrame());
+		callStack.push(event.getFrameID());
 	}
 
 	@Override
-	public void visit(ObjectAllocationEvent event) {
-		ClassData classData = program.getClassData(event.getClassName());
+	public void visitObjectAllocation(EventCursor event) {
+		ClassData classData = program.getClassData(event.getClassID());
 		classData.unregisterInstance(event.getObjectID());
 	}
 
 	@Override
-	public void visit(ObjectFreeEvent event) {
-		ClassData classData = program.getClassData(event.getClassName());
+	public void visitObjectFree(EventCursor event) {
+		ClassData classData = program.getClassData(event.getClassID());
 		classData.registerInstance(event.getObjectID());
 	}
 
 	@Override
-	public void visit(ThreadStartEvent event) {
+	public void visitThreadStart(EventCursor event) {
 		this.program.getActiveThreads().remove(event.getThreadID());
 	}
 
 	@Override
-	public void visit(ThreadStopEvent event) {
+	public void visitThreadStop(EventCursor event) {
 		this.program.getActiveThreads().add(event.getThreadID());
 	}
 }
\ No newline at end of file
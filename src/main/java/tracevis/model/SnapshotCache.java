@@ -0,0 +1,376 @@
+package tracevis.model;
+
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.channels.FileChannel;
+import java.util.Arrays;
+import java.util.Set;
+import java.util.zip.CRC32;
+
+import tracevis.model.types.CallAssignment;
+import tracevis.model.types.CallData;
+import tracevis.model.types.CallIndex;
+import tracevis.model.types.ClassData;
+import tracevis.model.types.EventStore;
+import tracevis.model.types.Frame;
+import tracevis.model.types.FrameTable;
+import tracevis.model.types.SymbolTable;
+import edu.uci.ics.jung.graph.DirectedEdge;
+import edu.uci.ics.jung.graph.Edge;
+import edu.uci.ics.jung.graph.Graph;
+import edu.uci.ics.jung.graph.Vertex;
+import edu.uci.ics.jung.graph.impl.DirectedSparseVertex;
+import edu.uci.ics.jung.utils.UserData;
+
+/**
+ * A cache of loaded traces, so that a trace which is opened again is not
+ * read, built and measured again. The cache of a trace is a sidecar file next
+ * to it, with one file per combination of load options. It holds everything
+ * a load computes: the symbols, the events with their frames, callers and
+ * callees, the classes and calls of the graph and their metrics.
+ * <p>
+ * A cache file starts with the four bytes <code>TVS7</code>, followed by the
+ * length, the modification time and the fingerprint of the trace it was made
+ * from and the load options, and the symbols, classes, calls and frames. The
+ * events follow, column by column, and the file ends with their position and
+ * the four bytes <code>TVSE</code>. It is only used if the trace still has
+ * the same length, modification time and fingerprint and the file is
+ * complete; otherwise the trace is loaded as usual, and the cache is
+ * replaced. The fingerprint only samples the trace, so that opening a trace
+ * does not take time in proportion to its size before the cache is even
+ * looked at. Cache files are written under a temporary name and then
+ * renamed, so that a partially written file is
+ * never used, and a file which is in use is never changed.
+ * <p>
+ * The columns of the events are mapped from the cache file rather than
+ * read, so that they take no time to read and no heap space. The rest of
+ * the file is read through a memory mapping; restoring the graph and the
+ * metrics of its classes and calls takes time in proportion to their size.
+ */
+final class SnapshotCache {
+	/** The bytes a cache file starts with. */
+	static final byte[] MAGIC = {'T', 'V', 'S', '7'};
+
+	/** The bytes a cache file ends with. */
+	static final byte[] END_MAGIC = {'T', 'V', 'S', 'E'};
+
+	/** The suffix of the name of a cache file. */
+	static final String SUFFIX = ".tvs";
+
+	private static final int BUFFER_SIZE = 1 << 16;
+
+	// The number of bytes of the position of the events and the end magic.
+	private static final int FOOTER_SIZE = 8 + 4;
+
+	// The number of blocks of a trace file of which the fingerprint is
+	// computed, and their size.
+	static final int SAMPLE_COUNT = 16;
+	private static final int SAMPLE_SIZE = 1 << 16;
+
+	private SnapshotCache() {
+	}
+
+	/**
+	 * Returns the cache file of the specified trace file and load options.
+	 * @param traceFile the specified trace file.
+	 * @param hideInnerClasses whether inner classes are merged into their
+	 *                         enclosing classes.
+	 * @param callAssignment the class calls are assigned to.
+	 */
+	static File getCacheFile(File traceFile, boolean hideInnerClasses,
+	                         CallAssignment callAssignment)
+	{
+		String options = callAssignment.name().toLowerCase();
+		if (hideInnerClasses) {
+			options += "-hidden";
+		}
+		return new File(traceFile.getPath() + "." + options + SUFFIX);
+	}
+
+	/**
+	 * Returns a fingerprint of the contents of the specified file: the
+	 * CRC-32 of {@link #SAMPLE_COUNT} blocks spread evenly over the file,
+	 * including the first and the last one. It takes the same time for a
+	 * file of any size, and together with the length and the modification
+	 * time of the file tells whether it has changed.
+	 * @param file the specified file.
+	 * @throws IOException if the file could not be read.
+	 */
+	static long fingerprint(File file) throws IOException {
+		CRC32 crc = new CRC32();
+		RandomAccessFile randomAccessFile = new RandomAccessFile(file, "r");
+		try {
+			long length = randomAccessFile.length();
+			byte[] sample = new byte[(int) Math.min(SAMPLE_SIZE, length)];
+			long spread = length - sample.length;
+			for (int i = 0; i < SAMPLE_COUNT; i++) {
+				randomAccessFile.seek(spread * i / (SAMPLE_COUNT - 1));
+				randomAccessFile.readFully(sample);
+				crc.update(sample, 0, sample.length);
+			}
+		} finally {
+			randomAccessFile.close();
+		}
+		return crc.getValue();
+	}
+
+	/**
+	 * Reads the cached load of the specified trace file, and returns it, or
+	 * null if there is no cache for the trace and options, or if it is out
+	 * of date or damaged.
+	 * @param traceFile the specified trace file.
+	 * @param fingerprint the fingerprint of the trace file.
+	 * @param hideInnerClasses whether inner classes are merged into their
+	 *                         enclosing classes.
+	 * @param callAssignment the class calls are assigned to.
+	 */
+	static Program read(File traceFile, long fingerprint, boolean hideInnerClasses,
+	                    CallAssignment callAssignment)
+	{
+		File cacheFile = getCacheFile(traceFile, hideInnerClasses, callAssignment);
+		if (!cacheFile.isFile()) {
+			return null;
+		}
+
+		Program program = new Program();
+		EventStore events = null;
+		try {
+			RandomAccessFile randomAccessFile = new RandomAccessFile(cacheFile, "r");
+			try {
+				long length = randomAccessFile.length();
+				if (length < FOOTER_SIZE) {
+					return null;
+				}
+				randomAccessFile.seek(length - FOOTER_SIZE);
+				long eventPosition = randomAccessFile.readLong();
+				byte[] end = new byte[END_MAGIC.length];
+				randomAccessFile.readFully(end);
+				if (!Arrays.equals(end, END_MAGIC) || eventPosition < 0 ||
+				    eventPosition > length - FOOTER_SIZE)
+				{
+					return null;
+				}
+
+				FileChannel channel = randomAccessFile.getChannel();
+				DataInputStream input = new DataInputStream(
+					new MappedInputStream(channel, 0, eventPosition));
+				if (!readHeader(input, traceFile, fingerprint, hideInnerClasses, callAssignment))
+				{
+					return null;
+				}
+				events = EventStore.map(randomAccessFile, eventPosition,
+				                        Program.getEventDirectory());
+				readProgram(input, program, events, callAssignment);
+			} finally {
+				randomAccessFile.close();
+			}
+		} catch (IOException exc) {
+			if (events != null) {
+				events.close();
+			}
+			return null;
+		} catch (RuntimeException exc) {
+			// A damaged cache may hold indices which are out of range.
+			if (events != null) {
+				events.close();
+			}
+			return null;
+		}
+		return program;
+	}
+
+	private static boolean readHeader(DataInputStream input, File traceFile, long fingerprint,
+	                                  boolean hideInnerClasses, CallAssignment callAssignment)
+		throws IOException
+	{
+		byte[] magic = new byte[MAGIC.length];
+		input.readFully(magic);
+		return Arrays.equals(magic, MAGIC) &&
+		       input.readLong() == traceFile.length() &&
+		       input.readLong() == traceFile.lastModified() &&
+		       input.readLong() == fingerprint &&
+		       input.readBoolean() == hideInnerClasses &&
+		       input.readByte() == callAssignment.ordinal();
+	}
+
+	private static void readProgram(DataInputStream input, Program program, EventStore events,
+	                                CallAssignment callAssignment)
+		throws IOException
+	{
+		long startTime = input.readLong();
+		long endTime = input.readLong();
+
+		SymbolTable symbols = new SymbolTable();
+		int classCount = input.readInt();
+		for (int i = 0; i < classCount; i++) {
+			symbols.getClassID(input.readUTF());
+		}
+		int methodCount = input.readInt();
+		for (int i = 0; i < methodCount; i++) {
+			symbols.getMethodID(input.readUTF());
+		}
+
+		// The vertices, of which those which were removed from the graph
+		// because they have no calls are not added to it.
+		Graph callGraph = program.getCallGraph();
+		CallIndex calls = new CallIndex();
+		ClassData[] vertices = new ClassData[input.readInt()];
+		for (int i = 0; i < vertices.length; i++) {
+			int classID = input.readInt();
+			Vertex vertex = new DirectedSparseVertex();
+			if (input.readBoolean()) {
+				callGraph.addVertex(vertex);
+			}
+			vertices[i] = new ClassData(vertex, i, classID, symbols.getClassName(classID), calls);
+			vertex.addUserDatum("tracevis.model.Program", vertices[i], UserData.SHARED);
+			vertices[i].readMetrics(input, events);
+		}
+
+		ClassData[] classes = new ClassData[input.readInt()];
+		for (int i = 0; i < classes.length; i++) {
+			classes[i] = readClassData(input, vertices);
+		}
+
+		int edgeCount = input.readInt();
+		for (int i = 0; i < edgeCount; i++) {
+			ClassData caller = vertices[input.readInt()];
+			ClassData callee = vertices[input.readInt()];
+			Edge edge = callGraph.addEdge(new CallEdge(caller.getVertex(), callee.getVertex()));
+			CallData callData = new CallData(edge, symbols);
+			edge.addUserDatum("tracevis.model.Program", callData, UserData.SHARED);
+			calls.put(caller, callee, callData);
+			callData.readMetrics(input, events);
+		}
+
+		FrameTable frames = events.getFrames();
+		int frameCount = input.readInt();
+		for (int i = 0; i < frameCount; i++) {
+			ClassData definingClass = readClassData(input, vertices);
+			ClassData actualClass = readClassData(input, vertices);
+			frames.add(new Frame(definingClass, actualClass, input.readInt()));
+		}
+
+		program.restoreLoad(symbols, events, classes, vertices, callAssignment,
+		                    startTime, endTime);
+	}
+
+	private static ClassData readClassData(DataInputStream input, ClassData[] vertices)
+		throws IOException
+	{
+		int index = input.readInt();
+		return index != -1 ? vertices[index] : null;
+	}
+
+	/**
+	 * Writes the specified loaded program to the cache of the specified
+	 * trace file. Failures are ignored, since the trace can always be loaded
+	 * without the cache.
+	 * @param program the specified program, which should have just been
+	 *                loaded.
+	 * @param traceFile the specified trace file.
+	 * @param fingerprint the fingerprint of the trace file.
+	 * @param hideInnerClasses whether inner classes are merged into their
+	 *                         enclosing classes.
+	 * @param callAssignment the class calls are assigned to.
+	 */
+	static void write(Program program, File traceFile, long fingerprint,
+	                  boolean hideInnerClasses, CallAssignment callAssignment)
+	{
+		File cacheFile = getCacheFile(traceFile, hideInnerClasses, callAssignment);
+		File partFile = new File(cacheFile.getPath() + ".part");
+		try {
+			FileOutputStream fileOutput = new FileOutputStream(partFile);
+			DataOutputStream output = new DataOutputStream(new BufferedOutputStream(
+				fileOutput, BUFFER_SIZE));
+			try {
+				output.write(MAGIC);
+				output.writeLong(traceFile.length());
+				output.writeLong(traceFile.lastModified());
+				output.writeLong(fingerprint);
+				output.writeBoolean(hideInnerClasses);
+				output.writeByte(callAssignment.ordinal());
+				writeProgram(output, program);
+
+				output.flush();
+				long eventPosition = fileOutput.getChannel().position();
+				program.getEvents().write(output);
+				output.writeLong(eventPosition);
+				output.write(END_MAGIC);
+			} finally {
+				output.close();
+			}
+
+			cacheFile.delete();
+			if (!partFile.renameTo(cacheFile)) {
+				partFile.delete();
+			}
+		} catch (IOException exc) {
+			partFile.delete();
+		}
+	}
+
+	private static void writeProgram(DataOutputStream output, Program program)
+		throws IOException
+	{
+		output.writeLong(program.getStartTime());
+		output.writeLong(program.getEndTime());
+
+		SymbolTable symbols = program.getSymbolTable();
+		output.writeInt(symbols.getClassCount());
+		for (int i = 0; i < symbols.getClassCount(); i++) {
+			output.writeUTF(symbols.getClassName(i));
+		}
+		output.writeInt(symbols.getMethodCount());
+		for (int i = 0; i < symbols.getMethodCount(); i++) {
+			output.writeUTF(symbols.getMethodName(i));
+		}
+
+		EventStore events = program.getEvents();
+		Graph callGraph = program.getCallGraph();
+		Set<Vertex> graphVertices = callGraph.getVertices();
+		ClassData[] vertices = program.getVertices();
+		output.writeInt(vertices.length);
+		for (ClassData classData : vertices) {
+			output.writeInt(classData.getID());
+			output.writeBoolean(graphVertices.contains(classData.getVertex()));
+			classData.writeMetrics(output);
+		}
+
+		// The classes of hidden inner classes are those of their enclosing
+		// classes.
+		ClassData[] classes = program.getClasses();
+		output.writeInt(classes.length);
+		for (ClassData classData : classes) {
+			writeClassData(output, classData);
+		}
+
+		Set<Edge> edges = callGraph.getEdges();
+		output.writeInt(edges.size());
+		for (Edge edge : edges) {
+			DirectedEdge directedEdge = (DirectedEdge)edge;
+			writeClassData(output, (ClassData)directedEdge.getSource().getUserDatum("tracevis.model.Program"));
+			writeClassData(output, (ClassData)directedEdge.getDest().getUserDatum("tracevis.model.Program"));
+			((CallData)edge.getUserDatum("tracevis.model.Program")).writeMetrics(output);
+		}
+
+		FrameTable frames = events.getFrames();
+		output.writeInt(frames.size());
+		for (int i = 0; i < frames.size(); i++) {
+			Frame frame = frames.get(i);
+			writeClassData(output, frame.getDefiningClass());
+			writeClassData(output, frame.getActualClass());
+			output.writeInt(frame.getMethod());
+		}
+	}
+
+	private static void writeClassData(DataOutputStream output, ClassData classData)
+		throws IOException
+	{
+		output.writeInt(classData != null ? classData.getIndex() : -1);
+	}
+}
@@ -0,0 +1,133 @@
+package tracevis.model;
+
+import tracevis.model.types.LoadPhase;
+
+/**
+ * Passes the events of a trace on to a program which is being loaded, and
+ * takes a snapshot of the program (see {@link Program#takeSnapshot}) each
+ * time the number of events passed on reaches a limit. The limit starts at
+ * a given number of events, and grows by {@link Program#SNAPSHOT_GROWTH}
+ * with each snapshot. A snapshot is only taken when an event follows the
+ * limit, so that the whole trace is never a snapshot.
+ */
+class SnapshotFilter implements ProgramEventInterface {
+	private final Program program;
+	private final boolean hideInnerClasses;
+	private final SnapshotListener listener;
+	private final LoadProgress progress;
+
+	private long count;
+	private long limit;
+
+	/**
+	 * Creates a new instance of SnapshotFilter.
+	 * @param program the program to pass the events on to.
+	 * @param hideInnerClasses whether inner classes are merged into their
+	 *                         enclosing classes in the snapshots.
+	 * @param firstEventCount the number of events in the first snapshot.
+	 * @param listener the listener to pass every snapshot to.
+	 * @param progress the progress to report building the snapshots to.
+	 */
+	public SnapshotFilter(Program program, boolean hideInnerClasses, long firstEventCount,
+	                      SnapshotListener listener, LoadProgress progress)
+	{
+		this.program = program;
+		this.hideInnerClasses = hideInnerClasses;
+		this.listener = listener;
+		this.progress = progress;
+
+		count = 0;
+		limit = firstEventCount;
+	}
+
+	/**
+	 * Counts an event, after taking a snapshot of the events before it if
+	 * they reach the limit. The phase of the load which was interrupted by
+	 * the snapshot is resumed afterwards.
+	 */
+	private void accept() {
+		if (count == limit) {
+			LoadPhase phase = progress.getPhase();
+			long total = progress.getTotal();
+			long done = progress.getDone();
+			if (program.getEvents().size() > 0) {
+				listener.snapshotLoaded(program.takeSnapshot(hideInnerClasses, progress));
+			}
+			progress.resumePhase(phase, total, done);
+
+			if (limit > Long.MAX_VALUE / Program.SNAPSHOT_GROWTH) {
+				limit = Long.MAX_VALUE;
+			} else {
+				limit *= Program.SNAPSHOT_GROWTH;
+			}
+		}
+		count++;
+	}
+
+	@Override
+	public void handleVMDeath(long timeStamp) {
+		accept();
+		program.handleVMDeath(timeStamp);
+	}
+
+	@Override
+	public void handleVMInit(long timeStamp) {
+		accept();
+		program.handleVMInit(timeStamp);
+	}
+
+	@Override
+	public void handleVMStart(long timeStamp) {
+		accept();
+		program.handleVMStart(timeStamp);
+	}
+
+	@Override
+	public void handleObjectFree(long timeStamp, String className, long objectID) {
+		accept();
+		program.handleObjectFree(timeStamp, className, objectID);
+	}
+
+	@Override
+	public void handleObjectAllocation(long timeStamp, String className, long objectID) {
+		accept();
+		program.handleObjectAllocation(timeStamp, className, objectID);
+	}
+
+	@Override
+	public void handleClassLoad(long timeStamp, String className) {
+		accept();
+		program.handleClassLoad(timeStamp, className);
+	}
+
+	@Override
+	public void handleThreadStop(long timeStamp, long threadID) {
+		accept();
+		program.handleThreadStop(timeStamp, threadID);
+	}
+
+	@Override
+	public void handleThreadStart(long timeStamp, long threadID) {
+		accept();
+		program.handleThreadStart(timeStamp, threadID);
+	}
+
+	@Override
+	public void handleFramePop(long timeStamp, long threadID, String className, String methodName) {
+		accept();
+		program.handleFramePop(timeStamp, threadID, className, methodName);
+	}
+
+	@Override
+	public void handleMethodExit(long timeStamp, long threadID, String className, String methodName) {
+		accept();
+		program.handleMethodExit(timeStamp, threadID, className, methodName);
+	}
+
+	@Override
+	public void handleMethodEntry(long timeStamp, long threadID, String className,
+	                              String methodName, long objectID) {
+		accept();
+		program.handleMethodEntry(timeStamp, threadID, className, methodName, objectID);
+	}
+}
@@ -0,0 +1,17 @@
+package tracevis.model;
+
+/**
+ * Call-back interface for the snapshots of a progressive load. The method is
+ * called on the thread which loads the trace.
+ * @see Program#streamTrace
+ */
+public interface SnapshotListener {
+
+	/**
+	 * Signals that a snapshot of the start of the trace has been loaded. The
+	 * snapshot is not used by the load afterwards.
+	 * @param snapshot the program with the start of the trace.
+	 */
+	void snapshotLoaded(Program snapshot);
+
+}
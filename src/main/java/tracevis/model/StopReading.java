@@ -0,0 +1,17 @@
+package tracevis.model;
+
+/**
+ * Thrown by an event handler to stop reading a trace once it has received
+ * all the events it needs. The reader that applied the handler catches it;
+ * it never reaches the callers of the model.
+ */
+class StopReading extends RuntimeException {
+	private static final long serialVersionUID = 1L;
+
+	/** The instance to throw, which carries no stack trace. */
+	static final StopReading INSTANCE = new StopReading();
+
+	private StopReading() {
+		super("Reading was stopped.", null, false, false);
+	}
+}
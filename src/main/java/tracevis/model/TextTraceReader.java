@@ -0,0 +1,282 @@
+/*
+ * TextTraceReader.java
+ *
+ * Author: Pieter Deelen
+ * Created: September 12, 2005, 1:36 PM
+ *
+ */
+
+package tracevis.model;
+
+import java.io.IOException;
+import java.util.Arrays;
+
+
+
+
+/**
+ * Parser for a trace file in the text format written by the mtrace agent.
+ * Calls back into Program for the handling of events.
+ * <p>
+ * The parser works on the raw bytes of the trace: numbers are decoded in
+ * place and names are resolved through byte-keyed symbol tables, so that no
+ * objects are created for events whose names have been seen before.
+ * @author Pieter Deelen
+ */
+class TextTraceReader extends TraceReader {
+	// Event types, encoded as their two characters.
+	private static final int MN = ('M' << 8) | 'N';
+	private static final int MX = ('M' << 8) | 'X';
+	private static final int FP = ('F' << 8) | 'P';
+	private static final int CL = ('C' << 8) | 'L';
+	private static final int TB = ('T' << 8) | 'B';
+	private static final int TE = ('T' << 8) | 'E';
+	private static final int OA = ('O' << 8) | 'A';
+	private static final int OF = ('O' << 8) | 'F';
+	private static final int VS = ('V' << 8) | 'S';
+	private static final int VI = ('V' << 8) | 'I';
+	private static final int VD = ('V' << 8) | 'D';
+
+	private final ByteSymbolTable classNames;
+	private final ByteSymbolTable methodNames;
+
+	// The bytes currently being parsed.
+	private byte[] bytes;
+	private int position;
+	private long lineNumber;
+
+	/**
+	 * Creates a new instance of TextTraceReader.
+	 * @param program the Program instance to call back to for event handling.
+	 */
+	public TextTraceReader(ProgramEventInterface program) {
+		super(program);
+
+		this.classNames = new ByteSymbolTable(true);
+		this.methodNames = new ByteSymbolTable(false);
+	}
+
+	/**
+	 * Returns the number of lines read so far.
+	 */
+	public long getLineCount() {
+		return lineNumber;
+	}
+
+	/**
+	 * Reads all complete lines between offset (inclusive) and limit
+	 * (exclusive) in the specified array.
+	 * @param buffer the specified array.
+	 * @param offset the index of the first byte to read.
+	 * @param limit the index following the last byte to read.
+	 * @return the index of the start of the first incomplete line.
+	 * @throws IOException if a line could not be parsed.
+	 */
+	@Override
+	int readEvents(byte[] buffer, int offset, int limit) throws IOException {
+		// Events are separated by newlines. Only the last one has to be
+		// searched for; every line before it is complete.
+		int end = limit;
+		while (end > offset && buffer[end - 1] != '\n') {
+			end--;
+		}
+
+		bytes = buffer;
+		position = offset;
+		while (position < end) {
+			readEvent();
+		}
+
+		return end;
+	}
+
+	@Override
+	void readTrailer(byte[] buffer, int offset, int limit) throws IOException {
+		// The last line need not be terminated by a newline.
+		if (limit > offset) {
+			byte[] line = Arrays.copyOfRange(buffer, offset, limit + 1);
+			line[line.length - 1] = '\n';
+			readEvents(line, 0, line.length);
+		}
+	}
+
+	/**
+	 * Reads the event on the line starting at the current position, and moves
+	 * on to the start of the next line.
+	 */
+	private void readEvent() throws IOException {
+		lineNumber++;
+
+		// The first two fields of every event are the event type and a time
+		// stamp. Fields are separated by colons.
+		int start = position;
+		if (isLineEnd(bytes[start])) {
+			skipLine();
+			return;
+		} else if (isLineEnd(bytes[start + 1]) || bytes[start + 2] != ':') {
+			throw malformed();
+		}
+		int eventType = (bytes[start] << 8) | bytes[start + 1];
+		position = start + 3;
+		long timeStamp = readNumber();
+
+		// Check which kind of event it is.
+		switch (eventType) {
+			case MN: {
+				// Method entry.
+				long threadID = readNumber();
+				String className = readName(classNames);
+				String methodName = readName(methodNames);
+				long objectID = readNumber();
+				program.handleMethodEntry(timeStamp, threadID, className, methodName, objectID);
+				break;
+			}
+			case MX: {
+				// Method exit.
+				long threadID = readNumber();
+				String className = readName(classNames);
+				String methodName = readName(methodNames);
+				program.handleMethodExit(timeStamp, threadID, className, methodName);
+				break;
+			}
+			case FP: {
+				// Frame pop (caused by exception).
+				long threadID = readNumber();
+				String className = readName(classNames);
+				String methodName = readName(methodNames);
+				program.handleFramePop(timeStamp, threadID, className, methodName);
+				break;
+			}
+			case CL: {
+				// Class load.
+				String className = readName(classNames);
+				program.handleClassLoad(timeStamp, className);
+				break;
+			}
+			case TB: {
+				// Thread begin.
+				long threadID = readNumber();
+				program.handleThreadStart(timeStamp, threadID);
+				break;
+			}
+			case TE: {
+				// Thread end.
+				long threadID = readNumber();
+				program.handleThreadStop(timeStamp, threadID);
+				break;
+			}
+			case OA: {
+				// Object allocation.
+				String className = readName(classNames);
+				long objectID = readNumber();
+				program.handleObjectAllocation(timeStamp, className, objectID);
+				break;
+			}
+			case OF: {
+				// Object free.
+				String className = readName(classNames);
+				long objectID = readNumber();
+				program.handleObjectFree(timeStamp, className, objectID);
+				break;
+			}
+			case VS:
+				program.handleVMStart(timeStamp);
+				break;
+			case VI:
+				program.handleVMInit(timeStamp);
+				break;
+			case VD:
+				program.handleVMDeath(timeStamp);
+				break;
+		}
+
+		skipLine();
+	}
+
+	/**
+	 * Decodes the (decimal) number in the current field and moves on to the
+	 * next field.
+	 */
+	private long readNumber() throws IOException {
+		boolean negative = false;
+		if (bytes[position] == '-') {
+			negative = true;
+			position++;
+		}
+
+		int start = position;
+		long value = 0;
+		while (true) {
+			int digit = bytes[position] - '0';
+			if (digit < 0 || digit > 9) {
+				break;
+			}
+			value = 10 * value + digit;
+			position++;
+		}
+
+		if (position == start) {
+			throw malformed();
+		}
+		skipSeparator();
+
+		return negative ? -value : value;
+	}
+
+	/**
+	 * Resolves the name in the current field and moves on to the next field.
+	 * @param symbols the symbol table to resolve the name with.
+	 */
+	private String readName(ByteSymbolTable symbols) throws IOException {
+		int start = position;
+		int hash = 0;
+		while (true) {
+			byte b = bytes[position];
+			if (b == ':' || isLineEnd(b)) {
+				break;
+			}
+			hash = 31 * hash + b;
+			position++;
+		}
+
+		if (position == start) {
+			throw malformed();
+		}
+		String name = symbols.get(bytes, start, position, hash);
+		skipSeparator();
+
+		return name;
+	}
+
+	private void skipSeparator() throws IOException {
+		byte b = bytes[position];
+		if (b == ':') {
+			position++;
+		} else if (!isLineEnd(b)) {
+			throw malformed();
+		}
+	}
+
+	private void skipLine() {
+		while (bytes[position] != '\n') {
+			position++;
+		}
+		position++;
+	}
+
+	private static boolean isLineEnd(byte b) {
+		return b == '\n' || b == '\r';
+	}
+
+	private IOException malformed() {
+		return malformed(lineNumber);
+	}
+
+	/**
+	 * Returns the exception for a malformed event on the specified line.
+	 * @param lineNumber the number of the specified line, counting from one.
+	 */
+	static IOException malformed(long lineNumber) {
+		return new IOException("Malformed event on line " + lineNumber + " of the trace.");
+	}
+}
@@ -0,0 +1,194 @@
+package tracevis.model;
+
+/**
+ * Passes only the events in a window of time to an event handler, so that a
+ * part of a trace can be loaded as if it were a trace of its own.
+ * <p>
+ * Events before the window are not passed on, but update the state of the
+ * program at the start of the window. Just before the first event in the
+ * window, a VM initialization at the start of the window is passed on,
+ * followed by events that rebuild that state: the loaded classes, the live
+ * threads and objects, and the frames that are open on each stack. At the
+ * first event after the window, a VM death at the end of the window is
+ * passed on in its place, and reading is stopped by throwing
+ * {@link StopReading}.
+ */
+class TimeWindowFilter implements ProgramEventInterface {
+	private final ProgramEventInterface program;
+	private final long beginTime;
+	private final long endTime;
+
+	private final TraceState prefix;
+	private boolean skipped;
+	private boolean started;
+	private boolean ended;
+
+	/**
+	 * Creates a new instance of TimeWindowFilter.
+	 * @param program the event handler to pass the events in the window to.
+	 * @param beginTime the start of the window.
+	 * @param endTime the end of the window, inclusive.
+	 */
+	public TimeWindowFilter(ProgramEventInterface program, long beginTime, long endTime) {
+		this.program = program;
+		this.beginTime = beginTime;
+		this.endTime = endTime;
+
+		prefix = new TraceState();
+		skipped = false;
+		started = false;
+		ended = false;
+	}
+
+	/**
+	 * Signals that the trace, or the part of it that overlaps the window, has
+	 * been read. If the trace ended before the window, the state at its end
+	 * is passed on as a trace which starts and ends at the start of the
+	 * window.
+	 */
+	public void finish() {
+		if (!started) {
+			start();
+			if (skipped) {
+				end(beginTime);
+			}
+		}
+	}
+
+	/**
+	 * Returns whether the specified event falls before the window, in which
+	 * case it should update the prefix.
+	 */
+	private boolean before(long timeStamp) {
+		if (!started && timeStamp < beginTime) {
+			skipped = true;
+			return true;
+		}
+		return false;
+	}
+
+	/**
+	 * Returns whether the specified event falls in the window, in which case
+	 * it should be passed on. The first such event starts the window.
+	 * @throws StopReading if the event falls after the window.
+	 */
+	private boolean within(long timeStamp) {
+		if (!started) {
+			start();
+		}
+		if (timeStamp > endTime) {
+			end(endTime);
+			throw StopReading.INSTANCE;
+		}
+		return !ended;
+	}
+
+	private void start() {
+		started = true;
+		if (skipped) {
+			program.handleVMInit(beginTime);
+			prefix.replay(program, beginTime);
+		}
+	}
+
+	private void end(long timeStamp) {
+		if (!ended) {
+			ended = true;
+			program.handleVMDeath(timeStamp);
+		}
+	}
+
+	@Override
+	public void handleVMDeath(long timeStamp) {
+		if (!before(timeStamp) && within(timeStamp)) {
+			end(timeStamp);
+		}
+	}
+
+	@Override
+	public void handleVMInit(long timeStamp) {
+		if (!before(timeStamp) && within(timeStamp)) {
+			program.handleVMInit(timeStamp);
+		}
+	}
+
+	@Override
+	public void handleVMStart(long timeStamp) {
+		if (!before(timeStamp) && within(timeStamp)) {
+			program.handleVMStart(timeStamp);
+		}
+	}
+
+	@Override
+	public void handleObjectFree(long timeStamp, String className, long objectID) {
+		if (before(timeStamp)) {
+			prefix.handleObjectFree(timeStamp, className, objectID);
+		} else if (within(timeStamp)) {
+			program.handleObjectFree(timeStamp, className, objectID);
+		}
+	}
+
+	@Override
+	public void handleObjectAllocation(long timeStamp, String className, long objectID) {
+		if (before(timeStamp)) {
+			prefix.handleObjectAllocation(timeStamp, className, objectID);
+		} else if (within(timeStamp)) {
+			program.handleObjectAllocation(timeStamp, className, objectID);
+		}
+	}
+
+	@Override
+	public void handleClassLoad(long timeStamp, String className) {
+		if (before(timeStamp)) {
+			prefix.handleClassLoad(timeStamp, className);
+		} else if (within(timeStamp)) {
+			program.handleClassLoad(timeStamp, className);
+		}
+	}
+
+	@Override
+	public void handleThreadStop(long timeStamp, long threadID) {
+		if (before(timeStamp)) {
+			prefix.handleThreadStop(timeStamp, threadID);
+		} else if (within(timeStamp)) {
+			program.handleThreadStop(timeStamp, threadID);
+		}
+	}
+
+	@Override
+	public void handleThreadStart(long timeStamp, long threadID) {
+		if (before(timeStamp)) {
+			prefix.handleThreadStart(timeStamp, threadID);
+		} else if (within(timeStamp)) {
+			program.handleThreadStart(timeStamp, threadID);
+		}
+	}
+
+	@Override
+	public void handleFramePop(long timeStamp, long threadID, String className, String methodName) {
+		if (before(timeStamp)) {
+			prefix.handleFramePop(timeStamp, threadID, className, methodName);
+		} else if (within(timeStamp)) {
+			program.handleFramePop(timeStamp, threadID, className, methodName);
+		}
+	}
+
+	@Override
+	public void handleMethodExit(long timeStamp, long threadID, String className, String methodName) {
+		if (before(timeStamp)) {
+			prefix.handleMethodExit(timeStamp, threadID, className, methodName);
+		} else if (within(timeStamp)) {
+			program.handleMethodExit(timeStamp, threadID, className, methodName);
+		}
+	}
+
+	@Override
+	public void handleMethodEntry(long timeStamp, long threadID, String className,
+	                              String methodName, long objectID) {
+		if (before(timeStamp)) {
+			prefix.handleMethodEntry(timeStamp, threadID, className, methodName, objectID);
+		} else if (within(timeStamp)) {
+			program.handleMethodEntry(timeStamp, threadID, className, methodName, objectID);
+		}
+	}
+}
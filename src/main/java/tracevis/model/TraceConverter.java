@@ -0,0 +1,54 @@
+package tracevis.model;
+
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+
+/**
+ * Converts trace files to the binary trace format, which is smaller than a
+ * zipped text trace and much cheaper to parse, or to a block trace, which is
+ * compressed and can be read in parallel or in part.
+ * Usage: <code>TraceConverter source target</code>. The target is written as
+ * a block trace if its name ends with ".tvc", and as a binary trace
+ * otherwise.
+ */
+public class TraceConverter {
+	/**
+	 * Converts the specified trace file, in any supported format, to a binary
+	 * trace or a block trace, depending on the name of the target.
+	 * @param source the trace file to convert.
+	 * @param target the file to write the converted trace to.
+	 * @throws IOException if the trace could not be converted.
+	 */
+	public static void convertTrace(File source, File target) throws IOException {
+		TraceFile traceFile = new TraceFile(source);
+		OutputStream outputStream = new BufferedOutputStream(new FileOutputStream(target));
+		BinaryEventEncoder writer;
+		if (target.getName().endsWith(".tvc")) {
+			writer = new BlockTraceWriter(outputStream);
+		} else {
+			writer = new BinaryTraceWriter(outputStream);
+		}
+		try {
+			traceFile.read(writer);
+		} finally {
+			writer.close();
+		}
+	}
+
+	public static void main(String[] args) {
+		if (args.length != 2) {
+			System.err.println("Usage: TraceConverter source target");
+			System.exit(1);
+		}
+
+		try {
+			convertTrace(new File(args[0]), new File(args[1]));
+		} catch (IOException exc) {
+			System.err.println("Could not convert trace: " + exc.getMessage());
+			System.exit(1);
+		}
+	}
+}
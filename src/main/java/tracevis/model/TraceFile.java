@@ -0,0 +1,346 @@
+package tracevis.model;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.channels.FileChannel;
+import java.util.concurrent.ForkJoinPool;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+
+import tracevis.model.types.LoadPhase;
+
+/**
+ * A trace file on disk. The format of the file is detected from its first
+ * bytes, so that the rest of the model does not need to know how a trace is
+ * stored. Traces that are not compressed are read through a memory mapping of
+ * the file.
+ */
+class TraceFile {
+	/**
+	 * The formats in which a trace can be stored.
+	 */
+	enum Format {
+		/** A zip file with the text trace in the entry "trace". */
+		ZIPPED_TEXT,
+		/** An uncompressed text trace. */
+		TEXT,
+		/** A trace in the binary trace format. */
+		BINARY,
+		/** A block trace, with an index of its blocks. */
+		BLOCKS
+	}
+
+	private final File file;
+	private final Format format;
+	private LoadProgress progress;
+
+	/**
+	 * Creates a new instance of TraceFile and detects the format of the
+	 * specified file.
+	 * @param file the specified file.
+	 * @throws IOException if the file could not be read.
+	 */
+	public TraceFile(File file) throws IOException {
+		this.file = file;
+		this.format = detectFormat(file);
+		this.progress = LoadProgress.NONE;
+	}
+
+	/**
+	 * Sets the progress to report the reading of the trace to.
+	 * @param progress the specified progress.
+	 */
+	void setProgress(LoadProgress progress) {
+		this.progress = progress;
+	}
+
+	/**
+	 * Returns the file.
+	 */
+	public File getFile() {
+		return file;
+	}
+
+	/**
+	 * Returns the format of the file.
+	 */
+	public Format getFormat() {
+		return format;
+	}
+
+	/**
+	 * Reads all events in the trace, and passes them to the specified event
+	 * handler. The trace is parsed on as many threads as there are
+	 * processors.
+	 * @param program the specified event handler.
+	 * @throws IOException if the trace could not be read.
+	 */
+	public void read(ProgramEventInterface program) throws IOException {
+		read(program, Runtime.getRuntime().availableProcessors());
+	}
+
+	/**
+	 * Reads all events in the trace, and passes them in order to the
+	 * specified event handler.
+	 * @param program the specified event handler.
+	 * @param parallelism the number of threads to parse the trace on.
+	 * @throws IOException if the trace could not be read.
+	 */
+	public void read(ProgramEventInterface program, int parallelism) throws IOException {
+		if (format == Format.BLOCKS) {
+			BlockTraceReader trace = openBlocks();
+			try {
+				readBlocks(trace, 0, trace.getBlockCount(), program, parallelism);
+			} finally {
+				trace.close();
+			}
+			return;
+		}
+
+		if (format != Format.ZIPPED_TEXT) {
+			progress.startPhase(LoadPhase.READING, file.length());
+		}
+
+		if (parallelism <= 1) {
+			TraceReader reader;
+			if (format == Format.BINARY) {
+				reader = new BinaryTraceReader(program);
+			} else {
+				reader = new TextTraceReader(program);
+			}
+			reader.setProgress(progress);
+			if (format == Format.ZIPPED_TEXT) {
+				reader.readTrace(openZipEntry());
+			} else {
+				reader.readTrace(openChannel());
+			}
+			return;
+		}
+
+		ForkJoinPool pool = new ForkJoinPool(parallelism);
+		try {
+			ParallelTraceReader reader = new ParallelTraceReader(program, pool);
+			reader.setProgress(progress);
+			switch (format) {
+				case BINARY:
+					reader.readBinary(openChannel());
+					break;
+				case TEXT:
+					reader.readText(openChannel());
+					break;
+				default:
+					reader.readText(openZipEntry());
+			}
+		} finally {
+			pool.shutdownNow();
+		}
+	}
+
+	/**
+	 * Reads the events in the specified window of time, and passes them to
+	 * the specified event handler. The trace is parsed on as many threads as
+	 * there are processors.
+	 * @param program the specified event handler.
+	 * @param beginTime the start of the window.
+	 * @param endTime the end of the window, inclusive.
+	 * @throws IOException if the trace could not be read.
+	 */
+	public void read(ProgramEventInterface program, long beginTime, long endTime)
+		throws IOException
+	{
+		read(program, beginTime, endTime, Runtime.getRuntime().availableProcessors());
+	}
+
+	/**
+	 * Reads the events in the specified window of time, and passes them in
+	 * order to the specified event handler as a trace of its own, which
+	 * starts with the state of the program at the start of the window (see
+	 * {@link TimeWindowFilter}).
+	 * <p>
+	 * For a block trace, only the blocks which overlap the window are read,
+	 * after the nearest checkpoint before it. Other formats are read from
+	 * the start up to the end of the window, but events before the window
+	 * are not passed on, so that the handler receives only as many events as
+	 * the window holds.
+	 * @param program the specified event handler.
+	 * @param beginTime the start of the window.
+	 * @param endTime the end of the window, inclusive.
+	 * @param parallelism the number of threads to parse the trace on.
+	 * @throws IOException if the trace could not be read.
+	 */
+	public void read(ProgramEventInterface program, long beginTime, long endTime,
+	                 int parallelism)
+		throws IOException
+	{
+		if (beginTime == Long.MIN_VALUE && endTime == Long.MAX_VALUE) {
+			read(program, parallelism);
+			return;
+		}
+
+		TimeWindowFilter filter = new TimeWindowFilter(program, beginTime, endTime);
+		if (format == Format.BLOCKS) {
+			BlockTraceReader trace = openBlocks();
+			try {
+				int blockCount = trace.getBlockCount();
+				int first = trace.findBlock(beginTime);
+				int last = first;
+				while (last < blockCount && trace.getFirstTimeStamp(last) <= endTime) {
+					last++;
+				}
+				int checkpoint = trace.findCheckpoint(Math.min(first, blockCount - 1));
+				if (checkpoint >= 0) {
+					trace.readCheckpoint(checkpoint, filter);
+					readBlocks(trace, checkpoint, last, filter, parallelism);
+				}
+			} catch (StopReading e) {
+				// The events after the window are not needed.
+			} finally {
+				trace.close();
+			}
+		} else {
+			try {
+				read(filter, parallelism);
+			} catch (StopReading e) {
+				// The events after the window are not needed.
+			}
+		}
+		filter.finish();
+	}
+
+	/**
+	 * Reads the specified number of events from the start of the trace, and
+	 * passes them to the specified event handler as a trace of its own,
+	 * which ends at the last of them. Reading stops after these events. The
+	 * trace is parsed on as many threads as there are processors.
+	 * @param program the specified event handler.
+	 * @param eventCount the specified number of events.
+	 * @return whether all events of the trace were read.
+	 * @throws IOException if the trace could not be read.
+	 */
+	public boolean readPrefix(ProgramEventInterface program, long eventCount)
+		throws IOException
+	{
+		EventLimitFilter filter = new EventLimitFilter(program, eventCount);
+		try {
+			read(filter);
+		} catch (StopReading e) {
+			// The events after the prefix are not needed.
+		}
+		return !filter.isTruncated();
+	}
+
+	/**
+	 * Returns a reader for the blocks of a block trace. Closing the reader
+	 * closes the file.
+	 * @throws IOException if the file is not a block trace, or its index
+	 *                     could not be read.
+	 */
+	BlockTraceReader openBlocks() throws IOException {
+		if (format != Format.BLOCKS) {
+			throw new IOException("The file is not a block trace.");
+		}
+		FileChannel channel = openChannel();
+		try {
+			return new BlockTraceReader(channel);
+		} catch (IOException e) {
+			channel.close();
+			throw e;
+		}
+	}
+
+	/**
+	 * Reads the blocks between first (inclusive) and last (exclusive) of the
+	 * specified block trace, and passes their events in order to the
+	 * specified event handler.
+	 */
+	private void readBlocks(BlockTraceReader trace, int first, int last,
+	                        ProgramEventInterface program, int parallelism)
+		throws IOException
+	{
+		long total = 0;
+		for (int block = first; block < last; block++) {
+			total += trace.getCompressedLength(block);
+		}
+		progress.startPhase(LoadPhase.READING, total);
+
+		if (parallelism <= 1) {
+			for (int block = first; block < last; block++) {
+				trace.readBlock(block, program);
+				progress.worked(trace.getCompressedLength(block));
+			}
+			return;
+		}
+
+		ForkJoinPool pool = new ForkJoinPool(parallelism);
+		try {
+			ParallelTraceReader reader = new ParallelTraceReader(program, pool);
+			reader.setProgress(progress);
+			reader.readBlocks(trace, first, last);
+		} finally {
+			pool.shutdownNow();
+		}
+	}
+
+	/**
+	 * Returns a channel for reading the file. Closing the channel closes the
+	 * file.
+	 */
+	private FileChannel openChannel() throws IOException {
+		return new FileInputStream(file).getChannel();
+	}
+
+	/**
+	 * Returns a stream for reading the trace in a zip file. Closing the stream
+	 * closes the file.
+	 */
+	private InputStream openZipEntry() throws IOException {
+		final ZipFile zipFile = new ZipFile(file);
+		ZipEntry zipEntry = zipFile.getEntry("trace");
+		if (zipEntry == null) {
+			zipFile.close();
+			throw new IOException("The file contains no trace.");
+		}
+		// The progress of reading is measured in uncompressed bytes.
+		try {
+			progress.startPhase(LoadPhase.READING, zipEntry.getSize());
+		} catch (RuntimeException e) {
+			zipFile.close();
+			throw e;
+		}
+		return new FilterInputStream(zipFile.getInputStream(zipEntry)) {
+			@Override
+			public void close() throws IOException {
+				zipFile.close();
+			}
+		};
+	}
+
+	private static Format detectFormat(File file) throws IOException {
+		byte[] magic = new byte[BinaryTraceFormat.MAGIC.length];
+		int length = 0;
+
+		InputStream in = new FileInputStream(file);
+		try {
+			int read;
+			while (length < magic.length &&
+			       (read = in.read(magic, length, magic.length - length)) != -1) {
+				length += read;
+			}
+		} finally {
+			in.close();
+		}
+
+		if (BinaryTraceFormat.isBinaryTrace(magic, length)) {
+			return Format.BINARY;
+		} else if (BinaryTraceFormat.isBlockTrace(magic, length)) {
+			return Format.BLOCKS;
+		} else if (length >= 2 && magic[0] == 'P' && magic[1] == 'K') {
+			return Format.ZIPPED_TEXT;
+		} else {
+			return Format.TEXT;
+		}
+	}
+}
@@ -8,27 +8,47 @@
 
 package tracevis.model;
 
-import java.io.BufferedReader;
 import java.io.IOException;
 import java.io.InputStream;
-import java.io.InputStreamReader;
+import java.nio.channels.FileChannel;
+import java.util.Arrays;
 
 
 
 
 /**
  * Parser for a trace file. Calls back into Program for the handling of events.
+ * Subclasses decode a particular trace format; this class feeds them the
+ * bytes of the trace in a reusable buffer, either from a stream or from a
+ * memory mapped file.
  * @author Pieter Deelen
  */
-class TraceReader {
-	private final ProgramEventInterface program;
+abstract class TraceReader {
+	private static final int BUFFER_SIZE = 1 << 16;
+	private static final int MAPPED_BUFFER_SIZE = 1 << 20;
+
+	protected final ProgramEventInterface program;
+	private LoadProgress progress;
+
+	// The bytes that have been read but not yet parsed.
+	private byte[] buffer;
+	private int length;
 
 	/**
 	 * Creates a new instance of TraceReader.
 	 * @param program the Program instance to call back to for event handling.
 	 */
-	public TraceReader(ProgramEventInterface program) {
+	protected TraceReader(ProgramEventInterface program) {
 		this.program = program;
+		this.progress = LoadProgress.NONE;
+	}
+
+	/**
+	 * Sets the progress to report the number of bytes read to.
+	 * @param progress the specified progress.
+	 */
+	void setProgress(LoadProgress progress) {
+		this.progress = progress;
 	}
 
 	/**
@@ -37,71 +57,78 @@ class TraceReader {
 	 * @throws IOException if the trace could not be read.
 	 */
 	public void readTrace(InputStream inputStream) throws IOException {
-		InputStreamReader inputReader= new InputStreamReader(inputStream);
-		BufferedReader in = new BufferedReader(inputReader);
-
-		String input;
-		// Events are separated by newlines.
-		while ((input = in.readLine()) != null) {
-			// Fields are separated by colons.
-			String[] event = input.split(":");
-
-			// The first two fields of every event are the event type and a
-			// time stamp.
-			String eventType = event[0];
-			Long timeStamp = new Long(event[1]);
-
-			// Check which kind of event it is.
-			if (eventType.equals("MN")) {
-				// Method entry.
-				Long threadID = new Long(event[2]);
-				String className = (event[3]).replace("/", ".");
-				String methodName = event[4];
-				Long objectID = new Long(event[5]);
-				program.handleMethodEntry(timeStamp, threadID, className, methodName, objectID);
-			} else if (eventType.equals("MX")) {
-				// Method exit.
-				Long threadID = new Long(event[2]);
-				String className = (event[3]).replace("/", ".");
-				String methodName = event[4];
-				program.handleMethodExit(timeStamp, threadID, className, methodName);
-			} else if (eventType.equals("FP")) {
-				// Frame pop (caused by exception).
-				Long threadID = new Long(event[2]);
-				String className = (event[3]).replace("/", ".");
-				String methodName = event[4];
-				program.handleFramePop(timeStamp, threadID, className, methodName);
-			} else if (eventType.equals("CL")) {
-				// Class load.
-				String className = (event[2]).replace("/", ".");
-				program.handleClassLoad(timeStamp, className);
-			} else if (eventType.equals("TB")) {
-				// Thread begin.
-				Long threadID = new Long(event[2]);
-				program.handleThreadStart(timeStamp, threadID);
-			} else if (eventType.equals("TE")) {
-				// Thread end.
-				Long threadID = new Long(event[2]);
-				program.handleThreadStop(timeStamp, threadID);
-			} else if (eventType.equals("OA")) {
-				// Object allocation.
-				String className = (event[2]).replace("/", ".");
-				Long objectID = new Long(event[3]);
-				program.handleObjectAllocation(timeStamp, className, objectID);
-			} else if (eventType.equals("OF")) {
-				String className = (event[2]).replace("/", ".");
-				Long objectID = new Long(event[3]);
-				program.handleObjectFree(timeStamp, className, objectID);
-			} else if (eventType.equals("VS")) {
-				program.handleVMStart(timeStamp);
-			} else if (eventType.equals("VI")) {
-				program.handleVMInit(timeStamp);
-			} else if (eventType.equals("VD")) {
-				program.handleVMDeath(timeStamp);
+		readTrace(inputStream, BUFFER_SIZE);
+	}
+
+	/**
+	 * Reads the trace file from the specified channel, which is mapped into
+	 * memory a window at a time. This avoids the system calls and the copying
+	 * between layers of streams of {@link #readTrace(InputStream)}.
+	 * @param channel the specified channel.
+	 * @throws IOException if the trace could not be read.
+	 */
+	public void readTrace(FileChannel channel) throws IOException {
+		try {
+			readTrace(new MappedInputStream(channel), MAPPED_BUFFER_SIZE);
+		} finally {
+			channel.close();
+		}
+	}
+
+	private void readTrace(InputStream inputStream, int bufferSize) throws IOException {
+		buffer = new byte[bufferSize];
+		length = 0;
+
+		try {
+			int read;
+			while ((read = inputStream.read(buffer, length, buffer.length - length)) != -1) {
+				length += read;
+				consume();
+				progress.worked(read);
 			}
+
+			readTrailer(buffer, 0, length);
+		} finally {
+			buffer = null;
+			inputStream.close();
 		}
+	}
+
+	/**
+	 * Parses the complete events in the buffer, and moves the remaining bytes
+	 * to its start.
+	 */
+	private void consume() throws IOException {
+		int consumed = readEvents(buffer, 0, length);
+		length -= consumed;
+		System.arraycopy(buffer, consumed, buffer, 0, length);
 
-		in.close();
+		if (length == buffer.length) {
+			// A single event does not fit in the buffer.
+			buffer = Arrays.copyOf(buffer, 2 * buffer.length);
+		}
 	}
 
+	/**
+	 * Reads all complete events between offset (inclusive) and limit
+	 * (exclusive) in the specified array.
+	 * @param buffer the specified array.
+	 * @param offset the index of the first byte to read.
+	 * @param limit the index following the last byte to read.
+	 * @return the index of the start of the first incomplete event.
+	 * @throws IOException if an event could not be parsed.
+	 */
+	abstract int readEvents(byte[] buffer, int offset, int limit) throws IOException;
+
+	/**
+	 * Reads the bytes between offset (inclusive) and limit (exclusive) that
+	 * remain at the end of the trace, after all complete events have been
+	 * read.
+	 * @param buffer the specified array.
+	 * @param offset the index of the first remaining byte.
+	 * @param limit the index following the last remaining byte.
+	 * @throws IOException if the remaining bytes do not form a valid end of
+	 *                     the trace.
+	 */
+	abstract void readTrailer(byte[] buffer, int offset, int limit) throws IOException;
 }
@@ -0,0 +1,176 @@
+package tracevis.model;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+
+import tracevis.model.types.SymbolTable;
+import tracevis.utilities.LongIntMap;
+import tracevis.utilities.LongIterator;
+import tracevis.utilities.LongObjectMap;
+import tracevis.utilities.LongSet;
+
+/**
+ * The state of a traced program at some point in a trace: the classes which
+ * have been loaded, the threads and objects which are alive, and the frames
+ * which are open on the stack of each thread. The state is updated by the
+ * events it receives, and can be replayed as the minimal sequence of events
+ * which leads to it, so that a trace can be read from the middle.
+ * <p>
+ * Threads, objects and stacks are kept by their IDs in primitive hash
+ * tables, and the class of each object by the ID of its name, so that
+ * millions of live objects take little memory.
+ */
+class TraceState implements ProgramEventInterface {
+	private final Set<String> classes;
+	private final LongSet threads;
+	private final LongIntMap objects;
+	private final SymbolTable objectClasses;
+	private final LongObjectMap<List<OpenFrame>> stacks;
+
+	/**
+	 * Creates a new instance of TraceState, for the start of a trace.
+	 */
+	public TraceState() {
+		classes = new LinkedHashSet<String>();
+		threads = new LongSet();
+		objects = new LongIntMap(SymbolTable.NO_SYMBOL);
+		objectClasses = new SymbolTable();
+		stacks = new LongObjectMap<List<OpenFrame>>();
+	}
+
+	/**
+	 * Returns whether no events have changed the state.
+	 */
+	public boolean isEmpty() {
+		return classes.isEmpty() && threads.isEmpty() && objects.size() == 0 && stacks.size() == 0;
+	}
+
+	/**
+	 * Passes events to the specified event handler which bring it from the
+	 * start of a trace to this state: the class loads, followed by the starts
+	 * of the live threads, the allocations of the live objects and the entries
+	 * of the open frames, from the bottom of each stack to its top. The
+	 * threads, objects and stacks are replayed in order of their IDs, so that
+	 * the replay is the same whichever events led to the state.
+	 * @param program the specified event handler.
+	 * @param timeStamp the time stamp of the replayed events.
+	 */
+	public void replay(ProgramEventInterface program, long timeStamp) {
+		for (String className : classes) {
+			program.handleClassLoad(timeStamp, className);
+		}
+		for (long threadID : sort(threads.iterator(), threads.size())) {
+			program.handleThreadStart(timeStamp, threadID);
+		}
+		for (long objectID : sort(objects.keys(), objects.size())) {
+			program.handleObjectAllocation(timeStamp,
+			                               objectClasses.getClassName(objects.get(objectID)),
+			                               objectID);
+		}
+		for (long threadID : sort(stacks.keys(), stacks.size())) {
+			for (OpenFrame frame : stacks.get(threadID)) {
+				program.handleMethodEntry(timeStamp, threadID, frame.className,
+				                          frame.methodName, frame.objectID);
+			}
+		}
+	}
+
+	/**
+	 * Returns the specified number of values of the specified iterator, in
+	 * ascending order.
+	 */
+	private static long[] sort(LongIterator values, int count) {
+		long[] sorted = new long[count];
+		for (int i = 0; i < count; i++) {
+			sorted[i] = values.next();
+		}
+		Arrays.sort(sorted);
+		return sorted;
+	}
+
+	@Override
+	public void handleVMDeath(long timeStamp) {}
+
+	@Override
+	public void handleVMInit(long timeStamp) {}
+
+	@Override
+	public void handleVMStart(long timeStamp) {}
+
+	@Override
+	public void handleObjectFree(long timeStamp, String className, long objectID) {
+		objects.remove(objectID);
+	}
+
+	@Override
+	public void handleObjectAllocation(long timeStamp, String className, long objectID) {
+		objects.put(objectID, objectClasses.getClassID(className));
+	}
+
+	@Override
+	public void handleClassLoad(long timeStamp, String className) {
+		classes.add(className);
+	}
+
+	@Override
+	public void handleThreadStop(long timeStamp, long threadID) {
+		threads.remove(threadID);
+	}
+
+	@Override
+	public void handleThreadStart(long timeStamp, long threadID) {
+		threads.add(threadID);
+	}
+
+	@Override
+	public void handleFramePop(long timeStamp, long threadID, String className, String methodName) {
+		pop(threadID);
+	}
+
+	@Override
+	public void handleMethodExit(long timeStamp, long threadID, String className, String methodName) {
+		pop(threadID);
+	}
+
+	@Override
+	public void handleMethodEntry(long timeStamp, long threadID, String className,
+	                              String methodName, long objectID) {
+		List<OpenFrame> stack = stacks.get(threadID);
+		if (stack == null) {
+			stack = new ArrayList<OpenFrame>();
+			stacks.put(threadID, stack);
+		}
+		stack.add(new OpenFrame(className, methodName, objectID));
+	}
+
+	private void pop(long threadID) {
+		List<OpenFrame> stack = stacks.get(threadID);
+		if (stack != null) {
+			stack.remove(stack.size() - 1);
+			// Empty stacks are dropped, so that a thread which has left all
+			// its frames takes no memory, and does not keep the state from
+			// being empty.
+			if (stack.isEmpty()) {
+				stacks.remove(threadID);
+			}
+		}
+	}
+
+	/**
+	 * A method entry whose exit has not been seen yet.
+	 */
+	private static class OpenFrame {
+		final String className;
+		final String methodName;
+		final long objectID;
+
+		OpenFrame(String className, String methodName, long objectID) {
+			this.className = className;
+			this.methodName = methodName;
+			this.objectID = objectID;
+		}
+	}
+}
@@ -8,14 +8,15 @@
 
 package tracevis.model.types;
 
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
 import java.util.ArrayList;
-import java.util.HashMap;
+import java.util.Arrays;
+import java.util.LinkedHashSet;
 import java.util.List;
-import java.util.Map;
 import java.util.Set;
 
-import tracevis.utilities.BinarySearch;
-import tracevis.utilities.Condition;
 import edu.uci.ics.jung.graph.Edge;
 
 /**
@@ -25,47 +26,71 @@ import edu.uci.ics.jung.graph.Edge;
  */
 public class CallData {
 	private final Edge edge;
+	private final SymbolTable symbols;
+
+	// The window over which the calls are counted. The number of calls is
+	// only computed when it is asked for, and kept until the window moves,
+	// along with the version of the window it was computed for.
+	private MetricWindow window;
 
 	private int callCountTotal;
+	private int callCountTotalVersion;
 	private int maxCallCountTotal;
-	private Map<String, Integer> callCount;
-	private Map<String, TimeFunction<Integer>> callCountFunctions;
 
-	private Event lastEvent;
-	private List<Event> events;
+	// The number of calls of all methods together up to each time, so that
+	// the number of calls in a window is a subtraction of two values,
+	// however many methods are called.
+	private TimeFunction callCountTotalFunction;
+
+	// The IDs of the called methods in ascending order, and the call count
+	// function of each method at the same index.
+	private int[] methods;
+	private int methodCount;
+	private List<TimeFunction> callCountFunctions;
+
+	private EventStore eventStore;
+	private EventIndexList events;
 
 	/**
 	 * Creates a new instance of CallData.
 	 * @param edge the edge this CallData is associated with.
+	 * @param symbols the symbol table with the names of the called methods.
 	 */
-	public CallData(Edge edge) {
+	public CallData(Edge edge, SymbolTable symbols) {
 		this.edge = edge;
+		this.symbols = symbols;
 
-		this.callCountTotal = 0;
+		this.window = new MetricWindow();
+		this.callCountTotalVersion = -1;
 
-		this.callCount = new HashMap<String, Integer>();
-		this.callCountFunctions = new HashMap<String, TimeFunction<Integer>>();
-
-		this.lastEvent = null;
-		this.events = new ArrayList<Event>();
+		clearMethods();
 	}
 
-	public void startComputation(boolean firstTime) {
+	/**
+	 * Starts the computation of the metrics from the specified events.
+	 * @param eventStore the specified events.
+	 * @param firstTime whether the metrics are computed for the first time.
+	 */
+	public void startComputation(EventStore eventStore, boolean firstTime) {
+		this.eventStore = eventStore;
+
 		if (firstTime) {
 			maxCallCountTotal = 0;
-			callCount = new HashMap<String, Integer>();
-			callCountFunctions = new HashMap<String, TimeFunction<Integer>>();
+			clearMethods();
 		} else {
-			for (String method : callCount.keySet()) {
-				callCount.put(method, 0);
-				callCountFunctions.put(method, new TimeFunction<Integer>(0));
+			for (int i = 0; i < methodCount; i++) {
+				callCountFunctions.set(i, new TimeFunction(0));
 			}
 		}
 
-		callCountTotal = 0;
+		callCountTotalVersion = -1;
+		callCountTotalFunction = new TimeFunction(0);
 
-		lastEvent = null;
-		events = new ArrayList<Event>();
+		if (events == null) {
+			events = new EventIndexList(eventStore);
+		} else {
+			events.clear();
+		}
 	}
 
 	/**
@@ -73,110 +98,190 @@ public class CallData {
 	 * in the trace have been replayed.
 	 */
 	public void finishComputation(boolean firstTime) {
-		callCountTotal = 0;
-		callCount = new HashMap<String, Integer>();
-		lastEvent = null;
+		callCountTotalVersion = -1;
 
 		if (firstTime) {
-			maxCallCountTotal = 0;
-			for (String method : callCountFunctions.keySet()) {
-				TimeFunction<Integer> timeFunction = callCountFunctions.get(method);
-				Integer value = timeFunction.get(timeFunction.lastTime());
-				maxCallCountTotal += value;
-			}
+			maxCallCountTotal = callCountTotalFunction.lastValue();
+		}
+
+		callCountTotalFunction.trimToSize();
+		for (TimeFunction timeFunction : callCountFunctions) {
+			timeFunction.trimToSize();
 		}
 	}
 
 	/**
-	 * Registers the call of method methodName on the time specified by
-	 * timeStamp.
+	 * Writes the metrics computed for this edge to the specified stream, in
+	 * the form read by {@link #readMetrics(DataInputStream, EventStore)}.
+	 * Should be called after the metrics have been computed for the first
+	 * time.
+	 * @param output the specified stream.
+	 * @throws IOException if the stream could not be written.
 	 */
-	public void registerCall(String methodName, long timeStamp) {
-		Integer value = callCount.get(methodName);
-		if (value == null) {
-			value = 1;
-		} else {
-			value += 1;
+	public void writeMetrics(DataOutputStream output) throws IOException {
+		output.writeInt(maxCallCountTotal);
+		callCountTotalFunction.write(output);
+		output.writeInt(methodCount);
+		for (int i = 0; i < methodCount; i++) {
+			output.writeInt(methods[i]);
+			callCountFunctions.get(i).write(output);
+		}
+
+		events.write(output);
+	}
+
+	/**
+	 * Reads the metrics written by {@link #writeMetrics(DataOutputStream)}
+	 * from the specified stream, instead of computing them from the events.
+	 * @param input the specified stream.
+	 * @param eventStore the events the metrics were computed from.
+	 * @throws IOException if the stream could not be read.
+	 */
+	public void readMetrics(DataInputStream input, EventStore eventStore) throws IOException {
+		this.eventStore = eventStore;
+		if (events == null) {
+			events = new EventIndexList(eventStore);
 		}
-		callCount.put(methodName, value);
 
-		TimeFunction<Integer> timeFunction = callCountFunctions.get(methodName);
-		if (timeFunction == null) {
-			timeFunction = new TimeFunction<Integer>(0);
-			callCountFunctions.put(methodName, timeFunction);
+		maxCallCountTotal = input.readInt();
+		callCountTotalFunction = TimeFunction.read(input);
+		methodCount = input.readInt();
+		methods = new int[Math.max(4, methodCount)];
+		callCountFunctions = new ArrayList<TimeFunction>(methods.length);
+		for (int i = 0; i < methodCount; i++) {
+			methods[i] = input.readInt();
+			callCountFunctions.add(TimeFunction.read(input));
 		}
+		callCountTotalVersion = -1;
 
-		timeFunction.put(timeStamp, value);
+		events.read(input);
+	}
+
+	private void clearMethods() {
+		methods = new int[4];
+		methodCount = 0;
+		callCountTotalFunction = new TimeFunction(0);
+		callCountFunctions = new ArrayList<TimeFunction>(4);
 	}
 
 	/**
-	 * Registers an event with this edge.
-	 * @param event the event to register.
+	 * Returns the index of the specified method, or a negative number if it
+	 * has not been called.
 	 */
-	public void registerEvent(Event event) {
-		events.add(event);
+	private int indexOf(int method) {
+		return Arrays.binarySearch(methods, 0, methodCount, method);
 	}
 
 	/**
-	 * Updates the metrics to only include the events between the metric start
-	 * time and the current time.
-	 * @param metricStartTime the metrics start time.
-	 * @param currentTime the current time.
+	 * Adds the specified method, which has not been called yet, and returns
+	 * its index.
 	 */
-	public void updateMetrics(long metricStartTime, final long currentTime) {
-		callCountTotal = 0;
-		callCount.clear();
-		for (String method : callCountFunctions.keySet()) {
-			TimeFunction<Integer> timeFunction = callCountFunctions.get(method);
-			Integer value = timeFunction.get(currentTime) -
-			                timeFunction.get(metricStartTime);
-			callCountTotal += value;
-			callCount.put(method, value);
+	private int addMethod(int method) {
+		int index = -(indexOf(method) + 1);
+		if (methodCount == methods.length) {
+			methods = Arrays.copyOf(methods, 2 * methodCount);
 		}
-
-		lastEvent = null;
-//		if (events.size() > 0 && currentTime < events.get(0).getTime()) {
-//			lastEvent = null;
-//		} else {
-//			int index = BinarySearch.search(events, new Condition() {
-//				public boolean isTrue(Object o) {
-//					return ((Event)o).getTime() <= currentTime;
-//				}
-//			});
-//			lastEvent = events.get(index);
-//		}
+		System.arraycopy(methods, index, methods, index + 1, methodCount - index);
+		methods[index] = method;
+		callCountFunctions.add(index, new TimeFunction(0));
+		methodCount++;
+		return index;
 	}
 
 	/**
-	 * Returns the associated edge.
+	 * Registers the call of the method with ID methodID on the time specified
+	 * by timeStamp.
 	 */
-	public Edge getEdge() {
-		return edge;
+	public void registerCall(int methodID, long timeStamp) {
+		int index = indexOf(methodID);
+		if (index < 0) {
+			index = addMethod(methodID);
+		}
+		TimeFunction callCountFunction = callCountFunctions.get(index);
+		callCountFunction.put(timeStamp, callCountFunction.lastValue() + 1);
+		callCountTotalFunction.put(timeStamp, callCountTotalFunction.lastValue() + 1);
 	}
 
-	public Event getLastEvent() {
-		return lastEvent;
+	/**
+	 * Changes the number of calls of the specified method by the specified
+	 * deltas from the specified times on, for calls which have been filtered
+	 * out or in.
+	 * @param methodID the ID of the name of the method.
+	 * @param times the times of the changes, in ascending order.
+	 * @param deltas the change at each time.
+	 * @param count the number of changes.
+	 */
+	public void changeCallCount(int methodID, long[] times, int[] deltas, int count) {
+		int index = indexOf(methodID);
+		if (index < 0) {
+			index = addMethod(methodID);
+		}
+		callCountFunctions.get(index).add(times, deltas, count);
+		callCountTotalFunction.add(times, deltas, count);
+		callCountTotalVersion = -1;
 	}
 
 	/**
-	 * Returns the list of events
+	 * Appends the calls counted from a part of the events to the calls
+	 * counted from the events before it, as if the events in the part had
+	 * been visited after them.
+	 * @param segment the calls counted from the part.
 	 */
-	public List<Event> getEvents(final Range range) {
-		int lowIndex = 1 + BinarySearch.search(events, new Condition() {
-			@Override
-			public boolean isTrue(Object o) {
-				return ((Event)o).getTime() < range.getBegin();
+	public void append(CallSegment segment) {
+		for (int i = 0; i < segment.methodCount; i++) {
+			int index = indexOf(segment.methods[i]);
+			if (index < 0) {
+				index = addMethod(segment.methods[i]);
 			}
-		});
+			callCountFunctions.get(index).append(segment.callCountFunctions.get(i));
+		}
+		callCountTotalFunction.append(segment.callCountTotalFunction);
 
-		int highIndex = 1 + BinarySearch.search(events, new Condition() {
-			@Override
-			public boolean isTrue(Object o) {
-				return ((Event)o).getTime() <= range.getEnd();
-			}
-		});
+		events.moveAll(segment.events);
+	}
+
+	/**
+	 * Replaces the events registered with this edge.
+	 * @param events the indices of the events, in ascending order.
+	 */
+	public void setEvents(int[] events) {
+		this.events.clear();
+		for (int event : events) {
+			this.events.add(event);
+		}
+	}
+
+	/**
+	 * Registers an event with this edge.
+	 * @param event the index of the event to register.
+	 */
+	public void registerEvent(int event) {
+		events.add(event);
+	}
+
+	/**
+	 * Sets the window over which the calls of this edge are counted.
+	 * @param window the specified window.
+	 */
+	public void setMetricWindow(MetricWindow window) {
+		this.window = window;
+		callCountTotalVersion = -1;
+	}
+
+	/**
+	 * Returns the associated edge.
+	 */
+	public Edge getEdge() {
+		return edge;
+	}
 
-		return events.subList(lowIndex, highIndex);
+	/**
+	 * Returns the indices of the registered events which occurred within the
+	 * specified range.
+	 * @param range the specified range.
+	 */
+	public int[] getEvents(Range range) {
+		return events.get(eventStore, range);
 	}
 
 	/**
@@ -184,6 +289,10 @@ public class CallData {
 	 * the current time) associated with this edge.
 	 */
 	public int getCallCount() {
+		if (callCountTotalVersion != window.getVersion()) {
+			callCountTotal = window.getCount(callCountTotalFunction);
+			callCountTotalVersion = window.getVersion();
+		}
 		return callCountTotal;
 	}
 
@@ -199,7 +308,19 @@ public class CallData {
 	 * Returns the set of methods associated with this edge.
 	 */
 	public Set<String> getMethods() {
-		return callCountFunctions.keySet();
+		Set<String> methodNames = new LinkedHashSet<String>();
+		for (int i = 0; i < methodCount; i++) {
+			methodNames.add(symbols.getMethodName(methods[i]));
+		}
+		return methodNames;
+	}
+
+	/**
+	 * Returns the IDs of the methods associated with this edge, in ascending
+	 * order.
+	 */
+	public int[] getMethodIDs() {
+		return Arrays.copyOf(methods, methodCount);
 	}
 
 	/**
@@ -209,9 +330,19 @@ public class CallData {
 	 * @param method the name of the method.
 	 */
 	public int getMethodCallCount(String method) {
-		Integer count = callCount.get(method);
-		if (count != null) {
-			return count;
+		return getMethodCallCount(symbols.findMethodID(method));
+	}
+
+	/**
+	 * Returns the number of calls (counted between the metric start time and
+	 * the current time) of a method from the source of this edge to the
+	 * destination.
+	 * @param methodID the ID of the name of the method.
+	 */
+	public int getMethodCallCount(int methodID) {
+		int index = indexOf(methodID);
+		if (index >= 0) {
+			return window.getCount(callCountFunctions.get(index));
 		} else {
 			return 0;
 		}
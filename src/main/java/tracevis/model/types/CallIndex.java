@@ -0,0 +1,54 @@
+package tracevis.model.types;
+
+import tracevis.utilities.LongObjectMap;
+
+/**
+ * An index of the calls of a trace by caller and callee, which finds the
+ * calls between two classes in constant time. Looking up the edge between
+ * two vertices in the graph scans the edges of one of them, which is slow for
+ * classes with many callers or callees. The index is keyed by the vertex
+ * indices of the caller and the callee (see {@link ClassData#getIndex()}),
+ * and is kept up to date by whoever adds edges to the graph.
+ */
+public class CallIndex {
+	private final LongObjectMap<CallData> calls;
+
+	/**
+	 * Creates a new, empty instance of CallIndex.
+	 */
+	public CallIndex() {
+		calls = new LongObjectMap<CallData>();
+	}
+
+	private static long key(ClassData caller, ClassData callee) {
+		return ((long) caller.getIndex() << 32) | (callee.getIndex() & 0xffffffffL);
+	}
+
+	/**
+	 * Returns the calls from the specified caller to the specified callee,
+	 * or null if there are none.
+	 * @param caller the specified caller.
+	 * @param callee the specified callee.
+	 */
+	public CallData get(ClassData caller, ClassData callee) {
+		return calls.get(key(caller, callee));
+	}
+
+	/**
+	 * Adds the specified calls from the specified caller to the specified
+	 * callee to the index.
+	 * @param caller the specified caller.
+	 * @param callee the specified callee.
+	 * @param callData the specified calls.
+	 */
+	public void put(ClassData caller, ClassData callee, CallData callData) {
+		calls.put(key(caller, callee), callData);
+	}
+
+	/**
+	 * Returns the number of pairs of classes between which there are calls.
+	 */
+	public int size() {
+		return calls.size();
+	}
+}
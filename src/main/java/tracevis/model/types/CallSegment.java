@@ -0,0 +1,96 @@
+package tracevis.model.types;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * The calls between two classes counted from a contiguous part of the
+ * events, independently of the events before it, so that the parts of the
+ * trace can be visited on separate threads. The segment is appended to the
+ * call by {@link CallData#append(CallSegment)}, in the order of the parts.
+ */
+public class CallSegment {
+	final CallData callData;
+
+	final TimeFunction callCountTotalFunction;
+
+	// The IDs of the called methods in ascending order, and the call count
+	// function of each method at the same index.
+	int[] methods;
+	int methodCount;
+	final List<TimeFunction> callCountFunctions;
+
+	final EventIndexList events;
+
+	/**
+	 * Creates a new instance of CallSegment.
+	 * @param callData the call the calls are counted for.
+	 * @param eventStore the events the calls are counted from.
+	 */
+	public CallSegment(CallData callData, EventStore eventStore) {
+		this.callData = callData;
+
+		this.callCountTotalFunction = new TimeFunction(0);
+		this.methods = new int[4];
+		this.methodCount = 0;
+		this.callCountFunctions = new ArrayList<TimeFunction>(4);
+
+		this.events = new EventIndexList(eventStore);
+	}
+
+	/**
+	 * Returns the call the calls are counted for.
+	 */
+	public CallData getCallData() {
+		return callData;
+	}
+
+	public void registerCall(int methodID, long timeStamp) {
+		int index = Arrays.binarySearch(methods, 0, methodCount, methodID);
+		if (index < 0) {
+			index = -(index + 1);
+			if (methodCount == methods.length) {
+				methods = Arrays.copyOf(methods, 2 * methodCount);
+			}
+			System.arraycopy(methods, index, methods, index + 1, methodCount - index);
+			methods[index] = methodID;
+			callCountFunctions.add(index, new TimeFunction(0));
+			methodCount++;
+		}
+		TimeFunction callCountFunction = callCountFunctions.get(index);
+		callCountFunction.put(timeStamp, callCountFunction.lastValue() + 1);
+		callCountTotalFunction.put(timeStamp, callCountTotalFunction.lastValue() + 1);
+	}
+
+	public void registerEvent(int event) {
+		events.add(event);
+	}
+
+	/**
+	 * Replaces the provisional IDs of methods, which are negative, by the
+	 * specified IDs: -1 by the first of them, -2 by the second and so on.
+	 * @param methodIDs the specified IDs.
+	 */
+	public void resolveMethods(int[] methodIDs) {
+		for (int i = 0; i < methodCount; i++) {
+			if (methods[i] < 0) {
+				methods[i] = methodIDs[-methods[i] - 1];
+			}
+		}
+
+		// Sort the methods again, and their functions along with them.
+		for (int i = 1; i < methodCount; i++) {
+			int method = methods[i];
+			TimeFunction callCountFunction = callCountFunctions.get(i);
+			int j = i;
+			while (j > 0 && methods[j - 1] > method) {
+				methods[j] = methods[j - 1];
+				callCountFunctions.set(j, callCountFunctions.get(j - 1));
+				j--;
+			}
+			methods[j] = method;
+			callCountFunctions.set(j, callCountFunction);
+		}
+	}
+}
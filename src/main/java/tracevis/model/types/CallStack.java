@@ -8,68 +8,88 @@
 
 package tracevis.model.types;
 
-import java.util.Iterator;
-import java.util.LinkedList;
+import java.util.Arrays;
+import java.util.NoSuchElementException;
 
 
 
 /**
- * Stores a call stack.
+ * Stores a call stack. The frames on the stack are identified by their IDs
+ * in the {@link FrameTable} of the trace, and are kept in an array which
+ * grows as the stack gets deeper, so pushing a frame does not allocate.
  * @author Pieter Deelen
  */
-public class CallStack implements Iterable<Frame> {
+public class CallStack {
 
-	private final LinkedList<Frame> frames;
+	private int[] frames;
+	private int depth;
 
 	/**
 	 * Creates a new (empty) CallStack.
 	 */
 	public CallStack() {
-		frames = new LinkedList<Frame>();
+		frames = new int[16];
+		depth = 0;
 	}
 
 	/**
 	 * Push a frame on top of the stack.
-	 * @param newFrame the new frame.
+	 * @param frameID the ID of the new frame.
 	 */
-	public void push(Frame newFrame) {
-		frames.addFirst(newFrame);
+	public void push(int frameID) {
+		if (depth == frames.length) {
+			frames = Arrays.copyOf(frames, 2 * depth);
+		}
+		frames[depth++] = frameID;
 	}
 
 	/**
 	 * Pop the frame from the top of the stack.
+	 * @throws java.util.NoSuchElementException if the stack is empty.
 	 */
 	public void pop() {
-		frames.removeFirst();
+		if (depth == 0) {
+			throw new NoSuchElementException();
+		}
+		depth--;
 	}
 
 	/**
-	 * Returns the frame on top of the stack.
+	 * Returns the ID of the frame on top of the stack.
+	 * @throws java.util.NoSuchElementException if the stack is empty.
 	 */
-	public Frame top() {
-		return frames.getFirst();
+	public int top() {
+		if (depth == 0) {
+			throw new NoSuchElementException();
+		}
+		return frames[depth - 1];
 	}
 
 	/**
-	 * Returns an iterator which iterates over the stack from top to bottom.
+	 * Returns the ID of the frame at the specified position, counting from
+	 * the top of the stack, which is at position 0. Iterating over the stack
+	 * from top to bottom by position does not allocate.
+	 * @param position the specified position.
 	 */
-	@Override
-	public Iterator<Frame> iterator() {
-		return frames.iterator();
+	public int get(int position) {
+		if (position < 0 || position >= depth) {
+			throw new IndexOutOfBoundsException("Position " + position + ", depth " + depth);
+		}
+		return frames[depth - 1 - position];
 	}
 
 	/**
 	 * Returns the depth of the stack.
 	 */
 	public int depth() {
-		return frames.size();
+		return depth;
 	}
 
 	@Override
 	public String toString() {
 		StringBuilder result = new StringBuilder();
-		for (Frame frame : frames) {
-			result.append(frame.toString());
+		for (int position = 0; position < depth; position++) {
+			result.append('[').append(get(position)).append(']');
 		}
 		return result.toString();
 	}
@@ -8,13 +8,15 @@
 
 package tracevis.model.types;
 
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
 import java.util.ArrayList;
 import java.util.LinkedList;
 import java.util.List;
 
 import tracevis.utilities.BinarySearch;
 import tracevis.utilities.Condition;
-import edu.uci.ics.jung.graph.Edge;
 import edu.uci.ics.jung.graph.Vertex;
 
 /**
@@ -24,87 +26,159 @@ import edu.uci.ics.jung.graph.Vertex;
  */
 public class ClassData {
 	private final Vertex vertex;
+	private final int index;
+	private final CallIndex calls;
 
+	private final int id;
 	private final String name;
 
+	// The window over which the metrics are counted. Each metric is only
+	// computed when it is asked for, and kept until the window moves, along
+	// with the version of the window it was computed for.
+	private MetricWindow window;
+
 	private int callsSent;
+	private int callsSentVersion;
 	private int maxCallsSent;
-	private TimeFunction<Integer> callsSentFunction;
+	private TimeFunction callsSentFunction;
 
 	private int callsReceived;
+	private int callsReceivedVersion;
 	private int maxCallsReceived;
-	private TimeFunction<Integer> callsReceivedFunction;
+	private TimeFunction callsReceivedFunction;
 
 	private int instanceCount;
+	private int instanceCountVersion;
 	private int maxInstanceCount;
-	private TimeFunction<Integer> instanceCountFunction;
+	private TimeFunction instanceCountFunction;
 	private List<Long> instances;
 
 	private int loadCount;
 
 	private int activityCount;
-	private List<Range> activityRanges;
+	private RangeList activityRanges;
 	private long beginCurrentActivity;
+	private boolean activityUnderflow;
 
-	private Event lastEvent;
-	private List<Event> events;
+	private EventStore eventStore;
+	private EventIndexList events;
 
 	/**
 	 * Creates a new instance of ClassData.
 	 * @param vertex the vertex this ClassData is associated with.
+	 * @param index the index of the vertex among the vertices of the trace.
+	 * @param id the ID of the name of the class.
 	 * @param name the name of the class.
+	 * @param calls the index of the calls between the classes of the trace.
 	 */
-	public ClassData(Vertex vertex, String name) {
+	public ClassData(Vertex vertex, int index, int id, String name, CallIndex calls) {
 		this.vertex = vertex;
+		this.index = index;
+		this.calls = calls;
 
+		this.id = id;
 		this.name = name;
 
-		this.callsSent = 0;
-		this.callsSentFunction = new TimeFunction<Integer>(0);
+		this.window = new MetricWindow();
+		invalidateMetrics();
 
-		this.callsReceived = 0;
-		this.callsReceivedFunction = new TimeFunction<Integer>(0);
+		this.callsSentFunction = new TimeFunction(0);
+		this.callsReceivedFunction = new TimeFunction(0);
 
-		this.instanceCount = 0;
 		this.maxInstanceCount = 0;
-		this.instanceCountFunction = new TimeFunction<Integer>(0);
+		this.instanceCountFunction = new TimeFunction(0);
 		this.instances = new LinkedList<Long>();
 
 		this.loadCount = 0;
 
 		this.activityCount = 0;
 		this.beginCurrentActivity = -1;
-		this.activityRanges = new ArrayList<Range>();
-
-		this.lastEvent = null;
-		this.events = new ArrayList<Event>();
+		this.activityRanges = new RangeList(0);
 	}
 
-	public void startComputation(boolean firstTime) {
+	/**
+	 * Starts the computation of the metrics from the specified events.
+	 * @param eventStore the specified events.
+	 * @param firstTime whether the metrics are computed for the first time.
+	 */
+	public void startComputation(EventStore eventStore, boolean firstTime) {
+		this.eventStore = eventStore;
+		if (events == null) {
+			events = new EventIndexList(eventStore);
+		}
+
 		if (firstTime) {
 			maxCallsSent = 0;
 			maxCallsReceived = 0;
 			maxInstanceCount = 0;
 		}
 
-		callsSent = 0;
-		callsSentFunction = new TimeFunction<Integer>(0);
+		invalidateMetrics();
+		callsSentFunction = new TimeFunction(0);
+		callsReceivedFunction = new TimeFunction(0);
+		instanceCountFunction = new TimeFunction(0);
+		resetState();
 
-		callsReceived = 0;
-		callsReceivedFunction = new TimeFunction<Integer>(0);
+		restartActivity();
+	}
 
-		instanceCount = 0;
-		instanceCountFunction = new TimeFunction<Integer>(0);
-		instances = new LinkedList<Long>();
+	/**
+	 * Forgets the activity of this class and the events registered with it,
+	 * so that they can be computed again, without changing its other
+	 * metrics. Should be followed by {@link #finishComputation(long, boolean)}.
+	 */
+	public void restartActivity() {
+		restartActivity(Long.MIN_VALUE);
+	}
 
+	/**
+	 * Forgets the activity of this class and the events registered with it
+	 * after the specified time, so that they can be computed again from the
+	 * events after that time, without changing its other metrics. The class
+	 * should be inactive at that time, as found by
+	 * {@link #getInactiveTimeBefore(long)}. Should be followed by
+	 * {@link #finishActivity(long)}.
+	 * @param timeStamp the specified time.
+	 */
+	public void restartActivity(long timeStamp) {
 		activityCount = 0;
 		beginCurrentActivity = -1;
-		activityRanges = new ArrayList<Range>();
+		if (timeStamp == Long.MIN_VALUE) {
+			activityUnderflow = false;
+			activityRanges.clear();
+			events.clear();
+		} else {
+			activityRanges.removeAfter(timeStamp);
+			events.removeAfter(eventStore, timeStamp);
+		}
+	}
 
-		loadCount = 0;
+	/**
+	 * Returns the last time before the specified time at which this class
+	 * was inactive, after all events at that time, or
+	 * <code>Long.MIN_VALUE</code> if it is not known to be.
+	 * @param timeStamp the specified time.
+	 */
+	public long getInactiveTimeBefore(long timeStamp) {
+		if (activityUnderflow) {
+			return Long.MIN_VALUE;
+		}
+		// A range may begin at the same time as the previous one ends.
+		int index = activityRanges.endsBefore(timeStamp) - 1;
+		while (index >= 0 && index + 1 < activityRanges.size() &&
+		       activityRanges.getBegin(index + 1) <= activityRanges.getEnd(index)) {
+			index--;
+		}
+		return index >= 0 ? activityRanges.getEnd(index) : Long.MIN_VALUE;
+	}
 
-		lastEvent = null;
-		events = new ArrayList<Event>();
+	/**
+	 * Resets the state of this class at the current time, which is restored
+	 * by replaying the events up to that time.
+	 */
+	public void resetState() {
+		instances = new LinkedList<Long>();
+		loadCount = 0;
 	}
 
 	/**
@@ -114,39 +188,184 @@ public class ClassData {
 	 */
 	public void finishComputation(long timeStamp, boolean firstTime) {
 		if (firstTime) {
-			maxCallsSent = callsSent;
-			maxCallsReceived = callsReceived;
+			maxCallsSent = callsSentFunction.lastValue();
+			maxCallsReceived = callsReceivedFunction.lastValue();
 		}
 
+		finishActivity(timeStamp);
+
+		callsSentFunction.trimToSize();
+		callsReceivedFunction.trimToSize();
+		instanceCountFunction.trimToSize();
+
+		loadCount = 0;
+	}
+
+	/**
+	 * Completes the activity of this class which was computed again after
+	 * {@link #restartActivity(long)}, without changing its other metrics or
+	 * its state.
+	 * @param timeStamp the time of the end of execution.
+	 */
+	public void finishActivity(long timeStamp) {
 		if (beginCurrentActivity != -1) {
-			activityRanges.add(new Range(beginCurrentActivity, timeStamp));
+			activityRanges.add(beginCurrentActivity, timeStamp);
 		}
 
-		callsSent = 0;
-		callsReceived = 0;
-		instanceCount = 0;
-		loadCount = 0;
+		invalidateMetrics();
+	}
+
+	/**
+	 * Writes the metrics computed for this class to the specified stream, in
+	 * the form read by {@link #readMetrics(DataInputStream, EventStore)}.
+	 * Should be called after the metrics have been computed for the first
+	 * time.
+	 * @param output the specified stream.
+	 * @throws IOException if the stream could not be written.
+	 */
+	public void writeMetrics(DataOutputStream output) throws IOException {
+		output.writeInt(maxCallsSent);
+		output.writeInt(maxCallsReceived);
+		output.writeInt(maxInstanceCount);
+		callsSentFunction.write(output);
+		callsReceivedFunction.write(output);
+		instanceCountFunction.write(output);
+
+		output.writeInt(activityRanges.size());
+		for (int i = 0; i < activityRanges.size(); i++) {
+			output.writeLong(activityRanges.getBegin(i));
+			output.writeLong(activityRanges.getEnd(i));
+		}
+
+		events.write(output);
+	}
+
+	/**
+	 * Reads the metrics written by {@link #writeMetrics(DataOutputStream)}
+	 * from the specified stream, instead of computing them from the events.
+	 * @param input the specified stream.
+	 * @param eventStore the events the metrics were computed from.
+	 * @throws IOException if the stream could not be read.
+	 */
+	public void readMetrics(DataInputStream input, EventStore eventStore) throws IOException {
+		startComputation(eventStore, true);
+
+		maxCallsSent = input.readInt();
+		maxCallsReceived = input.readInt();
+		maxInstanceCount = input.readInt();
+		callsSentFunction = TimeFunction.read(input);
+		callsReceivedFunction = TimeFunction.read(input);
+		instanceCountFunction = TimeFunction.read(input);
+
+		int rangeCount = input.readInt();
+		activityRanges = new RangeList(rangeCount);
+		for (int i = 0; i < rangeCount; i++) {
+			long begin = input.readLong();
+			activityRanges.add(begin, input.readLong());
+		}
+
+		events.read(input);
+		// Whether the activity count went below zero is not stored.
+		activityUnderflow = true;
 	}
 
 	public void increaseCallsSent(long timeStamp) {
-		callsSent += 1;
-		callsSentFunction.put(timeStamp, callsSent);
+		callsSentFunction.put(timeStamp, callsSentFunction.lastValue() + 1);
 	}
 
 	public void increaseCallsReceived(long timeStamp) {
-		callsReceived += 1;
-		callsReceivedFunction.put(timeStamp, callsReceived);
+		callsReceivedFunction.put(timeStamp, callsReceivedFunction.lastValue() + 1);
 	}
 
 	public void increaseInstanceCount(long timeStamp) {
-		instanceCount += 1;
-		maxInstanceCount = Math.max(maxInstanceCount, instanceCount);
-		instanceCountFunction.put(timeStamp, instanceCount);
+		int count = instanceCountFunction.lastValue() + 1;
+		maxInstanceCount = Math.max(maxInstanceCount, count);
+		instanceCountFunction.put(timeStamp, count);
 	}
 
 	public void decreaseInstanceCount(long timeStamp) {
-		instanceCount -= 1;
-		instanceCountFunction.put(timeStamp, instanceCount);
+		instanceCountFunction.put(timeStamp, instanceCountFunction.lastValue() - 1);
+	}
+
+	/**
+	 * Changes the number of calls sent by the specified deltas from the
+	 * specified times on, for calls which have been filtered out or in.
+	 * @param times the times of the changes, in ascending order.
+	 * @param deltas the change at each time.
+	 * @param count the number of changes.
+	 */
+	public void changeCallsSent(long[] times, int[] deltas, int count) {
+		callsSentFunction.add(times, deltas, count);
+		invalidateMetrics();
+	}
+
+	/**
+	 * Changes the number of calls received by the specified deltas from the
+	 * specified times on, for calls which have been filtered out or in.
+	 * @param times the times of the changes, in ascending order.
+	 * @param deltas the change at each time.
+	 * @param count the number of changes.
+	 */
+	public void changeCallsReceived(long[] times, int[] deltas, int count) {
+		callsReceivedFunction.add(times, deltas, count);
+		invalidateMetrics();
+	}
+
+	/**
+	 * Changes the instance count by the specified deltas from the specified
+	 * times on, for allocations and frees which have been filtered out or in.
+	 * @param times the times of the changes, in ascending order.
+	 * @param deltas the change at each time.
+	 * @param count the number of changes.
+	 */
+	public void changeInstanceCount(long[] times, int[] deltas, int count) {
+		instanceCountFunction.add(times, deltas, count);
+		for (int i = 0; i < instanceCountFunction.size(); i++) {
+			maxInstanceCount = Math.max(maxInstanceCount, instanceCountFunction.getValue(i));
+		}
+		invalidateMetrics();
+	}
+
+	/**
+	 * Appends the metrics computed from a part of the events to the metrics
+	 * computed from the events before it, as if the events in the part had
+	 * been visited after them.
+	 * @param segment the metrics computed from the part.
+	 */
+	public void append(ClassSegment segment) {
+		int instanceCount = instanceCountFunction.lastValue();
+		maxInstanceCount = Math.max(maxInstanceCount, instanceCount + segment.maxInstanceCount);
+		callsSentFunction.append(segment.callsSentFunction);
+		callsReceivedFunction.append(segment.callsReceivedFunction);
+		instanceCountFunction.append(segment.instanceCountFunction);
+
+		if (activityCount + segment.minActivityCount > 0) {
+			// The class is active during the whole part.
+			activityCount += segment.activityCount;
+		} else if (activityCount + segment.minActivityCount == 0) {
+			for (int i = 0; i < segment.activityRanges.size(); i++) {
+				long begin = segment.activityRanges.getBegin(i);
+				activityRanges.add(begin != ClassSegment.OPEN ? begin : beginCurrentActivity,
+				                   segment.activityRanges.getEnd(i));
+			}
+			if (segment.beginCurrentActivity != ClassSegment.OPEN) {
+				beginCurrentActivity = segment.beginCurrentActivity;
+			}
+			activityCount += segment.activityCount;
+		} else {
+			// The activity count goes below zero, which the ranges of the
+			// part do not account for.
+			for (int i = 0; i < segment.events.size(); i++) {
+				long time = eventStore.getTime(segment.events.get(i));
+				if (segment.isIncrease(i)) {
+					increaseActivityCount(time);
+				} else {
+					decreaseActivityCount(time);
+				}
+			}
+		}
+
+		events.moveAll(segment.events);
 	}
 
 	public void increaseActivityCount(long timeStamp) {
@@ -158,8 +377,10 @@ public class ClassData {
 
 	public void decreaseActivityCount(long timeStamp) {
 		activityCount -= 1;
-		if (activityCount == 0) {
-			activityRanges.add(new Range(beginCurrentActivity, timeStamp));
+		if (activityCount < 0) {
+			activityUnderflow = true;
+		} else if (activityCount == 0) {
+			activityRanges.add(beginCurrentActivity, timeStamp);
 			beginCurrentActivity = -1;
 		}
 	}
@@ -174,37 +395,29 @@ public class ClassData {
 
 	/**
 	 * Registers an event with this vertex.
-	 * @param event the event to register.
+	 * @param event the index of the event to register.
 	 */
-	public void registerEvent(Event event) {
+	public void registerEvent(int event) {
 		events.add(event);
-
 	}
 
 	/**
-	 * Updates the metrics to only include the events between the metric start
-	 * time and the current time.
-	 * @param metricStartTime the metrics start time.
-	 * @param currentTime the current time.
+	 * Sets the window over which the metrics of this class are counted.
+	 * @param window the specified window.
 	 */
-	public void updateMetrics(long metricStartTime, final long currentTime) {
-		callsSent = callsSentFunction.get(currentTime) -
-		            callsSentFunction.get(metricStartTime);
-		callsReceived = callsReceivedFunction.get(currentTime) -
-		                callsReceivedFunction.get(metricStartTime);
-		instanceCount = instanceCountFunction.get(currentTime);
+	public void setMetricWindow(MetricWindow window) {
+		this.window = window;
+		invalidateMetrics();
+	}
 
-		lastEvent = null;
-//		if (events.size() > 0 && currentTime < events.get(0).getTime()) {
-//			lastEvent = null;
-//		} else {
-//			int index = BinarySearch.search(events, new Condition() {
-//				public boolean isTrue(Object o) {
-//					return ((Event)o).getTime() <= currentTime;
-//				}
-//			});
-//			lastEvent = events.get(index);
-//		}
+	/**
+	 * Forgets the metrics computed so far, so that they are computed again
+	 * when they are asked for.
+	 */
+	private void invalidateMetrics() {
+		callsSentVersion = -1;
+		callsReceivedVersion = -1;
+		instanceCountVersion = -1;
 	}
 
 	public void registerInstance(long objectID) {
@@ -219,29 +432,13 @@ public class ClassData {
 		return instances;
 	}
 
-	public Event getLastEvent() {
-		return lastEvent;
-	}
-
 	/**
-	 * Returns the list of events
+	 * Returns the indices of the registered events which occurred within the
+	 * specified range.
+	 * @param range the specified range.
 	 */
-	public List<Event> getEvents(final Range range) {
-		int lowIndex = 1 + BinarySearch.search(events, new Condition() {
-			@Override
-			public boolean isTrue(Object o) {
-				return ((Event)o).getTime() < range.getBegin();
-			}
-		});
-
-		int highIndex = 1 + BinarySearch.search(events, new Condition() {
-			@Override
-			public boolean isTrue(Object o) {
-				return ((Event)o).getTime() <= range.getEnd();
-			}
-		});
-
-		return events.subList(lowIndex, highIndex);
+	public int[] getEvents(Range range) {
+		return events.get(eventStore, range);
 	}
 
 	/**
@@ -258,6 +455,22 @@ public class ClassData {
 		return vertex;
 	}
 
+	/**
+	 * Returns the index of the vertex among the vertices of the trace, which
+	 * are numbered from 0 in the order in which they were created.
+	 */
+	public int getIndex() {
+		return index;
+	}
+
+	/**
+	 * Returns the ID of the name of the class in the symbol table of the
+	 * trace.
+	 */
+	public int getID() {
+		return id;
+	}
+
 	/**
 	 * Returns the canonical name of the class.
 	 */
@@ -302,6 +515,10 @@ public class ClassData {
 	 * the current time) this class has sent to other classes.
 	 */
 	public int getCallsSent() {
+		if (callsSentVersion != window.getVersion()) {
+			callsSent = window.getCount(callsSentFunction);
+			callsSentVersion = window.getVersion();
+		}
 		return callsSent;
 	}
 
@@ -318,6 +535,10 @@ public class ClassData {
 	 * the current time) this class has received from other classes.
 	 */
 	public int getCallsReceived() {
+		if (callsReceivedVersion != window.getVersion()) {
+			callsReceived = window.getCount(callsReceivedFunction);
+			callsReceivedVersion = window.getVersion();
+		}
 		return callsReceived;
 	}
 
@@ -333,6 +554,10 @@ public class ClassData {
 	 * Returns the current number of instances of this class.
 	 */
 	public int getInstanceCount() {
+		if (instanceCountVersion != window.getVersion()) {
+			instanceCount = window.getValue(instanceCountFunction);
+			instanceCountVersion = window.getVersion();
+		}
 		return instanceCount;
 	}
 
@@ -375,15 +600,15 @@ public class ClassData {
 		return activityRanges.subList(lowIndex, highIndex + 1);
 	}
 
-	public TimeFunction<Integer> getInstanceCountFunction() {
+	public TimeFunction getInstanceCountFunction() {
 		return instanceCountFunction;
 	}
 
-	public TimeFunction<Integer> getCallsSentFunction() {
+	public TimeFunction getCallsSentFunction() {
 		return callsSentFunction;
 	}
 
-	public TimeFunction<Integer> getCallsReceivedFunction() {
+	public TimeFunction getCallsReceivedFunction() {
 		return callsReceivedFunction;
 	}
 
@@ -393,13 +618,6 @@ public class ClassData {
 	 * @param calleeData the other class.
 	 */
 	public CallData getCallData(ClassData calleeData) {
-		Vertex callerVertex = vertex;
-		Vertex calleeVertex = calleeData.getVertex();
-		Edge edge = callerVertex.findEdge(calleeVertex);
-		if (edge == null) {
-			return null;
-		} else {
-			return (CallData)edge.getUserDatum("tracevis.model.Program");
-		}
+		return calls.get(this, calleeData);
 	}
 }
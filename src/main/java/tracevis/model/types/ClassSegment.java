@@ -0,0 +1,137 @@
+package tracevis.model.types;
+
+import java.util.Arrays;
+
+/**
+ * The metrics of a class computed from a contiguous part of the events,
+ * independently of the events before it, so that the parts of the trace can
+ * be visited on separate threads. The counts start at zero; they are offset
+ * by the counts at the start of the part when the segment is appended to the
+ * class by {@link ClassData#append(ClassSegment)}, in the order of the parts.
+ */
+public class ClassSegment {
+	final ClassData classData;
+
+	final TimeFunction callsSentFunction;
+	final TimeFunction callsReceivedFunction;
+	final TimeFunction instanceCountFunction;
+	int maxInstanceCount;
+
+	// The activity count relative to the start of the part, and the lowest
+	// it has been. Whichever the count at the start, the class is active
+	// where the relative count is above the lowest one, provided that the
+	// absolute count then is zero; the ranges are kept for that case.
+	int activityCount;
+	int minActivityCount;
+	final RangeList activityRanges;
+	long beginCurrentActivity;
+
+	// The events registered with the class, each of which changed its
+	// activity count, and which of them increased it.
+	final EventIndexList events;
+	long[] increases;
+
+	/**
+	 * The begin of an activity range which began before the part.
+	 */
+	static final long OPEN = Long.MIN_VALUE;
+
+	/**
+	 * Creates a new instance of ClassSegment.
+	 * @param classData the class the metrics are computed for.
+	 * @param eventStore the events the metrics are computed from.
+	 */
+	public ClassSegment(ClassData classData, EventStore eventStore) {
+		this.classData = classData;
+
+		this.callsSentFunction = new TimeFunction(0);
+		this.callsReceivedFunction = new TimeFunction(0);
+		this.instanceCountFunction = new TimeFunction(0);
+		this.maxInstanceCount = 0;
+
+		this.activityCount = 0;
+		this.minActivityCount = 0;
+		this.activityRanges = new RangeList(0);
+		this.beginCurrentActivity = -1;
+
+		this.events = new EventIndexList(eventStore);
+		this.increases = new long[1];
+	}
+
+	/**
+	 * Returns the class the metrics are computed for.
+	 */
+	public ClassData getClassData() {
+		return classData;
+	}
+
+	public void increaseCallsSent(long timeStamp) {
+		callsSentFunction.put(timeStamp, callsSentFunction.lastValue() + 1);
+	}
+
+	public void increaseCallsReceived(long timeStamp) {
+		callsReceivedFunction.put(timeStamp, callsReceivedFunction.lastValue() + 1);
+	}
+
+	public void increaseInstanceCount(long timeStamp) {
+		int count = instanceCountFunction.lastValue() + 1;
+		maxInstanceCount = Math.max(maxInstanceCount, count);
+		instanceCountFunction.put(timeStamp, count);
+	}
+
+	public void decreaseInstanceCount(long timeStamp) {
+		instanceCountFunction.put(timeStamp, instanceCountFunction.lastValue() - 1);
+	}
+
+	/**
+	 * Increases the activity count of the class, and registers the specified
+	 * event with it.
+	 * @param timeStamp the time of the event.
+	 * @param event the index of the event.
+	 */
+	public void increaseActivityCount(long timeStamp, int event) {
+		int change = events.size();
+		if (change >> 6 == increases.length) {
+			increases = Arrays.copyOf(increases, 2 * increases.length);
+		}
+		increases[change >> 6] |= 1L << change;
+		events.add(event);
+
+		activityCount += 1;
+		if (activityCount == minActivityCount + 1) {
+			beginCurrentActivity = timeStamp;
+		}
+	}
+
+	/**
+	 * Decreases the activity count of the class, and registers the specified
+	 * event with it.
+	 * @param timeStamp the time of the event.
+	 * @param event the index of the event.
+	 */
+	public void decreaseActivityCount(long timeStamp, int event) {
+		events.add(event);
+
+		activityCount -= 1;
+		if (activityCount < minActivityCount) {
+			// The class was active during the whole part so far, given
+			// a count of zero now.
+			minActivityCount = activityCount;
+			activityRanges.clear();
+			activityRanges.add(OPEN, timeStamp);
+			beginCurrentActivity = -1;
+		} else if (activityCount == minActivityCount) {
+			activityRanges.add(beginCurrentActivity, timeStamp);
+			beginCurrentActivity = -1;
+		}
+	}
+
+	/**
+	 * Returns whether the change of the activity count by the registered
+	 * event at the specified position increased it.
+	 * @param change the position of the event.
+	 */
+	boolean isIncrease(int change) {
+		return (increases[change >> 6] & (1L << change)) != 0;
+	}
+}
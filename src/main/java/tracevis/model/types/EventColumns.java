@@ -0,0 +1,64 @@
+package tracevis.model.types;
+
+/**
+ * The storage of the fields of the events in an {@link EventStore}, one
+ * column per field. The store decides when the columns grow; the columns
+ * decide where they are kept.
+ */
+interface EventColumns {
+	/**
+	 * Returns the number of events the columns can hold.
+	 */
+	int getCapacity();
+
+	/**
+	 * Changes the number of events the columns can hold, keeping the events
+	 * which fit.
+	 * @param capacity the new capacity.
+	 */
+	void setCapacity(int capacity);
+
+	/**
+	 * Sets the fields of the specified event which are read from the trace.
+	 * The frame, caller and callee of the event are set to -1.
+	 * @param event the index of the specified event.
+	 */
+	void set(int event, long time, byte type, int thread, int classID,
+	         int methodID, long objectID);
+
+	long getTime(int event);
+
+	byte getType(int event);
+
+	int getThread(int event);
+
+	int getClassID(int event);
+
+	int getMethodID(int event);
+
+	long getObjectID(int event);
+
+	int getFrameID(int event);
+
+	void setFrameID(int event, int frameID);
+
+	int getCaller(int event);
+
+	void setCaller(int event, int caller);
+
+	int getCallee(int event);
+
+	void setCallee(int event, int callee);
+
+	/**
+	 * Returns the pool which holds the lists of event indices of the classes
+	 * and calls of the trace, which is kept where the columns are.
+	 */
+	EventIndexPool getIndexPool();
+
+	/**
+	 * Releases the resources held by the columns and their index pool, after
+	 * which they should not be used.
+	 */
+	void close();
+}
@@ -0,0 +1,109 @@
+package tracevis.model.types;
+
+/**
+ * A movable view of a single event in an {@link EventStore}. A cursor is a
+ * flyweight: the same cursor shows each event in turn, so that the events of
+ * a trace can be visited without allocating an object per event. The values
+ * returned by a cursor are those of the event it is positioned at, and change
+ * when the cursor is moved.
+ */
+public final class EventCursor {
+	private final EventStore events;
+	private int index;
+
+	/**
+	 * Creates a new instance of EventCursor, positioned before the first
+	 * event of the specified store.
+	 * @param events the specified store.
+	 */
+	EventCursor(EventStore events) {
+		this.events = events;
+		this.index = -1;
+	}
+
+	/**
+	 * Moves the cursor to the next event, and returns whether there is such
+	 * an event.
+	 */
+	public boolean next() {
+		if (index < events.size()) {
+			index++;
+		}
+		return index < events.size();
+	}
+
+	/**
+	 * Moves the cursor to the specified event.
+	 * @param index the index of the specified event.
+	 */
+	public void moveTo(int index) {
+		this.index = index;
+	}
+
+	/**
+	 * Returns the index of the event the cursor is positioned at.
+	 */
+	public int getIndex() {
+		return index;
+	}
+
+	public EventType getType() {
+		return events.getType(index);
+	}
+
+	public long getTime() {
+		return events.getTime(index);
+	}
+
+	public long getThreadID() {
+		return events.getThreadID(index);
+	}
+
+	public int getClassID() {
+		return events.getClassID(index);
+	}
+
+	public int getMethodID() {
+		return events.getMethodID(index);
+	}
+
+	public long getObjectID() {
+		return events.getObjectID(index);
+	}
+
+	public Frame getFrame() {
+		return events.getFrame(index);
+	}
+
+	public int getFrameID() {
+		return events.getFrameID(index);
+	}
+
+	public void setFrameID(int frameID) {
+		events.setFrameID(index, frameID);
+	}
+
+	public int getCaller() {
+		return events.getCaller(index);
+	}
+
+	public void setCaller(int caller) {
+		events.setCaller(index, caller);
+	}
+
+	public int getCallee() {
+		return events.getCallee(index);
+	}
+
+	public void setCallee(int callee) {
+		events.setCallee(index, callee);
+	}
+
+	public boolean isFiltered() {
+		return events.isFiltered(index);
+	}
+
+	public void setFiltered(boolean filtered) {
+		events.setFiltered(index, filtered);
+	}
+}
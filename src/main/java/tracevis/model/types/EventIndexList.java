@@ -0,0 +1,242 @@
+package tracevis.model.types;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+/**
+ * A growable list of the indices of events in an {@link EventStore}, in the
+ * order in which the events occurred. The indices are kept in blocks of the
+ * index pool of the store, so that the lists are kept in memory mapped files
+ * when the events are. The blocks double in size up to a maximum, so that
+ * short lists take little space and long lists few blocks.
+ */
+public class EventIndexList {
+	private static final int MIN_SHIFT = EventIndexPool.MIN_BLOCK_SHIFT;
+	private static final int MAX_SHIFT = EventIndexPool.MAX_BLOCK_SHIFT;
+
+	// The number of blocks which are smaller than the maximum, and the
+	// number of indices they hold together.
+	private static final int GROWING_BLOCKS = MAX_SHIFT - MIN_SHIFT;
+	private static final int GROWING_SIZE = (1 << MAX_SHIFT) - (1 << MIN_SHIFT);
+
+	// The number of indices read at a time.
+	private static final int READ_CHUNK = 4096;
+
+	private final EventIndexPool pool;
+
+	// The positions of the blocks in the pool.
+	private long[] blocks;
+	private int blockCount;
+
+	private int size;
+	// The number of indices the blocks can hold, and the position in the
+	// pool at which the next index is added if it is less than the size.
+	private int capacity;
+	private long tail;
+
+	/**
+	 * Creates a new, empty instance of EventIndexList.
+	 * @param events the store the events are in.
+	 */
+	public EventIndexList(EventStore events) {
+		this.pool = events.getIndexPool();
+		this.blocks = new long[4];
+		this.blockCount = 0;
+		this.size = 0;
+		this.capacity = 0;
+		this.tail = 0;
+	}
+
+	/**
+	 * Appends the specified event, which must not have occurred before the
+	 * events in the list.
+	 * @param event the index of the specified event.
+	 */
+	public void add(int event) {
+		if (size == capacity) {
+			if (blockCount == blocks.length) {
+				blocks = Arrays.copyOf(blocks, 2 * blockCount);
+			}
+			int shift = blockShift(blockCount);
+			tail = pool.allocate(shift);
+			blocks[blockCount++] = tail;
+			capacity += 1 << shift;
+		}
+		pool.set(tail++, event);
+		size++;
+	}
+
+	/**
+	 * Moves the events in the specified list, which must not have occurred
+	 * before the events in this list, to the end of this list. The specified
+	 * list is left empty; if this list is empty, it takes over the blocks of
+	 * the specified list instead of copying them.
+	 * @param list the specified list.
+	 */
+	public void moveAll(EventIndexList list) {
+		if (blockCount == 0) {
+			long[] swapped = blocks;
+			blocks = list.blocks;
+			blockCount = list.blockCount;
+			size = list.size;
+			capacity = list.capacity;
+			tail = list.tail;
+			list.blocks = swapped;
+			list.blockCount = 0;
+			list.truncate(0);
+			return;
+		}
+		for (int block = 0; block < list.blockCount; block++) {
+			int begin = blockStart(block);
+			int end = Math.min(list.size, begin + (1 << blockShift(block)));
+			long position = list.blocks[block];
+			for (int i = begin; i < end; i++) {
+				add(pool.get(position++));
+			}
+		}
+		list.truncate(0);
+	}
+
+	/**
+	 * Returns the index of the event at the specified position in the list.
+	 * @param position the specified position.
+	 */
+	public int get(int position) {
+		int block = block(position);
+		return pool.get(blocks[block] + position - blockStart(block));
+	}
+
+	/**
+	 * Returns the number of events in the list.
+	 */
+	public int size() {
+		return size;
+	}
+
+	/**
+	 * Writes the list to the specified stream, in the form read by
+	 * {@link #read(DataInputStream)}.
+	 */
+	public void write(DataOutputStream output) throws IOException {
+		output.writeInt(size);
+		for (int i = 0; i < size; i++) {
+			output.writeInt(get(i));
+		}
+	}
+
+	/**
+	 * Replaces the events in the list by those of a list written by
+	 * {@link #write(DataOutputStream)} to the specified stream. The indices
+	 * are read a chunk at a time.
+	 */
+	public void read(DataInputStream input) throws IOException {
+		clear();
+		int count = input.readInt();
+		ByteBuffer chunk = ByteBuffer.allocate(4 * Math.min(count, READ_CHUNK));
+		chunk.limit(0);
+		for (int i = 0; i < count; i++) {
+			if (!chunk.hasRemaining()) {
+				chunk.clear();
+				chunk.limit(4 * Math.min(count - i, READ_CHUNK));
+				input.readFully(chunk.array(), 0, chunk.limit());
+			}
+			add(chunk.getInt());
+		}
+	}
+
+	/**
+	 * Returns the indices of the events in the list which occurred within
+	 * the specified range.
+	 * @param events the store the events are in.
+	 * @param range the specified range.
+	 */
+	public int[] get(EventStore events, Range range) {
+		int low = range.getBegin() > Long.MIN_VALUE ? after(events, range.getBegin() - 1) : 0;
+		int high = after(events, range.getEnd());
+		int[] indices = new int[Math.max(0, high - low)];
+		for (int i = 0; i < indices.length; i++) {
+			indices[i] = get(low + i);
+		}
+		return indices;
+	}
+
+	/**
+	 * Removes the events which occurred after the specified time, and
+	 * returns the blocks which are no longer used to the pool.
+	 * @param events the store the events are in.
+	 * @param timeStamp the specified time.
+	 */
+	public void removeAfter(EventStore events, long timeStamp) {
+		truncate(after(events, timeStamp));
+	}
+
+	/**
+	 * Removes all events from the list, and returns its blocks to the pool.
+	 */
+	public void clear() {
+		truncate(0);
+	}
+
+	private void truncate(int newSize) {
+		int usedBlocks = newSize > 0 ? block(newSize - 1) + 1 : 0;
+		while (blockCount > usedBlocks) {
+			blockCount--;
+			pool.free(blocks[blockCount], blockShift(blockCount));
+		}
+		size = newSize;
+		capacity = blockStart(blockCount);
+		if (size < capacity) {
+			int block = block(size);
+			tail = blocks[block] + size - blockStart(block);
+		}
+	}
+
+	/**
+	 * Returns the position in the list of the first event which occurred
+	 * after the specified time.
+	 */
+	private int after(EventStore events, long timeStamp) {
+		int low = 0;
+		int high = size;
+		while (low < high) {
+			int middle = (low + high) >>> 1;
+			if (events.getTime(get(middle)) <= timeStamp) {
+				low = middle + 1;
+			} else {
+				high = middle;
+			}
+		}
+		return low;
+	}
+
+	/**
+	 * Returns the block which holds the specified position in the list.
+	 */
+	private static int block(int position) {
+		if (position < GROWING_SIZE) {
+			return 31 - Integer.numberOfLeadingZeros((position >> MIN_SHIFT) + 1);
+		}
+		return GROWING_BLOCKS + ((position - GROWING_SIZE) >> MAX_SHIFT);
+	}
+
+	/**
+	 * Returns the position in the list of the first index in the specified
+	 * block.
+	 */
+	private static int blockStart(int block) {
+		if (block < GROWING_BLOCKS) {
+			return ((1 << block) - 1) << MIN_SHIFT;
+		}
+		return GROWING_SIZE + ((block - GROWING_BLOCKS) << MAX_SHIFT);
+	}
+
+	/**
+	 * Returns the base 2 logarithm of the size of the specified block.
+	 */
+	private static int blockShift(int block) {
+		return Math.min(MIN_SHIFT + block, MAX_SHIFT);
+	}
+}
@@ -0,0 +1,171 @@
+package tracevis.model.types;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Arrays;
+
+/**
+ * The storage of the {@link EventIndexList}s of a trace. The lists keep the
+ * indices of their events in blocks of a single column, instead of in an
+ * array each, so that the indices are kept where the events are: on the
+ * heap, or in a memory mapped file. A block holds a power of two indices,
+ * and begins at a multiple of its size, so that no block spans two segments
+ * of the column. Blocks are allocated and freed by the lists, from any
+ * thread.
+ */
+class EventIndexPool {
+	/** The base 2 logarithm of the size of the smallest block. */
+	static final int MIN_BLOCK_SHIFT = 4;
+
+	/** The base 2 logarithm of the size of the largest block. */
+	static final int MAX_BLOCK_SHIFT = 12;
+
+	// The base 2 logarithm of the number of indices in a segment of the
+	// column, if it is kept on the heap.
+	private static final int SEGMENT_SHIFT = 16;
+	private static final int SEGMENT_MASK = (1 << SEGMENT_SHIFT) - 1;
+
+	// The column, if it is kept in a memory mapped file, or else its
+	// segments on the heap.
+	private final MappedColumn column;
+	private int[][] segments;
+
+	// The number of indices the column can hold, and the end of the blocks
+	// which have been allocated from it.
+	private long capacity;
+	private long end;
+
+	// The positions of the freed blocks, by the logarithm of their size.
+	private final long[][] freeBlocks;
+	private final int[] freeCounts;
+
+	/**
+	 * Creates a new, empty instance of EventIndexPool, which keeps the
+	 * indices on the heap.
+	 */
+	public EventIndexPool() {
+		this.column = null;
+		this.segments = new int[0][];
+		this.capacity = 0;
+		this.end = 0;
+
+		this.freeBlocks = new long[MAX_BLOCK_SHIFT + 1][];
+		this.freeCounts = new int[MAX_BLOCK_SHIFT + 1];
+		for (int shift = MIN_BLOCK_SHIFT; shift <= MAX_BLOCK_SHIFT; shift++) {
+			freeBlocks[shift] = new long[16];
+		}
+	}
+
+	/**
+	 * Creates a new, empty instance of EventIndexPool, which keeps the
+	 * indices in a memory mapped file in the specified directory. The file is
+	 * deleted when the pool is closed.
+	 * @param directory the specified directory.
+	 * @throws IOException if the file could not be created.
+	 */
+	public EventIndexPool(File directory) throws IOException {
+		this.column = new MappedColumn(directory, "indices", 2);
+		this.segments = null;
+		this.capacity = 0;
+		this.end = 0;
+
+		this.freeBlocks = new long[MAX_BLOCK_SHIFT + 1][];
+		this.freeCounts = new int[MAX_BLOCK_SHIFT + 1];
+		for (int shift = MIN_BLOCK_SHIFT; shift <= MAX_BLOCK_SHIFT; shift++) {
+			freeBlocks[shift] = new long[16];
+		}
+	}
+
+	/**
+	 * Allocates a block of the specified size, and returns its position.
+	 * @param shift the base 2 logarithm of the size of the block.
+	 */
+	public synchronized long allocate(int shift) {
+		if (freeCounts[shift] > 0) {
+			return freeBlocks[shift][--freeCounts[shift]];
+		}
+
+		// The indices skipped to align the block are freed as smaller blocks.
+		long size = 1L << shift;
+		while ((end & (size - 1)) != 0) {
+			long skipped = end & -end;
+			free(end, Long.numberOfTrailingZeros(skipped));
+			end += skipped;
+		}
+		if (end + size > capacity) {
+			grow(end + size);
+		}
+		long position = end;
+		end += size;
+		return position;
+	}
+
+	/**
+	 * Returns the block at the specified position, which was allocated with
+	 * the specified size, to the pool.
+	 * @param position the position of the block.
+	 * @param shift the base 2 logarithm of the size of the block.
+	 */
+	public synchronized void free(long position, int shift) {
+		if (freeCounts[shift] == freeBlocks[shift].length) {
+			freeBlocks[shift] = Arrays.copyOf(freeBlocks[shift], 2 * freeCounts[shift]);
+		}
+		freeBlocks[shift][freeCounts[shift]++] = position;
+	}
+
+	private void grow(long minCapacity) {
+		if (column != null) {
+			try {
+				column.ensureCapacity(minCapacity);
+			} catch (IOException exc) {
+				throw new RuntimeException("Could not map the event indices: " + exc.getMessage(), exc);
+			}
+			capacity = minCapacity;
+		} else {
+			int segmentCount = (int) ((minCapacity + SEGMENT_MASK) >>> SEGMENT_SHIFT);
+			int first = segments.length;
+			int[][] grown = Arrays.copyOf(segments, segmentCount);
+			for (int i = first; i < segmentCount; i++) {
+				grown[i] = new int[1 << SEGMENT_SHIFT];
+			}
+			segments = grown;
+			capacity = (long) segmentCount << SEGMENT_SHIFT;
+		}
+	}
+
+	/**
+	 * Returns the index at the specified position.
+	 * @param position the specified position.
+	 */
+	public int get(long position) {
+		if (column != null) {
+			return column.getInt(position);
+		}
+		return segments[(int) (position >>> SEGMENT_SHIFT)][(int) position & SEGMENT_MASK];
+	}
+
+	/**
+	 * Sets the index at the specified position.
+	 * @param position the specified position.
+	 * @param event the index of the event.
+	 */
+	public void set(long position, int event) {
+		if (column != null) {
+			column.putInt(position, event);
+		} else {
+			segments[(int) (position >>> SEGMENT_SHIFT)][(int) position & SEGMENT_MASK] = event;
+		}
+	}
+
+	/**
+	 * Releases the files or memory holding the indices, after which the pool
+	 * should not be used.
+	 */
+	public void close() {
+		if (column != null) {
+			column.close();
+		} else {
+			segments = new int[0][];
+		}
+	}
+}
@@ -0,0 +1,536 @@
+package tracevis.model.types;
+
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.BitSet;
+
+import tracevis.utilities.LongIntMap;
+
+/**
+ * The events of a trace, in the order in which they occurred. The events are
+ * stored column by column, in an array of primitives per field, instead of
+ * as an object per event, so that an event takes a few tens of bytes and
+ * traces with hundreds of millions of events fit in memory. An event is
+ * identified by its index; it can be read through the accessors of the store
+ * or through an {@link EventCursor}, which visits the events without
+ * allocating anything.
+ * <p>
+ * Fields which do not apply to the type of an event, such as the method of a
+ * class load, are {@link SymbolTable#NO_SYMBOL} or 0.
+ * <p>
+ * The columns are kept on the heap, or, for traces which do not fit in the
+ * heap, in memory mapped files. Either way the events are read through the
+ * same methods. The frame, caller and callee of each event, which are set
+ * when the call graph is built, and the lists of events of the classes and
+ * calls ({@link EventIndexList}) are kept in the same place as the columns;
+ * only the filtered flags, a bit per event, are always kept on the heap.
+ * The metrics computed from the events are not kept here, and still take
+ * about 50 bytes of heap per event, so that the heap bounds the size of a
+ * trace even when its events are mapped: a 4 GB heap holds the metrics of
+ * some 80 million events. A store holds at most {@link #MAX_SIZE} events.
+ * <p>
+ * The time stamps of the events never decrease: an event added with a time
+ * stamp before that of the event before it, as happens between threads,
+ * gets the time of that event. The time functions of the metrics, and the
+ * searches of events by time, rely on the events being in order of time.
+ */
+public class EventStore {
+	/**
+	 * The maximum number of events, which is the largest size of an array
+	 * most virtual machines allow.
+	 */
+	public static final int MAX_SIZE = Integer.MAX_VALUE - 8;
+
+	private static final int INITIAL_CAPACITY = 1024;
+
+	private static final EventType[] TYPES = EventType.values();
+
+	// The number of bytes written by write for each event, the number of
+	// columns it writes, and the size of the buffer through which they are
+	// written.
+	private static final int EVENT_SIZE = 8 + 1 + 4 + 4 + 4 + 8 + 4 + 4 + 4;
+	private static final int COLUMN_COUNT = 9;
+	private static final int BUFFER_SIZE = 1 << 16;
+
+	private int size;
+
+	private final EventColumns columns;
+	private final FrameTable frames;
+	private final BitSet filtered;
+	private long lastTime;
+
+	// The events of which the filtered flag has changed since
+	// collectFlippedEvents was called, or null.
+	private BitSet flipped;
+
+	// The thread column holds the number of the thread of each event, which
+	// is its index in threadIDs. Consecutive events are often in the same
+	// thread, so the last thread is looked up first.
+	private long[] threadIDs;
+	private int threadCount;
+	private final LongIntMap threadNumbers;
+	private long lastThreadID;
+	private int lastThread;
+
+	/**
+	 * Creates a new, empty instance of EventStore, which keeps the events on
+	 * the heap.
+	 */
+	public EventStore() {
+		this(new HeapEventColumns(INITIAL_CAPACITY));
+	}
+
+	/**
+	 * Creates a new, empty instance of EventStore, which keeps the events in
+	 * memory mapped files in the specified directory. The files are deleted
+	 * when the store is closed.
+	 * @param directory the specified directory.
+	 * @throws IOException if the files could not be created.
+	 */
+	public EventStore(File directory) throws IOException {
+		this(new MappedEventColumns(directory));
+	}
+
+	private EventStore(EventColumns columns) {
+		size = 0;
+
+		this.columns = columns;
+		frames = new FrameTable();
+		filtered = new BitSet();
+		lastTime = Long.MIN_VALUE;
+		flipped = null;
+
+		threadIDs = new long[16];
+		threadCount = 0;
+		threadNumbers = new LongIntMap(-1);
+		lastThread = -1;
+	}
+
+	/**
+	 * Appends an event which only has a type and a time, and returns its
+	 * index.
+	 * @param type the type of the event.
+	 * @param timeStamp the time the event occurred.
+	 */
+	public int add(EventType type, long timeStamp) {
+		return add(type, timeStamp, -1, SymbolTable.NO_SYMBOL, SymbolTable.NO_SYMBOL, 0);
+	}
+
+	/**
+	 * Appends an event of a thread, and returns its index.
+	 * @param type the type of the event.
+	 * @param timeStamp the time the event occurred.
+	 * @param threadID the thread of the event.
+	 */
+	public int addThreadEvent(EventType type, long timeStamp, long threadID) {
+		return add(type, timeStamp, threadNumber(threadID), SymbolTable.NO_SYMBOL,
+		           SymbolTable.NO_SYMBOL, 0);
+	}
+
+	/**
+	 * Appends an event of a class, or of an object of a class, and returns
+	 * its index.
+	 * @param type the type of the event.
+	 * @param timeStamp the time the event occurred.
+	 * @param classID the ID of the name of the class.
+	 * @param objectID the identifier of the object, or 0.
+	 */
+	public int addClassEvent(EventType type, long timeStamp, int classID, long objectID) {
+		return add(type, timeStamp, -1, classID, SymbolTable.NO_SYMBOL, objectID);
+	}
+
+	/**
+	 * Appends an event in which a thread enters or leaves a method, and
+	 * returns its index.
+	 * @param type the type of the event.
+	 * @param timeStamp the time the event occurred.
+	 * @param threadID the thread entering or leaving the method.
+	 * @param classID the ID of the name of the class defining the method.
+	 * @param methodID the ID of the name of the method.
+	 * @param objectID the current object, or 0.
+	 */
+	public int addMethodEvent(EventType type, long timeStamp, long threadID,
+	                          int classID, int methodID, long objectID)
+	{
+		return add(type, timeStamp, threadNumber(threadID), classID, methodID, objectID);
+	}
+
+	private int add(EventType type, long timeStamp, int thread, int classID,
+	                int methodID, long objectID)
+	{
+		if (size == columns.getCapacity()) {
+			if (size == MAX_SIZE) {
+				throw new IllegalStateException("The event store is full: a trace can have at most " +
+				                                MAX_SIZE + " events.");
+			}
+			long capacity = size + (long) (size >> 1);
+			columns.setCapacity((int) Math.min(MAX_SIZE, Math.max(INITIAL_CAPACITY, capacity)));
+		}
+
+		lastTime = Math.max(lastTime, timeStamp);
+		columns.set(size, lastTime, (byte) type.ordinal(), thread, classID,
+		            methodID, objectID);
+		return size++;
+	}
+
+	/**
+	 * Appends the specified number of events from the start of this store to
+	 * the specified store. Only the fields read from the trace are copied;
+	 * the frames, callers and callees of the copies are -1. If the specified
+	 * store is empty, the threads keep their numbers.
+	 * @param events the specified store.
+	 * @param count the specified number of events.
+	 */
+	public void copyTo(EventStore events, int count) {
+		if (events.size + count > events.columns.getCapacity()) {
+			events.columns.setCapacity(events.size + count);
+		}
+		for (int event = 0; event < count; event++) {
+			int thread = columns.getThread(event);
+			events.add(TYPES[columns.getType(event)], columns.getTime(event),
+			           thread != -1 ? events.threadNumber(threadIDs[thread]) : -1,
+			           columns.getClassID(event), columns.getMethodID(event),
+			           columns.getObjectID(event));
+		}
+	}
+
+	private int threadNumber(long threadID) {
+		if (lastThread == -1 || threadID != lastThreadID) {
+			int number = threadNumbers.get(threadID);
+			if (number == -1) {
+				if (threadCount == threadIDs.length) {
+					threadIDs = Arrays.copyOf(threadIDs, 2 * threadCount);
+				}
+				number = threadCount;
+				threadIDs[threadCount++] = threadID;
+				threadNumbers.put(threadID, number);
+			}
+			lastThreadID = threadID;
+			lastThread = number;
+		}
+		return lastThread;
+	}
+
+	/**
+	 * Releases the memory reserved for events which have not been added.
+	 * Should be called once all events have been added.
+	 */
+	public void trimToSize() {
+		if (size < columns.getCapacity()) {
+			columns.setCapacity(size);
+		}
+	}
+
+	/**
+	 * Writes the events to the specified stream, in the form mapped by
+	 * {@link #map(RandomAccessFile, long, File)}: the thread IDs and the
+	 * number of events, followed by the columns of the events, each of which
+	 * is written in turn. The frames and the filtered flags are not written.
+	 * @param output the specified stream.
+	 * @throws IOException if the stream could not be written.
+	 */
+	public void write(DataOutputStream output) throws IOException {
+		output.writeInt(threadCount);
+		for (int i = 0; i < threadCount; i++) {
+			output.writeLong(threadIDs[i]);
+		}
+		output.writeInt(size);
+
+		ByteBuffer buffer = ByteBuffer.allocate(BUFFER_SIZE);
+		for (int column = 0; column < COLUMN_COUNT; column++) {
+			for (int event = 0; event < size; event++) {
+				if (buffer.remaining() < 8) {
+					output.write(buffer.array(), 0, buffer.position());
+					buffer.clear();
+				}
+				switch (column) {
+					case 0:
+						buffer.putLong(columns.getTime(event));
+						break;
+					case 1:
+						buffer.put(columns.getType(event));
+						break;
+					case 2:
+						buffer.putInt(columns.getThread(event));
+						break;
+					case 3:
+						buffer.putInt(columns.getClassID(event));
+						break;
+					case 4:
+						buffer.putInt(columns.getMethodID(event));
+						break;
+					case 5:
+						buffer.putLong(columns.getObjectID(event));
+						break;
+					case 6:
+						buffer.putInt(columns.getFrameID(event));
+						break;
+					case 7:
+						buffer.putInt(columns.getCaller(event));
+						break;
+					default:
+						buffer.putInt(columns.getCallee(event));
+						break;
+				}
+			}
+		}
+		output.write(buffer.array(), 0, buffer.position());
+	}
+
+	/**
+	 * Returns a store of the events written by
+	 * {@link #write(DataOutputStream)} at the specified position of the
+	 * specified file. The columns of the events are mapped from the file
+	 * instead of being read, so that opening the store takes about as long
+	 * for any number of events; they are paged in as they are used. The
+	 * events cannot be changed, except for whether they are filtered out,
+	 * and the file should not be changed while the store is used. The
+	 * frames of the store are empty.
+	 * @param file the specified file.
+	 * @param position the specified position.
+	 * @param directory the directory in which the event index lists of the
+	 *                  store are kept, or null to keep them on the heap.
+	 * @throws IOException if the file could not be read or mapped, or does
+	 *                     not hold all the events.
+	 */
+	public static EventStore map(RandomAccessFile file, long position, File directory)
+		throws IOException
+	{
+		file.seek(position);
+		int threadCount = file.readInt();
+		if (threadCount < 0 || 8L * threadCount > file.length() - position) {
+			throw new IOException("Invalid number of threads: " + threadCount);
+		}
+		ByteBuffer threads = ByteBuffer.allocate(8 * threadCount);
+		file.readFully(threads.array());
+		int count = file.readInt();
+		long columnsPosition = file.getFilePointer();
+		if (count < 0 || (long) count * EVENT_SIZE > file.length() - columnsPosition) {
+			throw new IOException("Invalid number of events: " + count);
+		}
+
+		EventStore events = new EventStore(new MappedEventColumns(file.getChannel(),
+		                                                          columnsPosition, count,
+		                                                          directory));
+		events.threadIDs = new long[Math.max(16, threadCount)];
+		for (int i = 0; i < threadCount; i++) {
+			events.threadIDs[i] = threads.getLong();
+			events.threadNumbers.put(events.threadIDs[i], i);
+		}
+		events.threadCount = threadCount;
+		events.size = count;
+		return events;
+	}
+
+	/**
+	 * Releases the files or memory holding the events. The store should not
+	 * be used after it has been closed.
+	 */
+	public void close() {
+		columns.close();
+	}
+
+	/**
+	 * Returns the number of events.
+	 */
+	public int size() {
+		return size;
+	}
+
+	/**
+	 * Returns a cursor which is positioned before the first event.
+	 */
+	public EventCursor cursor() {
+		return new EventCursor(this);
+	}
+
+	/**
+	 * Returns the type of the specified event.
+	 * @param event the index of the specified event.
+	 */
+	public EventType getType(int event) {
+		return TYPES[columns.getType(event)];
+	}
+
+	/**
+	 * Returns the time the specified event occurred.
+	 * @param event the index of the specified event.
+	 */
+	public long getTime(int event) {
+		return columns.getTime(event);
+	}
+
+	/**
+	 * Returns the thread of the specified event, or 0 if it is not an event
+	 * of a thread.
+	 * @param event the index of the specified event.
+	 */
+	public long getThreadID(int event) {
+		int number = columns.getThread(event);
+		return number != -1 ? threadIDs[number] : 0;
+	}
+
+	/**
+	 * Returns the number of the thread of the specified event, or -1 if it
+	 * is not an event of a thread. The threads are numbered from 0 in the
+	 * order in which their first events were added.
+	 * @param event the index of the specified event.
+	 */
+	public int getThreadNumber(int event) {
+		return columns.getThread(event);
+	}
+
+	/**
+	 * Returns the number of distinct threads of the events.
+	 */
+	public int getThreadCount() {
+		return threadCount;
+	}
+
+	/**
+	 * Returns the ID of the name of the class of the specified event.
+	 * @param event the index of the specified event.
+	 */
+	public int getClassID(int event) {
+		return columns.getClassID(event);
+	}
+
+	/**
+	 * Returns the ID of the name of the method of the specified event.
+	 * @param event the index of the specified event.
+	 */
+	public int getMethodID(int event) {
+		return columns.getMethodID(event);
+	}
+
+	/**
+	 * Returns the object of the specified event.
+	 * @param event the index of the specified event.
+	 */
+	public long getObjectID(int event) {
+		return columns.getObjectID(event);
+	}
+
+	/**
+	 * Returns the table of the frames the events refer to.
+	 */
+	public FrameTable getFrames() {
+		return frames;
+	}
+
+	/**
+	 * Returns the ID of the frame entered or left by the specified event,
+	 * which is set when the call graph is built, or -1.
+	 * @param event the index of the specified event.
+	 */
+	public int getFrameID(int event) {
+		return columns.getFrameID(event);
+	}
+
+	/**
+	 * Sets the ID of the frame entered or left by the specified event.
+	 * @param event the index of the specified event.
+	 * @param frameID the ID of the frame.
+	 */
+	public void setFrameID(int event, int frameID) {
+		columns.setFrameID(event, frameID);
+	}
+
+	/**
+	 * Returns the frame entered or left by the specified event, or null.
+	 * @param event the index of the specified event.
+	 */
+	public Frame getFrame(int event) {
+		int frameID = columns.getFrameID(event);
+		return frameID != -1 ? frames.get(frameID) : null;
+	}
+
+	/**
+	 * Returns the index of the vertex of the class which called the method
+	 * entered or left by the specified event, which is set when the call
+	 * graph is built, or -1.
+	 * @param event the index of the specified event.
+	 */
+	public int getCaller(int event) {
+		return columns.getCaller(event);
+	}
+
+	/**
+	 * Sets the index of the vertex of the class which called the method
+	 * entered or left by the specified event.
+	 * @param event the index of the specified event.
+	 * @param caller the index of the vertex, or -1.
+	 */
+	public void setCaller(int event, int caller) {
+		columns.setCaller(event, caller);
+	}
+
+	/**
+	 * Returns the index of the vertex of the class of the method entered or
+	 * left by the specified event, which is set when the call graph is
+	 * built, or -1.
+	 * @param event the index of the specified event.
+	 */
+	public int getCallee(int event) {
+		return columns.getCallee(event);
+	}
+
+	/**
+	 * Sets the index of the vertex of the class of the method entered or
+	 * left by the specified event.
+	 * @param event the index of the specified event.
+	 * @param callee the index of the vertex, or -1.
+	 */
+	public void setCallee(int event, int callee) {
+		columns.setCallee(event, callee);
+	}
+
+	/**
+	 * Returns the pool which holds the event index lists of the trace.
+	 */
+	EventIndexPool getIndexPool() {
+		return columns.getIndexPool();
+	}
+
+	/**
+	 * Returns whether the specified event is filtered out.
+	 * @param event the index of the specified event.
+	 */
+	public boolean isFiltered(int event) {
+		return filtered.get(event);
+	}
+
+	/**
+	 * Sets whether the specified event is filtered out.
+	 * @param event the index of the specified event.
+	 * @param filtered whether the event is filtered out.
+	 */
+	public void setFiltered(int event, boolean filtered) {
+		if (flipped != null && this.filtered.get(event) != filtered) {
+			flipped.set(event);
+		}
+		this.filtered.set(event, filtered);
+	}
+
+	/**
+	 * Starts collecting the events of which the filtered flag is changed,
+	 * until {@link #takeFlippedEvents()} is called.
+	 */
+	public void collectFlippedEvents() {
+		flipped = new BitSet();
+	}
+
+	/**
+	 * Returns the events of which the filtered flag has changed since
+	 * {@link #collectFlippedEvents()} was called, and stops collecting them.
+	 */
+	public BitSet takeFlippedEvents() {
+		BitSet result = flipped;
+		flipped = null;
+		return result;
+	}
+}
@@ -0,0 +1,36 @@
+package tracevis.model.types;
+
+/**
+ * The types of the events in a trace.
+ */
+public enum EventType {
+	/** The virtual machine has been initialized. */
+	VM_INIT,
+	/** The virtual machine has been started. */
+	VM_START,
+	/** The virtual machine has terminated. */
+	VM_DEATH,
+	/** A thread has been started. */
+	THREAD_START,
+	/** A thread has stopped. */
+	THREAD_STOP,
+	/** A class has been loaded. */
+	CLASS_LOAD,
+	/** An object has been allocated. */
+	OBJECT_ALLOCATION,
+	/** An object has been garbage collected. */
+	OBJECT_FREE,
+	/** A thread has entered a method. */
+	METHOD_ENTRY,
+	/** A thread has left a method. */
+	METHOD_EXIT,
+	/** A frame has been popped from the stack of a thread by an exception. */
+	FRAME_POP;
+
+	/**
+	 * Returns whether events of this type enter or leave a method.
+	 */
+	public boolean isMethodEvent() {
+		return this == METHOD_ENTRY || this == METHOD_EXIT || this == FRAME_POP;
+	}
+}
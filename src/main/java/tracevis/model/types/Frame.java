@@ -2,26 +2,25 @@ package tracevis.model.types;
 
 
 /**
- * A frame on the call stack.
+ * A frame on the call stack. Frames only hold what calls have in common, so
+ * the calls of a method with the same defining and actual class share one
+ * frame (see {@link FrameTable#intern}); the called object is held by the
+ * method events themselves.
  */
 public class Frame {
 	private final ClassData definingClass;
 	private final ClassData actualClass;
-	private final long object;
-	private final String method;
+	private final int method;
 
 	/**
 	 * Creates a new frame.
 	 * @param definingClass the defining class for the call.
 	 * @param actualClass the actual (or object) class for the call.
-	 * @param object a positive number identifying the called object, if the
-	 *               called method is an instance method, 0 otherwise.
-	 * @param method the name of the called method.
+	 * @param method the ID of the name of the called method.
 	 */
-	public Frame(ClassData definingClass, ClassData actualClass, long object, String method) {
+	public Frame(ClassData definingClass, ClassData actualClass, int method) {
 		this.definingClass = definingClass;
 		this.actualClass = actualClass;
-		this.object = object;
 		this.method = method;
 	}
 
@@ -40,16 +39,9 @@ public class Frame {
 	}
 
 	/**
-	 * Returns a number identifying the called objext.
+	 * Returns the ID of the name of the called method.
 	 */
-	public long getObject() {
-		return object;
-	}
-
-	/**
-	 * Returns the name of the called method.
-	 */
-	public String getMethod() {
+	public int getMethod() {
 		return method;
 	}
 
@@ -0,0 +1,99 @@
+package tracevis.model.types;
+
+import java.util.Arrays;
+
+import tracevis.utilities.LongIntMap;
+
+/**
+ * The frames of a trace, each of which is identified by its index in the
+ * table. Events and call stacks refer to frames by these IDs, so that a call
+ * stack is an array of ints rather than a list of frames. Frames are
+ * interned: a trace has one frame per distinct combination of defining class,
+ * actual class and method, however many calls it makes.
+ */
+public class FrameTable {
+	private static final int INITIAL_CAPACITY = 1024;
+
+	private Frame[] frames;
+	private int size;
+
+	// A frame is looked up in two steps, which need no key objects: the
+	// pair of its defining and actual class is numbered first, and the
+	// frame is then found by the number of the pair and its method.
+	private final LongIntMap classPairs;
+	private final LongIntMap frameIDs;
+
+	/**
+	 * Creates a new, empty instance of FrameTable.
+	 */
+	public FrameTable() {
+		frames = new Frame[INITIAL_CAPACITY];
+		size = 0;
+		classPairs = new LongIntMap(-1);
+		frameIDs = new LongIntMap(-1);
+	}
+
+	/**
+	 * Returns the ID of the frame of a call of the specified method with the
+	 * specified defining and actual class, which is added to the table if it
+	 * is not in it yet.
+	 * @param definingClass the defining class for the call.
+	 * @param actualClass the actual (or object) class for the call.
+	 * @param method the ID of the name of the called method.
+	 */
+	public int intern(ClassData definingClass, ClassData actualClass, int method) {
+		long classKey = ((long) definingClass.getIndex() << 32) |
+		                (actualClass.getIndex() & 0xffffffffL);
+		int classPair = classPairs.get(classKey);
+		if (classPair == -1) {
+			classPair = classPairs.size();
+			classPairs.put(classKey, classPair);
+		}
+
+		long frameKey = ((long) classPair << 32) | (method & 0xffffffffL);
+		int frameID = frameIDs.get(frameKey);
+		if (frameID == -1) {
+			frameID = add(new Frame(definingClass, actualClass, method));
+			frameIDs.put(frameKey, frameID);
+		}
+		return frameID;
+	}
+
+	/**
+	 * Adds the specified frame to the table, and returns its ID. Frames which
+	 * are added are not interned.
+	 * @param frame the specified frame.
+	 */
+	public int add(Frame frame) {
+		if (size == frames.length) {
+			frames = Arrays.copyOf(frames, 2 * size);
+		}
+		frames[size] = frame;
+		return size++;
+	}
+
+	/**
+	 * Returns the frame with the specified ID.
+	 * @param frameID the specified ID.
+	 */
+	public Frame get(int frameID) {
+		return frames[frameID];
+	}
+
+	/**
+	 * Removes all frames from the table.
+	 */
+	public void clear() {
+		Arrays.fill(frames, 0, size, null);
+		size = 0;
+		classPairs.clear();
+		frameIDs.clear();
+	}
+
+	/**
+	 * Returns the number of frames in the table.
+	 */
+	public int size() {
+		return size;
+	}
+}
@@ -0,0 +1,140 @@
+package tracevis.model.types;
+
+import java.util.Arrays;
+
+/**
+ * Event columns which are kept in arrays on the heap.
+ */
+class HeapEventColumns implements EventColumns {
+	private long[] time;
+	private byte[] type;
+	private int[] thread;
+	private int[] classID;
+	private int[] methodID;
+	private long[] objectID;
+	private int[] frameID;
+	private int[] caller;
+	private int[] callee;
+
+	private final EventIndexPool indexPool;
+
+	/**
+	 * Creates a new instance of HeapEventColumns.
+	 * @param capacity the number of events the columns can hold initially.
+	 */
+	public HeapEventColumns(int capacity) {
+		time = new long[capacity];
+		type = new byte[capacity];
+		thread = new int[capacity];
+		classID = new int[capacity];
+		methodID = new int[capacity];
+		objectID = new long[capacity];
+		frameID = new int[capacity];
+		caller = new int[capacity];
+		callee = new int[capacity];
+		indexPool = new EventIndexPool();
+	}
+
+	@Override
+	public int getCapacity() {
+		return time.length;
+	}
+
+	@Override
+	public void setCapacity(int capacity) {
+		time = Arrays.copyOf(time, capacity);
+		type = Arrays.copyOf(type, capacity);
+		thread = Arrays.copyOf(thread, capacity);
+		classID = Arrays.copyOf(classID, capacity);
+		methodID = Arrays.copyOf(methodID, capacity);
+		objectID = Arrays.copyOf(objectID, capacity);
+		frameID = Arrays.copyOf(frameID, capacity);
+		caller = Arrays.copyOf(caller, capacity);
+		callee = Arrays.copyOf(callee, capacity);
+	}
+
+	@Override
+	public void set(int event, long time, byte type, int thread, int classID,
+	                int methodID, long objectID)
+	{
+		this.time[event] = time;
+		this.type[event] = type;
+		this.thread[event] = thread;
+		this.classID[event] = classID;
+		this.methodID[event] = methodID;
+		this.objectID[event] = objectID;
+		this.frameID[event] = -1;
+		this.caller[event] = -1;
+		this.callee[event] = -1;
+	}
+
+	@Override
+	public long getTime(int event) {
+		return time[event];
+	}
+
+	@Override
+	public byte getType(int event) {
+		return type[event];
+	}
+
+	@Override
+	public int getThread(int event) {
+		return thread[event];
+	}
+
+	@Override
+	public int getClassID(int event) {
+		return classID[event];
+	}
+
+	@Override
+	public int getMethodID(int event) {
+		return methodID[event];
+	}
+
+	@Override
+	public long getObjectID(int event) {
+		return objectID[event];
+	}
+
+	@Override
+	public int getFrameID(int event) {
+		return frameID[event];
+	}
+
+	@Override
+	public void setFrameID(int event, int frameID) {
+		this.frameID[event] = frameID;
+	}
+
+	@Override
+	public int getCaller(int event) {
+		return caller[event];
+	}
+
+	@Override
+	public void setCaller(int event, int caller) {
+		this.caller[event] = caller;
+	}
+
+	@Override
+	public int getCallee(int event) {
+		return callee[event];
+	}
+
+	@Override
+	public void setCallee(int event, int callee) {
+		this.callee[event] = callee;
+	}
+
+	@Override
+	public EventIndexPool getIndexPool() {
+		return indexPool;
+	}
+
+	@Override
+	public void close() {
+		indexPool.close();
+	}
+}
@@ -0,0 +1,35 @@
+package tracevis.model.types;
+
+/**
+ * The phases of loading a trace, in the order in which they are performed.
+ */
+public enum LoadPhase {
+	/** The trace file is read and parsed into events. */
+	READING("Reading trace", "bytes"),
+	/** The call graph is built from the events. */
+	BUILDING_GRAPH("Building call graph", "events"),
+	/** The metrics of the classes and calls are computed. */
+	COMPUTING_METRICS("Computing metrics", "events");
+
+	private final String description;
+	private final String unit;
+
+	private LoadPhase(String description, String unit) {
+		this.description = description;
+		this.unit = unit;
+	}
+
+	/**
+	 * Returns a description of the phase.
+	 */
+	public String getDescription() {
+		return description;
+	}
+
+	/**
+	 * Returns the unit in which the progress of the phase is measured.
+	 */
+	public String getUnit() {
+		return unit;
+	}
+}
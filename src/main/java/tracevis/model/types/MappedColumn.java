@@ -0,0 +1,157 @@
+package tracevis.model.types;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.Arrays;
+
+/**
+ * A column of fixed width values in a temporary file, which is mapped into
+ * memory in segments. A single mapping cannot be larger than 2 GB, so the
+ * segments let a column grow past that; since the segment size is a multiple
+ * of the width of the values, no value spans two segments. A column can also
+ * be mapped from a range of a file which holds other data, such as a cache
+ * file, in which case it cannot grow.
+ */
+class MappedColumn {
+	private static final int SEGMENT_SHIFT = 27;
+	private static final long SEGMENT_SIZE = 1L << SEGMENT_SHIFT;
+	private static final long SEGMENT_MASK = SEGMENT_SIZE - 1;
+
+	private final File file;
+	private final RandomAccessFile randomAccessFile;
+	private final FileChannel channel;
+	private final int widthShift;
+
+	private MappedByteBuffer[] segments;
+	// The number of bytes which are mapped.
+	private long mappedSize;
+
+	/**
+	 * Creates a new, empty column in a temporary file in the specified
+	 * directory. The file is deleted when the column is closed, or when the
+	 * virtual machine exits.
+	 * @param directory the specified directory.
+	 * @param name the name of the column, which is the suffix of the file.
+	 * @param widthShift the base 2 logarithm of the width of the values.
+	 * @throws IOException if the file could not be created.
+	 */
+	public MappedColumn(File directory, String name, int widthShift) throws IOException {
+		this.file = File.createTempFile("tracevis-events", "." + name, directory);
+		file.deleteOnExit();
+		this.randomAccessFile = new RandomAccessFile(file, "rw");
+		this.channel = randomAccessFile.getChannel();
+		this.widthShift = widthShift;
+
+		segments = new MappedByteBuffer[0];
+		mappedSize = 0;
+	}
+
+	/**
+	 * Creates a column of the specified number of values, which are stored
+	 * in big-endian byte order in the specified channel from the specified
+	 * position on. The column is mapped read-only, so its values cannot be
+	 * changed. The mapping stays valid after the channel has been closed.
+	 * @param channel the specified channel.
+	 * @param position the position of the first value.
+	 * @param count the specified number of values.
+	 * @param widthShift the base 2 logarithm of the width of the values.
+	 * @throws IOException if the column could not be mapped.
+	 */
+	public MappedColumn(FileChannel channel, long position, int count, int widthShift)
+		throws IOException
+	{
+		this.file = null;
+		this.randomAccessFile = null;
+		this.channel = channel;
+		this.widthShift = widthShift;
+
+		mappedSize = (long) count << widthShift;
+		int segmentCount = (int) ((mappedSize + SEGMENT_MASK) >>> SEGMENT_SHIFT);
+		segments = new MappedByteBuffer[segmentCount];
+		for (int i = 0; i < segmentCount; i++) {
+			long offset = i * SEGMENT_SIZE;
+			segments[i] = channel.map(FileChannel.MapMode.READ_ONLY, position + offset,
+			                          Math.min(SEGMENT_SIZE, mappedSize - offset));
+			segments[i].order(ByteOrder.BIG_ENDIAN);
+		}
+	}
+
+	/**
+	 * Makes sure that the column can hold the specified number of values, by
+	 * mapping more segments if necessary.
+	 * @param capacity the specified number of values.
+	 * @throws IOException if a segment could not be mapped, or if the column
+	 *                     is mapped from a range of a file and is too small.
+	 */
+	public void ensureCapacity(long capacity) throws IOException {
+		long size = capacity << widthShift;
+		if (size <= mappedSize) {
+			return;
+		}
+		if (file == null) {
+			throw new IOException("A column mapped from a range of a file cannot grow");
+		}
+		int segmentCount = (int) ((size + SEGMENT_MASK) >>> SEGMENT_SHIFT);
+		if (segmentCount > segments.length) {
+			int first = segments.length;
+			segments = Arrays.copyOf(segments, segmentCount);
+			for (int i = first; i < segmentCount; i++) {
+				segments[i] = channel.map(FileChannel.MapMode.READ_WRITE,
+				                          i * SEGMENT_SIZE, SEGMENT_SIZE);
+				segments[i].order(ByteOrder.nativeOrder());
+			}
+			mappedSize = segmentCount * SEGMENT_SIZE;
+		}
+	}
+
+	public long getLong(int index) {
+		long position = (long) index << 3;
+		return segments[(int) (position >>> SEGMENT_SHIFT)].getLong((int) (position & SEGMENT_MASK));
+	}
+
+	public void putLong(int index, long value) {
+		long position = (long) index << 3;
+		segments[(int) (position >>> SEGMENT_SHIFT)].putLong((int) (position & SEGMENT_MASK), value);
+	}
+
+	public int getInt(long index) {
+		long position = index << 2;
+		return segments[(int) (position >>> SEGMENT_SHIFT)].getInt((int) (position & SEGMENT_MASK));
+	}
+
+	public void putInt(long index, int value) {
+		long position = index << 2;
+		segments[(int) (position >>> SEGMENT_SHIFT)].putInt((int) (position & SEGMENT_MASK), value);
+	}
+
+	public byte getByte(int index) {
+		return segments[index >>> SEGMENT_SHIFT].get(index & (int) SEGMENT_MASK);
+	}
+
+	public void putByte(int index, byte value) {
+		segments[index >>> SEGMENT_SHIFT].put(index & (int) SEGMENT_MASK, value);
+	}
+
+	/**
+	 * Closes and deletes the file of the column, unless it is mapped from a
+	 * range of a file. The mapped segments are released when they are
+	 * garbage collected.
+	 */
+	public void close() {
+		segments = new MappedByteBuffer[0];
+		mappedSize = 0;
+		if (file == null) {
+			return;
+		}
+		try {
+			randomAccessFile.close();
+		} catch (IOException exc) {
+			// The file is deleted anyway.
+		}
+		file.delete();
+	}
+}
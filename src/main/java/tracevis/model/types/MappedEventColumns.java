@@ -0,0 +1,209 @@
+package tracevis.model.types;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+
+/**
+ * Event columns which are kept in memory mapped files, as is their index
+ * pool, so that they do not take any heap space and can hold more events than fit in the heap. The
+ * operating system pages the columns in and out as they are used.
+ */
+class MappedEventColumns implements EventColumns {
+	private final MappedColumn time;
+	private final MappedColumn type;
+	private final MappedColumn thread;
+	private final MappedColumn classID;
+	private final MappedColumn methodID;
+	private final MappedColumn objectID;
+	private final MappedColumn frameID;
+	private final MappedColumn caller;
+	private final MappedColumn callee;
+
+	private final EventIndexPool indexPool;
+
+	private int capacity;
+
+	/**
+	 * Creates a new, empty instance of MappedEventColumns, with the files of
+	 * the columns in the specified directory.
+	 * @param directory the specified directory.
+	 * @throws IOException if the files could not be created.
+	 */
+	public MappedEventColumns(File directory) throws IOException {
+		time = new MappedColumn(directory, "time", 3);
+		type = new MappedColumn(directory, "type", 0);
+		thread = new MappedColumn(directory, "thread", 2);
+		classID = new MappedColumn(directory, "class", 2);
+		methodID = new MappedColumn(directory, "method", 2);
+		objectID = new MappedColumn(directory, "object", 3);
+		frameID = new MappedColumn(directory, "frame", 2);
+		caller = new MappedColumn(directory, "caller", 2);
+		callee = new MappedColumn(directory, "callee", 2);
+		indexPool = new EventIndexPool(directory);
+		capacity = 0;
+	}
+
+	/**
+	 * Creates a new instance of MappedEventColumns, which maps the columns
+	 * of the specified number of events from the specified channel, as
+	 * written by {@link EventStore#write(java.io.DataOutputStream)}: each
+	 * column in turn, in the order of the fields of
+	 * {@link #set(int, long, byte, int, int, int, long)}, followed by the
+	 * frame, caller and callee columns. The columns are read-only: they can
+	 * neither grow nor be changed.
+	 * @param channel the specified channel.
+	 * @param position the position of the first column.
+	 * @param count the specified number of events.
+	 * @param directory the directory of the file of the index pool, or null
+	 *                  to keep the index pool on the heap.
+	 * @throws IOException if the columns could not be mapped.
+	 */
+	public MappedEventColumns(FileChannel channel, long position, int count, File directory)
+		throws IOException
+	{
+		long offset = position;
+		time = new MappedColumn(channel, offset, count, 3);
+		offset += (long) count << 3;
+		type = new MappedColumn(channel, offset, count, 0);
+		offset += count;
+		thread = new MappedColumn(channel, offset, count, 2);
+		offset += (long) count << 2;
+		classID = new MappedColumn(channel, offset, count, 2);
+		offset += (long) count << 2;
+		methodID = new MappedColumn(channel, offset, count, 2);
+		offset += (long) count << 2;
+		objectID = new MappedColumn(channel, offset, count, 3);
+		offset += (long) count << 3;
+		frameID = new MappedColumn(channel, offset, count, 2);
+		offset += (long) count << 2;
+		caller = new MappedColumn(channel, offset, count, 2);
+		offset += (long) count << 2;
+		callee = new MappedColumn(channel, offset, count, 2);
+		indexPool = directory != null ? new EventIndexPool(directory) : new EventIndexPool();
+		capacity = count;
+	}
+
+	@Override
+	public int getCapacity() {
+		return capacity;
+	}
+
+	/**
+	 * Maps enough of the files to hold the specified number of events. The
+	 * files are never shrunk; they are deleted when the columns are closed.
+	 */
+	@Override
+	public void setCapacity(int capacity) {
+		if (capacity > this.capacity) {
+			try {
+				time.ensureCapacity(capacity);
+				type.ensureCapacity(capacity);
+				thread.ensureCapacity(capacity);
+				classID.ensureCapacity(capacity);
+				methodID.ensureCapacity(capacity);
+				objectID.ensureCapacity(capacity);
+				frameID.ensureCapacity(capacity);
+				caller.ensureCapacity(capacity);
+				callee.ensureCapacity(capacity);
+			} catch (IOException exc) {
+				throw new RuntimeException("Could not map the event columns: " + exc.getMessage(), exc);
+			}
+		}
+		this.capacity = capacity;
+	}
+
+	@Override
+	public void set(int event, long time, byte type, int thread, int classID,
+	                int methodID, long objectID)
+	{
+		this.time.putLong(event, time);
+		this.type.putByte(event, type);
+		this.thread.putInt(event, thread);
+		this.classID.putInt(event, classID);
+		this.methodID.putInt(event, methodID);
+		this.objectID.putLong(event, objectID);
+		this.frameID.putInt(event, -1);
+		this.caller.putInt(event, -1);
+		this.callee.putInt(event, -1);
+	}
+
+	@Override
+	public long getTime(int event) {
+		return time.getLong(event);
+	}
+
+	@Override
+	public byte getType(int event) {
+		return type.getByte(event);
+	}
+
+	@Override
+	public int getThread(int event) {
+		return thread.getInt(event);
+	}
+
+	@Override
+	public int getClassID(int event) {
+		return classID.getInt(event);
+	}
+
+	@Override
+	public int getMethodID(int event) {
+		return methodID.getInt(event);
+	}
+
+	@Override
+	public long getObjectID(int event) {
+		return objectID.getLong(event);
+	}
+
+	@Override
+	public int getFrameID(int event) {
+		return frameID.getInt(event);
+	}
+
+	@Override
+	public void setFrameID(int event, int frameID) {
+		this.frameID.putInt(event, frameID);
+	}
+
+	@Override
+	public int getCaller(int event) {
+		return caller.getInt(event);
+	}
+
+	@Override
+	public void setCaller(int event, int caller) {
+		this.caller.putInt(event, caller);
+	}
+
+	@Override
+	public int getCallee(int event) {
+		return callee.getInt(event);
+	}
+
+	@Override
+	public void setCallee(int event, int callee) {
+		this.callee.putInt(event, callee);
+	}
+
+	@Override
+	public EventIndexPool getIndexPool() {
+		return indexPool;
+	}
+
+	@Override
+	public void close() {
+		time.close();
+		type.close();
+		thread.close();
+		classID.close();
+		methodID.close();
+		objectID.close();
+		frameID.close();
+		caller.close();
+		callee.close();
+		indexPool.close();
+	}
+}
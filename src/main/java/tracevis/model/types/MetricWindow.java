@@ -0,0 +1,76 @@
+package tracevis.model.types;
+
+/**
+ * The window of time over which the metrics of the classes and calls of a
+ * trace are counted: from the metric start time to the current time. The
+ * window is shared by all classes and calls, which compute a metric from it
+ * only when the metric is asked for, so that moving the window does not touch
+ * the classes and calls at all. Every move gives the window a new version, by
+ * which the classes and calls tell whether a metric they computed earlier is
+ * still valid.
+ */
+public class MetricWindow {
+	private long startTime;
+	private long endTime;
+	private int version;
+
+	/**
+	 * Creates a new instance of MetricWindow, which is empty and starts at
+	 * time 0.
+	 */
+	public MetricWindow() {
+		this.startTime = 0;
+		this.endTime = 0;
+		this.version = 0;
+	}
+
+	/**
+	 * Moves the window to the specified start and end time.
+	 * @param startTime the metric start time.
+	 * @param endTime the current time.
+	 */
+	public void moveTo(long startTime, long endTime) {
+		this.startTime = startTime;
+		this.endTime = endTime;
+		version++;
+	}
+
+	/**
+	 * Returns the metric start time.
+	 */
+	public long getStartTime() {
+		return startTime;
+	}
+
+	/**
+	 * Returns the current time.
+	 */
+	public long getEndTime() {
+		return endTime;
+	}
+
+	/**
+	 * Returns the version of the window, which changes whenever the window
+	 * is moved.
+	 */
+	public int getVersion() {
+		return version;
+	}
+
+	/**
+	 * Returns the increase of the specified cumulative function within the
+	 * window.
+	 * @param timeFunction the specified function.
+	 */
+	public int getCount(TimeFunction timeFunction) {
+		return timeFunction.get(endTime) - timeFunction.get(startTime);
+	}
+
+	/**
+	 * Returns the value of the specified function at the current time.
+	 * @param timeFunction the specified function.
+	 */
+	public int getValue(TimeFunction timeFunction) {
+		return timeFunction.get(endTime);
+	}
+}
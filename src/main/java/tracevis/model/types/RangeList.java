@@ -0,0 +1,106 @@
+package tracevis.model.types;
+
+import java.util.AbstractList;
+import java.util.Arrays;
+
+/**
+ * A growable list of ranges, which keeps the begins and ends of the ranges in
+ * two arrays instead of a Range object each. A Range is only created when an
+ * element of the list is asked for. The list is not modified through the
+ * List interface; ranges are appended by {@link #add(long, long)} and removed
+ * from the end by {@link #removeAfter(long)}.
+ */
+class RangeList extends AbstractList<Range> {
+	private long[] begins;
+	private long[] ends;
+	private int size;
+
+	/**
+	 * Creates a new, empty instance of RangeList.
+	 * @param capacity the number of ranges to reserve memory for.
+	 */
+	public RangeList(int capacity) {
+		begins = new long[Math.max(4, capacity)];
+		ends = new long[begins.length];
+		size = 0;
+	}
+
+	/**
+	 * Appends the range with the specified begin and end.
+	 * @param begin the begin of the range.
+	 * @param end the end of the range.
+	 */
+	public void add(long begin, long end) {
+		if (size == begins.length) {
+			begins = Arrays.copyOf(begins, 2 * size);
+			ends = Arrays.copyOf(ends, 2 * size);
+		}
+		begins[size] = begin;
+		ends[size] = end;
+		size++;
+	}
+
+	/**
+	 * Removes the ranges which end after the specified time. The ranges
+	 * should have been added in order of their ends.
+	 * @param time the specified time.
+	 */
+	public void removeAfter(long time) {
+		while (size > 0 && ends[size - 1] > time) {
+			size--;
+		}
+	}
+
+	/**
+	 * Returns the number of ranges which end before the specified time. The
+	 * ranges should have been added in order of their ends.
+	 * @param time the specified time.
+	 */
+	public int endsBefore(long time) {
+		int low = 0;
+		int high = size;
+		while (low < high) {
+			int middle = (low + high) >>> 1;
+			if (ends[middle] < time) {
+				low = middle + 1;
+			} else {
+				high = middle;
+			}
+		}
+		return low;
+	}
+
+	/**
+	 * Returns the begin of the range at the specified index.
+	 * @param index the specified index.
+	 */
+	public long getBegin(int index) {
+		return begins[index];
+	}
+
+	/**
+	 * Returns the end of the range at the specified index.
+	 * @param index the specified index.
+	 */
+	public long getEnd(int index) {
+		return ends[index];
+	}
+
+	@Override
+	public Range get(int index) {
+		if (index >= size) {
+			throw new IndexOutOfBoundsException("Index: " + index + ", size: " + size);
+		}
+		return new Range(begins[index], ends[index]);
+	}
+
+	@Override
+	public void clear() {
+		size = 0;
+	}
+
+	@Override
+	public int size() {
+		return size;
+	}
+}
@@ -0,0 +1,129 @@
+package tracevis.model.types;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * A table of the class and method names of a trace. Each distinct name is
+ * stored once, and is identified by a dense int ID: the classes are numbered
+ * from 0 in the order in which they are first seen, and so are the methods.
+ * Events, frames, filters and call counts refer to names by their IDs, so
+ * that comparing or looking up names does not hash strings, and per-class
+ * data can be kept in arrays indexed by class ID.
+ */
+public class SymbolTable {
+	/** The ID which is returned for names which are not in the table. */
+	public static final int NO_SYMBOL = -1;
+
+	private final Map<String, Integer> classIDs;
+	private final List<String> classNames;
+
+	private final Map<String, Integer> methodIDs;
+	private final List<String> methodNames;
+
+	/**
+	 * Creates a new, empty instance of SymbolTable.
+	 */
+	public SymbolTable() {
+		classIDs = new HashMap<String, Integer>();
+		classNames = new ArrayList<String>();
+
+		methodIDs = new HashMap<String, Integer>();
+		methodNames = new ArrayList<String>();
+	}
+
+	/**
+	 * Creates a new instance of SymbolTable which holds the names of the
+	 * specified table, with the same IDs.
+	 * @param symbols the specified table.
+	 */
+	public SymbolTable(SymbolTable symbols) {
+		classIDs = new HashMap<String, Integer>(symbols.classIDs);
+		classNames = new ArrayList<String>(symbols.classNames);
+
+		methodIDs = new HashMap<String, Integer>(symbols.methodIDs);
+		methodNames = new ArrayList<String>(symbols.methodNames);
+	}
+
+	/**
+	 * Returns the ID of the specified class name, which is added to the table
+	 * if it is not in it yet.
+	 * @param className the specified class name.
+	 */
+	public int getClassID(String className) {
+		return intern(className, classIDs, classNames);
+	}
+
+	/**
+	 * Returns the ID of the specified class name, or {@link #NO_SYMBOL} if it
+	 * is not in the table.
+	 * @param className the specified class name.
+	 */
+	public int findClassID(String className) {
+		Integer id = classIDs.get(className);
+		return id != null ? id : NO_SYMBOL;
+	}
+
+	/**
+	 * Returns the class name with the specified ID.
+	 * @param classID the specified ID.
+	 */
+	public String getClassName(int classID) {
+		return classNames.get(classID);
+	}
+
+	/**
+	 * Returns the number of class names in the table. The class IDs range
+	 * from 0 up to this number.
+	 */
+	public int getClassCount() {
+		return classNames.size();
+	}
+
+	/**
+	 * Returns the ID of the specified method name, which is added to the
+	 * table if it is not in it yet.
+	 * @param methodName the specified method name.
+	 */
+	public int getMethodID(String methodName) {
+		return intern(methodName, methodIDs, methodNames);
+	}
+
+	/**
+	 * Returns the ID of the specified method name, or {@link #NO_SYMBOL} if
+	 * it is not in the table.
+	 * @param methodName the specified method name.
+	 */
+	public int findMethodID(String methodName) {
+		Integer id = methodIDs.get(methodName);
+		return id != null ? id : NO_SYMBOL;
+	}
+
+	/**
+	 * Returns the method name with the specified ID.
+	 * @param methodID the specified ID.
+	 */
+	public String getMethodName(int methodID) {
+		return methodNames.get(methodID);
+	}
+
+	/**
+	 * Returns the number of method names in the table. The method IDs range
+	 * from 0 up to this number.
+	 */
+	public int getMethodCount() {
+		return methodNames.size();
+	}
+
+	private static int intern(String name, Map<String, Integer> ids, List<String> names) {
+		Integer id = ids.get(name);
+		if (id == null) {
+			id = names.size();
+			ids.put(name, id);
+			names.add(name);
+		}
+		return id;
+	}
+}
@@ -8,12 +8,12 @@
 
 package tracevis.model.types;
 
-import java.util.Iterator;
-import java.util.Map;
-import java.util.SortedMap;
-import java.util.TreeMap;
-
-import tracevis.utilities.Pair;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.NoSuchElementException;
 
 /**
  * A function which maps times to values. This function is specified by
@@ -25,87 +25,243 @@ import tracevis.utilities.Pair;
  *   <li> Otherwise, the value of the function is the value of the data point
  *        with the highest time below <i>t</i>. </li>
  * </ul>
- * Times are represented by long integers. The type of values is specified by
- * the type parameter V.
+ * Times are represented by long integers and values by integers. The data
+ * points are kept in two parallel arrays in order of time, so they are
+ * added in that order (see {@link #put(long, int)}); a value is looked up
+ * by a binary search over the times. The data points in a range are visited
+ * by index, from {@link #ceilingIndex(long)} on, which does not allocate.
  * @author Pieter Deelen
  */
-public class TimeFunction<V> {
-	private class FunctionIterator implements Iterator<Pair<Long, V>> {
-		private final SortedMap<Long, V> subFunction;
-		private final Iterator<Map.Entry<Long, V>> entryIterator;
-
-		private FunctionIterator(Range range) {
-			subFunction = function.subMap(range.getBegin(), range.getEnd() + 1);
-			entryIterator = subFunction.entrySet().iterator();
+public class TimeFunction {
+	private static final int INITIAL_CAPACITY = 4;
+
+	// The number of bytes of a data point written by write, and the number
+	// of data points read at a time.
+	private static final int POINT_SIZE = 8 + 4;
+	private static final int READ_CHUNK = 4096;
+
+	private long[] times;
+	private int[] values;
+	private int size;
+	private final int initialValue;
+
+	/**
+	 * Creates a new instance of TimeFunction.
+	 * @param initialValue the initial value.
+	 */
+	public TimeFunction(int initialValue) {
+		this.times = new long[INITIAL_CAPACITY];
+		this.values = new int[INITIAL_CAPACITY];
+		this.size = 0;
+		this.initialValue = initialValue;
+	}
+
+	/**
+	 * Adds a new data point to the function. A data point at or before the
+	 * time of the last data point replaces the value of the last one, so
+	 * that an event whose time stamp is slightly out of order, as happens
+	 * between threads, counts from the last time on.
+	 * @param time the time.
+	 * @param value the value.
+	 */
+	public void put(long time, int value) {
+		if (size > 0 && time <= times[size - 1]) {
+			values[size - 1] = value;
+			return;
 		}
 
-		@Override
-		public boolean hasNext() {
-			return entryIterator.hasNext();
+		if (size == times.length) {
+			times = Arrays.copyOf(times, 2 * size);
+			values = Arrays.copyOf(values, 2 * size);
 		}
+		times[size] = time;
+		values[size] = value;
+		size++;
+	}
 
-		@Override
-		public Pair<Long, V> next() {
-			Map.Entry<Long, V> next = entryIterator.next();
-			return new Pair<Long, V>(next.getKey(), next.getValue());
+	/**
+	 * Releases the memory reserved for data points which have not been
+	 * added.
+	 */
+	public void trimToSize() {
+		if (size < times.length) {
+			times = Arrays.copyOf(times, size);
+			values = Arrays.copyOf(values, size);
 		}
+	}
 
-		@Override
-		public void remove() {
-			// Not supported.
+	/**
+	 * Adds the specified deltas to the function, each from its time on, by
+	 * merging them with the data points in a single pass. Data points which
+	 * no longer change the value of the function are dropped.
+	 * @param changeTimes the times of the deltas, in ascending order.
+	 * @param deltas the specified deltas.
+	 * @param count the number of deltas.
+	 */
+	public void add(long[] changeTimes, int[] deltas, int count) {
+		long[] newTimes = new long[size + count];
+		int[] newValues = new int[size + count];
+		int newSize = 0;
+
+		int value = initialValue;
+		int offset = 0;
+		int lastValue = initialValue;
+		int i = 0;
+		int j = 0;
+		while (i < size || j < count) {
+			long time = j == count || (i < size && times[i] <= changeTimes[j]) ?
+			            times[i] : changeTimes[j];
+			while (i < size && times[i] == time) {
+				value = values[i++];
+			}
+			while (j < count && changeTimes[j] == time) {
+				offset += deltas[j++];
+			}
+			if (value + offset != lastValue) {
+				lastValue = value + offset;
+				newTimes[newSize] = time;
+				newValues[newSize] = lastValue;
+				newSize++;
+			}
 		}
+
+		times = Arrays.copyOf(newTimes, Math.max(1, newSize));
+		values = Arrays.copyOf(newValues, times.length);
+		size = newSize;
 	}
 
-	private final SortedMap<Long, V> function;
-	private final V initialValue;
+	/**
+	 * Appends the data points of the specified function, which continues
+	 * this one: its values are the changes from its initial value, and are
+	 * offset by the last value of this function. The data points are added
+	 * as by {@link #put(long, int)}.
+	 * @param function the specified function.
+	 */
+	public void append(TimeFunction function) {
+		int offset = lastValue() - function.initialValue;
+		if (size + function.size > times.length) {
+			times = Arrays.copyOf(times, size + function.size);
+			values = Arrays.copyOf(values, times.length);
+		}
+		for (int i = 0; i < function.size; i++) {
+			put(function.times[i], function.values[i] + offset);
+		}
+	}
 
 	/**
-	 * Creates a new instance of TimeFunction.
-	 * @param initialValue the initial value.
+	 * Returns the value of the function at the specified time.
+	 * @param time the specified time.
 	 */
-	public TimeFunction(V initialValue) {
-		this.function = new TreeMap<Long, V>();
-		this.initialValue = initialValue;
+	public int get(long time) {
+		int index = floorIndex(time);
+		return index >= 0 ? values[index] : initialValue;
 	}
 
 	/**
-	 * Adds a new data point to the function.
-	 * @param time the time.
-	 * @param value the value.
+	 * Returns the index of the last data point at or before the specified
+	 * time, or -1 if there is none.
+	 * @param time the specified time.
 	 */
-	public void put(long time, V value) {
-		function.put(time, value);
+	public int floorIndex(long time) {
+		return ceilingIndex(time + 1) - 1;
 	}
 
 	/**
-	 * Returns the value of the function at the specified time.
+	 * Returns the index of the first data point at or after the specified
+	 * time, or the number of data points if there is none.
 	 * @param time the specified time.
 	 */
-	public V get(long time) {
-		// Restrict the view of function to keys t with t < time + 1 ==
-		// t <= time.
-		SortedMap<Long, V> head = function.headMap(time + 1);
-
-		if (head.isEmpty()) {
-			return initialValue;
-		} else {
-			long key = head.lastKey();
-			return head.get(key);
+	public int ceilingIndex(long time) {
+		int low = 0;
+		int high = size;
+		while (low < high) {
+			int middle = (low + high) >>> 1;
+			if (times[middle] < time) {
+				low = middle + 1;
+			} else {
+				high = middle;
+			}
 		}
+		return low;
+	}
+
+	/**
+	 * Returns the number of data points.
+	 */
+	public int size() {
+		return size;
+	}
+
+	/**
+	 * Returns the time of the data point at the specified index.
+	 * @param index the specified index.
+	 */
+	public long getTime(int index) {
+		return times[index];
+	}
+
+	/**
+	 * Returns the value of the data point at the specified index.
+	 * @param index the specified index.
+	 */
+	public int getValue(int index) {
+		return values[index];
 	}
 
 	/**
 	 * Returns the time of the last data point.
+	 * @throws NoSuchElementException if there are no data points.
 	 */
 	public long lastTime() {
-		return function.lastKey();
+		if (size == 0) {
+			throw new NoSuchElementException();
+		}
+		return times[size - 1];
 	}
 
 	/**
-	 * Returns all data points of which the times fall in the specified range.
-	 * @param range the specified range.
+	 * Returns the value of the last data point, or the initial value if
+	 * there are no data points.
 	 */
-	public Iterator<Pair<Long, V>> getEntryIterator(Range range) {
-		return new FunctionIterator(range);
+	public int lastValue() {
+		return size > 0 ? values[size - 1] : initialValue;
+	}
+
+	/**
+	 * Writes this function to the specified stream, in the form read by
+	 * {@link #read(DataInputStream)}.
+	 */
+	void write(DataOutputStream output) throws IOException {
+		output.writeInt(initialValue);
+		output.writeInt(size);
+		for (int i = 0; i < size; i++) {
+			output.writeLong(times[i]);
+			output.writeInt(values[i]);
+		}
+	}
+
+	/**
+	 * Reads a function written by {@link #write(DataOutputStream)} from the
+	 * specified stream. The data points are read a chunk at a time, which is
+	 * much faster than reading them a value at a time.
+	 */
+	static TimeFunction read(DataInputStream input) throws IOException {
+		TimeFunction timeFunction = new TimeFunction(input.readInt());
+		int size = input.readInt();
+		timeFunction.times = new long[Math.max(1, size)];
+		timeFunction.values = new int[timeFunction.times.length];
+		ByteBuffer chunk = ByteBuffer.allocate(POINT_SIZE * Math.min(size, READ_CHUNK));
+		chunk.limit(0);
+		for (int i = 0; i < size; i++) {
+			if (!chunk.hasRemaining()) {
+				chunk.clear();
+				chunk.limit(POINT_SIZE * Math.min(size - i, READ_CHUNK));
+				input.readFully(chunk.array(), 0, chunk.limit());
+			}
+			timeFunction.times[i] = chunk.getLong();
+			timeFunction.values[i] = chunk.getInt();
+		}
+		timeFunction.size = size;
+		return timeFunction;
 	}
 }
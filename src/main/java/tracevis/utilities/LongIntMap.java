@@ -0,0 +1,231 @@
+package tracevis.utilities;
+
+import java.util.NoSuchElementException;
+
+/**
+ * A map from long keys to int values, which stores both as primitives in an
+ * open addressing hash table instead of boxing them in entries. A slot with
+ * key 0 is empty, so the key 0 itself is kept apart from the table. Looking
+ * up a key that is not in the map returns the missing value given when the
+ * map was created.
+ */
+public class LongIntMap {
+	private static final int INITIAL_CAPACITY = 16;
+
+	private final int missingValue;
+
+	private long[] keys;
+	private int[] values;
+	private int size;
+	private int mask;
+
+	private boolean hasZeroKey;
+	private int zeroValue;
+
+	/**
+	 * Creates a new, empty instance of LongIntMap.
+	 * @param missingValue the value returned for keys that are not in the
+	 *                     map.
+	 */
+	public LongIntMap(int missingValue) {
+		this.missingValue = missingValue;
+		clear();
+	}
+
+	/**
+	 * Returns the slot at which the search for the specified key starts.
+	 */
+	private int slot(long key) {
+		long hash = key * 0x9E3779B97F4A7C15L;
+		return (int) (hash ^ (hash >>> 32)) & mask;
+	}
+
+	/**
+	 * Returns the value of the specified key, or the missing value if the key
+	 * is not in the map.
+	 * @param key the specified key.
+	 */
+	public int get(long key) {
+		if (key == 0) {
+			return hasZeroKey ? zeroValue : missingValue;
+		}
+
+		int slot = slot(key);
+		while (keys[slot] != 0) {
+			if (keys[slot] == key) {
+				return values[slot];
+			}
+			slot = (slot + 1) & mask;
+		}
+		return missingValue;
+	}
+
+	/**
+	 * Returns whether the specified key is in the map.
+	 * @param key the specified key.
+	 */
+	public boolean containsKey(long key) {
+		if (key == 0) {
+			return hasZeroKey;
+		}
+
+		int slot = slot(key);
+		while (keys[slot] != 0) {
+			if (keys[slot] == key) {
+				return true;
+			}
+			slot = (slot + 1) & mask;
+		}
+		return false;
+	}
+
+	/**
+	 * Associates the specified key with the specified value, and returns the
+	 * value the key had, or the missing value.
+	 * @param key the specified key.
+	 * @param value the specified value.
+	 */
+	public int put(long key, int value) {
+		if (key == 0) {
+			int previous = hasZeroKey ? zeroValue : missingValue;
+			if (!hasZeroKey) {
+				hasZeroKey = true;
+				size++;
+			}
+			zeroValue = value;
+			return previous;
+		}
+
+		int slot = slot(key);
+		while (keys[slot] != 0) {
+			if (keys[slot] == key) {
+				int previous = values[slot];
+				values[slot] = value;
+				return previous;
+			}
+			slot = (slot + 1) & mask;
+		}
+
+		keys[slot] = key;
+		values[slot] = value;
+		if (++size > (keys.length >> 1)) {
+			resize(2 * keys.length);
+		}
+		return missingValue;
+	}
+
+	/**
+	 * Removes the specified key from the map, and returns the value it had,
+	 * or the missing value if it was not in the map.
+	 * @param key the specified key.
+	 */
+	public int remove(long key) {
+		if (key == 0) {
+			if (!hasZeroKey) {
+				return missingValue;
+			}
+			hasZeroKey = false;
+			size--;
+			return zeroValue;
+		}
+
+		int slot = slot(key);
+		while (keys[slot] != 0) {
+			if (keys[slot] == key) {
+				int previous = values[slot];
+				removeSlot(slot);
+				size--;
+				return previous;
+			}
+			slot = (slot + 1) & mask;
+		}
+		return missingValue;
+	}
+
+	/**
+	 * Empties the specified slot, and moves back the keys after it that
+	 * would no longer be found past the gap.
+	 */
+	private void removeSlot(int gap) {
+		int slot = (gap + 1) & mask;
+		while (keys[slot] != 0) {
+			int home = slot(keys[slot]);
+			if (((slot - home) & mask) >= ((slot - gap) & mask)) {
+				keys[gap] = keys[slot];
+				values[gap] = values[slot];
+				gap = slot;
+			}
+			slot = (slot + 1) & mask;
+		}
+		keys[gap] = 0;
+	}
+
+	private void resize(int capacity) {
+		long[] oldKeys = keys;
+		int[] oldValues = values;
+		keys = new long[capacity];
+		values = new int[capacity];
+		mask = capacity - 1;
+
+		for (int i = 0; i < oldKeys.length; i++) {
+			if (oldKeys[i] != 0) {
+				int slot = slot(oldKeys[i]);
+				while (keys[slot] != 0) {
+					slot = (slot + 1) & mask;
+				}
+				keys[slot] = oldKeys[i];
+				values[slot] = oldValues[i];
+			}
+		}
+	}
+
+	/**
+	 * Removes all keys from the map.
+	 */
+	public void clear() {
+		keys = new long[INITIAL_CAPACITY];
+		values = new int[INITIAL_CAPACITY];
+		size = 0;
+		mask = INITIAL_CAPACITY - 1;
+		hasZeroKey = false;
+	}
+
+	/**
+	 * Returns the number of keys in the map.
+	 */
+	public int size() {
+		return size;
+	}
+
+	/**
+	 * Returns an iterator over the keys in the map, in no particular order.
+	 * The map should not be changed while it is iterated over.
+	 */
+	public LongIterator keys() {
+		return new LongIterator() {
+			private int slot = hasZeroKey ? -1 : nextSlot(0);
+
+			private int nextSlot(int slot) {
+				while (slot < keys.length && keys[slot] == 0) {
+					slot++;
+				}
+				return slot;
+			}
+
+			@Override
+			public boolean hasNext() {
+				return slot < keys.length;
+			}
+
+			@Override
+			public long next() {
+				if (slot >= keys.length) {
+					throw new NoSuchElementException();
+				}
+				long key = slot == -1 ? 0 : keys[slot];
+				slot = nextSlot(slot + 1);
+				return key;
+			}
+		};
+	}
+}
@@ -0,0 +1,19 @@
+package tracevis.utilities;
+
+/**
+ * An iterator over long values, which returns them as primitives instead of
+ * boxing them.
+ */
+public interface LongIterator {
+
+	/**
+	 * Returns whether there are more values.
+	 */
+	boolean hasNext();
+
+	/**
+	 * Returns the next value.
+	 * @throws java.util.NoSuchElementException if there are no more values.
+	 */
+	long next();
+}
@@ -0,0 +1,195 @@
+package tracevis.utilities;
+
+import java.util.NoSuchElementException;
+
+/**
+ * A map from long keys to objects, which stores the keys as primitives in an
+ * open addressing hash table instead of boxing them in entries. A lookup
+ * hashes the key and probes consecutive slots, so it takes a few array reads
+ * and allocates nothing. Null values are not allowed; an empty slot is one
+ * without a value.
+ */
+public class LongObjectMap<V> {
+	private static final int INITIAL_CAPACITY = 16;
+
+	private long[] keys;
+	private Object[] values;
+	private int size;
+	private int mask;
+
+	/**
+	 * Creates a new, empty instance of LongObjectMap.
+	 */
+	public LongObjectMap() {
+		clear();
+	}
+
+	/**
+	 * Returns the slot at which the search for the specified key starts.
+	 */
+	private int slot(long key) {
+		long hash = key * 0x9E3779B97F4A7C15L;
+		return (int) (hash ^ (hash >>> 32)) & mask;
+	}
+
+	/**
+	 * Returns the value of the specified key, or null if the key is not in
+	 * the map.
+	 * @param key the specified key.
+	 */
+	@SuppressWarnings("unchecked")
+	public V get(long key) {
+		int slot = slot(key);
+		while (values[slot] != null) {
+			if (keys[slot] == key) {
+				return (V) values[slot];
+			}
+			slot = (slot + 1) & mask;
+		}
+		return null;
+	}
+
+	/**
+	 * Returns whether the specified key is in the map.
+	 * @param key the specified key.
+	 */
+	public boolean containsKey(long key) {
+		return get(key) != null;
+	}
+
+	/**
+	 * Associates the specified key with the specified value, and returns the
+	 * value the key had, or null.
+	 * @param key the specified key.
+	 * @param value the specified value, which must not be null.
+	 */
+	@SuppressWarnings("unchecked")
+	public V put(long key, V value) {
+		if (value == null) {
+			throw new NullPointerException("Null values are not allowed.");
+		}
+
+		int slot = slot(key);
+		while (values[slot] != null) {
+			if (keys[slot] == key) {
+				V previous = (V) values[slot];
+				values[slot] = value;
+				return previous;
+			}
+			slot = (slot + 1) & mask;
+		}
+
+		keys[slot] = key;
+		values[slot] = value;
+		if (++size > (values.length >> 1)) {
+			resize(2 * values.length);
+		}
+		return null;
+	}
+
+	/**
+	 * Removes the specified key from the map, and returns the value it had,
+	 * or null if it was not in the map.
+	 * @param key the specified key.
+	 */
+	@SuppressWarnings("unchecked")
+	public V remove(long key) {
+		int slot = slot(key);
+		while (values[slot] != null) {
+			if (keys[slot] == key) {
+				V previous = (V) values[slot];
+				removeSlot(slot);
+				size--;
+				return previous;
+			}
+			slot = (slot + 1) & mask;
+		}
+		return null;
+	}
+
+	/**
+	 * Empties the specified slot, and moves back the keys after it that
+	 * would no longer be found past the gap.
+	 */
+	private void removeSlot(int gap) {
+		int slot = (gap + 1) & mask;
+		while (values[slot] != null) {
+			int home = slot(keys[slot]);
+			if (((slot - home) & mask) >= ((slot - gap) & mask)) {
+				keys[gap] = keys[slot];
+				values[gap] = values[slot];
+				gap = slot;
+			}
+			slot = (slot + 1) & mask;
+		}
+		values[gap] = null;
+	}
+
+	private void resize(int capacity) {
+		long[] oldKeys = keys;
+		Object[] oldValues = values;
+		keys = new long[capacity];
+		values = new Object[capacity];
+		mask = capacity - 1;
+
+		for (int i = 0; i < oldValues.length; i++) {
+			if (oldValues[i] != null) {
+				int slot = slot(oldKeys[i]);
+				while (values[slot] != null) {
+					slot = (slot + 1) & mask;
+				}
+				keys[slot] = oldKeys[i];
+				values[slot] = oldValues[i];
+			}
+		}
+	}
+
+	/**
+	 * Removes all keys from the map.
+	 */
+	public void clear() {
+		keys = new long[INITIAL_CAPACITY];
+		values = new Object[INITIAL_CAPACITY];
+		size = 0;
+		mask = INITIAL_CAPACITY - 1;
+	}
+
+	/**
+	 * Returns the number of keys in the map.
+	 */
+	public int size() {
+		return size;
+	}
+
+	/**
+	 * Returns an iterator over the keys in the map, in no particular order.
+	 * The map should not be changed while it is iterated over.
+	 */
+	public LongIterator keys() {
+		return new LongIterator() {
+			private int slot = nextSlot(0);
+
+			private int nextSlot(int slot) {
+				while (slot < values.length && values[slot] == null) {
+					slot++;
+				}
+				return slot;
+			}
+
+			@Override
+			public boolean hasNext() {
+				return slot < values.length;
+			}
+
+			@Override
+			public long next() {
+				if (slot >= values.length) {
+					throw new NoSuchElementException();
+				}
+				long key = keys[slot];
+				slot = nextSlot(slot + 1);
+				return key;
+			}
+		};
+	}
+}
@@ -0,0 +1,198 @@
+package tracevis.utilities;
+
+import java.util.NoSuchElementException;
+
+/**
+ * A set of long values, which stores them as primitives in an open
+ * addressing hash table instead of boxing them. A slot holding 0 is empty, so
+ * the value 0 itself is kept apart from the table.
+ */
+public class LongSet {
+	private static final int INITIAL_CAPACITY = 16;
+
+	private long[] keys;
+	private int size;
+	private int mask;
+
+	private boolean hasZero;
+
+	/**
+	 * Creates a new, empty instance of LongSet.
+	 */
+	public LongSet() {
+		clear();
+	}
+
+	/**
+	 * Returns the slot at which the search for the specified value starts.
+	 */
+	private int slot(long key) {
+		long hash = key * 0x9E3779B97F4A7C15L;
+		return (int) (hash ^ (hash >>> 32)) & mask;
+	}
+
+	/**
+	 * Returns whether the specified value is in the set.
+	 * @param value the specified value.
+	 */
+	public boolean contains(long value) {
+		if (value == 0) {
+			return hasZero;
+		}
+
+		int slot = slot(value);
+		while (keys[slot] != 0) {
+			if (keys[slot] == value) {
+				return true;
+			}
+			slot = (slot + 1) & mask;
+		}
+		return false;
+	}
+
+	/**
+	 * Adds the specified value to the set, and returns whether it was not in
+	 * the set already.
+	 * @param value the specified value.
+	 */
+	public boolean add(long value) {
+		if (value == 0) {
+			if (hasZero) {
+				return false;
+			}
+			hasZero = true;
+			size++;
+			return true;
+		}
+
+		int slot = slot(value);
+		while (keys[slot] != 0) {
+			if (keys[slot] == value) {
+				return false;
+			}
+			slot = (slot + 1) & mask;
+		}
+
+		keys[slot] = value;
+		if (++size > (keys.length >> 1)) {
+			resize(2 * keys.length);
+		}
+		return true;
+	}
+
+	/**
+	 * Removes the specified value from the set, and returns whether it was in
+	 * the set.
+	 * @param value the specified value.
+	 */
+	public boolean remove(long value) {
+		if (value == 0) {
+			if (!hasZero) {
+				return false;
+			}
+			hasZero = false;
+			size--;
+			return true;
+		}
+
+		int slot = slot(value);
+		while (keys[slot] != 0) {
+			if (keys[slot] == value) {
+				removeSlot(slot);
+				size--;
+				return true;
+			}
+			slot = (slot + 1) & mask;
+		}
+		return false;
+	}
+
+	/**
+	 * Empties the specified slot, and moves back the values after it that
+	 * would no longer be found past the gap.
+	 */
+	private void removeSlot(int gap) {
+		int slot = (gap + 1) & mask;
+		while (keys[slot] != 0) {
+			int home = slot(keys[slot]);
+			if (((slot - home) & mask) >= ((slot - gap) & mask)) {
+				keys[gap] = keys[slot];
+				gap = slot;
+			}
+			slot = (slot + 1) & mask;
+		}
+		keys[gap] = 0;
+	}
+
+	private void resize(int capacity) {
+		long[] oldKeys = keys;
+		keys = new long[capacity];
+		mask = capacity - 1;
+
+		for (int i = 0; i < oldKeys.length; i++) {
+			if (oldKeys[i] != 0) {
+				int slot = slot(oldKeys[i]);
+				while (keys[slot] != 0) {
+					slot = (slot + 1) & mask;
+				}
+				keys[slot] = oldKeys[i];
+			}
+		}
+	}
+
+	/**
+	 * Removes all values from the set.
+	 */
+	public void clear() {
+		keys = new long[INITIAL_CAPACITY];
+		size = 0;
+		mask = INITIAL_CAPACITY - 1;
+		hasZero = false;
+	}
+
+	/**
+	 * Returns the number of values in the set.
+	 */
+	public int size() {
+		return size;
+	}
+
+	/**
+	 * Returns whether the set is empty.
+	 */
+	public boolean isEmpty() {
+		return size == 0;
+	}
+
+	/**
+	 * Returns an iterator over the values in the set, in no particular order.
+	 * The set should not be changed while it is iterated over.
+	 */
+	public LongIterator iterator() {
+		return new LongIterator() {
+			private int slot = hasZero ? -1 : nextSlot(0);
+
+			private int nextSlot(int slot) {
+				while (slot < keys.length && keys[slot] == 0) {
+					slot++;
+				}
+				return slot;
+			}
+
+			@Override
+			public boolean hasNext() {
+				return slot < keys.length;
+			}
+
+			@Override
+			public long next() {
+				if (slot >= keys.length) {
+					throw new NoSuchElementException();
+				}
+				long value = slot == -1 ? 0 : keys[slot];
+				slot = nextSlot(slot + 1);
+				return value;
+			}
+		};
+	}
+}
@@ -11,7 +11,6 @@ package tracevis.visualization;
 import java.awt.BorderLayout;
 import java.io.File;
 import java.io.IOException;
-import java.util.Iterator;
 import java.util.Set;
 
 import javax.swing.JPanel;
@@ -19,10 +18,13 @@ import javax.swing.JSplitPane;
 import javax.swing.JTabbedPane;
 
 import tracevis.model.Program;
+import tracevis.model.types.CallData;
 import tracevis.model.types.CallStack;
 import tracevis.model.types.ClassData;
 import tracevis.model.types.Frame;
+import tracevis.model.types.FrameTable;
 import tracevis.model.types.ProgramListener;
+import tracevis.utilities.LongIterator;
 import tracevis.visualization.detail.InformationPanel;
 import tracevis.visualization.explorer.Explorer;
 import tracevis.visualization.structure.CustomRenderer;
@@ -131,25 +133,21 @@ public class ProgramView extends JPanel {
 			}
 
 
-			for (long thread : program.getActiveThreads()) {
+			FrameTable frames = program.getEvents().getFrames();
+			LongIterator threads = program.getActiveThreads().iterator();
+			while (threads.hasNext()) {
+				long thread = threads.next();
 				CallStack callStack = program.getCallStack(thread);
 
-				Iterator<Frame> callee = callStack.iterator();
-				int calleeDepth = 0;
-
-				Iterator<Frame> caller = callStack.iterator();
-				if (caller.hasNext()) {
-					caller.next();
-				}
-
-				while (callee.hasNext()) {
+				for (int calleeDepth = 0; calleeDepth < callStack.depth(); calleeDepth++) {
+					Frame callee = frames.get(callStack.get(calleeDepth));
 					ClassData calleeClassData = null;
 					switch (program.getCallAssignment()) {
 						case DEFINING_CLASS:
-							calleeClassData = callee.next().getDefiningClass();
+							calleeClassData = callee.getDefiningClass();
 							break;
 						case OBJECT_CLASS:
-							calleeClassData = callee.next().getActualClass();
+							calleeClassData = callee.getActualClass();
 							break;
 					}
 					Vertex calleeVertex = calleeClassData.getVertex();
@@ -157,28 +155,26 @@ public class ProgramView extends JPanel {
 					VertexData calleeData = (VertexData)calleeVertex.getUserDatum("tracevis.visualization.ProgramView");
 					calleeData.addStackEntry(thread, calleeDepth);
 
-					if (caller.hasNext()) {
+					if (calleeDepth + 1 < callStack.depth()) {
+						Frame caller = frames.get(callStack.get(calleeDepth + 1));
 						ClassData callerData = null;
 						switch (program.getCallAssignment()) {
 							case DEFINING_CLASS:
-								callerData = caller.next().getDefiningClass();
+								callerData = caller.getDefiningClass();
 								break;
 							case OBJECT_CLASS:
-								callerData = caller.next().getActualClass();
+								callerData = caller.getActualClass();
 								break;
 						}
-						Vertex callerVertex = callerData.getVertex();
-
-						Edge edge = callerVertex.findEdge(calleeVertex);
-						if (edge == null) {
-							System.out.println(callerVertex + " " + calleeVertex);
+						CallData callData = callerData.getCallData(calleeClassData);
+						if (callData == null) {
+							System.out.println(callerData.getVertex() + " " + calleeVertex);
 							System.out.println(callStack);
 						}
+						Edge edge = callData.getEdge();
 						EdgeData edgeData = (EdgeData)edge.getUserDatum("tracevis.visualization.ProgramView");
 						edgeData.addStackEntry(thread, calleeDepth);
 					}
-
-					calleeDepth += 1;
 				}
 			}
 		}
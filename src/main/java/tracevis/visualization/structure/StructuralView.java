@@ -23,6 +23,7 @@ import javax.swing.JPanel;
 import javax.swing.UIManager;
 
 import tracevis.model.Program;
+import tracevis.model.types.CallData;
 import tracevis.model.types.ClassData;
 import tracevis.model.types.ProgramListener;
 import tracevis.visualization.functions.CallsReceivedVertexSizeFunction;
@@ -35,7 +36,6 @@ import tracevis.visualization.utilities.BrushMultiPickedState;
 import edu.uci.ics.jung.graph.ArchetypeEdge;
 import edu.uci.ics.jung.graph.ArchetypeVertex;
 import edu.uci.ics.jung.graph.Edge;
-import edu.uci.ics.jung.graph.Vertex;
 import edu.uci.ics.jung.visualization.PickEventListener;
 import edu.uci.ics.jung.visualization.PickSupport;
 import edu.uci.ics.jung.visualization.ShapePickSupport;
@@ -433,10 +433,9 @@ public class StructuralView extends JPanel {
 		@Override
 		public void methodEntered(ClassData callerData, ClassData calleeData) {
 			if (callerData != null && calleeData != null) {
-				Vertex callerVertex = callerData.getVertex();
-				Vertex calleeVertex = calleeData.getVertex();
-				Edge edge = callerVertex.findEdge(calleeVertex);
-				if (edge != null) {
+				CallData callData = callerData.getCallData(calleeData);
+				if (callData != null) {
+					Edge edge = callData.getEdge();
 					Dimension size = viewer.getSize();
 
 					EdgeData edgeData = (EdgeData)edge.getUserDatum("tracevis.visualization.ProgramView");
@@ -456,10 +455,9 @@ public class StructuralView extends JPanel {
 		@Override
 		public void methodExited(ClassData callerData, ClassData calleeData) {
 			if (callerData != null && calleeData != null) {
-				Vertex callerVertex = callerData.getVertex();
-				Vertex calleeVertex = calleeData.getVertex();
-				Edge edge = callerVertex.findEdge(calleeVertex);
-				if (edge != null) {
+				CallData callData = callerData.getCallData(calleeData);
+				if (callData != null) {
+					Edge edge = callData.getEdge();
 					Dimension size = viewer.getSize();
 
 					EdgeData edgeData = (EdgeData)edge.getUserDatum("tracevis.visualization.ProgramView");
@@ -26,7 +26,6 @@ import java.awt.image.BufferedImage;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Iterator;
-import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
@@ -42,9 +41,8 @@ import org.apache.commons.collections.MultiMap;
 import tracevis.model.Program;
 import tracevis.model.types.CallData;
 import tracevis.model.types.ClassData;
-import tracevis.model.types.Event;
-import tracevis.model.types.MethodEntryEvent;
-import tracevis.model.types.MethodExitEvent;
+import tracevis.model.types.EventStore;
+import tracevis.model.types.EventType;
 import tracevis.model.types.ProgramListener;
 import tracevis.model.types.Range;
 import tracevis.model.types.TimeFunction;
@@ -85,7 +83,7 @@ public class TimeLineView extends JComponent {
 
 	private final MultiMap lineToVertexMap;
 
-	private List<Event> showableEvents;
+	private int[] showableEvents;
 
 	private TimeLineSettings settings;
 
@@ -125,7 +123,7 @@ public class TimeLineView extends JComponent {
 
 		this.lineToVertexMap = new MultiHashMap();
 
-		this.showableEvents = new LinkedList<Event>();
+		this.showableEvents = new int[0];
 
 		this.classMap = new TreeMap<String, Vertex>();
 
@@ -231,11 +229,17 @@ public class TimeLineView extends JComponent {
 		VertexData vertexData = (VertexData)vertex.getUserDatum("tracevis.visualization.ProgramView");
 		long leftTime = viewRange.getBegin();
 		long rightTime = leftTime + increment;
-		TimeFunction<Integer> instances = classData.getInstanceCountFunction();
+		TimeFunction instances = classData.getInstanceCountFunction();
 
+		// The times only increase, so the data point of each pixel is found
+		// by walking on from the one of the previous pixel.
+		int point = instances.floorIndex(rightTime);
 		float hue = vertexData.getHue();
 		for (int x = 0; x < size.width; x++) {
-			int value = instances.get(rightTime);
+			while (point + 1 < instances.size() && instances.getTime(point + 1) <= rightTime) {
+				point++;
+			}
+			int value = point >= 0 ? instances.getValue(point) : instances.get(rightTime);
 
 			float saturation;
 			switch (settings.getScale()) {
@@ -296,12 +300,7 @@ public class TimeLineView extends JComponent {
 				long t1 = transformXToTime(x + 1);
 
 				Range tRange = new Range(t0, t1);
-				List<Event> events = callData.getEvents(tRange);
-
-				int count = 0;
-				for (Event event : events) {
-					count++;
-				}
+				int count = callData.getEvents(tRange).length;
 
 				if (count > 0) {
 					Color source = new Color(0.0f, 0.0f, 0.0f, 0.25f);
@@ -316,8 +315,10 @@ public class TimeLineView extends JComponent {
 	}
 
 	private void drawEvents(Graphics2D g2d) {
-		for (Event event : showableEvents) {
-			if (event instanceof MethodEntryEvent || event instanceof MethodExitEvent) {
+		EventStore events = program.getEvents();
+		for (int event : showableEvents) {
+			EventType type = events.getType(event);
+			if (type == EventType.METHOD_ENTRY || type == EventType.METHOD_EXIT) {
 				ClassData callerData;
 				ClassData calleeData;
 
@@ -330,7 +331,7 @@ public class TimeLineView extends JComponent {
 				Vertex callerVertex = callerData.getVertex();
 				Vertex calleeVertex = calleeData.getVertex();
 
-				long timeStamp = event.getTime();
+				long timeStamp = events.getTime(event);
 				double x = transformTimeToX(timeStamp);
 
 				double y0 = TimeLineView.getVertexData(callerVertex).getCenterHeight();
@@ -771,11 +772,11 @@ public class TimeLineView extends JComponent {
 		repaint();
 	}
 
-	public List<Event> getShowableEvents() {
+	public int[] getShowableEvents() {
 		return showableEvents;
 	}
 
-	public void setShowableEvents(List<Event> showableEvents) {
+	public void setShowableEvents(int[] showableEvents) {
 		this.showableEvents = showableEvents;
 		repaint();
 	}
@@ -17,14 +17,12 @@ import java.awt.event.MouseWheelEvent;
 import java.awt.event.MouseWheelListener;
 import java.awt.geom.Point2D;
 import java.util.Collection;
-import java.util.LinkedList;
 import java.util.List;
 
 import javax.swing.SwingUtilities;
 
 import tracevis.model.Program;
 import tracevis.model.types.ClassData;
-import tracevis.model.types.Event;
 import tracevis.model.types.Range;
 import tracevis.visualization.utilities.BrushMultiPickedState;
 import edu.uci.ics.jung.graph.Vertex;
@@ -232,14 +230,12 @@ public class TimeLineViewMouse implements MouseListener, MouseWheelListener, Mou
 			Range pixelRange = new Range(x0, x1);
 			List<Range> activityRanges = classData.getActivityRanges(pixelRange);
 
-			List<Event> showableEvents = new LinkedList<Event>();
+			int[] showableEvents = new int[0];
 			if (activityRanges.size() == 1) {
 				Range range = activityRanges.get(0);
-				List<Event> events = classData.getEvents(range);
-				showableEvents.addAll(events);
+				showableEvents = classData.getEvents(range);
 			} else if (activityRanges.size() > 1) {
-				List<Event> events = classData.getEvents(pixelRange);
-				showableEvents.addAll(events);
+				showableEvents = classData.getEvents(pixelRange);
 			}
 			timeLineView.setShowableEvents(showableEvents);
 		}
@@ -251,6 +247,6 @@ public class TimeLineViewMouse implements MouseListener, MouseWheelListener, Mou
 	@Override
 	public void mouseExited(MouseEvent e) {
 		pickedState.setBrushed((Vertex)null);
-		timeLineView.setShowableEvents(new LinkedList<Event>());
+		timeLineView.setShowableEvents(new int[0]);
 	}
 }
@@ -0,0 +1,120 @@
+package tracevis.model;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.StringWriter;
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import tracevis.model.TextTraceReaderTest.EventRecorder;
+
+public class BinaryTraceTest {
+
+	private static byte[] convert(String trace) throws IOException {
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		BinaryTraceWriter writer = new BinaryTraceWriter(out);
+		new TextTraceReader(writer).readTrace(new ByteArrayInputStream(trace.getBytes("UTF-8")));
+		writer.close();
+		return out.toByteArray();
+	}
+
+	private static List<String> readText(String trace) throws IOException {
+		EventRecorder recorder = new EventRecorder();
+		new TextTraceReader(recorder).readTrace(new ByteArrayInputStream(trace.getBytes("UTF-8")));
+		return recorder.events;
+	}
+
+	private static List<String> readBinary(byte[] trace) throws IOException {
+		EventRecorder recorder = new EventRecorder();
+		new BinaryTraceReader(recorder).readTrace(new ByteArrayInputStream(trace));
+		return recorder.events;
+	}
+
+	@Test
+	public void testEventTypes() throws IOException {
+		String trace =
+			"VS:1\n" +
+			"VI:2\n" +
+			"CL:3:java/util/Map$Entry\n" +
+			"TB:4:7\n" +
+			"OA:5:java/util/Map$Entry:42\n" +
+			"MN:6:7:java/util/Map$Entry:getKey:42\n" +
+			"MN:7:7:java/lang/Object:<init>:0\n" +
+			"FP:8:7:java/lang/Object:<init>\n" +
+			"MX:9:7:java/util/Map$Entry:getKey\n" +
+			"OF:11:java/util/Map$Entry:42\n" +
+			"TE:12:7\n" +
+			"VD:13\n";
+
+		Assert.assertEquals(readText(trace), readBinary(convert(trace)));
+	}
+
+	@Test
+	public void testExtremeValues() throws IOException {
+		String trace =
+			"VI:" + Long.MAX_VALUE + "\n" +
+			"TB:-5:" + Long.MIN_VALUE + "\n" +
+			"OA:0:\u00e9t\u00e9/\u00c7a:-1\n" +
+			"VD:" + Long.MIN_VALUE + "\n";
+
+		List<String> expected = Arrays.asList(
+			"VI:" + Long.MAX_VALUE,
+			"TB:-5:" + Long.MIN_VALUE,
+			"OA:0:\u00e9t\u00e9.\u00c7a:-1",
+			"VD:" + Long.MIN_VALUE);
+
+		Assert.assertEquals(expected, readBinary(convert(trace)));
+	}
+
+	@Test
+	public void testManySections() throws IOException {
+		StringWriter trace = new StringWriter();
+		new SyntheticTrace(3, 500, 4).write(trace, 100000);
+		byte[] binary = convert(trace.toString());
+
+		Assert.assertTrue(binary.length > 4 * BinaryTraceWriter.SECTION_SIZE);
+		Assert.assertEquals(readText(trace.toString()), readBinary(binary));
+	}
+
+	@Test(expected = IOException.class)
+	public void testTruncated() throws IOException {
+		StringWriter trace = new StringWriter();
+		new SyntheticTrace(4, 20, 2).write(trace, 1000);
+		byte[] binary = convert(trace.toString());
+
+		readBinary(Arrays.copyOf(binary, binary.length - 1));
+	}
+
+	@Test
+	public void testRecordPastSection() throws IOException {
+		byte[] binary = convert("TB:1:7\nTE:2:7\nVD:3\n");
+
+		// Shorten the event section by a byte, so that its last record runs
+		// into the end section which follows it.
+		int position = BinaryTraceFormat.MAGIC.length;
+		while (binary[position] != BinaryTraceFormat.EVENTS) {
+			position += BinaryTraceFormat.SECTION_HEADER_SIZE +
+			            BinaryTraceFormat.readInt(binary, position + 1);
+		}
+		int length = BinaryTraceFormat.readInt(binary, position + 1);
+		BinaryTraceFormat.writeInt(binary, position + 1, length - 1);
+
+		EventRecorder recorder = new EventRecorder();
+		try {
+			new BinaryTraceReader(recorder).readTrace(new ByteArrayInputStream(binary));
+			Assert.fail();
+		} catch (IOException e) {
+			// The record is rejected before it is handled.
+			Assert.assertEquals(Arrays.asList("TB:1:7", "TE:2:7"), recorder.events);
+		}
+	}
+
+	@Test(expected = IOException.class)
+	public void testNotBinary() throws IOException {
+		readBinary("VI:1\nVD:2\n".getBytes("UTF-8"));
+	}
+}
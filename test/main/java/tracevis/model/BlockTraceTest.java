@@ -0,0 +1,112 @@
+package tracevis.model;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import tracevis.model.TextTraceReaderTest.EventRecorder;
+
+public class BlockTraceTest {
+
+	/**
+	 * Writes a synthetic trace as a block trace with small blocks.
+	 */
+	private static File writeBlockTrace(File textFile) throws IOException {
+		File file = TraceFiles.createTempFile(".tvc");
+		BlockTraceWriter writer = new BlockTraceWriter(new FileOutputStream(file), 4096);
+		new TraceFile(textFile).read(writer, 1);
+		writer.close();
+		return file;
+	}
+
+	private static List<String> read(File file, int parallelism) throws IOException {
+		EventRecorder recorder = new EventRecorder();
+		new TraceFile(file).read(recorder, parallelism);
+		return recorder.events;
+	}
+
+	@Test
+	public void testReadAll() throws IOException {
+		File textFile = TraceFiles.writeText(new SyntheticTrace(1, 50, 3), 20000);
+		File file = writeBlockTrace(textFile);
+
+		Assert.assertEquals(TraceFile.Format.BLOCKS, new TraceFile(file).getFormat());
+		List<String> events = read(textFile, 1);
+		Assert.assertEquals(events, read(file, 1));
+		Assert.assertEquals(events, read(file, 4));
+	}
+
+	@Test
+	public void testIndex() throws IOException {
+		File textFile = TraceFiles.writeText(new SyntheticTrace(2, 50, 3), 20000);
+		File file = writeBlockTrace(textFile);
+
+		BlockTraceReader trace = new TraceFile(file).openBlocks();
+		Assert.assertTrue(trace.getBlockCount() > 10);
+
+		int eventCount = 0;
+		for (int block = 0; block < trace.getBlockCount(); block++) {
+			EventRecorder recorder = new EventRecorder();
+			trace.readBlock(block, recorder);
+
+			Assert.assertEquals(trace.getEventCount(block), recorder.events.size());
+			Assert.assertEquals(trace.getFirstTimeStamp(block),
+			                    timeStamp(recorder.events.get(0)));
+			Assert.assertEquals(trace.getLastTimeStamp(block),
+			                    timeStamp(recorder.events.get(recorder.events.size() - 1)));
+			eventCount += recorder.events.size();
+		}
+		Assert.assertEquals(read(textFile, 1).size(), eventCount);
+
+		int middle = trace.getBlockCount() / 2;
+		Assert.assertEquals(0, trace.findBlock(Long.MIN_VALUE));
+		Assert.assertEquals(middle, trace.findBlock(trace.getLastTimeStamp(middle)));
+		Assert.assertEquals(middle + 1, trace.findBlock(trace.getLastTimeStamp(middle) + 1));
+		Assert.assertEquals(trace.getBlockCount(), trace.findBlock(Long.MAX_VALUE));
+
+		trace.close();
+	}
+
+	@Test
+	public void testParallelRange() throws IOException {
+		File textFile = TraceFiles.writeText(new SyntheticTrace(3, 50, 3), 20000);
+		File file = writeBlockTrace(textFile);
+
+		BlockTraceReader trace = new TraceFile(file).openBlocks();
+		EventRecorder sequential = new EventRecorder();
+		for (int block = 3; block < 9; block++) {
+			trace.readBlock(block, sequential);
+		}
+
+		EventRecorder parallel = new EventRecorder();
+		ForkJoinPool pool = new ForkJoinPool(4);
+		new ParallelTraceReader(parallel, pool).readBlocks(trace, 3, 9);
+		pool.shutdown();
+		trace.close();
+
+		Assert.assertEquals(sequential.events, parallel.events);
+	}
+
+	@Test(expected = IOException.class)
+	public void testTruncated() throws IOException {
+		File textFile = TraceFiles.writeText(new SyntheticTrace(4, 20, 2), 1000);
+		File file = writeBlockTrace(textFile);
+
+		RandomAccessFile truncated = new RandomAccessFile(file, "rw");
+		truncated.setLength(file.length() - 1);
+		truncated.close();
+
+		new BlockTraceReader(new FileInputStream(file).getChannel());
+	}
+
+	private static long timeStamp(String event) {
+		return Long.parseLong(event.split(":")[1]);
+	}
+}
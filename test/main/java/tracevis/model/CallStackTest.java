@@ -0,0 +1,50 @@
+package tracevis.model;
+
+import java.util.NoSuchElementException;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import tracevis.model.types.CallStack;
+
+public class CallStackTest {
+
+	@Test
+	public void testDeepStack() {
+		CallStack callStack = new CallStack();
+		Assert.assertEquals(0, callStack.depth());
+
+		int depth = 10000;
+		for (int i = 0; i < depth; i++) {
+			callStack.push(i);
+			Assert.assertEquals(i, callStack.top());
+		}
+		Assert.assertEquals(depth, callStack.depth());
+
+		// Positions count from the top of the stack.
+		for (int position = 0; position < depth; position++) {
+			Assert.assertEquals(depth - 1 - position, callStack.get(position));
+		}
+
+		for (int i = depth - 1; i >= 0; i--) {
+			Assert.assertEquals(i, callStack.top());
+			callStack.pop();
+		}
+		Assert.assertEquals(0, callStack.depth());
+	}
+
+	@Test(expected = NoSuchElementException.class)
+	public void testPopEmpty() {
+		CallStack callStack = new CallStack();
+		callStack.push(1);
+		callStack.pop();
+		callStack.pop();
+	}
+
+	@Test(expected = IndexOutOfBoundsException.class)
+	public void testGetBelowBottom() {
+		CallStack callStack = new CallStack();
+		callStack.push(1);
+		callStack.get(1);
+	}
+}
@@ -0,0 +1,127 @@
+package tracevis.model;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import tracevis.model.types.CallAssignment;
+import tracevis.model.types.ClassData;
+import tracevis.model.types.EventCursor;
+import tracevis.model.types.EventStore;
+import tracevis.model.types.EventType;
+import tracevis.model.types.Frame;
+import tracevis.model.types.SymbolTable;
+
+public class ClassMethodFilterTest {
+
+	private static ClassData getAssignedClass(Frame frame, CallAssignment callAssignment) {
+		return callAssignment == CallAssignment.DEFINING_CLASS ? frame.getDefiningClass() :
+		                                                         frame.getActualClass();
+	}
+
+	@Test
+	public void testFilter() throws Exception {
+		File traceFile = TraceFiles.writeZip(new SyntheticTrace(9, 40, 3), 20000);
+
+		Program program = new Program();
+		program.loadTrace(traceFile.getAbsolutePath(), false, CallAssignment.DEFINING_CLASS);
+		EventStore events = program.getEvents();
+		SymbolTable symbols = program.getSymbolTable();
+
+		// Filter out a class, and a method of another class.
+		int index = events.size() / 3;
+		while (events.getFrame(index) == null) {
+			index++;
+		}
+		Frame classFrame = events.getFrame(index);
+		index = 2 * events.size() / 3;
+		while (events.getFrame(index) == null ||
+		       events.getFrame(index).getDefiningClass() == classFrame.getDefiningClass() ||
+		       events.getFrame(index).getActualClass() == classFrame.getActualClass())
+		{
+			index++;
+		}
+		Frame methodFrame = events.getFrame(index);
+
+		for (CallAssignment callAssignment : CallAssignment.values()) {
+			ClassData filteredClass = getAssignedClass(classFrame, callAssignment);
+			ClassData methodClass = getAssignedClass(methodFrame, callAssignment);
+			ClassMethodFilter filter = new ClassMethodFilter(callAssignment, symbols);
+			filter.addClassFilter(filteredClass.getName());
+			filter.addMethodFilter(methodClass.getName(),
+			                       symbols.getMethodName(methodFrame.getMethod()));
+			filter.filter(events);
+
+			// A method event is filtered out when a filtered frame is on the
+			// stack of its thread, the frame entered or left included.
+			Map<Long, List<Frame>> stacks = new HashMap<Long, List<Frame>>();
+			int filtered = 0;
+			EventCursor event = events.cursor();
+			while (event.next()) {
+				EventType type = event.getType();
+				if (type != EventType.METHOD_ENTRY && type != EventType.METHOD_EXIT &&
+				    type != EventType.FRAME_POP)
+				{
+					continue;
+				}
+				List<Frame> stack = stacks.get(event.getThreadID());
+				if (stack == null) {
+					stack = new ArrayList<Frame>();
+					stacks.put(event.getThreadID(), stack);
+				}
+				if (type == EventType.METHOD_ENTRY) {
+					stack.add(event.getFrame());
+				}
+
+				boolean expected = false;
+				for (Frame frame : stack) {
+					ClassData classData = getAssignedClass(frame, callAssignment);
+					expected |= classData == filteredClass ||
+					            (classData == methodClass &&
+					             frame.getMethod() == methodFrame.getMethod());
+				}
+				Assert.assertEquals(expected, event.isFiltered());
+				filtered += expected ? 1 : 0;
+
+				if (type != EventType.METHOD_ENTRY) {
+					stack.remove(stack.size() - 1);
+				}
+			}
+			Assert.assertTrue(filtered > 0);
+		}
+	}
+
+	@Test
+	public void testUnknownNames() {
+		SymbolTable symbols = new SymbolTable();
+		symbols.getClassID("a.A");
+		symbols.getMethodID("m");
+		ClassMethodFilter filter = new ClassMethodFilter(CallAssignment.DEFINING_CLASS, symbols);
+
+		// Names which are not in the trace are not added to its symbols.
+		filter.addClassFilter("a.B");
+		filter.addMethodFilter("a.A", "n");
+		Assert.assertEquals(1, symbols.getClassCount());
+		Assert.assertEquals(1, symbols.getMethodCount());
+		Assert.assertTrue(filter.isFilteredClass("a.B"));
+		Assert.assertTrue(filter.isFilteredMethod("a.A", "n"));
+		Assert.assertFalse(filter.isFilteredMethod("a.A", "m"));
+
+		// They are still filtered once they are added.
+		symbols.getClassID("a.B");
+		symbols.getMethodID("n");
+		filter.filter(new EventStore());
+		Assert.assertTrue(filter.isFilteredClass("a.B"));
+		Assert.assertTrue(filter.isFilteredMethod("a.A", "n"));
+
+		filter.removeClassFilter("a.B");
+		filter.removeClassFilter("a.A", "n");
+		Assert.assertFalse(filter.isFilteredClass("a.B"));
+		Assert.assertFalse(filter.isFilteredMethod("a.A", "n"));
+	}
+}
@@ -0,0 +1,113 @@
+package tracevis.model;
+
+/**
+ * A trace reader call-back which only counts events and accumulates their
+ * fields into a checksum, so that readers can be benchmarked and compared
+ * without building a model.
+ */
+public class EventCounter implements ProgramEventInterface {
+	private long count;
+	private long checksum;
+
+	/**
+	 * Returns the number of events seen.
+	 */
+	public long getCount() {
+		return count;
+	}
+
+	/**
+	 * Returns a checksum over all fields of the events seen.
+	 */
+	public long getChecksum() {
+		return checksum;
+	}
+
+	private void add(long value) {
+		checksum = checksum * 31 + value;
+	}
+
+	@Override
+	public void handleVMDeath(long timeStamp) {
+		count++;
+		add(timeStamp);
+	}
+
+	@Override
+	public void handleVMInit(long timeStamp) {
+		count++;
+		add(timeStamp);
+	}
+
+	@Override
+	public void handleVMStart(long timeStamp) {
+		count++;
+		add(timeStamp);
+	}
+
+	@Override
+	public void handleObjectFree(long timeStamp, String className, long objectID) {
+		count++;
+		add(timeStamp);
+		add(className.hashCode());
+		add(objectID);
+	}
+
+	@Override
+	public void handleObjectAllocation(long timeStamp, String className, long objectID) {
+		count++;
+		add(timeStamp);
+		add(className.hashCode());
+		add(objectID);
+	}
+
+	@Override
+	public void handleClassLoad(long timeStamp, String className) {
+		count++;
+		add(timeStamp);
+		add(className.hashCode());
+	}
+
+	@Override
+	public void handleThreadStop(long timeStamp, long threadID) {
+		count++;
+		add(timeStamp);
+		add(threadID);
+	}
+
+	@Override
+	public void handleThreadStart(long timeStamp, long threadID) {
+		count++;
+		add(timeStamp);
+		add(threadID);
+	}
+
+	@Override
+	public void handleFramePop(long timeStamp, long threadID, String className, String methodName) {
+		count++;
+		add(timeStamp);
+		add(threadID);
+		add(className.hashCode());
+		add(methodName.hashCode());
+	}
+
+	@Override
+	public void handleMethodExit(long timeStamp, long threadID, String className, String methodName) {
+		count++;
+		add(timeStamp);
+		add(threadID);
+		add(className.hashCode());
+		add(methodName.hashCode());
+	}
+
+	@Override
+	public void handleMethodEntry(long timeStamp, long threadID, String className,
+	                              String methodName, long objectID) {
+		count++;
+		add(timeStamp);
+		add(threadID);
+		add(className.hashCode());
+		add(methodName.hashCode());
+		add(objectID);
+	}
+}
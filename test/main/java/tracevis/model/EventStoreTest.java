@@ -0,0 +1,194 @@
+package tracevis.model;
+
+import java.io.File;
+import java.io.IOException;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import tracevis.model.types.EventCursor;
+import tracevis.model.types.EventIndexList;
+import tracevis.model.types.EventStore;
+import tracevis.model.types.EventType;
+import tracevis.model.types.Range;
+import tracevis.model.types.SymbolTable;
+
+public class EventStoreTest {
+
+	@Test
+	public void testColumns() {
+		EventStore events = new EventStore();
+		Assert.assertEquals(0, events.add(EventType.VM_INIT, 10));
+		Assert.assertEquals(1, events.addThreadEvent(EventType.THREAD_START, 11, 1L << 40));
+		Assert.assertEquals(2, events.addClassEvent(EventType.OBJECT_ALLOCATION, 12, 3, 77));
+		Assert.assertEquals(3, events.addMethodEvent(EventType.METHOD_ENTRY, 13, 1L << 40, 3, 5, 77));
+		Assert.assertEquals(4, events.addMethodEvent(EventType.METHOD_EXIT, 14, 9, 3, 5, 0));
+		Assert.assertEquals(5, events.size());
+
+		Assert.assertEquals(EventType.VM_INIT, events.getType(0));
+		Assert.assertEquals(0, events.getThreadID(0));
+		Assert.assertEquals(SymbolTable.NO_SYMBOL, events.getClassID(0));
+
+		Assert.assertEquals(1L << 40, events.getThreadID(1));
+
+		Assert.assertEquals(EventType.OBJECT_ALLOCATION, events.getType(2));
+		Assert.assertEquals(3, events.getClassID(2));
+		Assert.assertEquals(SymbolTable.NO_SYMBOL, events.getMethodID(2));
+		Assert.assertEquals(77, events.getObjectID(2));
+
+		Assert.assertEquals(13, events.getTime(3));
+		Assert.assertEquals(1L << 40, events.getThreadID(3));
+		Assert.assertEquals(5, events.getMethodID(3));
+		Assert.assertEquals(9, events.getThreadID(4));
+
+		events.setFiltered(3, true);
+		Assert.assertTrue(events.isFiltered(3));
+		Assert.assertFalse(events.isFiltered(4));
+		events.setFiltered(3, false);
+		Assert.assertFalse(events.isFiltered(3));
+	}
+
+	@Test
+	public void testCursor() {
+		EventStore events = new EventStore();
+		int count = 5000;
+		for (int i = 0; i < count; i++) {
+			events.addMethodEvent(EventType.METHOD_ENTRY, 2 * i, i % 7, i, i + 1, 0);
+		}
+		events.trimToSize();
+
+		EventCursor event = events.cursor();
+		int index = 0;
+		while (event.next()) {
+			Assert.assertEquals(index, event.getIndex());
+			Assert.assertEquals(2 * index, event.getTime());
+			Assert.assertEquals(index % 7, event.getThreadID());
+			Assert.assertEquals(index + 1, event.getMethodID());
+			index++;
+		}
+		Assert.assertEquals(count, index);
+		Assert.assertFalse(event.next());
+
+		event.moveTo(100);
+		event.setFiltered(true);
+		Assert.assertTrue(events.isFiltered(100));
+	}
+
+	@Test
+	public void testMappedStore() throws IOException {
+		File directory = File.createTempFile("tracevis", "");
+		directory.delete();
+		directory.mkdir();
+		try {
+			EventStore heap = new EventStore();
+			EventStore mapped = new EventStore(directory);
+			Assert.assertEquals(10, directory.list().length);
+
+			int count = 5000;
+			for (int i = 0; i < count; i++) {
+				heap.addMethodEvent(EventType.METHOD_ENTRY, 2 * i, i % 7, i, i + 1, 1L << 40);
+				mapped.addMethodEvent(EventType.METHOD_ENTRY, 2 * i, i % 7, i, i + 1, 1L << 40);
+				heap.addClassEvent(EventType.OBJECT_FREE, 2 * i + 1, i, i);
+				mapped.addClassEvent(EventType.OBJECT_FREE, 2 * i + 1, i, i);
+			}
+			for (int i = 0; i < 2 * count; i += 3) {
+				heap.setFrameID(i, i / 3);
+				mapped.setFrameID(i, i / 3);
+				heap.setCaller(i, i % 5);
+				mapped.setCaller(i, i % 5);
+				heap.setCallee(i, i % 11);
+				mapped.setCallee(i, i % 11);
+			}
+			mapped.trimToSize();
+			mapped.add(EventType.VM_DEATH, 2 * count);
+			heap.add(EventType.VM_DEATH, 2 * count);
+
+			Assert.assertEquals(heap.size(), mapped.size());
+			for (int i = 0; i < heap.size(); i++) {
+				Assert.assertEquals(heap.getType(i), mapped.getType(i));
+				Assert.assertEquals(heap.getTime(i), mapped.getTime(i));
+				Assert.assertEquals(heap.getThreadID(i), mapped.getThreadID(i));
+				Assert.assertEquals(heap.getClassID(i), mapped.getClassID(i));
+				Assert.assertEquals(heap.getMethodID(i), mapped.getMethodID(i));
+				Assert.assertEquals(heap.getObjectID(i), mapped.getObjectID(i));
+				Assert.assertEquals(heap.getFrameID(i), mapped.getFrameID(i));
+				Assert.assertEquals(heap.getCaller(i), mapped.getCaller(i));
+				Assert.assertEquals(heap.getCallee(i), mapped.getCallee(i));
+			}
+			Assert.assertEquals(-1, mapped.getCaller(1));
+			Assert.assertEquals(-1, mapped.getCallee(2 * count));
+
+			mapped.close();
+			Assert.assertEquals(0, directory.list().length);
+		} finally {
+			for (File file : directory.listFiles()) {
+				file.delete();
+			}
+			directory.delete();
+		}
+	}
+
+	@Test
+	public void testIndexLists() throws IOException {
+		File directory = File.createTempFile("tracevis", "");
+		directory.delete();
+		directory.mkdir();
+		try {
+			EventStore[] stores = {new EventStore(), new EventStore(directory)};
+			for (EventStore events : stores) {
+				int count = 20000;
+				for (int i = 0; i < count; i++) {
+					events.add(EventType.METHOD_ENTRY, i);
+				}
+
+				EventIndexList even = new EventIndexList(events);
+				EventIndexList odd = new EventIndexList(events);
+				for (int i = 0; i < count; i++) {
+					(i % 2 == 0 ? even : odd).add(i);
+				}
+				Assert.assertEquals(count / 2, even.size());
+				for (int i = 0; i < count / 2; i++) {
+					Assert.assertEquals(2 * i, even.get(i));
+					Assert.assertEquals(2 * i + 1, odd.get(i));
+				}
+				Assert.assertArrayEquals(new int[] {100, 102, 104},
+				                         even.get(events, new Range(100, 105)));
+
+				odd.removeAfter(events, 9000);
+				Assert.assertEquals(4500, odd.size());
+				Assert.assertEquals(8999, odd.get(4499));
+
+				// The blocks freed by one list are reused by another.
+				even.clear();
+				Assert.assertEquals(0, even.size());
+				EventIndexList all = new EventIndexList(events);
+				for (int i = 0; i < 9000; i++) {
+					all.add(i);
+				}
+				all.moveAll(odd);
+				Assert.assertEquals(0, odd.size());
+				Assert.assertEquals(13500, all.size());
+				for (int i = 0; i < 9000; i++) {
+					Assert.assertEquals(i, all.get(i));
+				}
+				Assert.assertEquals(8999, all.get(13499));
+
+				// An empty list takes over the blocks of the moved list.
+				even.moveAll(all);
+				even.add(9001);
+				Assert.assertEquals(0, all.size());
+				Assert.assertEquals(13501, even.size());
+				Assert.assertEquals(8999, even.get(13499));
+				Assert.assertEquals(9001, even.get(13500));
+
+				events.close();
+			}
+			Assert.assertEquals(0, directory.list().length);
+		} finally {
+			for (File file : directory.listFiles()) {
+				file.delete();
+			}
+			directory.delete();
+		}
+	}
+}
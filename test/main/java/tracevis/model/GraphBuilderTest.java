@@ -0,0 +1,133 @@
+package tracevis.model;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import tracevis.model.types.CallAssignment;
+import tracevis.model.types.ClassData;
+import tracevis.model.types.EventStore;
+import tracevis.model.types.EventType;
+import tracevis.model.types.Frame;
+import tracevis.model.types.FrameTable;
+import edu.uci.ics.jung.graph.DirectedEdge;
+import edu.uci.ics.jung.graph.Edge;
+import edu.uci.ics.jung.graph.Graph;
+import edu.uci.ics.jung.graph.Vertex;
+import edu.uci.ics.jung.graph.impl.DirectedSparseGraph;
+
+public class GraphBuilderTest {
+
+	/**
+	 * A graph which records the caller and callee of each edge in the order
+	 * in which the edges are added.
+	 */
+	private static class RecordingGraph extends DirectedSparseGraph {
+		final List<String> edges = new ArrayList<String>();
+
+		@Override
+		public Edge addEdge(Edge edge) {
+			DirectedEdge call = (DirectedEdge) edge;
+			edges.add(getName(call.getSource()) + " -> " + getName(call.getDest()));
+			return super.addEdge(edge);
+		}
+
+		private static String getName(Vertex vertex) {
+			return ((ClassData) vertex.getUserDatum("tracevis.model.Program")).getName();
+		}
+	}
+
+	private static GraphBuilder buildGraph(Program program, CallAssignment callAssignment,
+	                                       int parallelism)
+	{
+		return buildGraph(program, callAssignment, parallelism, new DirectedSparseGraph());
+	}
+
+	private static GraphBuilder buildGraph(Program program, CallAssignment callAssignment,
+	                                       int parallelism, Graph callGraph)
+	{
+		GraphBuilder graphBuilder = new GraphBuilder(callGraph, false, callAssignment,
+		                                             program.getSymbolTable());
+		graphBuilder.setParallelism(parallelism);
+		graphBuilder.buildGraph(program.getEvents(), program.getStartTime(),
+		                        program.getEndTime());
+		return graphBuilder;
+	}
+
+	private static void assertSameCalls(GraphBuilder expected, GraphBuilder actual) {
+		Assert.assertEquals(expected.getCallIndex().size(), actual.getCallIndex().size());
+
+		ClassData[] expectedVertices = expected.getVertices();
+		ClassData[] actualVertices = actual.getVertices();
+		Assert.assertEquals(expectedVertices.length, actualVertices.length);
+		for (int i = 0; i < expectedVertices.length; i++) {
+			Assert.assertEquals(expectedVertices[i].getName(), actualVertices[i].getName());
+		}
+	}
+
+	/**
+	 * Returns the caller and the callee recorded for each event by the last
+	 * graph built from the specified events.
+	 */
+	private static int[] getCalls(EventStore events) {
+		int[] calls = new int[2 * events.size()];
+		for (int event = 0; event < events.size(); event++) {
+			calls[2 * event] = events.getCaller(event);
+			calls[2 * event + 1] = events.getCallee(event);
+		}
+		return calls;
+	}
+
+	@Test
+	public void testParallelBuild() throws Exception {
+		File traceFile = TraceFiles.writeZip(new SyntheticTrace(8, 40, 5), 50000);
+
+		Program program = new Program();
+		program.loadTrace(traceFile.getAbsolutePath(), false, CallAssignment.OBJECT_CLASS);
+
+		for (CallAssignment callAssignment : CallAssignment.values()) {
+			RecordingGraph sequentialGraph = new RecordingGraph();
+			GraphBuilder sequential = buildGraph(program, callAssignment, 1, sequentialGraph);
+			int[] sequentialCalls = getCalls(program.getEvents());
+			RecordingGraph parallelGraph = new RecordingGraph();
+			GraphBuilder parallel = buildGraph(program, callAssignment, 4, parallelGraph);
+			assertSameCalls(sequential, parallel);
+			Assert.assertArrayEquals(sequentialCalls, getCalls(program.getEvents()));
+			Assert.assertTrue(parallel.getCallIndex().size() > 0);
+
+			// The edges are added in the order of their first calls.
+			Assert.assertEquals(sequentialGraph.edges, parallelGraph.edges);
+		}
+	}
+
+	@Test
+	public void testInternedFrames() throws Exception {
+		File traceFile = TraceFiles.writeZip(new SyntheticTrace(9, 40, 3), 50000);
+
+		Program program = new Program();
+		program.loadTrace(traceFile.getAbsolutePath(), false, CallAssignment.OBJECT_CLASS);
+
+		EventStore events = program.getEvents();
+		FrameTable frames = events.getFrames();
+		int frameCount = frames.size();
+		int entries = 0;
+		for (int event = 0; event < events.size(); event++) {
+			if (events.getType(event) == EventType.METHOD_ENTRY) {
+				entries++;
+				Frame frame = events.getFrame(event);
+				Assert.assertEquals(events.getMethodID(event), frame.getMethod());
+				Assert.assertEquals(frames.intern(frame.getDefiningClass(),
+				                                  frame.getActualClass(),
+				                                  frame.getMethod()),
+				                    events.getFrameID(event));
+			}
+		}
+		// Interning the frames of the trace again adds none.
+		Assert.assertEquals(frameCount, frames.size());
+		Assert.assertTrue(frameCount > 0);
+		Assert.assertTrue(frameCount < entries / 10);
+	}
+}
@@ -0,0 +1,316 @@
+package tracevis.model;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Set;
+import java.util.TreeSet;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import tracevis.model.types.CallAssignment;
+import tracevis.model.types.CallData;
+import tracevis.model.types.CallIndex;
+import tracevis.model.types.ClassData;
+import tracevis.model.types.ClassSegment;
+import tracevis.model.types.EventStore;
+import tracevis.model.types.EventType;
+import tracevis.model.types.MetricWindow;
+import tracevis.model.types.Range;
+import edu.uci.ics.jung.graph.DirectedEdge;
+import edu.uci.ics.jung.graph.Edge;
+
+public class MetricComputerTest {
+	private static final int SAMPLES = 20;
+
+	/**
+	 * Returns the metrics of the classes and calls of the specified program,
+	 * counted over windows spread over the trace.
+	 */
+	private static List<Object> getMetrics(Program program) {
+		List<Object> metrics = new ArrayList<Object>();
+		Range trace = new Range(Long.MIN_VALUE, Long.MAX_VALUE);
+		long startTime = program.getStartTime();
+		long duration = program.getEndTime() - startTime;
+		MetricWindow window = new MetricWindow();
+
+		for (ClassData classData : program.getVertices()) {
+			metrics.add(classData.getName());
+			metrics.add(classData.getMaxCallsSent());
+			metrics.add(classData.getMaxCallsReceived());
+			metrics.add(classData.getMaxInstanceCount());
+			metrics.add(Arrays.toString(classData.getEvents(trace)));
+			for (Range range : classData.getActivityRanges()) {
+				metrics.add(range.getBegin() + "-" + range.getEnd());
+			}
+			classData.setMetricWindow(window);
+			for (int i = 0; i <= SAMPLES; i++) {
+				window.moveTo(startTime + duration * (i / 2) / SAMPLES,
+				              startTime + duration * i / SAMPLES);
+				metrics.add(classData.getCallsSent());
+				metrics.add(classData.getCallsReceived());
+				metrics.add(classData.getInstanceCount());
+			}
+		}
+
+		// The calls are listed by their caller and callee, so that the metrics
+		// of two programs loaded from the same trace can be compared.
+		List<Edge> edges = new ArrayList<Edge>((Set<Edge>)program.getCallGraph().getEdges());
+		Collections.sort(edges, new Comparator<Edge>() {
+			@Override
+			public int compare(Edge first, Edge second) {
+				return Long.compare(callKey(first), callKey(second));
+			}
+		});
+		for (Edge edge : edges) {
+			CallData callData = (CallData)edge.getUserDatum("tracevis.model.Program");
+			metrics.add(callData.getMaxCallCount());
+			metrics.add(Arrays.toString(callData.getEvents(trace)));
+			for (int methodID : callData.getMethodIDs()) {
+				metrics.add(methodID + ":" + program.getSymbolTable().getMethodName(methodID));
+			}
+			callData.setMetricWindow(window);
+			for (int i = 0; i <= SAMPLES; i++) {
+				window.moveTo(startTime + duration * (i / 2) / SAMPLES,
+				              startTime + duration * i / SAMPLES);
+				metrics.add(callData.getCallCount());
+				for (int methodID : callData.getMethodIDs()) {
+					metrics.add(callData.getMethodCallCount(methodID));
+				}
+			}
+		}
+		return metrics;
+	}
+
+	private static long callKey(Edge edge) {
+		DirectedEdge call = (DirectedEdge)edge;
+		ClassData caller = (ClassData)call.getSource().getUserDatum("tracevis.model.Program");
+		ClassData callee = (ClassData)call.getDest().getUserDatum("tracevis.model.Program");
+		return ((long) caller.getIndex() << 32) | callee.getIndex();
+	}
+
+	/**
+	 * Returns the state of the specified program at its current time: the
+	 * call stacks of its threads, and which classes are loaded and which of
+	 * their instances exist.
+	 */
+	private static List<Object> getState(Program program) {
+		List<Object> state = new ArrayList<Object>();
+		EventStore events = program.getEvents();
+		Set<Long> threadIDs = new TreeSet<Long>();
+		for (int i = 0; i < events.size(); i++) {
+			if (events.getThreadNumber(i) != -1) {
+				threadIDs.add(events.getThreadID(i));
+			}
+		}
+		for (long threadID : threadIDs) {
+			state.add(threadID + ":" + program.getActiveThreads().contains(threadID) + ":" +
+			          program.getCallStack(threadID));
+		}
+		for (ClassData classData : program.getVertices()) {
+			List<Long> instances = new ArrayList<Long>(classData.getInstances());
+			Collections.sort(instances);
+			state.add(classData.getName() + ":" + classData.isLoaded() + ":" + instances);
+		}
+		return state;
+	}
+
+	/**
+	 * Asserts that the state and the metrics of the specified program, as
+	 * they were updated after its last filter change, are those of the same
+	 * trace loaded with the specified classes filtered out, of which the
+	 * state is replayed up to the same time and the metrics are computed
+	 * from all events.
+	 */
+	private static void assertUpdated(Program program, File traceFile,
+	                                  String... filteredClasses) throws Exception
+	{
+		Program loaded = new Program();
+		loaded.loadTrace(traceFile.getAbsolutePath(), false, CallAssignment.DEFINING_CLASS);
+		for (String className : filteredClasses) {
+			loaded.addClassFilter(className);
+		}
+		loaded.filter();
+		loaded.setCurrentTime(program.getCurrentTime());
+		Assert.assertEquals(getState(loaded), getState(program));
+
+		new MetricComputer(loaded).computeMetrics(loaded.getEvents(), false,
+		                                          loaded.getStartTime(),
+		                                          loaded.getEndTime());
+		Assert.assertEquals(getMetrics(loaded), getMetrics(program));
+	}
+
+	/**
+	 * Asserts that the metrics of the specified program computed on several
+	 * threads are those computed in a single pass.
+	 */
+	private static void assertParallelMetrics(Program program) {
+		MetricComputer metricComputer = new MetricComputer(program);
+		metricComputer.setParallelism(1);
+		metricComputer.computeMetrics(program.getEvents(), true, program.getStartTime(),
+		                              program.getEndTime());
+		List<Object> sequential = getMetrics(program);
+
+		for (int parallelism : new int[] {2, 3, 8}) {
+			metricComputer = new MetricComputer(program);
+			metricComputer.setParallelism(parallelism);
+			metricComputer.computeMetrics(program.getEvents(), true, program.getStartTime(),
+			                              program.getEndTime());
+			Assert.assertEquals(sequential, getMetrics(program));
+		}
+	}
+
+	@Test
+	public void testParallelMetrics() throws Exception {
+		File traceFile = TraceFiles.writeZip(new SyntheticTrace(5, 30, 3), 20000);
+
+		Program program = new Program();
+		program.loadTrace(traceFile.getAbsolutePath(), false, CallAssignment.DEFINING_CLASS);
+		assertParallelMetrics(program);
+
+		program.addClassFilter(program.getVertices()[1].getName());
+		program.filter();
+		assertParallelMetrics(program);
+
+		// A window of the trace begins and ends within calls.
+		long startTime = program.getStartTime();
+		long duration = program.getEndTime() - startTime;
+		Program window = new Program();
+		window.loadTrace(traceFile.getAbsolutePath(), false, CallAssignment.DEFINING_CLASS,
+		                 startTime + duration / 3, startTime + 2 * duration / 3);
+		assertParallelMetrics(window);
+
+		// The calls of methods of hidden inner classes are counted under the
+		// names of the inner classes.
+		Program hidden = new Program();
+		hidden.loadTrace(traceFile.getAbsolutePath(), true, CallAssignment.DEFINING_CLASS);
+		assertParallelMetrics(hidden);
+	}
+
+	/**
+	 * Returns the activity ranges and the instance counts of the specified
+	 * class.
+	 */
+	private static List<Object> getActivity(ClassData classData) {
+		List<Object> activity = new ArrayList<Object>();
+		for (Range range : classData.getActivityRanges()) {
+			activity.add(range.getBegin() + "-" + range.getEnd());
+		}
+		activity.add(classData.getMaxInstanceCount());
+		activity.add(classData.getInstanceCountFunction().lastValue());
+		return activity;
+	}
+
+	@Test
+	public void testAppendSegments() {
+		// The activity count goes below zero after the fourth change.
+		long[] times = {10, 20, 20, 30, 40, 50, 50, 60, 70, 80, 80, 90, 90};
+		int[] deltas = {1, 1, -1, -1, -1, 1, 1, -1, 1, -1, -1, 1, -1};
+		EventStore events = new EventStore();
+		for (long time : times) {
+			events.add(EventType.METHOD_ENTRY, time);
+		}
+
+		ClassData sequential = new ClassData(null, 0, 0, "A", new CallIndex());
+		sequential.startComputation(events, true);
+		for (int i = 0; i < times.length; i++) {
+			if (deltas[i] > 0) {
+				sequential.increaseActivityCount(times[i]);
+				sequential.increaseInstanceCount(times[i]);
+			} else {
+				sequential.decreaseActivityCount(times[i]);
+				sequential.decreaseInstanceCount(times[i]);
+			}
+		}
+		sequential.finishComputation(100, true);
+
+		// Split the changes into three parts in every way.
+		for (int first = 0; first <= times.length; first++) {
+			for (int second = first; second <= times.length; second++) {
+				ClassData appended = new ClassData(null, 0, 0, "A", new CallIndex());
+				appended.startComputation(events, true);
+				int[] ends = {first, second, times.length};
+				int begin = 0;
+				for (int end : ends) {
+					ClassSegment segment = new ClassSegment(appended, events);
+					for (int i = begin; i < end; i++) {
+						if (deltas[i] > 0) {
+							segment.increaseActivityCount(times[i], i);
+							segment.increaseInstanceCount(times[i]);
+						} else {
+							segment.decreaseActivityCount(times[i], i);
+							segment.decreaseInstanceCount(times[i]);
+						}
+					}
+					appended.append(segment);
+					begin = end;
+				}
+				appended.finishComputation(100, true);
+				Assert.assertEquals(getActivity(sequential), getActivity(appended));
+			}
+		}
+	}
+
+	@Test
+	public void testUpdateMetrics() throws Exception {
+		File traceFile = TraceFiles.writeZip(new SyntheticTrace(11, 40, 3), 20000);
+
+		Program program = new Program();
+		program.loadTrace(traceFile.getAbsolutePath(), false, CallAssignment.DEFINING_CLASS);
+		program.setCurrentTime((program.getStartTime() + program.getEndTime()) / 2);
+
+		ClassData[] vertices = program.getVertices();
+		String first = vertices[1].getName();
+		String second = vertices[vertices.length / 2].getName();
+
+		program.addClassFilter(first);
+		program.filter();
+		assertUpdated(program, traceFile, first);
+
+		program.addClassFilter(second);
+		program.filter();
+		assertUpdated(program, traceFile, first, second);
+
+		program.removeClassFilter(first);
+		program.filter();
+		assertUpdated(program, traceFile, second);
+
+		program.unfilter();
+		assertUpdated(program, traceFile);
+	}
+
+	@Test
+	public void testUpdateMetricsOutOfOrder() throws Exception {
+		String trace = "VS:1\nVI:2\nCL:3:a/A\nCL:3:a/B\nTB:4:1\nTB:4:2\n" +
+		               "MN:5:1:a/A:run:0\nMN:6:1:a/B:m:0\nMX:6:1:a/B:m\nMN:7:1:a/B:m:0\n" +
+		               "MX:7:1:a/B:m\nMN:8:2:a/A:run:0\nCL:9:a/C\nMN:10:1:a/C:c:0\n" +
+		               "MN:12:2:a/B:m:0\n" +
+		               // Entered on the first thread before the entry on the second.
+		               "MN:11:1:a/B:m:0\nMX:13:1:a/B:m\nMX:13:2:a/B:m\nMX:13:1:a/C:c\n" +
+		               "MX:14:1:a/A:run\nMX:15:2:a/A:run\nTE:16:1\nTE:16:2\nVD:17\n";
+		File traceFile = TraceFiles.write(".trace", trace);
+
+		// The filter changes after the current time, so the state is restored
+		// from the load of the filtered class on.
+		Program program = new Program();
+		program.loadTrace(traceFile.getAbsolutePath(), false, CallAssignment.DEFINING_CLASS);
+		program.setCurrentTime(13);
+		ClassData classData = program.getClassData("a.B");
+		Assert.assertEquals(4, classData.getCallsReceivedFunction().lastValue());
+
+		program.addClassFilter("a.C");
+		program.filter();
+		assertUpdated(program, traceFile, "a.C");
+		Assert.assertEquals(3, classData.getCallsReceivedFunction().lastValue());
+		Assert.assertEquals(2, classData.getCallsReceivedFunction().get(11));
+
+		program.unfilter();
+		assertUpdated(program, traceFile);
+		Assert.assertEquals(4, classData.getCallsReceivedFunction().lastValue());
+		Assert.assertEquals(2, classData.getCallsReceivedFunction().get(11));
+	}
+}
@@ -0,0 +1,108 @@
+package tracevis.model;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.zip.ZipFile;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import tracevis.model.TextTraceReaderTest.EventRecorder;
+
+public class ParallelTraceReaderTest {
+	private static final int CHUNK_SIZE = 4096;
+
+	private ForkJoinPool pool;
+
+	@Before
+	public void setUp() {
+		pool = new ForkJoinPool(4);
+	}
+
+	@After
+	public void tearDown() {
+		pool.shutdownNow();
+	}
+
+	private static List<String> readSequential(File file) throws IOException {
+		EventRecorder recorder = new EventRecorder();
+		new TraceFile(file).read(recorder, 1);
+		return recorder.events;
+	}
+
+	@Test
+	public void testZippedText() throws IOException {
+		File file = TraceFiles.writeZip(new SyntheticTrace(1, 50, 3), 20000);
+
+		EventRecorder recorder = new EventRecorder();
+		ZipFile zipFile = new ZipFile(file);
+		new ParallelTraceReader(recorder, pool, CHUNK_SIZE).readText(
+			zipFile.getInputStream(zipFile.getEntry("trace")));
+		zipFile.close();
+
+		Assert.assertEquals(readSequential(file), recorder.events);
+	}
+
+	@Test
+	public void testMappedText() throws IOException {
+		File file = TraceFiles.writeText(new SyntheticTrace(2, 50, 3), 20000);
+
+		EventRecorder recorder = new EventRecorder();
+		new ParallelTraceReader(recorder, pool, CHUNK_SIZE).readText(
+			new FileInputStream(file).getChannel());
+
+		Assert.assertEquals(readSequential(file), recorder.events);
+	}
+
+	@Test
+	public void testBinary() throws IOException {
+		File textFile = TraceFiles.writeText(new SyntheticTrace(3, 50, 3), 20000);
+		File file = TraceFiles.convert(textFile, ".tvb");
+
+		EventRecorder recorder = new EventRecorder();
+		new ParallelTraceReader(recorder, pool, CHUNK_SIZE).readBinary(
+			new FileInputStream(file).getChannel());
+
+		Assert.assertEquals(readSequential(textFile), recorder.events);
+	}
+
+	@Test
+	public void testLongLine() throws IOException {
+		StringBuilder trace = new StringBuilder("VI:1\nCL:2:");
+		for (int i = 0; i < 5 * CHUNK_SIZE; i++) {
+			trace.append('c');
+		}
+		trace.append("\nVD:3");
+
+		EventRecorder recorder = new EventRecorder();
+		new ParallelTraceReader(recorder, pool, CHUNK_SIZE).readText(
+			new ByteArrayInputStream(trace.toString().getBytes("UTF-8")));
+
+		Assert.assertEquals(3, recorder.events.size());
+		Assert.assertEquals("VD:3", recorder.events.get(2));
+	}
+
+	@Test
+	public void testMalformedLineNumber() throws IOException {
+		StringBuilder trace = new StringBuilder();
+		for (int i = 1; i < 1000; i++) {
+			trace.append("TB:").append(i).append(':').append(i).append('\n');
+		}
+		trace.append("TB:1000:x\n");
+		File file = TraceFiles.write(".txt", trace.toString());
+
+		try {
+			new ParallelTraceReader(new EventCounter(), pool, CHUNK_SIZE).readText(
+				new FileInputStream(file).getChannel());
+			Assert.fail();
+		} catch (IOException e) {
+			Assert.assertEquals("Malformed event on line 1000 of the trace.", e.getMessage());
+		}
+	}
+}
@@ -0,0 +1,415 @@
+package tracevis.model;
+
+import java.io.File;
+import java.io.RandomAccessFile;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CancellationException;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import tracevis.model.types.CallAssignment;
+import tracevis.model.types.CallData;
+import tracevis.model.types.ClassData;
+import tracevis.model.types.EventStore;
+import tracevis.model.types.EventType;
+import tracevis.model.types.LoadPhase;
+import tracevis.model.types.SymbolTable;
+import tracevis.model.types.TimeFunction;
+import edu.uci.ics.jung.graph.Edge;
+import edu.uci.ics.jung.graph.Vertex;
+
+public class ProgramTest {
+
+	@Test
+	public void testLoadTrace() throws Exception {
+		File traceFile = TraceFiles.writeZip(new SyntheticTrace(1, 40, 3), 20000);
+
+		Program program = new Program();
+		program.loadTrace(traceFile.getAbsolutePath(), false, CallAssignment.DEFINING_CLASS);
+
+		Assert.assertEquals(1000000, program.getStartTime());
+		Assert.assertTrue(program.getEndTime() > program.getStartTime());
+		Assert.assertTrue(program.getCallGraph().getVertices().size() > 0);
+		Assert.assertTrue(program.getCallGraph().getEdges().size() > 0);
+
+		program.setCurrentTime(program.getEndTime());
+		program.setCurrentTime(program.getStartTime());
+	}
+
+	@Test
+	public void testMetricWindow() throws Exception {
+		File traceFile = TraceFiles.writeZip(new SyntheticTrace(10, 40, 3), 20000);
+
+		Program program = new Program();
+		program.loadTrace(traceFile.getAbsolutePath(), false, CallAssignment.DEFINING_CLASS);
+
+		// The metrics read at one time are recomputed when the time changes.
+		long middleTime = (program.getStartTime() + program.getEndTime()) / 2;
+		long[] times = {program.getEndTime(), middleTime, program.getStartTime()};
+		for (long metricStartTime : new long[] {program.getStartTime(), middleTime}) {
+			program.setMetricStartTime(metricStartTime);
+			for (long currentTime : times) {
+				program.setCurrentTime(currentTime);
+				for (Vertex vertex : (Set<Vertex>) program.getCallGraph().getVertices()) {
+					ClassData classData = (ClassData) vertex.getUserDatum("tracevis.model.Program");
+					Assert.assertEquals(count(classData.getCallsSentFunction(), metricStartTime,
+					                          currentTime),
+					                    classData.getCallsSent());
+					Assert.assertEquals(count(classData.getCallsReceivedFunction(),
+					                          metricStartTime, currentTime),
+					                    classData.getCallsReceived());
+					Assert.assertEquals(classData.getInstanceCountFunction().get(currentTime),
+					                    classData.getInstanceCount());
+				}
+			}
+		}
+	}
+
+	private static int count(TimeFunction timeFunction, long startTime, long endTime) {
+		return timeFunction.get(endTime) - timeFunction.get(startTime);
+	}
+
+	@Test
+	public void testOutOfOrderTimeStamps() throws Exception {
+		String trace = "VS:1\nVI:2\nCL:3:a/A\nCL:3:a/B\nTB:4:1\nTB:4:2\n" +
+		               "MN:9:1:a/A:run:0\nMN:10:2:a/A:run:0\nMN:12:2:a/B:m:0\n" +
+		               // Entered on the first thread before the entry on the second.
+		               "MN:11:1:a/B:m:0\nMX:13:1:a/B:m\nMX:13:2:a/B:m\n" +
+		               "MX:14:1:a/A:run\nMX:15:2:a/A:run\nTE:16:1\nTE:16:2\nVD:17\n";
+		File traceFile = TraceFiles.write(".trace", trace);
+
+		Program program = new Program();
+		program.loadTrace(traceFile.getAbsolutePath(), false, CallAssignment.DEFINING_CLASS);
+		program.setCurrentTime(program.getEndTime());
+
+		Assert.assertEquals(2, program.getClassData("a.A").getCallsSent());
+		Assert.assertEquals(2, program.getClassData("a.B").getCallsReceived());
+	}
+
+	@Test
+	public void testLoadBinaryTrace() throws Exception {
+		File traceFile = TraceFiles.writeZip(new SyntheticTrace(2, 40, 3), 20000);
+		File binaryFile = TraceFiles.convert(traceFile, ".tvb");
+		File blockFile = TraceFiles.convert(traceFile, ".tvc");
+
+		Program text = new Program();
+		text.loadTrace(traceFile.getAbsolutePath(), false, CallAssignment.DEFINING_CLASS);
+
+		for (File file : new File[] {binaryFile, blockFile}) {
+			Program binary = new Program();
+			binary.loadTrace(file.getAbsolutePath(), false, CallAssignment.DEFINING_CLASS);
+
+			Assert.assertEquals(text.getStartTime(), binary.getStartTime());
+			Assert.assertEquals(text.getEndTime(), binary.getEndTime());
+			Assert.assertEquals(text.getCallGraph().getVertices().size(),
+			                    binary.getCallGraph().getVertices().size());
+			Assert.assertEquals(text.getCallGraph().getEdges().size(),
+			                    binary.getCallGraph().getEdges().size());
+		}
+	}
+
+	@Test
+	public void testLoadTraceWindow() throws Exception {
+		File traceFile = TraceFiles.writeZip(new SyntheticTrace(3, 40, 3), 20000);
+		File blockFile = TraceFiles.convert(traceFile, ".tvc");
+
+		Program full = new Program();
+		full.loadTrace(traceFile.getAbsolutePath(), false, CallAssignment.OBJECT_CLASS);
+		long beginTime = full.getStartTime() + (full.getEndTime() - full.getStartTime()) / 3;
+		long endTime = full.getStartTime() + (full.getEndTime() - full.getStartTime()) / 2;
+
+		Program text = new Program();
+		text.loadTrace(traceFile.getAbsolutePath(), false, CallAssignment.OBJECT_CLASS,
+		               beginTime, endTime);
+		Program blocks = new Program();
+		blocks.loadTrace(blockFile.getAbsolutePath(), false, CallAssignment.OBJECT_CLASS,
+		                 beginTime, endTime);
+
+		for (Program window : new Program[] {text, blocks}) {
+			Assert.assertEquals(beginTime, window.getStartTime());
+			Assert.assertEquals(endTime, window.getEndTime());
+			Assert.assertTrue(window.getCallGraph().getEdges().size() > 0);
+			Assert.assertTrue(window.getCallGraph().getEdges().size() <=
+			                  full.getCallGraph().getEdges().size());
+
+			window.setCurrentTime(endTime);
+			window.setCurrentTime(beginTime);
+		}
+		Assert.assertEquals(text.getCallGraph().getVertices().size(),
+		                    blocks.getCallGraph().getVertices().size());
+		Assert.assertEquals(text.getCallGraph().getEdges().size(),
+		                    blocks.getCallGraph().getEdges().size());
+	}
+
+	/**
+	 * A load monitor which records the phases and the work done in each, and
+	 * cancels the load once the specified phase has started.
+	 */
+	private static class RecordingMonitor implements LoadMonitor {
+		final List<LoadPhase> phases = new ArrayList<LoadPhase>();
+		final List<Long> totals = new ArrayList<Long>();
+		final List<Long> work = new ArrayList<Long>();
+		private final LoadPhase cancelPhase;
+
+		RecordingMonitor(LoadPhase cancelPhase) {
+			this.cancelPhase = cancelPhase;
+		}
+
+		@Override
+		public void phaseStarted(LoadPhase phase, long total) {
+			phases.add(phase);
+			totals.add(total);
+			work.add(0L);
+		}
+
+		@Override
+		public void worked(long amount) {
+			int last = work.size() - 1;
+			work.set(last, work.get(last) + amount);
+		}
+
+		@Override
+		public boolean isCanceled() {
+			return !phases.isEmpty() && phases.get(phases.size() - 1) == cancelPhase;
+		}
+	}
+
+	@Test
+	public void testSymbolTable() throws Exception {
+		File traceFile = TraceFiles.writeZip(new SyntheticTrace(6, 40, 3), 20000);
+
+		Program program = new Program();
+		program.loadTrace(traceFile.getAbsolutePath(), true, CallAssignment.DEFINING_CLASS);
+		program.setCurrentTime(program.getEndTime());
+
+		SymbolTable symbols = program.getSymbolTable();
+		int innerClasses = 0;
+		for (int classID = 0; classID < symbols.getClassCount(); classID++) {
+			String className = symbols.getClassName(classID);
+			ClassData classData = program.getClassData(classID);
+			Assert.assertSame(program.getClassData(className), classData);
+			if (ProgramUtilities.isInnerClass(className)) {
+				innerClasses++;
+				Assert.assertEquals(ProgramUtilities.getEnclosingClassName(className),
+				                    classData.getName());
+			} else {
+				Assert.assertEquals(classID, classData.getID());
+			}
+		}
+		Assert.assertTrue(innerClasses > 0);
+
+		// The calls of each edge are counted per method, under the qualified
+		// names of the methods of hidden inner classes.
+		boolean innerMethods = false;
+		for (Edge edge : (Set<Edge>) program.getCallGraph().getEdges()) {
+			CallData callData = (CallData) edge.getUserDatum("tracevis.model.Program");
+			int callCount = 0;
+			for (String method : callData.getMethods()) {
+				callCount += callData.getMethodCallCount(method);
+				innerMethods |= method.startsWith("Inner");
+			}
+			Assert.assertEquals(callData.getCallCount(), callCount);
+		}
+		Assert.assertTrue(innerMethods);
+
+		String className = symbols.getClassName(0);
+		Assert.assertFalse(program.isFilteredClass(className));
+		program.addClassFilter(className);
+		Assert.assertTrue(program.isFilteredClass(className));
+		program.removeClassFilter(className);
+		Assert.assertFalse(program.isFilteredClass(className));
+		Assert.assertFalse(program.isFilteredClass("no.such.Class"));
+	}
+
+	@Test
+	public void testLoadProgress() throws Exception {
+		File traceFile = TraceFiles.writeZip(new SyntheticTrace(4, 40, 3), 20000);
+		File blockFile = TraceFiles.convert(traceFile, ".tvc");
+
+		for (File file : new File[] {traceFile, blockFile}) {
+			RecordingMonitor monitor = new RecordingMonitor(null);
+			Program program = Program.readTrace(file.getAbsolutePath(), false,
+			                                    CallAssignment.DEFINING_CLASS,
+			                                    Long.MIN_VALUE, Long.MAX_VALUE, monitor);
+
+			Assert.assertEquals(Arrays.asList(LoadPhase.values()), monitor.phases);
+			Assert.assertEquals(monitor.totals, monitor.work);
+			Assert.assertTrue(monitor.totals.get(0) > 0);
+			Assert.assertTrue(program.getCallGraph().getEdges().size() > 0);
+		}
+	}
+
+	@Test
+	public void testCancelLoad() throws Exception {
+		File traceFile = TraceFiles.writeZip(new SyntheticTrace(5, 40, 3), 20000);
+
+		Program program = new Program();
+		program.loadTrace(traceFile.getAbsolutePath(), false, CallAssignment.DEFINING_CLASS);
+		int edgeCount = program.getCallGraph().getEdges().size();
+
+		for (LoadPhase phase : LoadPhase.values()) {
+			try {
+				Program.readTrace(traceFile.getAbsolutePath(), false,
+				                  CallAssignment.DEFINING_CLASS,
+				                  Long.MIN_VALUE, Long.MAX_VALUE, new RecordingMonitor(phase));
+				Assert.fail("The load was not canceled.");
+			} catch (CancellationException e) {
+				// Expected.
+			}
+		}
+
+		// A canceled load leaves the loaded trace alone.
+		Assert.assertEquals(edgeCount, program.getCallGraph().getEdges().size());
+	}
+
+	@Test
+	public void testStreamTrace() throws Exception {
+		File traceFile = TraceFiles.writeZip(new SyntheticTrace(6, 40, 3), 20000);
+
+		final List<Program> snapshots = new ArrayList<Program>();
+		Program program = Program.streamTrace(traceFile.getAbsolutePath(), false,
+		                                      CallAssignment.DEFINING_CLASS, 1000,
+		                                      new SnapshotListener() {
+			@Override
+			public void snapshotLoaded(Program snapshot) {
+				snapshots.add(snapshot);
+			}
+		}, null);
+
+		// Snapshots of 1000, 4000 and 16000 events precede the whole trace.
+		Assert.assertEquals(3, snapshots.size());
+		Program full = new Program();
+		full.loadTrace(traceFile.getAbsolutePath(), false, CallAssignment.DEFINING_CLASS);
+		long endTime = full.getStartTime();
+		EventStore fullEvents = full.getEvents();
+		for (Program snapshot : snapshots) {
+			Assert.assertEquals(full.getStartTime(), snapshot.getStartTime());
+			Assert.assertTrue(snapshot.getEndTime() > endTime);
+			endTime = snapshot.getEndTime();
+
+			// A snapshot holds the events from the start of the trace, and
+			// ends at the last of them.
+			EventStore events = snapshot.getEvents();
+			int last = events.size() - 1;
+			for (int event = 0; event < last; event++) {
+				Assert.assertEquals(fullEvents.getType(event), events.getType(event));
+				Assert.assertEquals(fullEvents.getTime(event), events.getTime(event));
+				Assert.assertEquals(fullEvents.getThreadID(event), events.getThreadID(event));
+				Assert.assertEquals(fullEvents.getObjectID(event), events.getObjectID(event));
+				Assert.assertEquals(fullEvents.getClassID(event), events.getClassID(event));
+				Assert.assertEquals(fullEvents.getMethodID(event), events.getMethodID(event));
+			}
+			Assert.assertEquals(EventType.VM_DEATH, events.getType(last));
+			Assert.assertEquals(fullEvents.getTime(last - 1), snapshot.getEndTime());
+		}
+		Assert.assertEquals(full.getEndTime(), program.getEndTime());
+		Assert.assertEquals(full.getCallGraph().getEdges().size(),
+		                    program.getCallGraph().getEdges().size());
+	}
+
+	private static void assertSameProgram(Program expected, Program actual) {
+		Assert.assertEquals(expected.getStartTime(), actual.getStartTime());
+		Assert.assertEquals(expected.getEndTime(), actual.getEndTime());
+		Assert.assertEquals(expected.getEvents().size(), actual.getEvents().size());
+		Assert.assertEquals(expected.getCallGraph().getVertices().size(),
+		                    actual.getCallGraph().getVertices().size());
+		Assert.assertEquals(expected.getCallGraph().getEdges().size(),
+		                    actual.getCallGraph().getEdges().size());
+
+		for (Vertex vertex : (Set<Vertex>)expected.getCallGraph().getVertices()) {
+			ClassData expectedData = (ClassData)vertex.getUserDatum("tracevis.model.Program");
+			ClassData actualData = actual.getClassData(expectedData.getName());
+			Assert.assertEquals(expectedData.getCallsSent(), actualData.getCallsSent());
+			Assert.assertEquals(expectedData.getMaxCallsSent(), actualData.getMaxCallsSent());
+			Assert.assertEquals(expectedData.getMaxCallsReceived(),
+			                    actualData.getMaxCallsReceived());
+			Assert.assertEquals(expectedData.getMaxInstanceCount(),
+			                    actualData.getMaxInstanceCount());
+			Assert.assertEquals(expectedData.getActivityRanges().size(),
+			                    actualData.getActivityRanges().size());
+
+			for (Vertex callee : (Set<Vertex>)vertex.getSuccessors()) {
+				ClassData calleeData = (ClassData)callee.getUserDatum("tracevis.model.Program");
+				CallData expectedCall = expectedData.getCallData(calleeData);
+				CallData actualCall = actualData.getCallData(
+					actual.getClassData(calleeData.getName()));
+				Assert.assertEquals(expectedCall.getMaxCallCount(), actualCall.getMaxCallCount());
+				Assert.assertEquals(expectedCall.getCallCount(), actualCall.getCallCount());
+				Assert.assertEquals(expectedCall.getMethods(), actualCall.getMethods());
+			}
+		}
+	}
+
+	@Test
+	public void testSnapshotCache() throws Exception {
+		File textFile = TraceFiles.writeZip(new SyntheticTrace(7, 40, 3), 20000);
+		File traceFile = TraceFiles.convert(textFile, ".tvc");
+		File cacheFile = SnapshotCache.getCacheFile(traceFile, true, CallAssignment.OBJECT_CLASS);
+		cacheFile.deleteOnExit();
+
+		Program fresh = new Program();
+		fresh.loadTrace(traceFile.getAbsolutePath(), true, CallAssignment.OBJECT_CLASS);
+
+		System.setProperty(Program.SNAPSHOT_CACHE_PROPERTY, "true");
+		try {
+			Program written = new Program();
+			written.loadTrace(traceFile.getAbsolutePath(), true, CallAssignment.OBJECT_CLASS);
+			Assert.assertTrue(cacheFile.isFile());
+			long cacheLength = cacheFile.length();
+
+			Program cached = new Program();
+			cached.loadTrace(traceFile.getAbsolutePath(), true, CallAssignment.OBJECT_CLASS);
+			assertSameProgram(fresh, cached);
+
+			// The events are mapped from the cache with their frames, callers
+			// and callees.
+			Program snapshot = SnapshotCache.read(traceFile, SnapshotCache.fingerprint(traceFile),
+			                                      true, CallAssignment.OBJECT_CLASS);
+			Assert.assertNotNull(snapshot);
+			EventStore freshEvents = fresh.getEvents();
+			EventStore cachedEvents = snapshot.getEvents();
+			Assert.assertEquals(freshEvents.size(), cachedEvents.size());
+			for (int event = 0; event < freshEvents.size(); event++) {
+				Assert.assertEquals(freshEvents.getTime(event), cachedEvents.getTime(event));
+				Assert.assertEquals(freshEvents.getThreadID(event), cachedEvents.getThreadID(event));
+				Assert.assertEquals(freshEvents.getObjectID(event), cachedEvents.getObjectID(event));
+				Assert.assertEquals(freshEvents.getFrameID(event), cachedEvents.getFrameID(event));
+				Assert.assertEquals(freshEvents.getCaller(event), cachedEvents.getCaller(event));
+				Assert.assertEquals(freshEvents.getCallee(event), cachedEvents.getCallee(event));
+			}
+
+			long time = (fresh.getStartTime() + fresh.getEndTime()) / 2;
+			fresh.setCurrentTime(time);
+			cached.setCurrentTime(time);
+			assertSameProgram(fresh, cached);
+			fresh.setCurrentTime(fresh.getStartTime());
+			cached.setCurrentTime(cached.getStartTime());
+
+			// A damaged cache is not used, and is replaced.
+			RandomAccessFile cache = new RandomAccessFile(cacheFile, "rw");
+			cache.setLength(cacheLength / 2);
+			cache.close();
+			Program reloaded = new Program();
+			reloaded.loadTrace(traceFile.getAbsolutePath(), true, CallAssignment.OBJECT_CLASS);
+			assertSameProgram(fresh, reloaded);
+			Assert.assertEquals(cacheLength, cacheFile.length());
+
+			// A cache of a trace which has changed is not used.
+			new SyntheticTrace(8, 40, 3).writeZip(textFile, 20000);
+			TraceConverter.convertTrace(textFile, traceFile);
+			Program changed = new Program();
+			changed.loadTrace(traceFile.getAbsolutePath(), true, CallAssignment.OBJECT_CLASS);
+			System.clearProperty(Program.SNAPSHOT_CACHE_PROPERTY);
+			Program expected = new Program();
+			expected.loadTrace(traceFile.getAbsolutePath(), true, CallAssignment.OBJECT_CLASS);
+			assertSameProgram(expected, changed);
+		} finally {
+			System.clearProperty(Program.SNAPSHOT_CACHE_PROPERTY);
+			cacheFile.delete();
+		}
+	}
+}
@@ -0,0 +1,179 @@
+package tracevis.model;
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+/**
+ * Generates synthetic traces in the text format written by the mtrace agent.
+ * The generated traces are well formed: every method exit matches an earlier
+ * method entry on the same thread, and every class is loaded before it is
+ * used. They are meant for tests and benchmarks only.
+ */
+public class SyntheticTrace {
+	private static final String[] METHODS = {
+		"<init>", "run", "get", "put", "visit", "update", "compute", "toString"
+	};
+
+	private final Random random;
+	private final int classCount;
+	private final int threadCount;
+	private final int maxDepth;
+
+	private final List<String> classes;
+	private final List<long[]> objects;
+
+	/**
+	 * Creates a new instance of SyntheticTrace.
+	 * @param seed the seed of the random generator.
+	 * @param classCount the number of distinct classes in the trace.
+	 * @param threadCount the number of threads in the trace.
+	 */
+	public SyntheticTrace(long seed, int classCount, int threadCount) {
+		this(seed, classCount, threadCount, 32);
+	}
+
+	/**
+	 * Creates a new instance of SyntheticTrace.
+	 * @param seed the seed of the random generator.
+	 * @param classCount the number of distinct classes in the trace.
+	 * @param threadCount the number of threads in the trace.
+	 * @param maxDepth the maximum number of frames on the call stack of a
+	 *                 thread.
+	 */
+	public SyntheticTrace(long seed, int classCount, int threadCount, int maxDepth) {
+		this.random = new Random(seed);
+		this.classCount = classCount;
+		this.threadCount = threadCount;
+		this.maxDepth = maxDepth;
+
+		this.classes = new ArrayList<String>();
+		this.objects = new ArrayList<long[]>();
+	}
+
+	/**
+	 * Writes a zipped text trace containing approximately the specified number
+	 * of events to the specified file.
+	 * @param file the specified file.
+	 * @param eventCount the approximate number of events.
+	 * @throws IOException if the trace could not be written.
+	 */
+	public void writeZip(File file, long eventCount) throws IOException {
+		ZipOutputStream zip = new ZipOutputStream(new FileOutputStream(file));
+		zip.putNextEntry(new ZipEntry("trace"));
+		Writer out = new BufferedWriter(new OutputStreamWriter(zip), 1 << 16);
+		write(out, eventCount);
+		out.flush();
+		zip.closeEntry();
+		zip.close();
+	}
+
+	/**
+	 * Writes an uncompressed text trace containing approximately the specified
+	 * number of events to the specified file.
+	 * @param file the specified file.
+	 * @param eventCount the approximate number of events.
+	 * @throws IOException if the trace could not be written.
+	 */
+	public void writeText(File file, long eventCount) throws IOException {
+		Writer out = new BufferedWriter(new OutputStreamWriter(new FileOutputStream(file)), 1 << 16);
+		write(out, eventCount);
+		out.close();
+	}
+
+	/**
+	 * Writes the events of the trace to the specified writer.
+	 * @param out the specified writer.
+	 * @param eventCount the approximate number of events.
+	 * @throws IOException if the trace could not be written.
+	 */
+	public void write(Writer out, long eventCount) throws IOException {
+		long time = 1000000;
+		long nextObject = 1;
+
+		out.write("VS:" + time + "\n");
+		out.write("VI:" + time + "\n");
+
+		for (int i = 0; i < classCount; i++) {
+			String className = "synthetic/pkg" + (i % 7) + "/Class" + i;
+			if (i % 5 == 4) {
+				className = classes.get(i - 1) + "$Inner" + i;
+			}
+			classes.add(className);
+			objects.add(new long[0]);
+			time += 1 + random.nextInt(10);
+			out.write("CL:" + time + ":" + className + "\n");
+		}
+
+		List<List<Integer>> stacks = new ArrayList<List<Integer>>();
+		for (int thread = 1; thread <= threadCount; thread++) {
+			stacks.add(new ArrayList<Integer>());
+			time += 1 + random.nextInt(10);
+			out.write("TB:" + time + ":" + thread + "\n");
+		}
+
+		long written = 0;
+		while (written < eventCount) {
+			time += 1 + random.nextInt(100);
+			int thread = 1 + random.nextInt(threadCount);
+			List<Integer> stack = stacks.get(thread - 1);
+
+			int choice = random.nextInt(100);
+			if (choice < 5) {
+				int classIndex = random.nextInt(classCount);
+				long objectID = nextObject++;
+				long[] instances = objects.get(classIndex);
+				long[] grown = new long[Math.min(instances.length + 1, 16)];
+				System.arraycopy(instances, 0, grown, 0, grown.length - 1);
+				grown[grown.length - 1] = objectID;
+				objects.set(classIndex, grown);
+				out.write("OA:" + time + ":" + classes.get(classIndex) + ":" + objectID + "\n");
+			} else if (choice < 52 || stack.isEmpty()) {
+				if (stack.size() >= 2 * maxDepth) {
+					continue;
+				}
+				int classIndex = random.nextInt(classCount);
+				int methodIndex = random.nextInt(METHODS.length);
+				long[] instances = objects.get(classIndex);
+				long objectID = 0;
+				if (instances.length > 0 && random.nextBoolean()) {
+					objectID = instances[random.nextInt(instances.length)];
+				}
+				stack.add(classIndex);
+				stack.add(methodIndex);
+				out.write("MN:" + time + ":" + thread + ":" + classes.get(classIndex) + ":" +
+				          METHODS[methodIndex] + ":" + objectID + "\n");
+			} else {
+				int methodIndex = stack.remove(stack.size() - 1);
+				int classIndex = stack.remove(stack.size() - 1);
+				String type = choice < 98 ? "MX" : "FP";
+				out.write(type + ":" + time + ":" + thread + ":" + classes.get(classIndex) + ":" +
+				          METHODS[methodIndex] + "\n");
+			}
+			written++;
+		}
+
+		for (int thread = 1; thread <= threadCount; thread++) {
+			List<Integer> stack = stacks.get(thread - 1);
+			while (!stack.isEmpty()) {
+				int methodIndex = stack.remove(stack.size() - 1);
+				int classIndex = stack.remove(stack.size() - 1);
+				time += 1;
+				out.write("MX:" + time + ":" + thread + ":" + classes.get(classIndex) + ":" +
+				          METHODS[methodIndex] + "\n");
+			}
+			time += 1;
+			out.write("TE:" + time + ":" + thread + "\n");
+		}
+
+		out.write("VD:" + (time + 1) + "\n");
+	}
+}
@@ -0,0 +1,181 @@
+package tracevis.model;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+public class TextTraceReaderTest {
+
+	/**
+	 * Records the events it receives in the text format of the trace.
+	 */
+	static class EventRecorder implements ProgramEventInterface {
+		final List<String> events = new ArrayList<String>();
+
+		@Override
+		public void handleVMDeath(long timeStamp) {
+			events.add("VD:" + timeStamp);
+		}
+
+		@Override
+		public void handleVMInit(long timeStamp) {
+			events.add("VI:" + timeStamp);
+		}
+
+		@Override
+		public void handleVMStart(long timeStamp) {
+			events.add("VS:" + timeStamp);
+		}
+
+		@Override
+		public void handleObjectFree(long timeStamp, String className, long objectID) {
+			events.add("OF:" + timeStamp + ":" + className + ":" + objectID);
+		}
+
+		@Override
+		public void handleObjectAllocation(long timeStamp, String className, long objectID) {
+			events.add("OA:" + timeStamp + ":" + className + ":" + objectID);
+		}
+
+		@Override
+		public void handleClassLoad(long timeStamp, String className) {
+			events.add("CL:" + timeStamp + ":" + className);
+		}
+
+		@Override
+		public void handleThreadStop(long timeStamp, long threadID) {
+			events.add("TE:" + timeStamp + ":" + threadID);
+		}
+
+		@Override
+		public void handleThreadStart(long timeStamp, long threadID) {
+			events.add("TB:" + timeStamp + ":" + threadID);
+		}
+
+		@Override
+		public void handleFramePop(long timeStamp, long threadID, String className, String methodName) {
+			events.add("FP:" + timeStamp + ":" + threadID + ":" + className + ":" + methodName);
+		}
+
+		@Override
+		public void handleMethodExit(long timeStamp, long threadID, String className, String methodName) {
+			events.add("MX:" + timeStamp + ":" + threadID + ":" + className + ":" + methodName);
+		}
+
+		@Override
+		public void handleMethodEntry(long timeStamp, long threadID, String className,
+		                              String methodName, long objectID) {
+			events.add("MN:" + timeStamp + ":" + threadID + ":" + className + ":" + methodName +
+			           ":" + objectID);
+		}
+	}
+
+	private static List<String> read(String trace) throws IOException {
+		EventRecorder recorder = new EventRecorder();
+		TraceReader reader = new TextTraceReader(recorder);
+		reader.readTrace(new ByteArrayInputStream(trace.getBytes("UTF-8")));
+		return recorder.events;
+	}
+
+	@Test
+	public void testEventTypes() throws IOException {
+		String trace =
+			"VS:1\n" +
+			"VI:2\r\n" +
+			"CL:3:java/util/Map$Entry\n" +
+			"TB:4:7\n" +
+			"OA:5:java/util/Map$Entry:42\n" +
+			"MN:6:7:java/util/Map$Entry:getKey:42\n" +
+			"MN:7:7:java/lang/Object:<init>:0\n" +
+			"FP:8:7:java/lang/Object:<init>\n" +
+			"MX:9:7:java/util/Map$Entry:getKey\n" +
+			"\n" +
+			"XX:10:ignored\n" +
+			"OF:11:java/util/Map$Entry:42\n" +
+			"TE:12:7\n" +
+			"VD:13";
+
+		List<String> expected = Arrays.asList(
+			"VS:1",
+			"VI:2",
+			"CL:3:java.util.Map$Entry",
+			"TB:4:7",
+			"OA:5:java.util.Map$Entry:42",
+			"MN:6:7:java.util.Map$Entry:getKey:42",
+			"MN:7:7:java.lang.Object:<init>:0",
+			"FP:8:7:java.lang.Object:<init>",
+			"MX:9:7:java.util.Map$Entry:getKey",
+			"OF:11:java.util.Map$Entry:42",
+			"TE:12:7",
+			"VD:13");
+
+		Assert.assertEquals(expected, read(trace));
+	}
+
+	@Test
+	public void testSharedNames() throws IOException {
+		final List<String> names = new ArrayList<String>();
+		TraceReader reader = new TextTraceReader(new EventCounter() {
+			@Override
+			public void handleClassLoad(long timeStamp, String className) {
+				names.add(className);
+			}
+		});
+		String trace = "CL:1:a/B\nCL:2:a/B\nCL:3:a/C\n";
+		reader.readTrace(new ByteArrayInputStream(trace.getBytes("UTF-8")));
+
+		Assert.assertEquals(3, names.size());
+		Assert.assertSame(names.get(0), names.get(1));
+		Assert.assertEquals("a.C", names.get(2));
+	}
+
+	@Test
+	public void testManyNames() throws IOException {
+		final List<String> names = new ArrayList<String>();
+		TraceReader reader = new TextTraceReader(new EventCounter() {
+			@Override
+			public void handleClassLoad(long timeStamp, String className) {
+				names.add(className);
+			}
+		});
+		StringBuilder trace = new StringBuilder();
+		int count = 5000;
+		for (int i = 0; i < count; i++) {
+			trace.append("CL:").append(i + 1).append(":a/C").append(i).append('\n');
+		}
+		reader.readTrace(new ByteArrayInputStream(trace.toString().getBytes("UTF-8")));
+
+		Assert.assertEquals(count, names.size());
+		for (int i = 0; i < count; i++) {
+			Assert.assertEquals("a.C" + i, names.get(i));
+		}
+	}
+
+	@Test
+	public void testLongLine() throws IOException {
+		StringBuilder className = new StringBuilder();
+		for (int i = 0; i < 100000; i++) {
+			className.append('c');
+		}
+
+		List<String> events = read("VI:1\nCL:2:" + className + "\nVD:3\n");
+
+		Assert.assertEquals(3, events.size());
+		Assert.assertEquals("CL:2:" + className, events.get(1));
+	}
+
+	@Test(expected = IOException.class)
+	public void testMalformedNumber() throws IOException {
+		read("VI:1\nTB:2:x\n");
+	}
+
+	@Test(expected = IOException.class)
+	public void testMissingField() throws IOException {
+		read("VI:1\nMN:2:3:a/B\n");
+	}
+}
@@ -0,0 +1,87 @@
+package tracevis.model;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import tracevis.model.types.TimeFunction;
+
+public class TimeFunctionTest {
+
+	@Test
+	public void testStepFunction() {
+		TimeFunction function = new TimeFunction(7);
+		Assert.assertEquals(7, function.get(0));
+		Assert.assertEquals(7, function.lastValue());
+
+		for (int i = 1; i <= 1000; i++) {
+			function.put(10 * i, i);
+		}
+		// A data point at the same time replaces the last one.
+		function.put(10000, 2000);
+		Assert.assertEquals(1000, function.size());
+
+		Assert.assertEquals(7, function.get(9));
+		Assert.assertEquals(1, function.get(10));
+		Assert.assertEquals(1, function.get(19));
+		Assert.assertEquals(500, function.get(5005));
+		Assert.assertEquals(2000, function.get(Long.MAX_VALUE - 1));
+		Assert.assertEquals(10000, function.lastTime());
+		Assert.assertEquals(2000, function.lastValue());
+
+		Assert.assertEquals(-1, function.floorIndex(9));
+		Assert.assertEquals(0, function.floorIndex(10));
+		Assert.assertEquals(0, function.ceilingIndex(10));
+		Assert.assertEquals(1, function.ceilingIndex(11));
+		Assert.assertEquals(1000, function.ceilingIndex(10001));
+
+		// The data points in a range are visited by index.
+		int sum = 0;
+		for (int i = function.ceilingIndex(100); i < function.size() &&
+		                                         function.getTime(i) <= 200; i++) {
+			sum += function.getValue(i);
+		}
+		Assert.assertEquals(10 + 11 + 12 + 13 + 14 + 15 + 16 + 17 + 18 + 19 + 20, sum);
+
+		function.trimToSize();
+		Assert.assertEquals(500, function.get(5000));
+	}
+
+	@Test
+	public void testAdd() {
+		TimeFunction function = new TimeFunction(0);
+		function.put(10, 1);
+		function.put(20, 2);
+		function.put(30, 1);
+
+		function.add(new long[] {5, 20, 20, 40}, new int[] {1, -1, 1, -1}, 4);
+		Assert.assertEquals(0, function.get(4));
+		Assert.assertEquals(1, function.get(5));
+		Assert.assertEquals(2, function.get(10));
+		Assert.assertEquals(3, function.get(20));
+		Assert.assertEquals(2, function.get(30));
+		Assert.assertEquals(1, function.get(40));
+		Assert.assertEquals(5, function.size());
+
+		// Removing the changes again leaves the data points which change the
+		// value, and drops the others.
+		function.add(new long[] {5, 40}, new int[] {-1, 1}, 2);
+		function.add(new long[] {30}, new int[] {1}, 1);
+		Assert.assertEquals(1, function.get(10));
+		Assert.assertEquals(2, function.get(20));
+		Assert.assertEquals(2, function.get(40));
+		Assert.assertEquals(2, function.size());
+		Assert.assertEquals(20, function.lastTime());
+	}
+
+	@Test
+	public void testPutBeforeLast() {
+		TimeFunction function = new TimeFunction(0);
+		function.put(10, 1);
+		function.put(9, 2);
+		function.put(12, 3);
+		Assert.assertEquals(0, function.get(9));
+		Assert.assertEquals(2, function.get(10));
+		Assert.assertEquals(3, function.get(12));
+		Assert.assertEquals(2, function.size());
+	}
+}
@@ -0,0 +1,121 @@
+package tracevis.model;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.List;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import tracevis.model.TextTraceReaderTest.EventRecorder;
+
+public class TimeWindowFilterTest {
+
+	private static List<String> read(File file, long beginTime, long endTime,
+	                                 int parallelism)
+		throws IOException
+	{
+		EventRecorder recorder = new EventRecorder();
+		new TraceFile(file).read(recorder, beginTime, endTime, parallelism);
+		return recorder.events;
+	}
+
+	private static long timeStamp(String event) {
+		return Long.parseLong(event.split(":")[1]);
+	}
+
+	@Test
+	public void testWindow() throws IOException {
+		File textFile = TraceFiles.writeText(new SyntheticTrace(1, 50, 3), 20000);
+		List<String> all = read(textFile, Long.MIN_VALUE, Long.MAX_VALUE, 1);
+
+		long beginTime = timeStamp(all.get(all.size() / 3));
+		long endTime = timeStamp(all.get(all.size() / 2));
+		List<String> window = read(textFile, beginTime, endTime, 1);
+
+		Assert.assertEquals("VI:" + beginTime, window.get(0));
+		Assert.assertEquals("VD:" + endTime, window.get(window.size() - 1));
+		for (String event : window) {
+			long timeStamp = timeStamp(event);
+			Assert.assertTrue(beginTime <= timeStamp && timeStamp <= endTime);
+		}
+
+		// Every event of the trace in the window is passed on, after the
+		// events which rebuild the state.
+		int first = 0;
+		while (timeStamp(all.get(first)) < beginTime) {
+			first++;
+		}
+		int last = first;
+		while (timeStamp(all.get(last)) <= endTime) {
+			last++;
+		}
+		List<String> events = all.subList(first, last);
+		Assert.assertEquals(events, window.subList(window.size() - 1 - events.size(),
+		                                           window.size() - 1));
+
+		// The state contains every class, and a stack of open calls.
+		int classLoads = 0;
+		int methodEntries = 0;
+		for (String event : window.subList(1, window.size() - 1 - events.size())) {
+			if (event.startsWith("CL:")) {
+				classLoads++;
+			} else if (event.startsWith("MN:")) {
+				methodEntries++;
+			}
+		}
+		Assert.assertEquals(50, classLoads);
+		Assert.assertTrue(methodEntries > 0);
+	}
+
+	@Test
+	public void testWindowFromStart() throws IOException {
+		File textFile = TraceFiles.writeText(new SyntheticTrace(2, 20, 2), 1000);
+		List<String> all = read(textFile, Long.MIN_VALUE, Long.MAX_VALUE, 1);
+
+		Assert.assertEquals(all, read(textFile, 0, Long.MAX_VALUE - 1, 1));
+	}
+
+	@Test
+	public void testWindowAfterEnd() throws IOException {
+		File textFile = TraceFiles.writeText(new SyntheticTrace(3, 20, 2), 1000);
+		List<String> all = read(textFile, Long.MIN_VALUE, Long.MAX_VALUE, 1);
+
+		long beginTime = timeStamp(all.get(all.size() - 1)) + 10;
+		List<String> window = read(textFile, beginTime, beginTime + 10, 1);
+
+		Assert.assertEquals("VI:" + beginTime, window.get(0));
+		Assert.assertEquals("VD:" + beginTime, window.get(window.size() - 1));
+	}
+
+	@Test
+	public void testBlockTraceCheckpoints() throws IOException {
+		File textFile = TraceFiles.writeText(new SyntheticTrace(4, 50, 3), 20000);
+		File blockFile = TraceFiles.createTempFile(".tvc");
+		BlockTraceWriter writer = new BlockTraceWriter(new FileOutputStream(blockFile), 4096, 3);
+		new TraceFile(textFile).read(writer, 1);
+		writer.close();
+
+		BlockTraceReader trace = new TraceFile(blockFile).openBlocks();
+		int blockCount = trace.getBlockCount();
+		Assert.assertTrue(blockCount > 10);
+		Assert.assertEquals(0, trace.findCheckpoint(2));
+		Assert.assertEquals(3, trace.findCheckpoint(5));
+		long[] times = {
+			trace.getFirstTimeStamp(0),
+			trace.getFirstTimeStamp(3),
+			trace.getLastTimeStamp(4) + 1,
+			trace.getFirstTimeStamp(blockCount / 2) + 5,
+			trace.getLastTimeStamp(blockCount - 1)
+		};
+		trace.close();
+
+		for (long beginTime : times) {
+			long endTime = beginTime + 20000;
+			List<String> expected = read(textFile, beginTime, endTime, 1);
+			Assert.assertEquals(expected, read(blockFile, beginTime, endTime, 1));
+			Assert.assertEquals(expected, read(blockFile, beginTime, endTime, 4));
+		}
+	}
+}
@@ -0,0 +1,603 @@
+package tracevis.model;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import tracevis.model.types.CallAssignment;
+import tracevis.model.types.ClassData;
+import tracevis.model.types.EventStore;
+import tracevis.utilities.LongIntMap;
+import edu.uci.ics.jung.graph.impl.DirectedSparseGraph;
+
+/**
+ * Benchmarks reading, loading and exploring a synthetic trace. Each case is
+ * run once to warm up and then the specified number of times, and the median
+ * and the best time of the runs are reported. The cases which run on several
+ * threads are measured on 1, 2, 4, ... threads, up to the specified number,
+ * and report their speedup over a single thread.
+ * Usage: <code>TraceBenchmark [-events n] [-classes n] [-runs n]
+ * [-threads n] case...</code>, where a case is one of the names listed by
+ * running it without arguments, or "all".
+ */
+public class TraceBenchmark {
+	private static final String[][] CASES = {
+		{"read", "read the trace in each format, on 1, 2, 4, ... threads"},
+		{"load", "load the trace, and the heap it takes per event"},
+		{"stream", "load the trace at once, and progressively in snapshots"},
+		{"cache", "load the trace, and open it again from the snapshot cache"},
+		{"window", "load windows of increasing size from the middle of the trace"},
+		{"filter", "hide and show a class, and filter the events"},
+		{"scrub", "move the metric start time and the current time in steps"},
+		{"graph", "build the call graph on 1, 2, 4, ... threads"},
+		{"metrics", "compute the metrics of all events on 1, 2, 4, ... threads"},
+		{"maps", "put and get object IDs in a boxed and in a primitive map"}
+	};
+
+	private static final long FIRST_SNAPSHOT = 1 << 18;
+	private static final int TOGGLES = 10;
+	private static final int STEPS = 200;
+
+	/**
+	 * An operation to measure.
+	 */
+	private interface Task {
+		/**
+		 * Runs the operation.
+		 * @return the result of the operation, or null.
+		 */
+		Object run() throws Exception;
+	}
+
+	/**
+	 * An operation to measure on a number of threads.
+	 */
+	private interface ParallelTask {
+		void run(int threads) throws Exception;
+	}
+
+	private long eventCount;
+	private int classCount;
+	private int runs;
+	private int maxThreads;
+
+	private File zipFile;
+	private File textFile;
+	private File binaryFile;
+	private File blockFile;
+
+	/**
+	 * Creates a new instance of TraceBenchmark.
+	 */
+	public TraceBenchmark() {
+		this.eventCount = 2000000;
+		this.classCount = 300;
+		this.runs = 5;
+		this.maxThreads = Runtime.getRuntime().availableProcessors();
+	}
+
+	/**
+	 * Writes the synthetic trace in each format.
+	 */
+	private void writeTraces() throws IOException {
+		zipFile = TraceFiles.writeZip(new SyntheticTrace(42, classCount, 4), eventCount);
+		textFile = TraceFiles.writeText(new SyntheticTrace(42, classCount, 4), eventCount);
+		binaryFile = TraceFiles.convert(zipFile, ".tvb");
+		blockFile = TraceFiles.convert(zipFile, ".tvc");
+
+		System.out.println("Trace: " + eventCount + " events, " + classCount + " classes, " +
+		                   Runtime.getRuntime().availableProcessors() + " processors");
+	}
+
+	private static long usedMemory() {
+		Runtime runtime = Runtime.getRuntime();
+		System.gc();
+		return runtime.totalMemory() - runtime.freeMemory();
+	}
+
+	/**
+	 * Returns the heap taken by the result of the specified task.
+	 */
+	private static long retainedMemory(Task task) throws Exception {
+		long usedBefore = usedMemory();
+		Object result = task.run();
+		long used = usedMemory() - usedBefore;
+		if (result == null) {
+			throw new IllegalStateException("The task has no result.");
+		}
+		return used;
+	}
+
+	private static String format(long time) {
+		if (time >= 10000000) {
+			return time / 1000000 + " ms";
+		} else if (time >= 10000) {
+			return time / 1000 + " us";
+		}
+		return time + " ns";
+	}
+
+	/**
+	 * Runs the specified task once to warm up, and then the configured number
+	 * of times, and returns the times of the runs in ascending order.
+	 */
+	private long[] measure(Task task) throws Exception {
+		task.run();
+		long[] times = new long[runs];
+		for (int run = 0; run < runs; run++) {
+			System.gc();
+			long start = System.nanoTime();
+			task.run();
+			times[run] = System.nanoTime() - start;
+		}
+		Arrays.sort(times);
+		return times;
+	}
+
+	private void report(String name, Task task) throws Exception {
+		report(name, task, 1);
+	}
+
+	/**
+	 * Measures the specified task, and reports the time per operation.
+	 * @param name the name of the task.
+	 * @param task the task to measure.
+	 * @param operations the number of operations in each run of the task.
+	 */
+	private void report(String name, Task task, int operations) throws Exception {
+		long[] times = measure(task);
+		System.out.println(name + ": median " + format(times[runs / 2] / operations) +
+		                   ", best " + format(times[0] / operations));
+	}
+
+	/**
+	 * Measures the specified task on 1, 2, 4, ... threads, up to the
+	 * configured number, and reports the speedup over a single thread.
+	 */
+	private void scale(String name, final ParallelTask task) throws Exception {
+		long single = 0;
+		for (int threads = 1; ; threads = Math.min(2 * threads, maxThreads)) {
+			final int parallelism = threads;
+			long[] times = measure(new Task() {
+				@Override
+				public Object run() throws Exception {
+					task.run(parallelism);
+					return null;
+				}
+			});
+			long median = times[runs / 2];
+			if (threads == 1) {
+				single = median;
+			}
+			System.out.println(name + ", " + threads + (threads == 1 ? " thread" : " threads") +
+			                   ": median " + format(median) + ", best " + format(times[0]) +
+			                   String.format(", speedup %.2f", (double) single / median));
+			if (threads == maxThreads) {
+				break;
+			}
+		}
+	}
+
+	private static Program loadProgram(File file) throws Exception {
+		Program program = new Program();
+		program.loadTrace(file.getAbsolutePath(), false, CallAssignment.DEFINING_CLASS);
+		return program;
+	}
+
+	private void read() throws Exception {
+		EventCounter expected = new EventCounter();
+		new TraceFile(zipFile).read(expected, 1);
+		final long checksum = expected.getChecksum();
+
+		report("text stream", new Task() {
+			@Override
+			public Object run() throws Exception {
+				InputStream in = new FileInputStream(textFile);
+				try {
+					new TextTraceReader(new EventCounter()).readTrace(in);
+				} finally {
+					in.close();
+				}
+				return null;
+			}
+		});
+		report("binary stream", new Task() {
+			@Override
+			public Object run() throws Exception {
+				InputStream in = new FileInputStream(binaryFile);
+				try {
+					new BinaryTraceReader(new EventCounter()).readTrace(in);
+				} finally {
+					in.close();
+				}
+				return null;
+			}
+		});
+
+		for (File file : new File[] {zipFile, textFile, binaryFile, blockFile}) {
+			final TraceFile traceFile = new TraceFile(file);
+			scale(traceFile.getFormat() + " (" + file.length() / 1024 + " KB)", new ParallelTask() {
+				@Override
+				public void run(int threads) throws Exception {
+					EventCounter counter = new EventCounter();
+					traceFile.read(counter, threads);
+					if (counter.getChecksum() != checksum) {
+						throw new IllegalStateException("The reads of the trace disagree.");
+					}
+				}
+			});
+		}
+	}
+
+	private void load() throws Exception {
+		for (final File file : new File[] {zipFile, blockFile}) {
+			Task task = new Task() {
+				@Override
+				public Object run() throws Exception {
+					return loadProgram(file);
+				}
+			};
+			String name = "load " + new TraceFile(file).getFormat();
+			report(name, task);
+			long used = retainedMemory(task);
+			System.out.println(name + ": " + used / (1024 * 1024) + " MB, " +
+			                   used / eventCount + " bytes per event");
+		}
+	}
+
+	private void stream() throws Exception {
+		final String fileName = zipFile.getAbsolutePath();
+		report("whole trace", new Task() {
+			@Override
+			public Object run() throws Exception {
+				return Program.readTrace(fileName, false, CallAssignment.DEFINING_CLASS,
+				                         Long.MIN_VALUE, Long.MAX_VALUE, null);
+			}
+		});
+
+		final List<String> snapshots = new ArrayList<String>();
+		report("streamed", new Task() {
+			@Override
+			public Object run() throws Exception {
+				snapshots.clear();
+				final long start = System.nanoTime();
+				return Program.streamTrace(fileName, false, CallAssignment.DEFINING_CLASS,
+				                           FIRST_SNAPSHOT, new SnapshotListener() {
+					@Override
+					public void snapshotLoaded(Program snapshot) {
+						snapshots.add("snapshot to " + snapshot.getEndTime() + " after " +
+						              format(System.nanoTime() - start));
+					}
+				}, null);
+			}
+		});
+		for (String snapshot : snapshots) {
+			System.out.println("  " + snapshot);
+		}
+	}
+
+	private void cache() throws Exception {
+		final File cacheFile = SnapshotCache.getCacheFile(blockFile, false,
+		                                                  CallAssignment.DEFINING_CLASS);
+		cacheFile.deleteOnExit();
+		System.setProperty(Program.SNAPSHOT_CACHE_PROPERTY, "true");
+		try {
+			report("load and cache", new Task() {
+				@Override
+				public Object run() throws Exception {
+					cacheFile.delete();
+					return loadProgram(blockFile);
+				}
+			});
+			report("reopen", new Task() {
+				@Override
+				public Object run() throws Exception {
+					return loadProgram(blockFile);
+				}
+			});
+			System.out.println("cache file: " + cacheFile.length() / 1024 + " KB");
+		} finally {
+			System.clearProperty(Program.SNAPSHOT_CACHE_PROPERTY);
+			cacheFile.delete();
+		}
+	}
+
+	private void window() throws Exception {
+		BlockTraceReader trace = new TraceFile(blockFile).openBlocks();
+		long startTime = trace.getFirstTimeStamp(0);
+		long endTime = trace.getLastTimeStamp(trace.getBlockCount() - 1);
+		trace.close();
+
+		for (double fraction : new double[] {0.01, 0.1, 0.5, 1.0}) {
+			long width = (long) ((endTime - startTime) * fraction);
+			final long fromTime = startTime + (endTime - startTime - width) / 2;
+			final long toTime = fromTime + width;
+			for (final File file : new File[] {blockFile, zipFile}) {
+				Task task = new Task() {
+					@Override
+					public Object run() throws Exception {
+						Program program = new Program();
+						program.loadTrace(file.getAbsolutePath(), false,
+						                  CallAssignment.DEFINING_CLASS, fromTime, toTime);
+						if (program.getEndTime() != toTime) {
+							throw new IllegalStateException("The window was not loaded.");
+						}
+						return program;
+					}
+				};
+				String name = "window " + fraction + ", " + new TraceFile(file).getFormat();
+				report(name, task);
+				System.out.println(name + ": " + retainedMemory(task) / (1024 * 1024) + " MB");
+			}
+		}
+	}
+
+	private void filter() throws Exception {
+		final Program program = loadProgram(blockFile);
+		program.setCurrentTime(program.getStartTime());
+		final ClassData[] vertices = program.getVertices();
+
+		report("toggle a class filter", new Task() {
+			private int toggle = 0;
+
+			@Override
+			public Object run() {
+				for (int i = 0; i < TOGGLES; i++) {
+					String className = vertices[toggle++ % vertices.length].getName();
+					program.addClassFilter(className);
+					program.filter();
+					program.removeClassFilter(className);
+					program.filter();
+				}
+				return null;
+			}
+		}, 2 * TOGGLES);
+
+		final ClassMethodFilter filter = new ClassMethodFilter(CallAssignment.DEFINING_CLASS,
+		                                                       program.getSymbolTable());
+		filter.addClassFilter(vertices[0].getName());
+		report("filter pass", new Task() {
+			@Override
+			public Object run() {
+				filter.filter(program.getEvents());
+				return null;
+			}
+		});
+		program.unfilter();
+	}
+
+	private void scrub() throws Exception {
+		final Program program = loadProgram(blockFile);
+		final long startTime = program.getStartTime();
+		final long duration = program.getEndTime() - startTime;
+
+		program.setCurrentTime(program.getEndTime());
+		report("metric start time step", new Task() {
+			@Override
+			public Object run() {
+				for (int step = 0; step < STEPS; step++) {
+					program.setMetricStartTime(startTime + duration * step / STEPS);
+				}
+				return null;
+			}
+		}, STEPS);
+		program.setMetricStartTime(startTime);
+
+		report("current time step", new Task() {
+			@Override
+			public Object run() {
+				program.setCurrentTime(startTime);
+				for (int step = 1; step <= STEPS; step++) {
+					program.setCurrentTime(startTime + duration * step / STEPS);
+				}
+				return null;
+			}
+		}, STEPS);
+
+		// The metrics are only computed when they are read, so this steps the
+		// current time while reading the metrics of every class, as a view
+		// showing the whole graph does.
+		report("current time step, reading all classes", new Task() {
+			@Override
+			public Object run() {
+				long checksum = 0;
+				program.setCurrentTime(startTime);
+				for (int step = 1; step <= STEPS; step++) {
+					program.setCurrentTime(startTime + duration * step / STEPS);
+					for (ClassData classData : program.getVertices()) {
+						checksum += classData.getCallsReceived() + classData.getInstanceCount();
+					}
+				}
+				return checksum;
+			}
+		}, STEPS);
+	}
+
+	private void graph() throws Exception {
+		final Program program = loadProgram(blockFile);
+		scale("build the call graph", new ParallelTask() {
+			@Override
+			public void run(int threads) {
+				GraphBuilder graphBuilder = new GraphBuilder(new DirectedSparseGraph(), false,
+				                                             CallAssignment.DEFINING_CLASS,
+				                                             program.getSymbolTable());
+				graphBuilder.setParallelism(threads);
+				graphBuilder.buildGraph(program.getEvents(), program.getStartTime(),
+				                        program.getEndTime());
+			}
+		});
+	}
+
+	private void metrics() throws Exception {
+		final Program program = loadProgram(blockFile);
+		scale("compute the metrics", new ParallelTask() {
+			@Override
+			public void run(int threads) {
+				MetricComputer metricComputer = new MetricComputer(program);
+				metricComputer.setParallelism(threads);
+				metricComputer.computeMetrics(program.getEvents(), true, program.getStartTime(),
+				                              program.getEndTime());
+			}
+		});
+	}
+
+	/**
+	 * Compares the primitive long maps with boxed hash maps, as used for the
+	 * classes of objects while the call graph is built, with a random object
+	 * ID for each event.
+	 */
+	private void maps() throws Exception {
+		final long[] keys = new long[(int) Math.min(eventCount, EventStore.MAX_SIZE)];
+		Random random = new Random(42);
+		for (int i = 0; i < keys.length; i++) {
+			keys[i] = random.nextLong();
+		}
+
+		Task boxed = new Task() {
+			@Override
+			public Object run() {
+				Map<Long, Integer> map = new HashMap<Long, Integer>();
+				for (int i = 0; i < keys.length; i++) {
+					map.put(keys[i], i & 0xfff);
+				}
+				for (int i = 0; i < keys.length; i++) {
+					if (map.get(keys[i]) == null) {
+						throw new IllegalStateException("An object ID is missing.");
+					}
+				}
+				return map;
+			}
+		};
+		Task primitive = new Task() {
+			@Override
+			public Object run() {
+				LongIntMap map = new LongIntMap(-1);
+				for (int i = 0; i < keys.length; i++) {
+					map.put(keys[i], i & 0xfff);
+				}
+				for (int i = 0; i < keys.length; i++) {
+					if (map.get(keys[i]) < 0) {
+						throw new IllegalStateException("An object ID is missing.");
+					}
+				}
+				return map;
+			}
+		};
+
+		report("HashMap<Long, Integer> put and get", boxed, keys.length);
+		System.out.println("HashMap<Long, Integer>: " + retainedMemory(boxed) / keys.length +
+		                   " bytes per key");
+		report("LongIntMap put and get", primitive, keys.length);
+		System.out.println("LongIntMap: " + retainedMemory(primitive) / keys.length +
+		                   " bytes per key");
+	}
+
+	private void run(String name) throws Exception {
+		System.out.println("== " + name);
+		switch (name) {
+			case "read":
+				read();
+				break;
+			case "load":
+				load();
+				break;
+			case "stream":
+				stream();
+				break;
+			case "cache":
+				cache();
+				break;
+			case "window":
+				window();
+				break;
+			case "filter":
+				filter();
+				break;
+			case "scrub":
+				scrub();
+				break;
+			case "graph":
+				graph();
+				break;
+			case "metrics":
+				metrics();
+				break;
+			case "maps":
+				maps();
+				break;
+			default:
+				throw new IllegalArgumentException("Unknown case: " + name);
+		}
+	}
+
+	private static boolean isCase(String name) {
+		for (String[] benchmarkCase : CASES) {
+			if (benchmarkCase[0].equals(name)) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	private static void usage() {
+		System.err.println("Usage: TraceBenchmark [-events n] [-classes n] [-runs n] " +
+		                   "[-threads n] case...");
+		System.err.println("Cases:");
+		for (String[] benchmarkCase : CASES) {
+			System.err.println(String.format("  %-8s %s", benchmarkCase[0], benchmarkCase[1]));
+		}
+		System.err.println(String.format("  %-8s %s", "all", "run every case"));
+		System.exit(1);
+	}
+
+	public static void main(String[] args) throws Exception {
+		TraceBenchmark benchmark = new TraceBenchmark();
+		List<String> cases = new ArrayList<String>();
+		for (int i = 0; i < args.length; i++) {
+			if (args[i].startsWith("-") && i + 1 < args.length) {
+				String value = args[++i];
+				switch (args[i - 1]) {
+					case "-events":
+						benchmark.eventCount = Long.parseLong(value);
+						break;
+					case "-classes":
+						benchmark.classCount = Integer.parseInt(value);
+						break;
+					case "-runs":
+						benchmark.runs = Integer.parseInt(value);
+						break;
+					case "-threads":
+						benchmark.maxThreads = Integer.parseInt(value);
+						break;
+					default:
+						usage();
+				}
+			} else if (args[i].equals("all")) {
+				for (String[] benchmarkCase : CASES) {
+					cases.add(benchmarkCase[0]);
+				}
+			} else if (isCase(args[i])) {
+				cases.add(args[i]);
+			} else {
+				usage();
+			}
+		}
+		if (cases.isEmpty() || benchmark.eventCount <= 0 || benchmark.classCount <= 0 ||
+		    benchmark.runs <= 0 || benchmark.maxThreads <= 0)
+		{
+			usage();
+		}
+
+		benchmark.writeTraces();
+		for (String name : cases) {
+			benchmark.run(name);
+		}
+	}
+}
@@ -0,0 +1,79 @@
+package tracevis.model;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import tracevis.model.TextTraceReaderTest.EventRecorder;
+
+public class TraceFileTest {
+
+	private static List<String> read(File file) throws IOException {
+		EventRecorder recorder = new EventRecorder();
+		new TraceFile(file).read(recorder);
+		return recorder.events;
+	}
+
+	@Test
+	public void testDetectFormat() throws IOException {
+		File zipFile = TraceFiles.writeZip(new SyntheticTrace(1, 10, 1), 100);
+		File textFile = TraceFiles.writeText(new SyntheticTrace(1, 10, 1), 100);
+		File binaryFile = TraceFiles.convert(zipFile, ".tvb");
+
+		Assert.assertEquals(TraceFile.Format.ZIPPED_TEXT, new TraceFile(zipFile).getFormat());
+		Assert.assertEquals(TraceFile.Format.TEXT, new TraceFile(textFile).getFormat());
+		Assert.assertEquals(TraceFile.Format.BINARY, new TraceFile(binaryFile).getFormat());
+
+		List<String> events = read(zipFile);
+		Assert.assertEquals(events, read(textFile));
+		Assert.assertEquals(events, read(binaryFile));
+	}
+
+	@Test
+	public void testMappedText() throws IOException {
+		// A large trace spans several buffers, and a long line crosses the
+		// boundary between them.
+		StringBuilder className = new StringBuilder();
+		for (int i = 0; i < 3000000; i++) {
+			className.append('c');
+		}
+		StringBuilder trace = new StringBuilder("VI:1\n");
+		for (int i = 0; i < 100000; i++) {
+			trace.append("TB:").append(i + 2).append(":").append(i).append('\n');
+		}
+		trace.append("CL:0:").append(className).append("\nVD:2");
+
+		List<String> events = read(TraceFiles.write(".txt", trace.toString()));
+
+		Assert.assertEquals(100003, events.size());
+		Assert.assertEquals("TB:100001:99999", events.get(100000));
+		Assert.assertEquals("CL:0:" + className, events.get(100001));
+		Assert.assertEquals("VD:2", events.get(100002));
+	}
+
+	@Test
+	public void testEmptyText() throws IOException {
+		Assert.assertEquals(Arrays.asList(), read(TraceFiles.write(".txt", "")));
+	}
+
+	@Test
+	public void testReadPrefix() throws IOException {
+		File zipFile = TraceFiles.writeZip(new SyntheticTrace(2, 20, 2), 5000);
+		List<String> events = read(zipFile);
+
+		EventRecorder prefix = new EventRecorder();
+		Assert.assertFalse(new TraceFile(zipFile).readPrefix(prefix, 1000));
+		Assert.assertEquals(events.subList(0, 1000), prefix.events.subList(0, 1000));
+		String last = events.get(999);
+		Assert.assertEquals("VD:" + last.split(":")[1], prefix.events.get(1000));
+		Assert.assertEquals(1001, prefix.events.size());
+
+		EventRecorder all = new EventRecorder();
+		Assert.assertTrue(new TraceFile(zipFile).readPrefix(all, events.size()));
+		Assert.assertEquals(events, all.events);
+	}
+}
@@ -0,0 +1,85 @@
+package tracevis.model;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+
+/**
+ * Creates the temporary trace files used by the tests and the benchmarks.
+ * All files are deleted when the virtual machine exits.
+ */
+public class TraceFiles {
+	private TraceFiles() {
+	}
+
+	/**
+	 * Returns a new, empty temporary file.
+	 * @param suffix the suffix of the file name.
+	 * @return the new file.
+	 * @throws IOException if the file could not be created.
+	 */
+	public static File createTempFile(String suffix) throws IOException {
+		File file = File.createTempFile("tracevis-test", suffix);
+		file.deleteOnExit();
+		return file;
+	}
+
+	/**
+	 * Returns a new temporary file with the specified contents.
+	 * @param suffix the suffix of the file name.
+	 * @param contents the text to write to the file, encoded as UTF-8.
+	 * @return the new file.
+	 * @throws IOException if the file could not be written.
+	 */
+	public static File write(String suffix, String contents) throws IOException {
+		File file = createTempFile(suffix);
+		OutputStream out = new FileOutputStream(file);
+		try {
+			out.write(contents.getBytes("UTF-8"));
+		} finally {
+			out.close();
+		}
+		return file;
+	}
+
+	/**
+	 * Returns a new temporary zipped text trace.
+	 * @param trace the synthetic trace to write.
+	 * @param eventCount the number of events to write.
+	 * @return the new trace file.
+	 * @throws IOException if the trace could not be written.
+	 */
+	public static File writeZip(SyntheticTrace trace, long eventCount) throws IOException {
+		File file = createTempFile(".trace");
+		trace.writeZip(file, eventCount);
+		return file;
+	}
+
+	/**
+	 * Returns a new temporary plain text trace.
+	 * @param trace the synthetic trace to write.
+	 * @param eventCount the number of events to write.
+	 * @return the new trace file.
+	 * @throws IOException if the trace could not be written.
+	 */
+	public static File writeText(SyntheticTrace trace, long eventCount) throws IOException {
+		File file = createTempFile(".txt");
+		trace.writeText(file, eventCount);
+		return file;
+	}
+
+	/**
+	 * Returns a new temporary copy of the specified trace, converted with
+	 * {@link TraceConverter}.
+	 * @param traceFile the trace to convert.
+	 * @param suffix ".tvc" for a block trace, or ".tvb" for a binary trace.
+	 * @return the converted trace file.
+	 * @throws IOException if the trace could not be converted.
+	 */
+	public static File convert(File traceFile, String suffix) throws IOException {
+		File file = createTempFile(suffix);
+		TraceConverter.convertTrace(traceFile, file);
+		return file;
+	}
+}
@@ -0,0 +1,68 @@
+package tracevis.utilities;
+
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.Random;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+public class LongIntMapTest {
+
+	@Test
+	public void testPutAndGet() {
+		LongIntMap map = new LongIntMap(-1);
+		Assert.assertEquals(-1, map.get(0));
+		Assert.assertEquals(-1, map.put(0, 10));
+		Assert.assertEquals(-1, map.put(Long.MIN_VALUE, 20));
+		Assert.assertEquals(10, map.put(0, 11));
+		Assert.assertEquals(11, map.get(0));
+		Assert.assertEquals(20, map.get(Long.MIN_VALUE));
+		Assert.assertTrue(map.containsKey(0));
+		Assert.assertFalse(map.containsKey(1));
+		Assert.assertEquals(2, map.size());
+
+		Assert.assertEquals(11, map.remove(0));
+		Assert.assertEquals(-1, map.remove(0));
+		Assert.assertFalse(map.containsKey(0));
+		Assert.assertEquals(1, map.size());
+
+		map.clear();
+		Assert.assertEquals(0, map.size());
+		Assert.assertEquals(-1, map.get(Long.MIN_VALUE));
+	}
+
+	@Test
+	public void testRandomOperations() {
+		Random random = new Random(1);
+		LongIntMap map = new LongIntMap(-1);
+		Map<Long, Integer> expected = new HashMap<Long, Integer>();
+		for (int i = 0; i < 200000; i++) {
+			// Few distinct keys, so that removals often hit probe chains.
+			long key = random.nextInt(5000) * 0x100000001L;
+			int value = random.nextInt(1000);
+			if (random.nextInt(3) == 0) {
+				Integer previous = expected.remove(key);
+				Assert.assertEquals(previous != null ? previous : -1, map.remove(key));
+			} else {
+				Integer previous = expected.put(key, value);
+				Assert.assertEquals(previous != null ? previous : -1, map.put(key, value));
+			}
+		}
+
+		Assert.assertEquals(expected.size(), map.size());
+		for (long key = 0; key < 5000; key++) {
+			Integer value = expected.get(key * 0x100000001L);
+			Assert.assertEquals(value != null ? value : -1, map.get(key * 0x100000001L));
+		}
+
+		Set<Long> iterated = new HashSet<Long>();
+		LongIterator keys = map.keys();
+		while (keys.hasNext()) {
+			Assert.assertTrue(iterated.add(keys.next()));
+		}
+		Assert.assertEquals(expected.keySet(), iterated);
+	}
+}
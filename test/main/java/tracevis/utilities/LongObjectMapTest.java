@@ -0,0 +1,61 @@
+package tracevis.utilities;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+public class LongObjectMapTest {
+
+	@Test
+	public void testPutAndGet() {
+		LongObjectMap<String> map = new LongObjectMap<String>();
+		int count = 10000;
+		for (int i = 0; i < count; i++) {
+			Assert.assertNull(map.put(((long) i << 32) | (i * 7), "value" + i));
+		}
+		Assert.assertEquals(count, map.size());
+
+		for (int i = 0; i < count; i++) {
+			Assert.assertEquals("value" + i, map.get(((long) i << 32) | (i * 7)));
+		}
+		Assert.assertNull(map.get(-1));
+		Assert.assertFalse(map.containsKey(1L << 32));
+
+		Assert.assertEquals("value5", map.put((5L << 32) | 35, "other"));
+		Assert.assertEquals("other", map.get((5L << 32) | 35));
+		Assert.assertEquals(count, map.size());
+
+		map.put(0, "zero");
+		map.put(Long.MIN_VALUE, "min");
+		Assert.assertEquals("zero", map.get(0));
+		Assert.assertEquals("min", map.get(Long.MIN_VALUE));
+	}
+
+	@Test
+	public void testRemove() {
+		LongObjectMap<String> map = new LongObjectMap<String>();
+		for (int i = 0; i < 1000; i++) {
+			map.put(i * 16, "value" + i);
+		}
+		for (int i = 0; i < 1000; i += 2) {
+			Assert.assertEquals("value" + i, map.remove(i * 16));
+		}
+		Assert.assertNull(map.remove(0));
+		Assert.assertEquals(500, map.size());
+		for (int i = 0; i < 1000; i++) {
+			Assert.assertEquals(i % 2 == 1 ? "value" + i : null, map.get(i * 16));
+		}
+
+		int count = 0;
+		LongIterator keys = map.keys();
+		while (keys.hasNext()) {
+			long key = keys.next();
+			Assert.assertEquals(1, key / 16 % 2);
+			count++;
+		}
+		Assert.assertEquals(500, count);
+
+		map.clear();
+		Assert.assertEquals(0, map.size());
+		Assert.assertNull(map.get(16));
+	}
+}
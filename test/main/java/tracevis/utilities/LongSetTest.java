@@ -0,0 +1,54 @@
+package tracevis.utilities;
+
+import java.util.HashSet;
+import java.util.Random;
+import java.util.Set;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+public class LongSetTest {
+
+	@Test
+	public void testRandomOperations() {
+		Random random = new Random(2);
+		LongSet set = new LongSet();
+		Set<Long> expected = new HashSet<Long>();
+		for (int i = 0; i < 200000; i++) {
+			long value = random.nextInt(3000) - 1000;
+			if (random.nextBoolean()) {
+				Assert.assertEquals(expected.remove(value), set.remove(value));
+			} else {
+				Assert.assertEquals(expected.add(value), set.add(value));
+			}
+		}
+
+		Assert.assertEquals(expected.size(), set.size());
+		for (long value = -1000; value < 2000; value++) {
+			Assert.assertEquals(expected.contains(value), set.contains(value));
+		}
+
+		Set<Long> iterated = new HashSet<Long>();
+		LongIterator values = set.iterator();
+		while (values.hasNext()) {
+			Assert.assertTrue(iterated.add(values.next()));
+		}
+		Assert.assertEquals(expected, iterated);
+	}
+
+	@Test
+	public void testZero() {
+		LongSet set = new LongSet();
+		Assert.assertFalse(set.iterator().hasNext());
+		Assert.assertTrue(set.add(0));
+		Assert.assertFalse(set.add(0));
+
+		LongIterator values = set.iterator();
+		Assert.assertTrue(values.hasNext());
+		Assert.assertEquals(0, values.next());
+		Assert.assertFalse(values.hasNext());
+
+		Assert.assertTrue(set.remove(0));
+		Assert.assertTrue(set.isEmpty());
+	}
+}